@@ -0,0 +1,87 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.statistics.StatisticsSnapshot;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the account manager's hot paths against a bank of existing accounts. Each
+ * benchmark reports throughput and, from sampled times, latency percentiles.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+public class AccountManagerBenchmark {
+    private static final long DECLINED_AMOUNT = Long.MAX_VALUE;
+
+    @Benchmark
+    public long getBalance(BankState bank, AccountPicker picker) {
+        return bank.accountManager.getBalance(picker.next());
+    }
+
+    @Benchmark
+    public boolean deposit(BankState bank, AccountPicker picker) {
+        return bank.accountManager.deposit(picker.next(), 1);
+    }
+
+    @Benchmark
+    public boolean withdraw(BankState bank, AccountPicker picker) {
+        return bank.accountManager.withdraw(picker.next(), 1);
+    }
+
+    @Benchmark
+    public TransactionStatus tryWithdraw(BankState bank, AccountPicker picker) {
+        return bank.accountManager.tryWithdraw(picker.next(), 1);
+    }
+
+    // A withdrawal larger than any balance, declined by throwing
+    @Benchmark
+    public boolean declinedWithdraw(BankState bank, AccountPicker picker) {
+        try {
+            return bank.accountManager.withdraw(picker.next(), DECLINED_AMOUNT);
+        } catch (InsufficientFundsException e) {
+            return false;
+        }
+    }
+
+    // A withdrawal larger than any balance, declined with a status
+    @Benchmark
+    public TransactionStatus declinedTryWithdraw(BankState bank, AccountPicker picker) {
+        return bank.accountManager.tryWithdraw(picker.next(), DECLINED_AMOUNT);
+    }
+
+    @Benchmark
+    public boolean transfer(BankState bank, AccountPicker picker) {
+        String from = picker.next();
+        return bank.accountManager.transfer(from, picker.nextOtherThan(from), 1);
+    }
+
+    // Approves a loan and repays it, so the loan and total deposits stay level
+    @Benchmark
+    public boolean approveAndRepayLoan(BankState bank, AccountPicker picker) {
+        String accountHolder = picker.next();
+        bank.accountManager.approveLoan(accountHolder, 1);
+        return bank.accountManager.repayLoan(accountHolder, 1);
+    }
+
+    @Benchmark
+    public long getTotalDeposits(BankState bank) {
+        return bank.accountManager.getTotalDeposits();
+    }
+
+    @Benchmark
+    public StatisticsSnapshot getStatistics(BankState bank) {
+        return bank.accountManager.getStatistics();
+    }
+}
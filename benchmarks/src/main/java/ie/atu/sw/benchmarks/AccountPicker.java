@@ -0,0 +1,69 @@
+package ie.atu.sw.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Picks the accounts each benchmark thread operates on. The picks are drawn before the trial
+ * so that generating them is not part of the measurement.
+ */
+@State(Scope.Thread)
+public class AccountPicker {
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+    private static final double HOT_FRACTION = 0.01;
+    private static final double HOT_SHARE = 0.9;
+
+    private String[] sequence;
+    private int next;
+
+    /**
+     * Draws the sequence of accounts for this thread with the skew of the bank.
+     *
+     * @param bank The bank the accounts are picked from
+     */
+    @Setup(Level.Trial)
+    public void setup(BankState bank) {
+        SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+        int hotCount = Math.max(1, (int) (bank.accountCount * HOT_FRACTION));
+        sequence = new String[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            int index;
+            if ("hot".equals(bank.skew) && random.nextDouble() < HOT_SHARE) {
+                index = random.nextInt(hotCount);
+            } else {
+                index = random.nextInt(bank.accountCount);
+            }
+            sequence[i] = bank.holders[index];
+        }
+    }
+
+    /**
+     * Gets the next account holder in this thread's sequence.
+     *
+     * @return The name of the account holder
+     */
+    public String next() {
+        String accountHolder = sequence[next];
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+        return accountHolder;
+    }
+
+    /**
+     * Gets the next account holder that is not the one given, for the receiving side of a
+     * transfer.
+     *
+     * @param other The account holder to avoid
+     * @return The name of the account holder
+     */
+    public String nextOtherThan(String other) {
+        String accountHolder = next();
+        while (accountHolder.equals(other)) {
+            accountHolder = next();
+        }
+        return accountHolder;
+    }
+}
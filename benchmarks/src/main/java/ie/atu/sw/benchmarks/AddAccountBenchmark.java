@@ -0,0 +1,64 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures opening new accounts. The account manager is replaced every iteration so the
+ * store does not grow without limit over the run.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddAccountBenchmark {
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    AccountManager accountManager;
+
+    /**
+     * Gives each benchmark thread its own account holder names so adds never collide.
+     */
+    @State(Scope.Thread)
+    public static class Names {
+        private final String prefix = "Thread" + THREAD_IDS.incrementAndGet() + "-";
+        private long next;
+
+        // Gets a name that has not been used by this thread
+        String next() {
+            return prefix + next++;
+        }
+    }
+
+    /**
+     * Starts each iteration with an empty account manager.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        accountManager = new AccountManager(BankState.createStore(store, 1 << 20));
+    }
+
+    @Benchmark
+    public void addAccount(Names names) {
+        accountManager.addAccount(names.next(), 1_000);
+    }
+}
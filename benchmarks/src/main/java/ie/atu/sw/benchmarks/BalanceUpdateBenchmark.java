@@ -0,0 +1,49 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.account.BankAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares updating a single hot balance by swapping in a new immutable state with one
+ * compare-and-set, as BankAccount does, against guarding it with a monitor. Run it at several
+ * thread counts to see how each behaves under contention.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BalanceUpdateBenchmark {
+    private final BankAccount account = new BankAccount("Hot", 0);
+    private final SynchronizedBalance synchronizedBalance = new SynchronizedBalance();
+
+    @Benchmark
+    public void compareAndSet() {
+        account.increaseBalance(1);
+    }
+
+    @Benchmark
+    public void synchronizedMonitor() {
+        synchronizedBalance.increase(1);
+    }
+
+    // A balance guarded by its monitor, as the accounts were before they became lock free
+    private static class SynchronizedBalance {
+        private long balance;
+
+        private synchronized void increase(long amount) {
+            balance = Math.addExact(balance, amount);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.account.OffHeapAccountStore;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.money.Money;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * An account manager shared by all benchmark threads, filled with accounts before the trial.
+ * Every account starts with enough money that the benchmarks never run it dry.
+ */
+@State(Scope.Benchmark)
+public class BankState {
+    // Opening balance of each account, large enough for billions of one cent withdrawals
+    static final long INITIAL_BALANCE = Money.ofEuro(1_000_000_000);
+
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    // Ten million accounts need a 4 GB heap, which the benchmarks using this state ask for
+    @Param({"1000", "1000000", "10000000"})
+    public int accountCount;
+
+    // "uniform" spreads operations evenly, "hot" sends 90% of them to 1% of the accounts
+    @Param({"uniform", "hot"})
+    public String skew;
+
+    AccountManager accountManager;
+    String[] holders;
+
+    /**
+     * Creates the account manager and its accounts.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        accountManager = new AccountManager(createStore(store, accountCount));
+        holders = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            holders[i] = "Holder" + i;
+            accountManager.addAccount(holders[i], INITIAL_BALANCE);
+        }
+    }
+
+    // Creates an empty account store of the named kind
+    static AccountStore createStore(String store, int expectedAccounts) {
+        return switch (store) {
+            case "heap" -> new HeapAccountStore(expectedAccounts);
+            case "off-heap" -> new OffHeapAccountStore(expectedAccounts);
+            default -> throw new IllegalArgumentException("Unknown account store: " + store);
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.BatchOperation;
+import ie.atu.sw.transaction.BatchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares applying a batch of deposits and withdrawals with applyBatch against applying the
+ * same operations one call at a time. Both report the time per batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int ACCOUNT_COUNT = 10_000;
+
+    @Param({"16", "256", "4096"})
+    public int batchSize;
+
+    // The number of distinct accounts the operations in a batch touch
+    @Param({"1", "64"})
+    public int accountsPerBatch;
+
+    private AccountManager accountManager;
+    private List<BatchOperation> operations;
+
+    /**
+     * Creates the accounts and the batch to apply.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        accountManager = new AccountManager();
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountManager.addAccount("Holder" + i, BankState.INITIAL_BALANCE);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        operations = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String accountHolder = "Holder" + random.nextInt(accountsPerBatch);
+            operations.add(i % 2 == 0 ? BatchOperation.deposit(accountHolder, 2)
+                    : BatchOperation.withdrawal(accountHolder, 1));
+        }
+    }
+
+    @Benchmark
+    public BatchResult applyBatch() {
+        return accountManager.applyBatch(operations);
+    }
+
+    @Benchmark
+    public int applyOneAtATime() {
+        int applied = 0;
+        for (BatchOperation operation : operations) {
+            if (operation.type() == BatchOperation.Type.DEPOSIT) {
+                accountManager.deposit(operation.accountHolder(), operation.amount());
+            } else {
+                accountManager.withdraw(operation.accountHolder(), operation.amount());
+            }
+            applied++;
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,40 @@
+package ie.atu.sw.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result includes the allocation rate, and
+ * writes the results as JSON to compare against a saved baseline.
+ *
+ * Without a -t option every selected benchmark is run at 1, 8 and 32 threads, writing one
+ * results file per thread count to the results directory. Any other JMH command line option,
+ * such as a benchmark name pattern or -p to choose parameters, is passed through.
+ */
+public class BenchmarkRunner {
+    private static final int[] THREAD_COUNTS = {1, 8, 32};
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path results = Files.createDirectories(Path.of("results"));
+        int[] threadCounts = commandLine.getThreads().hasValue()
+                ? new int[]{commandLine.getThreads().get()} : THREAD_COUNTS;
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(results.resolve("threads-" + threads + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.bulk.AccountExporter;
+import ie.atu.sw.bulk.AccountFileFormat;
+import ie.atu.sw.bulk.AccountImporter;
+import ie.atu.sw.bulk.AccountRecords;
+import ie.atu.sw.bulk.ImportReport;
+import ie.atu.sw.manager.AccountManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long an in-memory account manager takes to import an account file, in each
+ * format, against adding the same accounts one addAccount call at a time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BulkImportBenchmark {
+    @Param({"1000000", "10000000"})
+    public int accountCount;
+
+    @Param({"CSV", "BINARY"})
+    public AccountFileFormat format;
+
+    private Path file;
+
+    /**
+     * Exports the accounts to a file to import.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        AccountManager accountManager = new AccountManager();
+        AccountRecords records = new AccountRecords(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            records.add(i, "Holder" + i, 1_000 + i, i % 10 == 0 ? 500 : 0);
+        }
+        accountManager.addAccounts(records);
+        file = Files.createTempFile("bulk-import-benchmark", "." + format);
+        AccountExporter.exportFile(accountManager, file, format);
+    }
+
+    /**
+     * Deletes the file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public ImportReport importFile() throws IOException {
+        return AccountImporter.importFile(new AccountManager(), file, format);
+    }
+
+    @Benchmark
+    public AccountManager addAccount() {
+        AccountManager accountManager = new AccountManager();
+        for (int i = 0; i < accountCount; i++) {
+            accountManager.addAccount("Holder" + i, 1_000 + i);
+        }
+        return accountManager;
+    }
+}
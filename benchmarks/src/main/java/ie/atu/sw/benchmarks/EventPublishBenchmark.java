@@ -0,0 +1,99 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.events.AccountEvent;
+import ie.atu.sw.events.AccountEventPublisher;
+import ie.atu.sw.events.SlowSubscriberPolicy;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a deposit with change events off, and on with one subscriber under
+ * each slow-subscriber policy. The subscriber asks for every event and consumes it, so it
+ * keeps up with the ring, and the difference from off includes the subscriber thread's share
+ * of the processors. The idle subscriber asks for nothing and has its events dropped, so the
+ * difference from off is only the cost of publishing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class EventPublishBenchmark {
+    @Param({"off", "idle", "DROP", "SPILL", "BLOCK"})
+    public String events;
+
+    @Param({"1000"})
+    public int accountCount;
+
+    private AccountManager accountManager;
+    private AccountEventPublisher publisher;
+    private String[] names;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        accountManager = new AccountManager();
+        names = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            names[i] = "Holder" + i;
+            accountManager.addAccount(names[i], 1_000);
+        }
+        if (!events.equals("off")) {
+            boolean idle = events.equals("idle");
+            publisher = new AccountEventPublisher(1 << 16,
+                    idle ? SlowSubscriberPolicy.DROP : SlowSubscriberPolicy.valueOf(events));
+            publisher.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    if (!idle) {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+                }
+
+                @Override
+                public void onNext(AccountEvent event) {
+                    blackhole.consume(event);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            accountManager.setEventPublisher(publisher);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (publisher != null) {
+            publisher.close();
+        }
+    }
+
+    @Benchmark
+    public TransactionStatus deposit() {
+        return accountManager.tryDeposit(names[ThreadLocalRandom.current().nextInt(accountCount)],
+                1);
+    }
+}
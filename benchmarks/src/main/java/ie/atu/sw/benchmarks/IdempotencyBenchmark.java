@@ -0,0 +1,82 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.idempotency.IdempotencyCache;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of deposits carrying a request id with duplicate suppression off and
+ * on. Every request has a new id, so with suppression on each deposit also claims an id in
+ * the cache and records its result, and once the cache is full drops the oldest id. The
+ * retried deposits repeat an id already in the cache and are answered from it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class IdempotencyBenchmark {
+    @Param({"off", "on"})
+    public String dedup;
+
+    @Param({"1000000"})
+    public int cacheCapacity;
+
+    @Param({"1000"})
+    public int accountCount;
+
+    private AccountManager accountManager;
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        accountManager = new AccountManager();
+        names = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            names[i] = "Holder" + i;
+            accountManager.addAccount(names[i], 1_000);
+        }
+        if (dedup.equals("on")) {
+            accountManager.setIdempotencyCache(new IdempotencyCache(cacheCapacity,
+                    Duration.ofHours(1)));
+        }
+    }
+
+    // Gives each thread its own sequence of request ids
+    @State(Scope.Thread)
+    public static class RequestIds {
+        private final String prefix = Long.toHexString(ThreadLocalRandom.current().nextLong())
+                + "-";
+        private long next;
+        private String last = prefix + "0";
+    }
+
+    @Benchmark
+    public TransactionStatus newRequest(RequestIds requestIds) {
+        requestIds.last = requestIds.prefix + requestIds.next++;
+        return accountManager.tryDeposit(requestIds.last,
+                names[ThreadLocalRandom.current().nextInt(accountCount)], 1);
+    }
+
+    @Benchmark
+    public TransactionStatus retriedRequest(RequestIds requestIds) {
+        return accountManager.tryDeposit(requestIds.last,
+                names[ThreadLocalRandom.current().nextInt(accountCount)], 1);
+    }
+}
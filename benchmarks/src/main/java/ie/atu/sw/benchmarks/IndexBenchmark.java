@@ -0,0 +1,78 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a balance index costs on the write path against what it saves a range query.
+ * deposit is the latency of a deposit, which moves the account in the index when balances are
+ * indexed. query finds the accounts in a random range of balances holding about a hundred
+ * accounts, by scanning every account when balances are not indexed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+    // The highest opening balance, in cents
+    private static final long MAX_BALANCE = 10_000_000;
+
+    @Param({"off", "on"})
+    public String index;
+
+    @Param({"100000", "1000000"})
+    public int accountCount;
+
+    private AccountManager accountManager;
+    private String[] names;
+    // The width of a range of balances holding about a hundred accounts
+    private long rangeWidth;
+
+    /**
+     * Opens accounts with balances spread evenly up to the highest balance.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        accountManager = new AccountManager();
+        names = new String[accountCount];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < accountCount; i++) {
+            names[i] = "Holder" + i;
+            accountManager.addAccount(names[i], random.nextLong(1, MAX_BALANCE));
+        }
+        if (index.equals("on")) {
+            accountManager.indexBalances();
+        }
+        rangeWidth = MAX_BALANCE * 100 / accountCount;
+    }
+
+    @Benchmark
+    public TransactionStatus deposit() {
+        return accountManager.tryDeposit(names[ThreadLocalRandom.current().nextInt(accountCount)],
+                1);
+    }
+
+    @Benchmark
+    public long query() {
+        long from = ThreadLocalRandom.current().nextLong(MAX_BALANCE);
+        return accountManager.accountsByBalance(from, from + rangeWidth).count();
+    }
+}
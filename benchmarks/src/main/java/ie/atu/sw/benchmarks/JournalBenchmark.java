@@ -0,0 +1,84 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures deposits through a persistent account manager, where each one is journalled and
+ * synced to disk in groups. Run it at several thread counts, as more threads give the group
+ * commit more operations to share each sync.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+    private static final int ACCOUNT_COUNT = 1_000;
+
+    // The most entries synced together; 1 syncs every entry on its own
+    @Param({"1", "1024"})
+    public int maxBatchSize;
+
+    @Param({"true", "false"})
+    public boolean waitForDurability;
+
+    private Path directory;
+    private AccountManager accountManager;
+
+    /**
+     * Opens a persistent account manager in a new directory and creates its accounts.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        GroupCommitPolicy policy = new GroupCommitPolicy(maxBatchSize, Duration.ofMillis(2),
+                waitForDurability);
+        accountManager = AccountManager.open(directory, policy);
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountManager.addAccount("Holder" + i, BankState.INITIAL_BALANCE);
+        }
+    }
+
+    /**
+     * Closes the account manager and deletes its directory.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        accountManager.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return accountManager.deposit("Holder" + ThreadLocalRandom.current().nextInt(ACCOUNT_COUNT),
+                1);
+    }
+}
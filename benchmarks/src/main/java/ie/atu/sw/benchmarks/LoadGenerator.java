@@ -0,0 +1,184 @@
+package ie.atu.sw.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a running bank server with many concurrent keep-alive connections and reports the
+ * latency percentiles of the requests.
+ *
+ * Usage: LoadGenerator [host] [port] [connections] [requests per connection] [accounts]
+ *
+ * Every connection is opened, on its own virtual thread, before any of them sends a request,
+ * so the server holds all of them at once. Each then sends its requests one after another: half
+ * balance reads and a quarter each of one cent deposits and withdrawals, on random accounts.
+ *
+ * A single client address can open at most one connection per ephemeral port, so reaching 100k
+ * connections needs a wider ephemeral port range or several client addresses, and both ends
+ * need an open file limit above the number of connections.
+ *
+ * The server should be started with BankingApp serve, which keeps every idle keep-alive
+ * connection open. A server left at the JDK's default closes those beyond 200.
+ */
+public class LoadGenerator {
+    private static final long INITIAL_DEPOSIT = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        int requestsPerConnection = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int accountCount = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+        InetSocketAddress address = new InetSocketAddress(host, port);
+
+        try (Connection connection = new Connection(address)) {
+            for (int i = 0; i < accountCount; i++) {
+                int status = connection.request("POST",
+                        "/accounts/Load" + i + "?amount=" + INITIAL_DEPOSIT);
+                if (status != 201 && status != 409) {
+                    throw new IOException("Could not open an account: HTTP " + status);
+                }
+            }
+        }
+
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong failures = new AtomicLong();
+        List<Future<long[]>> workers = new ArrayList<>(connections);
+        long elapsed;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                long seed = i;
+                workers.add(executor.submit(() -> {
+                    try (Connection connection = new Connection(address)) {
+                        connected.countDown();
+                        start.await();
+                        return run(connection, requestsPerConnection, accountCount,
+                                new SplittableRandom(seed), failures);
+                    } catch (IOException e) {
+                        connected.countDown();
+                        throw e;
+                    }
+                }));
+            }
+            connected.await();
+            System.out.println(connections + " connections open");
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<long[]> worker : workers) {
+                worker.get();
+            }
+            elapsed = System.nanoTime() - started;
+        }
+
+        long[] latencies = new long[Math.multiplyExact(connections, requestsPerConnection)];
+        int count = 0;
+        for (Future<long[]> worker : workers) {
+            long[] workerLatencies = worker.get();
+            System.arraycopy(workerLatencies, 0, latencies, count, workerLatencies.length);
+            count += workerLatencies.length;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("requests: %d, failed: %d, throughput: %.0f requests/s%n", count,
+                failures.get(), count / (elapsed / 1e9));
+        System.out.printf("latency (us): p50 %.1f, p99 %.1f, p999 %.1f, max %.1f%n",
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3, latencies[latencies.length - 1] / 1e3);
+    }
+
+    // Sends a connection's requests and returns the latency of each in nanoseconds
+    private static long[] run(Connection connection, int requests, int accountCount,
+                              SplittableRandom random, AtomicLong failures) throws IOException {
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            String account = "/accounts/Load" + random.nextInt(accountCount);
+            int operation = random.nextInt(4);
+            long started = System.nanoTime();
+            int status = switch (operation) {
+                case 0 -> connection.request("POST", account + "/deposit?amount=1");
+                case 1 -> connection.request("POST", account + "/withdraw?amount=1");
+                default -> connection.request("GET", account);
+            };
+            latencies[i] = System.nanoTime() - started;
+            if (status != 200) {
+                failures.incrementAndGet();
+            }
+        }
+        return latencies;
+    }
+
+    // Gets the value below which a fraction of the sorted values fall
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    // A keep-alive HTTP/1.1 connection that sends one request at a time
+    private static final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        // Constructor to connect to the server
+        private Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        // Sends a request without a body and reads the response, returning its status code
+        private int request(String method, String target) throws IOException {
+            out.write((method + " " + target + " HTTP/1.1\r\nHost: bank\r\n"
+                    + "Content-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            long contentLength = 0;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Long.parseLong(header.substring(15).trim());
+                }
+            }
+            in.skipNBytes(contentLength);
+            return status;
+        }
+
+        // Reads a line of the response without its line ending
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("The server closed the connection");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.loan.LoanPortfolio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the nightly job takes to accrue a day's interest on every loan in the
+ * portfolio. Only one accrual runs at a time, so run it with -t 1.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LoanAccrualBenchmark {
+    @Param({"1000000", "10000000", "50000000"})
+    public int loanCount;
+
+    private LoanPortfolio portfolio;
+
+    /**
+     * Originates loans with a spread of principals, rates and terms.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        portfolio = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < loanCount; i++) {
+            portfolio.originate(random.nextLong(100_000, 50_000_000), random.nextInt(0, 2_000),
+                    random.nextInt(12, 361));
+        }
+    }
+
+    @Benchmark
+    public long accrueDay() {
+        return portfolio.accrue(1);
+    }
+}
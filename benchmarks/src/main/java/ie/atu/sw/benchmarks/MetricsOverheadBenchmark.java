@@ -0,0 +1,56 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the metrics add to the hot path of an in-memory account manager, by running
+ * the same deposits and balance reads with the metrics off, on with the default sampling, and
+ * on timing every call. The difference from off is the cost of counting the call and, when it
+ * is timed, reading the clock twice and recording the latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    @Param({"off", "sampled", "every"})
+    public String metrics;
+
+    private AccountManager accountManager;
+
+    @Setup
+    public void setup() {
+        accountManager = new AccountManager();
+        accountManager.addAccount("Alice", 1_000);
+        accountManager.getMetrics().setEnabled(!metrics.equals("off"));
+        if (metrics.equals("every")) {
+            accountManager.getMetrics().setSampleInterval(1);
+        }
+    }
+
+    @Benchmark
+    public TransactionStatus tryDeposit() {
+        return accountManager.tryDeposit("Alice", 1);
+    }
+
+    @Benchmark
+    public long getBalance() {
+        return accountManager.getBalance("Alice");
+    }
+}
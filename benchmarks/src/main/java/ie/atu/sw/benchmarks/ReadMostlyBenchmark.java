@@ -0,0 +1,120 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-mostly mix across 32 threads: 30 read the balance and loan of an account together
+ * and 2 deposit into the same accounts, so about 95% of the threads only read. The writers
+ * pause between deposits for writeBackoff tokens of CPU work; lowering it raises the write
+ * load. The read latency of the sequence-locked accounts should stay flat as it rises, while
+ * the readers of accounts guarded by a read-write lock start to wait for the writers.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ReadMostlyBenchmark {
+    @Param({"16"})
+    public int accounts;
+
+    @Param({"1000", "100", "0"})
+    public int writeBackoff;
+
+    private AccountManager accountManager;
+    private String[] names;
+    private LockedAccount[] lockedAccounts;
+
+    @Setup
+    public void setup() {
+        accountManager = new AccountManager();
+        names = new String[accounts];
+        lockedAccounts = new LockedAccount[accounts];
+        for (int i = 0; i < accounts; i++) {
+            names[i] = "Account" + i;
+            accountManager.addAccount(names[i], 1_000);
+            lockedAccounts[i] = new LockedAccount();
+        }
+    }
+
+    @Benchmark
+    @Group("sequenceLock")
+    @GroupThreads(30)
+    public AccountState sequenceLockRead() {
+        return accountManager.getAccountState(names[pick()]);
+    }
+
+    @Benchmark
+    @Group("sequenceLock")
+    @GroupThreads(2)
+    public TransactionStatus sequenceLockWrite() {
+        Blackhole.consumeCPU(writeBackoff);
+        return accountManager.tryDeposit(names[pick()], 1);
+    }
+
+    @Benchmark
+    @Group("readWriteLock")
+    @GroupThreads(30)
+    public AccountState readWriteLockRead() {
+        return lockedAccounts[pick()].state();
+    }
+
+    @Benchmark
+    @Group("readWriteLock")
+    @GroupThreads(2)
+    public void readWriteLockWrite() {
+        Blackhole.consumeCPU(writeBackoff);
+        lockedAccounts[pick()].deposit(1);
+    }
+
+    // Picks an account at random
+    private int pick() {
+        return ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    // A balance and loan guarded by a read-write lock, the usual way to let readers share
+    private static class LockedAccount {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private long balance = 1_000;
+        private long loan;
+
+        private AccountState state() {
+            lock.readLock().lock();
+            try {
+                return new AccountState(balance, loan);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void deposit(long amount) {
+            lock.writeLock().lock();
+            try {
+                balance = Math.addExact(balance, amount);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.reconciliation.ReconciliationReport;
+import ie.atu.sw.reconciliation.Reconciler;
+import ie.atu.sw.statistics.BankStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the end-of-day reconciliation takes to recompute the statistics from every
+ * account in a quiet bank, which takes one pass. The pass runs on the common fork-join pool, so
+ * run it with -t 1.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class ReconciliationBenchmark {
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    @Param({"1000000", "10000000"})
+    public int accountCount;
+
+    private Reconciler reconciler;
+
+    /**
+     * Opens accounts with a spread of balances, a tenth of them with a loan.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        AccountStore accounts = BankState.createStore(store, accountCount);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add("Holder" + i, random.nextLong(0, 10_000_000),
+                    i % 10 == 0 ? random.nextLong(0, 1_000_000) : 0);
+        }
+        BankStatistics statistics = new BankStatistics();
+        statistics.rebuild(accounts);
+        reconciler = new Reconciler(accounts, statistics);
+    }
+
+    @Benchmark
+    public ReconciliationReport reconcile() {
+        ReconciliationReport report = reconciler.reconcile();
+        if (!report.isConsistent()) {
+            throw new IllegalStateException("The statistics did not match: " + report);
+        }
+        return report;
+    }
+}
@@ -0,0 +1,85 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long a persistent account manager takes to open: loading the latest snapshot
+ * and replaying the journal written after it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+    @Param({"100000", "1000000"})
+    public int accountCount;
+
+    // The number of deposits journalled after the snapshot
+    @Param({"0", "1000000"})
+    public int journalledOperations;
+
+    private Path directory;
+
+    /**
+     * Builds a directory holding a snapshot of the accounts and a journal of later deposits.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        GroupCommitPolicy policy = new GroupCommitPolicy(1024, Duration.ofMillis(2),
+                false);
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            for (int i = 0; i < accountCount; i++) {
+                accountManager.addAccount("Holder" + i, 1_000);
+            }
+            accountManager.snapshot();
+            for (int i = 0; i < journalledOperations; i++) {
+                accountManager.deposit("Holder" + (i % accountCount), 1);
+            }
+        }
+    }
+
+    /**
+     * Deletes the directory.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public long open() throws IOException {
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            return accountManager.getTotalDeposits();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.engine.ShardedEngine;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the sharded engine's throughput grows with the number of shards. Each benchmark
+ * thread submits a window of operations and then waits for them all, so the shards are kept
+ * busy rather than waiting on one caller's round trip. Compare shardCount against the number of
+ * cores available, with enough benchmark threads (-t) to feed the shards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedEngineBenchmark {
+    // The number of operations each thread has outstanding at once
+    private static final int WINDOW = 256;
+
+    @Param({"1", "2", "4", "8"})
+    public int shardCount;
+
+    @Param({"100000"})
+    public int accountCount;
+
+    ShardedEngine engine;
+    String[] holders;
+
+    /**
+     * Creates the engine and its accounts.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new ShardedEngine(shardCount, ShardedEngine.DEFAULT_RING_CAPACITY);
+        holders = new String[accountCount];
+        CompletableFuture<TransactionStatus> last = null;
+        for (int i = 0; i < accountCount; i++) {
+            holders[i] = "Holder" + i;
+            last = engine.addAccount(holders[i], BankState.INITIAL_BALANCE);
+        }
+        last.join();
+    }
+
+    /**
+     * Stops the engine.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    /**
+     * The window of outstanding operations of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Window {
+        final CompletableFuture<?>[] results = new CompletableFuture<?>[WINDOW];
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void deposits(Window window) {
+        for (int i = 0; i < WINDOW; i++) {
+            window.results[i] = engine.deposit(holders[window.random.nextInt(accountCount)], 1);
+        }
+        for (CompletableFuture<?> result : window.results) {
+            result.join();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void transfers(Window window) {
+        for (int i = 0; i < WINDOW; i++) {
+            window.results[i] = engine.transfer(holders[window.random.nextInt(accountCount)],
+                    holders[window.random.nextInt(accountCount)], 1);
+        }
+        for (CompletableFuture<?> result : window.results) {
+            result.join();
+        }
+    }
+}
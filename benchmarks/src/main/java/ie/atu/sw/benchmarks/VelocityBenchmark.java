@@ -0,0 +1,65 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.account.BankAccount;
+import ie.atu.sw.transaction.AccountTransaction;
+import ie.atu.sw.transaction.TransactionStatus;
+import ie.atu.sw.velocity.VelocityLimit;
+import ie.atu.sw.velocity.VelocityLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a withdrawal from a random account with velocity limits off and on.
+ * With limits on, each withdrawal is checked against a per-minute and a per-hour limit on both
+ * the amount and the count, set high enough that every withdrawal is allowed, so the cost
+ * measured is the check itself and not a rejection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class VelocityBenchmark {
+    @Param({"off", "on"})
+    public String limits;
+
+    @Param({"10000", "1000000"})
+    public int accountCount;
+
+    private AccountTransaction accountTransaction;
+    private BankAccount[] accounts;
+
+    @Setup
+    public void setup() {
+        accountTransaction = new AccountTransaction();
+        accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = new BankAccount("Holder" + i, Long.MAX_VALUE / 2);
+        }
+        if (limits.equals("on")) {
+            accountTransaction.setVelocityLimiter(new VelocityLimiter(
+                    new VelocityLimit(Duration.ofMinutes(1), Long.MAX_VALUE / 4, 1 << 30),
+                    new VelocityLimit(Duration.ofHours(1), Long.MAX_VALUE / 4, 1 << 30)));
+        }
+    }
+
+    @Benchmark
+    public TransactionStatus withdraw() {
+        return accountTransaction.tryWithdraw(
+                accounts[ThreadLocalRandom.current().nextInt(accountCount)], 1);
+    }
+}
@@ -0,0 +1,119 @@
+package ie.atu.sw.benchmarks;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.wire.WireClient;
+import ie.atu.sw.wire.WireServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the binary protocol over loopback. Each benchmark thread has its own connection and
+ * sends pipelineDepth requests per round trip, so one operation is one round trip and the
+ * requests per second are the score times the depth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireProtocolBenchmark {
+    @Param({"1", "16", "256"})
+    public int pipelineDepth;
+
+    @Param({"10000"})
+    public int accountCount;
+
+    AccountManager accountManager;
+    WireServer server;
+    String[] holders;
+
+    /**
+     * Starts a server on loopback for an account manager filled with accounts.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        accountManager = new AccountManager();
+        holders = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            holders[i] = "Holder" + i;
+            accountManager.addAccount(holders[i], BankState.INITIAL_BALANCE);
+        }
+        server = WireServer.start(accountManager,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * Stops the server.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * A connection for one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+        WireClient client;
+        SplittableRandom random = new SplittableRandom();
+
+        @Setup(Level.Trial)
+        public void setup(WireProtocolBenchmark benchmark) throws IOException {
+            client = WireClient.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    benchmark.server.getPort()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    // Replies on a connection arrive in order, so waiting for the last waits for them all
+    @Benchmark
+    public WireClient.Reply deposits(Connection connection) throws IOException {
+        CompletableFuture<WireClient.Reply> last = null;
+        for (int i = 0; i < pipelineDepth; i++) {
+            last = connection.client.deposit(holders[connection.random.nextInt(accountCount)], 1);
+        }
+        connection.client.flush();
+        return last.join();
+    }
+
+    @Benchmark
+    public WireClient.Reply mixed(Connection connection) throws IOException {
+        CompletableFuture<WireClient.Reply> last = null;
+        for (int i = 0; i < pipelineDepth; i++) {
+            String holder = holders[connection.random.nextInt(accountCount)];
+            last = switch (i & 3) {
+                case 0 -> connection.client.deposit(holder, 1);
+                case 1 -> connection.client.withdraw(holder, 1);
+                case 2 -> connection.client.transfer(holder,
+                        holders[connection.random.nextInt(accountCount)], 1);
+                default -> connection.client.balance(holder);
+            };
+        }
+        connection.client.flush();
+        return last.join();
+    }
+}
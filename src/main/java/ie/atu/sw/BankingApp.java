@@ -1,7 +1,15 @@
 package ie.atu.sw;
 
+import ie.atu.sw.idempotency.IdempotencyCache;
 import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.money.Money;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import ie.atu.sw.server.BankServer;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,36 +20,77 @@ import java.util.List;
  * - Approving and repaying loans for account holders.
  * - Tracking the total deposits available in the bank.
  *
- * The program uses a list of Account objects to manage account data.
+ * The program uses a store of Account objects, indexed by account holder, to manage account
+ * data.
+ *
+ * Run with "serve [port] [directory]" it instead serves requests over HTTP until it is stopped,
+ * keeping the accounts in memory or, given a directory, in a journal in that directory. The
+ * operations are measured, and their metrics are served at /metrics and registered as MBeans
+ * under ie.atu.sw. Deposits and withdrawals sent with an Idempotency-Key are remembered for an
+ * hour, so a client retrying one within the hour does not apply it twice.
  */
 public class BankingApp {
+    // The most request ids the server remembers, and for how long
+    private static final int IDEMPOTENCY_KEYS = 1 << 20;
+    private static final Duration IDEMPOTENCY_TTL = Duration.ofHours(1);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
 
-    public static void main(String[] args) {
         // Create a new banking application instance
         AccountManager accountManager = new AccountManager();
 
-        // Add accounts
-        accountManager.addAccount("Alice", 1000);
-        accountManager.addAccount("Bob", 500);
+        // Add accounts (all amounts are in cents)
+        accountManager.addAccount("Alice", Money.ofEuro(1000));
+        accountManager.addAccount("Bob", Money.ofEuro(500));
 
         // Test deposits
-        System.out.println("Depositing 200 to Alice: " + accountManager.deposit("Alice", 200)); // Should return true
-        System.out.println("Alice's balance: " + accountManager.getBalance("Alice")); // Should be 1200
+        System.out.println("Depositing 200 to Alice: " + accountManager.deposit("Alice", Money.ofEuro(200))); // Should return true
+        System.out.println("Alice's balance: " + Money.format(accountManager.getBalance("Alice"))); // Should be 1200.00
 
         // Test withdrawals
-        System.out.println("Withdrawing 300 from Bob: " + accountManager.withdraw("Bob", 300)); // Should return true
-        System.out.println("Bob's balance: " + accountManager.getBalance("Bob")); // Should be 200
+        System.out.println("Withdrawing 300 from Bob: " + accountManager.withdraw("Bob", Money.ofEuro(300))); // Should return true
+        System.out.println("Bob's balance: " + Money.format(accountManager.getBalance("Bob"))); // Should be 200.00
 
         // Test loan approval
-        System.out.println("Approving a loan of 400 for Alice: " + accountManager.approveLoan("Alice", 400)); // Should return true
-        System.out.println("Alice's loan: " + accountManager.getLoan("Alice")); // Should be 400
+        System.out.println("Approving a loan of 400 for Alice: " + accountManager.approveLoan("Alice", Money.ofEuro(400))); // Should return true
+        System.out.println("Alice's loan: " + Money.format(accountManager.getLoan("Alice"))); // Should be 400.00
 
         // Test loan repayment
-        System.out.println("Repaying 200 of Alice's loan: " + accountManager.repayLoan("Alice", 200)); // Should return true
-        System.out.println("Alice's remaining loan: " + accountManager.getLoan("Alice")); // Should be 200
+        System.out.println("Repaying 200 of Alice's loan: " + accountManager.repayLoan("Alice", Money.ofEuro(200))); // Should return true
+        System.out.println("Alice's remaining loan: " + Money.format(accountManager.getLoan("Alice"))); // Should be 200.00
 
         // Check total deposits in the bank
-        System.out.println("Total deposits in the bank: " + accountManager.getTotalDeposits());
+        System.out.println("Total deposits in the bank: " + Money.format(accountManager.getTotalDeposits()));
     }
-}
 
+    // Serves requests for an account manager until the process is stopped. The server's
+    // dispatcher thread keeps the process running after main returns. Idle keep-alive
+    // connections are never closed, so a load generator holding many open connections does
+    // not see them dropped.
+    private static void serve(String[] args) throws IOException {
+        BankServer.keepIdleConnections();
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        AccountManager accountManager = args.length > 2
+                ? AccountManager.open(Path.of(args[2]), GroupCommitPolicy.DEFAULT)
+                : new AccountManager();
+        accountManager.getMetrics().setEnabled(true);
+        accountManager.getMetrics().registerMBeans("bank");
+        accountManager.setIdempotencyCache(new IdempotencyCache(IDEMPOTENCY_KEYS,
+                IDEMPOTENCY_TTL));
+        BankServer server = BankServer.start(accountManager, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            accountManager.getMetrics().unregisterMBeans();
+            try {
+                accountManager.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the journal: " + e.getMessage());
+            }
+        }));
+        System.out.println("Serving on port " + server.getPort());
+    }
+}
@@ -0,0 +1,86 @@
+package ie.atu.sw.account;
+
+/**
+ * A bank account holding a balance and an outstanding loan, both in cents.
+ *
+ * The balance and loan are updated atomically. Callers that need to check a value and then
+ * change it, such as a withdrawal, read the current value and then apply the change with
+ * compareAndSetBalance or compareAndSetLoan, retrying if another thread changed the value in
+ * between.
+ *
+ * Nothing locks an account. Its balance and loan are kept together as one immutable state, and
+ * a writer builds the new state and swaps it in with a single compare-and-set, so getState reads
+ * a pair that held at one moment without waiting for writers, and a writer that is descheduled
+ * holds up no one.
+ *
+ * A transfer moves money between two accounts in one step without locking either. It places a
+ * pending move in each account in turn, holding the state before the transfer and the state it
+ * leaves, and then decides the transfer with one compare-and-set. Until then readers see the
+ * state before; from then on they see the state it leaves. Another writer that meets a pending
+ * move settles it first: a move placed second means both are in place, so it makes the
+ * transfer, and a move placed first is aborted if the transfer is not decided after a moment's
+ * wait, so the transfer starts again. The moves are placed in the same order for any two
+ * accounts, so two transfers cannot keep aborting each other.
+ */
+public interface Account {
+    // Getter for the account holder's name
+    String getAccountHolder();
+
+    // Getter for the account balance
+    long getBalance();
+
+    // Increase the balance by the amount
+    void increaseBalance(long amount);
+
+    // Decrease the balance by the amount
+    void decreaseBalance(long amount);
+
+    /**
+     * Sets the balance to the new balance only if it still equals the expected balance.
+     *
+     * @param expectedBalance The balance the caller last read
+     * @param newBalance      The balance to set
+     * @return True if the balance was updated, false if another thread changed it first
+     */
+    boolean compareAndSetBalance(long expectedBalance, long newBalance);
+
+    // Getter for the loan amount
+    long getLoan();
+
+    /**
+     * Reads the balance and loan together, without taking a lock.
+     *
+     * @return The balance and loan as they were at one moment
+     */
+    AccountState getState();
+
+    // Increase the loan by the amount
+    void increaseLoan(long amount);
+
+    // Decrease the loan by the amount
+    void decreaseLoan(long amount);
+
+    /**
+     * Sets the loan to the new loan only if it still equals the expected loan.
+     *
+     * @param expectedLoan The loan the caller last read
+     * @param newLoan      The loan to set
+     * @return True if the loan was updated, false if another thread changed it first
+     */
+    boolean compareAndSetLoan(long expectedLoan, long newLoan);
+
+    /**
+     * Moves an amount from this account's balance to the balance of another account of the
+     * same store in one atomic step, as described above. The transfer is made only if this
+     * account holds the amount and the other balance would not overflow.
+     *
+     * @param to       The account to credit, which is not this account
+     * @param amount   The amount in cents, which must be positive
+     * @param balances Filled with this account's balance and the other account's balance. If
+     *                 the transfer is made they are the balances just before it. If not, the
+     *                 first is less than the amount when this account did not hold it, and
+     *                 otherwise the other balance would have overflowed.
+     * @return True if the transfer was made
+     */
+    boolean transferTo(Account to, long amount, long[] balances);
+}
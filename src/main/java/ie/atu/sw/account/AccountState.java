@@ -0,0 +1,10 @@
+package ie.atu.sw.account;
+
+/**
+ * The balance and loan of an account at one moment.
+ *
+ * @param balance The balance in cents
+ * @param loan    The outstanding loan in cents
+ */
+public record AccountState(long balance, long loan) {
+}
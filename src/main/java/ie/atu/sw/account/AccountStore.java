@@ -0,0 +1,66 @@
+package ie.atu.sw.account;
+
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+
+import java.util.Collection;
+
+/**
+ * Holds the bank accounts indexed by account holder name so that lookups and duplicate checks
+ * take constant time regardless of how many accounts are stored. A store is safe to use from
+ * multiple threads, and adding an account is atomic with its duplicate check.
+ *
+ * HeapAccountStore holds each account as an object on the heap. OffHeapAccountStore holds the
+ * accounts outside the heap, for account counts where the objects would dominate the heap.
+ */
+public interface AccountStore {
+    /**
+     * Adds a new account to the store.
+     *
+     * @param accountHolder The name of the account holder.
+     * @param balance       The balance in cents.
+     * @param loan          The loan in cents.
+     * @return The account added.
+     * @throws AccountAlreadyExists if an account already exists for the account holder
+     */
+    Account add(String accountHolder, long balance, long loan);
+
+    /**
+     * Finds an account by the account holder's name.
+     *
+     * @param accountHolder The name of the account holder.
+     * @return The account for the account holder.
+     * @throws BankAccountDoesNotExist if there is no account for the account holder
+     */
+    Account find(String accountHolder);
+
+    /**
+     * Gets the account of an account holder without throwing if there is none.
+     *
+     * @param accountHolder The name of the account holder.
+     * @return The account for the account holder, or null if there is no account.
+     */
+    Account get(String accountHolder);
+
+    /**
+     * Checks if an account exists for the account holder.
+     *
+     * @param accountHolder The name of the account holder.
+     * @return True if an account exists, otherwise false.
+     */
+    boolean contains(String accountHolder);
+
+    /**
+     * Gets the number of accounts in the store.
+     *
+     * @return The number of accounts.
+     */
+    int size();
+
+    /**
+     * Gets a read-only view of all accounts in the store.
+     *
+     * @return The accounts in the store.
+     */
+    Collection<Account> getAccounts();
+}
@@ -1,22 +1,49 @@
 package ie.atu.sw.account;
 
-import ie.atu.sw.validation.InputValidator;
+import ie.atu.sw.money.Money;
 
-public class BankAccount {
-    private String accountHolder; // Name of the account holder
-    private double balance;       // Current account balance
-    private double loan;          // Outstanding loan amount
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * An account held as an object on the heap. The balance and loan are kept in an immutable
+ * AccountState that a writer replaces with one compare-and-set on a field of the object, so a
+ * read is a single load. While a transfer is being made the field holds one of its pending moves
+ * instead, as described in Account.
+ */
+public class BankAccount implements Account {
+    private static final VarHandle STATE;
+
+    // How many times a writer checks a transfer's first move for progress before aborting it
+    private static final int SETTLE_SPINS = 100;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(BankAccount.class, "state",
+                    Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile String accountHolder; // Name of the account holder
+    private volatile Object state;         // The AccountState, or a Move of a transfer
 
     // Constructor to create a new account
-    public BankAccount(String accountHolder, double balance) {
+    public BankAccount(String accountHolder, long balance) {
+        this(accountHolder, balance, 0);
+    }
+
+    // Constructor to restore an account with an outstanding loan
+    public BankAccount(String accountHolder, long balance, long loan) {
         this.accountHolder = accountHolder;
-        this.balance = balance;
-        this.loan = 0;
+        this.state = new AccountState(balance, loan);
     }
 
     // GETTERS & SETTERS
 
     // Getter for the account holder's name
+    @Override
     public String getAccountHolder() {
         return accountHolder;
     }
@@ -27,33 +54,241 @@ public class BankAccount {
     }
 
     // Getter for the account balance
-    public double getBalance() {
-        return balance;
+    @Override
+    public long getBalance() {
+        return getState().balance();
     }
 
     // Increase the balance by the amount
-    public void increaseBalance(double amount) {
-        this.balance += amount;
+    @Override
+    public void increaseBalance(long amount) {
+        long current;
+        do {
+            current = getBalance();
+        } while (!compareAndSetBalance(current, Money.add(current, amount)));
     }
 
     // Decrease the balance by the amount
-    public void decreaseBalance(double amount) {
-        this.balance -= amount;
+    @Override
+    public void decreaseBalance(long amount) {
+        long current;
+        do {
+            current = getBalance();
+        } while (!compareAndSetBalance(current, Money.subtract(current, amount)));
+    }
+
+    /**
+     * Sets the balance to the new balance only if it still equals the expected balance.
+     *
+     * @param expectedBalance The balance the caller last read
+     * @param newBalance      The balance to set
+     * @return True if the balance was updated, false if another thread changed it first
+     */
+    @Override
+    public boolean compareAndSetBalance(long expectedBalance, long newBalance) {
+        while (true) {
+            AccountState current = settledState();
+            if (current.balance() != expectedBalance) {
+                return false;
+            }
+            // A failure here means only the loan changed, so the balance is checked again
+            if (STATE.compareAndSet(this, current, new AccountState(newBalance,
+                    current.loan()))) {
+                return true;
+            }
+        }
     }
 
     // Getter for the loan amount
-    public double getLoan() {
-        return loan;
+    @Override
+    public long getLoan() {
+        return getState().loan();
     }
 
+    /**
+     * Reads the balance and loan together with a single load. A transfer that is being made
+     * is seen as not yet made until it is decided.
+     *
+     * @return The balance and loan as they were at one moment
+     */
+    @Override
+    public AccountState getState() {
+        Object current = state;
+        return current instanceof Move move ? move.state() : (AccountState) current;
+    }
 
     // Increase the loan by the amount
-    public void increaseLoan(double amount) {
-        this.loan += amount;
+    @Override
+    public void increaseLoan(long amount) {
+        long current;
+        do {
+            current = getLoan();
+        } while (!compareAndSetLoan(current, Money.add(current, amount)));
     }
 
     // Decrease the loan by the amount
-    public void decreaseLoan(double amount) {
-        this.loan -= amount;
+    @Override
+    public void decreaseLoan(long amount) {
+        long current;
+        do {
+            current = getLoan();
+        } while (!compareAndSetLoan(current, Money.subtract(current, amount)));
+    }
+
+    /**
+     * Sets the loan to the new loan only if it still equals the expected loan.
+     *
+     * @param expectedLoan The loan the caller last read
+     * @param newLoan      The loan to set
+     * @return True if the loan was updated, false if another thread changed it first
+     */
+    @Override
+    public boolean compareAndSetLoan(long expectedLoan, long newLoan) {
+        while (true) {
+            AccountState current = settledState();
+            if (current.loan() != expectedLoan) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, current, new AccountState(current.balance(),
+                    newLoan))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean transferTo(Account to, long amount, long[] balances) {
+        BankAccount other = (BankAccount) to;
+        // The moves are placed in order of account holder, which is unique within a store
+        int order = accountHolder.compareTo(other.accountHolder);
+        if (order == 0) {
+            order = Integer.compare(System.identityHashCode(this),
+                    System.identityHashCode(other));
+        }
+        BankAccount first = order < 0 ? this : other;
+        BankAccount second = order < 0 ? other : this;
+        while (true) {
+            Transfer transfer = new Transfer();
+            Move firstMove = first.place(transfer, first == other, amount, false, balances);
+            if (firstMove == null) {
+                if (first == this) {
+                    balances[1] = other.getBalance();
+                } else {
+                    balances[0] = getBalance();
+                }
+                return false;
+            }
+            Move secondMove = second.place(transfer, second == other, amount, true, balances);
+            if (secondMove == null) {
+                // Only the first move is in place, so no other writer can have made the transfer
+                transfer.decide(Transfer.ABORTED);
+                first.clear(firstMove);
+                return false;
+            }
+            boolean made = transfer.decide(Transfer.MADE);
+            first.clear(firstMove);
+            second.clear(secondMove);
+            if (made) {
+                return true;
+            }
+            // Another writer aborted the transfer before its second move was placed
+        }
+    }
+
+    // Places a move of a transfer in the account, unless this account does not hold the amount
+    // to debit or its balance would overflow with the amount to credit, and then returns null.
+    // The balance checked is put in balances. A move placed after its transfer was aborted
+    // leaves the state as it was.
+    private Move place(Transfer transfer, boolean credit, long amount, boolean last,
+                       long[] balances) {
+        while (true) {
+            AccountState before = settledState();
+            long balance = before.balance();
+            balances[credit ? 1 : 0] = balance;
+            if (credit ? balance > Long.MAX_VALUE - amount : balance < amount) {
+                return null;
+            }
+            Move move = new Move(transfer, before, new AccountState(credit ? balance + amount
+                    : balance - amount, before.loan()), last);
+            if (STATE.compareAndSet(this, before, move)) {
+                return move;
+            }
+        }
+    }
+
+    // Replaces a decided transfer's move, if it is still in the account, by the state it left
+    private void clear(Move move) {
+        STATE.compareAndSet(this, move, move.state());
+    }
+
+    // Gets the current state, first settling any transfer that has a move in the account
+    private AccountState settledState() {
+        while (true) {
+            Object current = state;
+            if (current instanceof AccountState accountState) {
+                return accountState;
+            }
+            settle((Move) current);
+        }
+    }
+
+    // Decides the transfer of a move found in the account and replaces the move by the state
+    // it leaves. A move placed second means both are in place, so the transfer is made. A move
+    // placed first is given a moment for its transfer to finish before it is aborted.
+    private void settle(Move move) {
+        Transfer transfer = move.transfer();
+        if (!move.last()) {
+            for (int i = 0; i < SETTLE_SPINS && transfer.status == Transfer.UNDECIDED
+                    && state == move; i++) {
+                Thread.onSpinWait();
+            }
+        }
+        transfer.decide(move.last() ? Transfer.MADE : Transfer.ABORTED);
+        clear(move);
+    }
+
+    /**
+     * One side of a transfer placed in an account: the account's state before the transfer
+     * and the state the transfer leaves once it is made.
+     *
+     * @param transfer The transfer the move belongs to
+     * @param before   The account's state before the transfer
+     * @param after    The account's state once the transfer is made
+     * @param last     True if this is the second of the transfer's two moves to be placed
+     */
+    private record Move(Transfer transfer, AccountState before, AccountState after,
+                        boolean last) {
+        // Gets the state the account is in: the state after the transfer once it is made
+        private AccountState state() {
+            return transfer.status == Transfer.MADE ? after : before;
+        }
+    }
+
+    /**
+     * Whether a transfer was made. It is decided once, by the first compare-and-set on its
+     * status.
+     */
+    private static final class Transfer {
+        private static final int UNDECIDED = 0;
+        private static final int MADE = 1;
+        private static final int ABORTED = 2;
+        private static final VarHandle STATUS;
+
+        static {
+            try {
+                STATUS = MethodHandles.lookup().findVarHandle(Transfer.class, "status",
+                        int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile int status;
+
+        // Decides the transfer unless it is already decided, and checks if it was made
+        private boolean decide(int outcome) {
+            STATUS.compareAndSet(this, UNDECIDED, outcome);
+            return status == MADE;
+        }
     }
 }
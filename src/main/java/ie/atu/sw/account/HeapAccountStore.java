@@ -0,0 +1,68 @@
+package ie.atu.sw.account;
+
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An account store that holds each account as a BankAccount object in a concurrent hash map.
+ *
+ * The account holder name is used as the key when the account is added, so an account should
+ * not be renamed while it is held in the store.
+ */
+public class HeapAccountStore implements AccountStore {
+    // Accounts keyed by the name of the account holder
+    private final Map<String, Account> accounts;
+
+    // Constructor to create an empty store
+    public HeapAccountStore() {
+        this.accounts = new ConcurrentHashMap<>();
+    }
+
+    // Constructor to create an empty store sized for the expected number of accounts
+    public HeapAccountStore(int expectedAccounts) {
+        this.accounts = new ConcurrentHashMap<>(expectedAccounts);
+    }
+
+    @Override
+    public Account add(String accountHolder, long balance, long loan) {
+        Account account = new BankAccount(accountHolder, balance, loan);
+        if (accounts.putIfAbsent(accountHolder, account) != null) {
+            throw new AccountAlreadyExists("Account already exists for " + accountHolder);
+        }
+        return account;
+    }
+
+    @Override
+    public Account find(String accountHolder) {
+        Account account = accounts.get(accountHolder);
+        if (account == null) {
+            throw new BankAccountDoesNotExist("Account not found for " + accountHolder);
+        }
+        return account;
+    }
+
+    @Override
+    public Account get(String accountHolder) {
+        return accounts.get(accountHolder);
+    }
+
+    @Override
+    public boolean contains(String accountHolder) {
+        return accounts.containsKey(accountHolder);
+    }
+
+    @Override
+    public int size() {
+        return accounts.size();
+    }
+
+    @Override
+    public Collection<Account> getAccounts() {
+        return Collections.unmodifiableCollection(accounts.values());
+    }
+}
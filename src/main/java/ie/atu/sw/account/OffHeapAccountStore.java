@@ -0,0 +1,697 @@
+package ie.atu.sw.account;
+
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.money.Money;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An account store that keeps the accounts outside the Java heap, so that tens of millions of
+ * accounts do not fill the heap with objects for the garbage collector to trace.
+ *
+ * Each account is given an integer slot when it is added. A state word and the position of the
+ * account holder's name are kept in a fixed size record for the slot, in direct buffers
+ * allocated a chunk of slots at a time, and the names are kept as UTF-8 bytes in separate
+ * chunks. An open addressing hash table of slot numbers, also in a direct buffer, maps a name
+ * to its slot.
+ *
+ * The balance and loan are kept in an immutable cell of OffHeapCells, and the state word refers
+ * to it. A writer fills a new cell and swaps it in with one compare-and-set on the state word,
+ * so nothing locks an account. A reader reads the word, then the cell, and reads again only if
+ * the word has changed meanwhile, which takes a write that has finished rather than one in
+ * progress. While a transfer is being made the word refers instead to a cell holding its move,
+ * as described in Account, and the transfer's status is kept in a cell of a second set.
+ *
+ * Adding an account takes a lock and writes the record before the slot is published in the
+ * hash table, so a lookup that finds a slot always sees a complete record. The Account objects
+ * returned are small views onto a slot; two views of the same slot are equal.
+ */
+public class OffHeapAccountStore implements AccountStore {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.nativeOrder());
+
+    // Layout of an account record
+    private static final int STATE_OFFSET = 0;
+    private static final int NAME_POSITION_OFFSET = 8; // Name chunk in the high int, offset low
+    private static final int HASH_OFFSET = 16;
+    private static final int NAME_LENGTH_OFFSET = 20;
+    private static final int RECORD_SIZE = 24;
+
+    // A state word holds the number of the cell it refers to in its low bits and a version above
+    // them that every new state increases, so a word is never repeated and a compare-and-set
+    // cannot succeed against a later state. A move word also has its top bit set, and carries
+    // the version of the state the move was placed on.
+    private static final long MOVE = Long.MIN_VALUE;
+    private static final long CELL_MASK = (1L << OffHeapCells.CELL_BITS) - 1;
+    private static final long VERSION_MASK = ~(MOVE | CELL_MASK);
+
+    // A move cell holds the state word the move was placed on, and the transfer's cell number
+    // shifted above these flags
+    private static final long CREDIT = 1;
+    private static final long LAST = 2;
+
+    // A transfer cell holds the amount and a status word, whose low bits are the status and
+    // whose high bits count the times the cell has been used, so a late compare-and-set on the
+    // status of an earlier transfer fails
+    private static final long UNDECIDED = 0;
+    private static final long MADE = 1;
+    private static final long ABORTED = 2;
+    private static final long STATUS_MASK = 3;
+
+    // How many times a writer checks a transfer's first move for progress before aborting it
+    private static final int SETTLE_SPINS = 100;
+
+    private static final int SLOTS_PER_CHUNK_SHIFT = 16;
+    private static final int SLOTS_PER_CHUNK = 1 << SLOTS_PER_CHUNK_SHIFT;
+    private static final int NAME_CHUNK_SIZE = 1 << 20;
+    // The largest hash table that fits in one buffer, kept at most half full
+    private static final int MAX_INDEX_CAPACITY = 1 << 28;
+    private static final int MAX_ACCOUNTS = MAX_INDEX_CAPACITY / 2;
+
+    // Held while an account is added
+    private final ReentrantLock addLock = new ReentrantLock();
+    // Chunks of account records, each holding SLOTS_PER_CHUNK records
+    private volatile ByteBuffer[] records = new ByteBuffer[0];
+    // Chunks of account holder names
+    private volatile ByteBuffer[] names = new ByteBuffer[0];
+    // Hash table of slot + 1 for each account, where 0 marks an empty entry
+    private volatile ByteBuffer index;
+    private volatile int size;
+    private int namePosition = NAME_CHUNK_SIZE; // Next free byte in the last name chunk
+    // Cells holding the balance and loan of each account, and the moves of transfers
+    private final OffHeapCells states = new OffHeapCells();
+    // Cells holding the status and amount of each transfer
+    private final OffHeapCells transfers = new OffHeapCells();
+
+    // Constructor to create an empty store
+    public OffHeapAccountStore() {
+        this(1024);
+    }
+
+    // Constructor to create an empty store sized for the expected number of accounts
+    public OffHeapAccountStore(int expectedAccounts) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(expectedAccounts,
+                MAX_ACCOUNTS)) * 2 - 1) * 2;
+        this.index = allocate((long) capacity * Integer.BYTES);
+    }
+
+    @Override
+    public Account add(String accountHolder, long balance, long loan) {
+        byte[] name = accountHolder.getBytes(StandardCharsets.UTF_8);
+        if (name.length > NAME_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Account holder name is too long to store");
+        }
+        int hash = hash(accountHolder);
+        addLock.lock();
+        try {
+            if (findSlot(name, hash) >= 0) {
+                throw new AccountAlreadyExists("Account already exists for " + accountHolder);
+            }
+            int slot = size;
+            if (slot == MAX_ACCOUNTS) {
+                throw new IllegalStateException("The account store is full");
+            }
+            ByteBuffer chunk = recordChunk(slot);
+            int base = recordBase(slot);
+            int cell = states.take();
+            states.set(cell, balance, loan);
+            LONGS.set(chunk, base + STATE_OFFSET, (long) cell);
+            LONGS.set(chunk, base + NAME_POSITION_OFFSET, storeName(name));
+            INTS.set(chunk, base + HASH_OFFSET, hash);
+            INTS.set(chunk, base + NAME_LENGTH_OFFSET, name.length);
+
+            ByteBuffer table = index;
+            if ((slot + 1) * 2 > capacity(table)) {
+                table = resize(table, slot);
+            }
+            // Publishing the slot makes the record written above visible to lookups
+            INTS.setVolatile(table, emptyEntry(table, hash) * Integer.BYTES, slot + 1);
+            size = slot + 1;
+            return new Slot(chunk, slot);
+        } finally {
+            addLock.unlock();
+        }
+    }
+
+    @Override
+    public Account find(String accountHolder) {
+        Account account = get(accountHolder);
+        if (account == null) {
+            throw new BankAccountDoesNotExist("Account not found for " + accountHolder);
+        }
+        return account;
+    }
+
+    @Override
+    public Account get(String accountHolder) {
+        int slot = findSlot(accountHolder.getBytes(StandardCharsets.UTF_8), hash(accountHolder));
+        if (slot < 0) {
+            return null;
+        }
+        return new Slot(records[slot >>> SLOTS_PER_CHUNK_SHIFT], slot);
+    }
+
+    @Override
+    public boolean contains(String accountHolder) {
+        return findSlot(accountHolder.getBytes(StandardCharsets.UTF_8), hash(accountHolder)) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<Account> getAccounts() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Account> iterator() {
+                int count = size;
+                ByteBuffer[] chunks = records;
+                return new Iterator<>() {
+                    private int slot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < count;
+                    }
+
+                    @Override
+                    public Account next() {
+                        if (slot >= count) {
+                            throw new NoSuchElementException();
+                        }
+                        Account account = new Slot(chunks[slot >>> SLOTS_PER_CHUNK_SHIFT], slot);
+                        slot++;
+                        return account;
+                    }
+                };
+            }
+
+            @Override
+            public Spliterator<Account> spliterator() {
+                int count = size;
+                return new SlotSpliterator(records, 0, count);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Finds the slot of the account with the name, or returns -1 if there is none
+    private int findSlot(byte[] name, int hash) {
+        ByteBuffer table = index;
+        int mask = capacity(table) - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = (int) INTS.getVolatile(table, i * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (nameEquals(slot, name, hash)) {
+                return slot;
+            }
+        }
+    }
+
+    // Checks if the account in the slot has the name
+    private boolean nameEquals(int slot, byte[] name, int hash) {
+        ByteBuffer chunk = records[slot >>> SLOTS_PER_CHUNK_SHIFT];
+        int base = recordBase(slot);
+        if ((int) INTS.get(chunk, base + HASH_OFFSET) != hash
+                || (int) INTS.get(chunk, base + NAME_LENGTH_OFFSET) != name.length) {
+            return false;
+        }
+        long position = (long) LONGS.get(chunk, base + NAME_POSITION_OFFSET);
+        ByteBuffer nameChunk = names[(int) (position >>> 32)];
+        int offset = (int) position;
+        for (int i = 0; i < name.length; i++) {
+            if (nameChunk.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Gets the record chunk for a new slot, allocating it if needed. Called holding addLock.
+    private ByteBuffer recordChunk(int slot) {
+        int chunkIndex = slot >>> SLOTS_PER_CHUNK_SHIFT;
+        ByteBuffer[] chunks = records;
+        if (chunkIndex == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkIndex + 1);
+            chunks[chunkIndex] = allocate((long) SLOTS_PER_CHUNK * RECORD_SIZE);
+            records = chunks;
+        }
+        return chunks[chunkIndex];
+    }
+
+    // Copies a name into the name chunks and returns its position. Called holding addLock.
+    private long storeName(byte[] name) {
+        ByteBuffer[] chunks = names;
+        if (namePosition + name.length > NAME_CHUNK_SIZE) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(NAME_CHUNK_SIZE);
+            names = chunks;
+            namePosition = 0;
+        }
+        int chunkIndex = chunks.length - 1;
+        chunks[chunkIndex].put(namePosition, name);
+        long position = (long) chunkIndex << 32 | namePosition;
+        namePosition += name.length;
+        return position;
+    }
+
+    // Builds a hash table twice the size holding the first count slots. Called holding addLock.
+    private ByteBuffer resize(ByteBuffer table, int count) {
+        ByteBuffer larger = allocate((long) capacity(table) * 2 * Integer.BYTES);
+        for (int slot = 0; slot < count; slot++) {
+            int hash = (int) INTS.get(records[slot >>> SLOTS_PER_CHUNK_SHIFT],
+                    recordBase(slot) + HASH_OFFSET);
+            INTS.set(larger, emptyEntry(larger, hash) * Integer.BYTES, slot + 1);
+        }
+        index = larger;
+        return larger;
+    }
+
+    // Finds the first empty entry for the hash in a hash table
+    private static int emptyEntry(ByteBuffer table, int hash) {
+        int mask = capacity(table) - 1;
+        int i = hash & mask;
+        while ((int) INTS.get(table, i * Integer.BYTES) != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Gets the number of entries in a hash table
+    private static int capacity(ByteBuffer table) {
+        return table.capacity() / Integer.BYTES;
+    }
+
+    // Gets the position of a slot's record within its chunk
+    private static int recordBase(int slot) {
+        return (slot & (SLOTS_PER_CHUNK - 1)) * RECORD_SIZE;
+    }
+
+    // Spreads the bits of the name's hash code so that similar names use different entries
+    private static int hash(String accountHolder) {
+        int h = accountHolder.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Gets the number of the cell a state or move word refers to
+    private static int cellOf(long word) {
+        return (int) (word & CELL_MASK);
+    }
+
+    // Builds the state word that replaces a state or move word and refers to the cell
+    private static long nextState(long word, int cell) {
+        return (word & VERSION_MASK) + (CELL_MASK + 1) & VERSION_MASK | cell;
+    }
+
+    // Allocates a zeroed direct buffer aligned for atomic access to longs
+    static ByteBuffer allocate(long size) {
+        if (size > Integer.MAX_VALUE - Long.BYTES) {
+            throw new IllegalStateException("The account store is full");
+        }
+        return ByteBuffer.allocateDirect((int) size + Long.BYTES).alignedSlice(Long.BYTES)
+                .slice(0, (int) size);
+    }
+
+    /**
+     * Visits the accounts in a run of slots, and splits the run in half for a parallel scan so
+     * that each part is a run of neighbouring slots.
+     */
+    private final class SlotSpliterator implements Spliterator<Account> {
+        private final ByteBuffer[] chunks;
+        private final int end;
+        private int slot;
+
+        // Constructor to visit the slots from start up to but not including end
+        private SlotSpliterator(ByteBuffer[] chunks, int start, int end) {
+            this.chunks = chunks;
+            this.slot = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Account> action) {
+            if (slot >= end) {
+                return false;
+            }
+            action.accept(new Slot(chunks[slot >>> SLOTS_PER_CHUNK_SHIFT], slot));
+            slot++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Account> action) {
+            for (int i = slot; i < end; i++) {
+                action.accept(new Slot(chunks[i >>> SLOTS_PER_CHUNK_SHIFT], i));
+            }
+            slot = end;
+        }
+
+        @Override
+        public Spliterator<Account> trySplit() {
+            int middle = (slot + end) >>> 1;
+            if (middle <= slot) {
+                return null;
+            }
+            Spliterator<Account> prefix = new SlotSpliterator(chunks, slot, middle);
+            slot = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - slot;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * A view of the account in one slot of the store.
+     */
+    private final class Slot implements Account {
+        private final ByteBuffer chunk;
+        private final int slot;
+        private final int base;
+
+        // Constructor to view the record of a slot in the chunk holding it
+        private Slot(ByteBuffer chunk, int slot) {
+            this.chunk = chunk;
+            this.slot = slot;
+            this.base = recordBase(slot);
+        }
+
+        @Override
+        public String getAccountHolder() {
+            long position = (long) LONGS.get(chunk, base + NAME_POSITION_OFFSET);
+            int length = (int) INTS.get(chunk, base + NAME_LENGTH_OFFSET);
+            byte[] name = new byte[length];
+            names[(int) (position >>> 32)].get((int) position, name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long getBalance() {
+            while (true) {
+                long word = word();
+                long balance = balance(word);
+                if (word() == word) {
+                    return balance;
+                }
+            }
+        }
+
+        @Override
+        public void increaseBalance(long amount) {
+            long current;
+            do {
+                current = getBalance();
+            } while (!compareAndSetBalance(current, Money.add(current, amount)));
+        }
+
+        @Override
+        public void decreaseBalance(long amount) {
+            long current;
+            do {
+                current = getBalance();
+            } while (!compareAndSetBalance(current, Money.subtract(current, amount)));
+        }
+
+        @Override
+        public boolean compareAndSetBalance(long expectedBalance, long newBalance) {
+            return compareAndSet(false, expectedBalance, newBalance);
+        }
+
+        @Override
+        public long getLoan() {
+            while (true) {
+                long word = word();
+                long loan = loan(word);
+                if (word() == word) {
+                    return loan;
+                }
+            }
+        }
+
+        @Override
+        public void increaseLoan(long amount) {
+            long current;
+            do {
+                current = getLoan();
+            } while (!compareAndSetLoan(current, Money.add(current, amount)));
+        }
+
+        @Override
+        public void decreaseLoan(long amount) {
+            long current;
+            do {
+                current = getLoan();
+            } while (!compareAndSetLoan(current, Money.subtract(current, amount)));
+        }
+
+        @Override
+        public boolean compareAndSetLoan(long expectedLoan, long newLoan) {
+            return compareAndSet(true, expectedLoan, newLoan);
+        }
+
+        @Override
+        public AccountState getState() {
+            while (true) {
+                long word = word();
+                long balance = balance(word);
+                long loan = loan(word);
+                if (word() == word) {
+                    return new AccountState(balance, loan);
+                }
+            }
+        }
+
+        @Override
+        public boolean transferTo(Account to, long amount, long[] balances) {
+            Slot other = (Slot) to;
+            // The moves are placed in slot order
+            Slot first = slot < other.slot ? this : other;
+            Slot second = first == this ? other : this;
+            while (true) {
+                int transfer = transfers.take();
+                long undecided = ((transfers.first(transfer) >>> 2) + 1) << 2 | UNDECIDED;
+                transfers.set(transfer, undecided, amount);
+                long firstMove = first.place(transfer, first == other, amount, false, balances);
+                if (firstMove == 0) {
+                    transfers.release(transfer);
+                    if (first == this) {
+                        balances[1] = other.getBalance();
+                    } else {
+                        balances[0] = getBalance();
+                    }
+                    return false;
+                }
+                long secondMove = second.place(transfer, second == other, amount, true,
+                        balances);
+                if (secondMove == 0) {
+                    // Only the first move is in place, so no other writer can have made the
+                    // transfer
+                    transfers.compareAndSetFirst(transfer, undecided, undecided | ABORTED);
+                    first.clear(firstMove);
+                    states.release(cellOf(firstMove));
+                    transfers.release(transfer);
+                    return false;
+                }
+                transfers.compareAndSetFirst(transfer, undecided, undecided | MADE);
+                boolean made = transfers.first(transfer) == (undecided | MADE);
+                first.clear(firstMove);
+                second.clear(secondMove);
+                // Neither account refers to the moves now, so their cells can be reused
+                states.release(cellOf(firstMove));
+                states.release(cellOf(secondMove));
+                transfers.release(transfer);
+                if (made) {
+                    return true;
+                }
+                // Another writer aborted the transfer before its second move was placed
+            }
+        }
+
+        // Reads the state word
+        private long word() {
+            return (long) LONGS.getAcquire(chunk, base + STATE_OFFSET);
+        }
+
+        // Swaps in a new state or move word if the account still holds the expected one
+        private boolean compareAndSetWord(long expected, long newWord) {
+            return LONGS.compareAndSet(chunk, base + STATE_OFFSET, expected, newWord);
+        }
+
+        // Reads the balance a word stands for, which is only right if the account still holds
+        // the word afterwards. A transfer that is being made is seen as not yet made until it is
+        // decided.
+        private long balance(long word) {
+            if (word >= 0) {
+                return states.first(cellOf(word));
+            }
+            int move = cellOf(word);
+            long before = states.first(cellOf(states.first(move)));
+            long details = states.second(move);
+            int transfer = (int) (details >>> 2);
+            if ((transfers.first(transfer) & STATUS_MASK) != MADE) {
+                return before;
+            }
+            long amount = transfers.second(transfer);
+            return (details & CREDIT) != 0 ? before + amount : before - amount;
+        }
+
+        // Reads the loan a word stands for, which is only right if the account still holds the
+        // word afterwards. A transfer leaves the loan as it was.
+        private long loan(long word) {
+            long state = word >= 0 ? word : states.first(cellOf(word));
+            return states.second(cellOf(state));
+        }
+
+        // Sets the balance or the loan if it still equals the expected value
+        private boolean compareAndSet(boolean loanSide, long expected, long newValue) {
+            while (true) {
+                long word = settledWord();
+                int cell = cellOf(word);
+                long balance = states.first(cell);
+                long loan = states.second(cell);
+                if (word() != word) {
+                    continue;
+                }
+                if ((loanSide ? loan : balance) != expected) {
+                    return false;
+                }
+                int updated = states.take();
+                states.set(updated, loanSide ? balance : newValue, loanSide ? newValue : loan);
+                if (compareAndSetWord(word, nextState(word, updated))) {
+                    states.release(cell);
+                    return true;
+                }
+                states.release(updated);
+            }
+        }
+
+        // Places a move of a transfer in the account and returns its word, unless this account
+        // does not hold the amount to debit or its balance would overflow with the amount to
+        // credit, and then returns 0. The balance checked is put in balances.
+        private long place(int transfer, boolean credit, long amount, boolean last,
+                           long[] balances) {
+            while (true) {
+                long word = settledWord();
+                long balance = states.first(cellOf(word));
+                if (word() != word) {
+                    continue;
+                }
+                balances[credit ? 1 : 0] = balance;
+                if (credit ? balance > Long.MAX_VALUE - amount : balance < amount) {
+                    return 0;
+                }
+                int move = states.take();
+                states.set(move, word, (long) transfer << 2 | (last ? LAST : 0)
+                        | (credit ? CREDIT : 0));
+                long moveWord = MOVE | word & VERSION_MASK | move;
+                if (compareAndSetWord(word, moveWord)) {
+                    return moveWord;
+                }
+                states.release(move);
+            }
+        }
+
+        // Gets the state word, first settling any transfer that has a move in the account
+        private long settledWord() {
+            while (true) {
+                long word = word();
+                if (word >= 0) {
+                    return word;
+                }
+                settle(word);
+            }
+        }
+
+        // Decides the transfer of a move found in the account and replaces the move by the state
+        // it leaves, as BankAccount does
+        private void settle(long moveWord) {
+            long details = states.second(cellOf(moveWord));
+            int transfer = (int) (details >>> 2);
+            long status = transfers.first(transfer);
+            if (word() != moveWord) {
+                return;
+            }
+            if ((status & STATUS_MASK) == UNDECIDED) {
+                boolean last = (details & LAST) != 0;
+                if (!last) {
+                    for (int i = 0; i < SETTLE_SPINS && transfers.first(transfer) == status
+                            && word() == moveWord; i++) {
+                        Thread.onSpinWait();
+                    }
+                }
+                // The status count makes this fail if the transfer has finished and its cell has
+                // been reused
+                transfers.compareAndSetFirst(transfer, status, status | (last ? MADE : ABORTED));
+            }
+            clear(moveWord);
+        }
+
+        // Replaces the move of a decided transfer, if it is still in the account, by the state
+        // it left. Once this returns the account no longer holds the move word.
+        private void clear(long moveWord) {
+            int move = cellOf(moveWord);
+            int before = cellOf(states.first(move));
+            long details = states.second(move);
+            int transfer = (int) (details >>> 2);
+            long status = transfers.first(transfer);
+            long amount = transfers.second(transfer);
+            long balance = states.first(before);
+            long loan = states.second(before);
+            if (word() != moveWord) {
+                return;
+            }
+            if ((status & STATUS_MASK) != MADE) {
+                compareAndSetWord(moveWord, nextState(moveWord, before));
+                return;
+            }
+            int cell = states.take();
+            states.set(cell, (details & CREDIT) != 0 ? balance + amount : balance - amount, loan);
+            if (compareAndSetWord(moveWord, nextState(moveWord, cell))) {
+                states.release(before);
+            } else {
+                states.release(cell);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Slot slot && slot.chunk == chunk && slot.base == base;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(chunk) * 31 + base;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ie.atu.sw.account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cells of two longs kept outside the Java heap, which OffHeapAccountStore writes once and then
+ * publishes with a compare-and-set on a word that refers to the cell by number.
+ *
+ * Once no word refers to a cell it is put back on a free list and taken again by a later write,
+ * so a reader that found a cell through a word may read it while it is being reused. Such a
+ * reader checks afterwards that the word has not changed, and reading a cell number that is
+ * out of date, even one that was never handed out, returns 0 rather than failing.
+ *
+ * The free lists are stacks striped by thread, like the cells of BankStatistics. The head of
+ * each carries a count of the changes made to it, so a thread that read the head and was
+ * overtaken fails its compare-and-set instead of corrupting the list. Taking and putting back a
+ * cell never locks, and a thread that finds its free list empty takes a cell never used before,
+ * allocating a new chunk of cells when it reaches the end of the last one. The first long of a
+ * free cell is left as it was, and the second links it to the next free cell.
+ */
+final class OffHeapCells {
+    // The number of bits a cell number takes, so a word can hold one alongside other fields
+    static final int CELL_BITS = 28;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+    private static final VarHandle HEADS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int CELL_SIZE = 2 * Long.BYTES;
+    private static final int CELLS_PER_CHUNK_SHIFT = 16;
+    private static final int CELLS_PER_CHUNK = 1 << CELLS_PER_CHUNK_SHIFT;
+    private static final int MAX_CELLS = 1 << CELL_BITS;
+    // Keeps each free list head on its own cache line
+    private static final int HEAD_SPACING = 8;
+
+    // Chunks of cells, each holding CELLS_PER_CHUNK cells, created as they are first needed
+    private final AtomicReferenceArray<ByteBuffer> chunks =
+            new AtomicReferenceArray<>(MAX_CELLS / CELLS_PER_CHUNK);
+    // The number of cells ever handed out of the chunks
+    private final AtomicInteger used = new AtomicInteger();
+    // The head of each stripe's free list: a change count in the high int and the first cell
+    // + 1 in the low int, where 0 marks an empty list
+    private final long[] heads;
+    private final int stripeMask;
+
+    // Constructor to create an empty set of cells
+    OffHeapCells() {
+        // A power of two at least twice the number of processors
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        heads = new long[stripes * HEAD_SPACING];
+        stripeMask = stripes - 1;
+    }
+
+    // Takes a free cell for the calling thread to write before publishing it
+    int take() {
+        int position = stripe();
+        while (true) {
+            long head = (long) HEADS.getVolatile(heads, position);
+            int cell = (int) head - 1;
+            if (cell < 0) {
+                return takeUnused();
+            }
+            // If another thread takes the cell first its link may be anything, but then the
+            // head has changed and the compare-and-set below fails
+            long next = (int) second(cell) & 0xFFFFFFFFL;
+            if (HEADS.compareAndSet(heads, position, head, ((head >>> 32) + 1) << 32 | next)) {
+                return cell;
+            }
+        }
+    }
+
+    // Puts back a cell that no word refers to any more
+    void release(int cell) {
+        int position = stripe();
+        while (true) {
+            long head = (long) HEADS.getVolatile(heads, position);
+            LONGS.set(chunk(cell), offset(cell) + Long.BYTES, head & 0xFFFFFFFFL);
+            if (HEADS.compareAndSet(heads, position, head,
+                    ((head >>> 32) + 1) << 32 | (cell + 1))) {
+                return;
+            }
+        }
+    }
+
+    // Reads the first long of a cell, or 0 for a cell number that was never handed out
+    long first(int cell) {
+        ByteBuffer chunk = existingChunk(cell);
+        return chunk == null ? 0 : (long) LONGS.getAcquire(chunk, offset(cell));
+    }
+
+    // Reads the second long of a cell, or 0 for a cell number that was never handed out
+    long second(int cell) {
+        ByteBuffer chunk = existingChunk(cell);
+        return chunk == null ? 0 : (long) LONGS.getAcquire(chunk, offset(cell) + Long.BYTES);
+    }
+
+    // Writes a cell taken by the calling thread. The compare-and-set that publishes the cell
+    // makes the values visible.
+    void set(int cell, long first, long second) {
+        ByteBuffer chunk = chunk(cell);
+        int offset = offset(cell);
+        LONGS.set(chunk, offset, first);
+        LONGS.set(chunk, offset + Long.BYTES, second);
+    }
+
+    // Sets the first long of a cell to the new value only if it still equals the expected value
+    boolean compareAndSetFirst(int cell, long expected, long newValue) {
+        return LONGS.compareAndSet(chunk(cell), offset(cell), expected, newValue);
+    }
+
+    // Hands out a cell that was never used, creating its chunk if it is the first to need it.
+    // Threads that race to create a chunk each allocate one, and all but the first drop theirs.
+    private int takeUnused() {
+        int cell = used.getAndIncrement();
+        if (cell >= MAX_CELLS || cell < 0) {
+            throw new IllegalStateException("The account store is full");
+        }
+        int chunkIndex = cell >>> CELLS_PER_CHUNK_SHIFT;
+        if (chunks.get(chunkIndex) == null) {
+            chunks.compareAndSet(chunkIndex, null, OffHeapAccountStore.allocate(
+                    (long) CELLS_PER_CHUNK * CELL_SIZE));
+        }
+        return cell;
+    }
+
+    // Gets the chunk holding a cell that has been handed out
+    private ByteBuffer chunk(int cell) {
+        return chunks.get(cell >>> CELLS_PER_CHUNK_SHIFT);
+    }
+
+    // Gets the chunk holding a cell, or null if the cell number was never handed out
+    private ByteBuffer existingChunk(int cell) {
+        if (cell < 0 || cell >= MAX_CELLS || cell >= used.get()) {
+            return null;
+        }
+        return chunks.get(cell >>> CELLS_PER_CHUNK_SHIFT);
+    }
+
+    // Gets the position of a cell within its chunk
+    private static int offset(int cell) {
+        return (cell & (CELLS_PER_CHUNK - 1)) * CELL_SIZE;
+    }
+
+    // Picks the free list for the calling thread
+    private int stripe() {
+        long id = Thread.currentThread().threadId();
+        return ((int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask) * HEAD_SPACING;
+    }
+}
@@ -0,0 +1,214 @@
+package ie.atu.sw.bulk;
+
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.manager.AccountManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every account of an account manager to a CSV or binary account file that
+ * AccountImporter can read back.
+ *
+ * The accounts are streamed into a buffer that is written to the file each time it fills, so
+ * the export holds no more than the buffer in memory however many accounts there are. The
+ * balance and loan of each account are read together, but operations carry on during the
+ * export, so the file is not a snapshot of the whole bank at one moment.
+ */
+public final class AccountExporter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The most characters a long takes in decimal
+    private static final int MAX_DIGITS = 20;
+
+    private AccountExporter() {
+    }
+
+    /**
+     * Exports the accounts to a file, replacing anything in it.
+     *
+     * @param accountManager The account manager whose accounts are exported
+     * @param file           The file to write
+     * @param format         The format to write
+     * @return The number of accounts written
+     * @throws IOException if the file cannot be written
+     */
+    public static long exportFile(AccountManager accountManager, Path file,
+                                  AccountFileFormat format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = format == AccountFileFormat.CSV ? new CsvWriter(channel)
+                    : new BinaryWriter(channel);
+            try {
+                accountManager.forEachAccount(writer::write);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+            return writer.accountCount;
+        }
+    }
+
+    // Buffers the records of one format and writes them to the file as the buffer fills
+    private abstract static class Writer {
+        protected final FileChannel channel;
+        protected final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long accountCount;
+
+        // Constructor to write to a file from its start
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // Writes an account, wrapping an I/O failure so it can be thrown from a visitor
+        private void write(String accountHolder, AccountState state) {
+            try {
+                byte[] name = accountHolder.getBytes(StandardCharsets.UTF_8);
+                if (name.length > AccountFileFormat.MAX_NAME_SIZE) {
+                    throw new IllegalArgumentException("Account holder name is too long to "
+                            + "export: " + accountHolder);
+                }
+                append(name, state.balance(), state.loan());
+                accountCount++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Adds a record to the buffer, draining it first if the record might not fit
+        protected abstract void append(byte[] name, long balance, long loan)
+                throws IOException;
+
+        // Writes whatever is still buffered
+        protected void finish() throws IOException {
+            drain();
+        }
+
+        // Writes the buffer to the file and empties it
+        protected void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Writes the CSV header and a line per account, quoting names that need it
+    private static final class CsvWriter extends Writer {
+        // Constructor to write the header
+        private CsvWriter(FileChannel channel) {
+            super(channel);
+            buffer.put(AccountFileFormat.CSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+            buffer.put((byte) '\n');
+        }
+
+        @Override
+        protected void append(byte[] name, long balance, long loan) throws IOException {
+            // A quoted name at most doubles in length
+            if (buffer.remaining() < name.length * 2 + 2 + (MAX_DIGITS + 1) * 2 + 1) {
+                drain();
+            }
+            if (needsQuotes(name)) {
+                buffer.put((byte) '"');
+                for (byte b : name) {
+                    if (b == '"') {
+                        buffer.put(b);
+                    }
+                    buffer.put(b);
+                }
+                buffer.put((byte) '"');
+            } else {
+                buffer.put(name);
+            }
+            buffer.put((byte) ',');
+            putDecimal(balance);
+            buffer.put((byte) ',');
+            putDecimal(loan);
+            buffer.put((byte) '\n');
+        }
+
+        // Checks if a name holds a character that would end the field early
+        private static boolean needsQuotes(byte[] name) {
+            for (byte b : name) {
+                if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Writes a number in decimal without creating a string
+        private void putDecimal(long value) {
+            if (value == Long.MIN_VALUE) {
+                buffer.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10) {
+                digits++;
+            }
+            int end = buffer.position() + digits;
+            for (int i = end - 1; i >= buffer.position(); i--) {
+                buffer.put(i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            buffer.position(end);
+        }
+    }
+
+    // Writes the magic number and each buffer of records as one block
+    private static final class BinaryWriter extends Writer {
+        private int blockCount;
+
+        // Constructor to write the magic number and leave room for the first block header
+        private BinaryWriter(FileChannel channel) throws IOException {
+            super(channel);
+            ByteBuffer magic = ByteBuffer.allocate(Long.BYTES)
+                    .putLong(AccountFileFormat.BINARY_MAGIC).flip();
+            while (magic.hasRemaining()) {
+                channel.write(magic);
+            }
+            buffer.position(AccountFileFormat.BLOCK_HEADER_SIZE);
+        }
+
+        @Override
+        protected void append(byte[] name, long balance, long loan) throws IOException {
+            if (buffer.remaining() < Short.BYTES + name.length + Long.BYTES * 2
+                    || blockCount == AccountImporter.CHUNK_ROWS) {
+                drain();
+            }
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.putLong(balance);
+            buffer.putLong(loan);
+            blockCount++;
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            if (blockCount > 0) {
+                drain();
+            }
+        }
+
+        // Fills in the header of the buffered block, writes it and starts the next one
+        @Override
+        protected void drain() throws IOException {
+            buffer.putInt(0, blockCount);
+            buffer.putInt(Integer.BYTES,
+                    buffer.position() - AccountFileFormat.BLOCK_HEADER_SIZE);
+            super.drain();
+            buffer.position(AccountFileFormat.BLOCK_HEADER_SIZE);
+            blockCount = 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ie.atu.sw.bulk;
+
+/**
+ * The file formats accounts are imported from and exported to. All amounts are whole cents.
+ *
+ * CSV holds a header line "accountHolder,balance,loan" and then one account per line. A name
+ * holding a comma, quote or line break is quoted, with quotes inside it doubled.
+ *
+ * BINARY starts with the 8 bytes "BANKACC1" and then holds blocks of accounts. Each block is a
+ * 4 byte record count and a 4 byte length in bytes, followed by its records: a 2 byte name
+ * length, the UTF-8 name, then the balance and loan as 8 byte integers. Numbers are big-endian.
+ * The blocks let a reader hand them to separate threads without parsing the records first.
+ */
+public enum AccountFileFormat {
+    CSV,
+    BINARY;
+
+    // The first line of a CSV file
+    static final String CSV_HEADER = "accountHolder,balance,loan";
+    // The first bytes of a binary file, "BANKACC1" in ASCII
+    static final long BINARY_MAGIC = 0x42414E4B41434331L;
+    // The record count and byte length at the start of each binary block
+    static final int BLOCK_HEADER_SIZE = Integer.BYTES * 2;
+    // The longest account holder name in either format, in UTF-8 bytes
+    static final int MAX_NAME_SIZE = Short.MAX_VALUE;
+}
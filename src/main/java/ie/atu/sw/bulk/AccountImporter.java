@@ -0,0 +1,446 @@
+package ie.atu.sw.bulk;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.BatchResult;
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Opens the accounts held in a CSV or binary account file, as written by AccountExporter.
+ *
+ * The file is memory-mapped and cut into chunks of up to CHUNK_ROWS rows by one quick pass
+ * over it: for CSV, a scan for the line breaks that are not inside a quoted name, and for the
+ * binary format, a walk over the block headers. The chunks are then parsed, validated and
+ * opened in parallel on the common fork-join pool, each chunk with a single call to
+ * AccountManager.addAccounts, so the statistics are updated once per chunk and a persistent
+ * manager waits for its journal once per chunk rather than once per account.
+ *
+ * A row that cannot be parsed or opened does not stop the import; it is reported with its row
+ * number and the reason. While the chunks are parsed, each row claims its account holder in a
+ * shared hash map that keeps the lowest row naming each holder, and the chunks are only opened
+ * once every claim is in. When a file names an account holder twice, the first row is opened
+ * and the later rows are rejected, whichever chunks they are in and in whatever order the
+ * chunks run. Clashes with the accounts already open are caught by the account store's own
+ * hash index.
+ */
+public final class AccountImporter {
+    // The most rows parsed and opened together
+    static final int CHUNK_ROWS = 1 << 16;
+    // The most bytes of CSV parsed together, so a chunk always fits in one mapping
+    private static final long CHUNK_BYTES = 1 << 26;
+    // The most bytes scanned through one mapping while cutting a CSV file into chunks
+    private static final long SCAN_WINDOW = 1 << 30;
+    // The size of a binary record without its name
+    private static final int RECORD_FIXED_SIZE = Short.BYTES + Long.BYTES * 2;
+    // The most digits a long can be parsed from without checking for overflow
+    private static final int SAFE_DIGITS = 18;
+
+    private AccountImporter() {
+    }
+
+    /**
+     * Imports the accounts in a file.
+     *
+     * @param accountManager The account manager to open the accounts in
+     * @param file           The file to read
+     * @param format         The format of the file
+     * @return The number of accounts opened and the rows that were rejected, in row order
+     * @throws IOException if the file cannot be read, or it is not an account file of the
+     *                     format given
+     */
+    public static ImportReport importFile(AccountManager accountManager, Path file,
+                                          AccountFileFormat format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Chunk> chunks = format == AccountFileFormat.CSV ? splitCsv(channel, file)
+                    : splitBinary(channel, file);
+            Map<String, Long> firstRows = new ConcurrentHashMap<>();
+            List<ParsedChunk> parsed;
+            try {
+                parsed = IntStream.range(0, chunks.size()).parallel()
+                        .mapToObj(i -> parseChunk(channel, file, format, chunks.get(i),
+                                firstRows))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            List<ChunkResult> results = parsed.parallelStream()
+                    .map(chunk -> openChunk(accountManager, chunk, firstRows))
+                    .toList();
+            long importedCount = 0;
+            List<RowError> errors = new ArrayList<>();
+            for (ChunkResult result : results) {
+                importedCount += result.importedCount();
+                errors.addAll(result.errors());
+            }
+            return new ImportReport(importedCount, errors);
+        }
+    }
+
+    // A run of rows starting at a byte position of the file, and the number of its first row
+    private record Chunk(long position, long length, long firstRow, int rowCount) {
+    }
+
+    // The valid rows of a chunk and the rows that could not be parsed
+    private record ParsedChunk(AccountRecords records, List<RowError> errors) {
+    }
+
+    // The number of accounts a chunk opened and its rejected rows in row order
+    private record ChunkResult(long importedCount, List<RowError> errors) {
+    }
+
+    // Parses a chunk, claiming the account holder of each valid row for the lowest row naming it
+    private static ParsedChunk parseChunk(FileChannel channel, Path file,
+                                          AccountFileFormat format, Chunk chunk,
+                                          Map<String, Long> firstRows) {
+        AccountRecords records = new AccountRecords(chunk.rowCount());
+        List<RowError> errors = new ArrayList<>();
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    chunk.position(), chunk.length());
+            if (format == AccountFileFormat.CSV) {
+                parseCsv(buffer, chunk.firstRow(), records, errors);
+            } else {
+                parseBinary(buffer, chunk, file, records, errors);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            firstRows.merge(records.getAccountHolder(i), records.getRow(i), Math::min);
+        }
+        return new ParsedChunk(records, errors);
+    }
+
+    // Opens the rows of a chunk that hold their claim and reports the rows that were rejected
+    private static ChunkResult openChunk(AccountManager accountManager, ParsedChunk chunk,
+                                         Map<String, Long> firstRows) {
+        AccountRecords parsed = chunk.records();
+        List<RowError> errors = new ArrayList<>(chunk.errors());
+        AccountRecords records = new AccountRecords(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            long row = parsed.getRow(i);
+            String accountHolder = parsed.getAccountHolder(i);
+            if (firstRows.get(accountHolder) == row) {
+                records.add(row, accountHolder, parsed.getBalance(i), parsed.getLoan(i));
+            } else {
+                errors.add(new RowError(row, "The account holder is named in an earlier row"));
+            }
+        }
+        BatchResult result = accountManager.addAccounts(records);
+        for (int i = 0; i < result.size(); i++) {
+            if (!result.isSuccessful(i)) {
+                errors.add(new RowError(records.getRow(i), reason(result.getStatus(i))));
+            }
+        }
+        errors.sort(Comparator.comparingLong(RowError::row));
+        return new ChunkResult(result.getSuccessCount(), errors);
+    }
+
+    // Checks the header and cuts the lines after it into chunks, keeping quoted line breaks
+    // inside their row
+    private static List<Chunk> splitCsv(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        byte[] header = AccountFileFormat.CSV_HEADER.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer start = ByteBuffer.allocate(header.length + 2);
+        channel.read(start, 0);
+        start.flip();
+        int headerLength = header.length;
+        if (start.remaining() > headerLength && start.get(headerLength) == '\r') {
+            headerLength++;
+        }
+        if (start.remaining() <= headerLength || start.get(headerLength) != '\n'
+                || !Arrays.equals(Arrays.copyOf(start.array(), header.length), header)) {
+            throw new IOException(file + " is not an account CSV file");
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = headerLength + 1;
+        long chunkRow = 2;
+        long line = 2;
+        int rows = 0;
+        boolean quoted = false;
+        for (long window = chunkStart; window < size; window += SCAN_WINDOW) {
+            int length = (int) Math.min(SCAN_WINDOW, size - window);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, window,
+                    length);
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n') {
+                    line++;
+                    if (quoted) {
+                        continue;
+                    }
+                    rows++;
+                    long end = window + i + 1;
+                    if (rows == CHUNK_ROWS || end - chunkStart >= CHUNK_BYTES) {
+                        chunks.add(new Chunk(chunkStart, end - chunkStart, chunkRow, rows));
+                        chunkStart = end;
+                        chunkRow = line;
+                        rows = 0;
+                    }
+                }
+            }
+        }
+        if (chunkStart < size) {
+            chunks.add(new Chunk(chunkStart, size - chunkStart, chunkRow, rows + 1));
+        }
+        return chunks;
+    }
+
+    // Parses the lines of a CSV chunk, skipping blank lines
+    private static void parseCsv(ByteBuffer buffer, long firstRow, AccountRecords records,
+                                 List<RowError> errors) {
+        CsvParser parser = new CsvParser(buffer, firstRow);
+        while (parser.hasMore()) {
+            long row = parser.row;
+            if (parser.atEndOfLine()) {
+                parser.skipLine();
+                continue;
+            }
+            String accountHolder = parser.name();
+            String error = null;
+            long balance = 0;
+            long loan = 0;
+            if (accountHolder == null) {
+                error = parser.error;
+            } else if (!parser.expect(',')) {
+                error = "Expected a balance and a loan after the account holder";
+            } else if ((balance = parser.amount()) == CsvParser.INVALID
+                    || !parser.expect(',')) {
+                error = "The balance is not a whole number of cents";
+            } else if ((loan = parser.amount()) == CsvParser.INVALID
+                    || !parser.atEndOfLine()) {
+                error = "The loan is not a whole number of cents";
+            } else {
+                error = checkName(accountHolder);
+            }
+            parser.skipLine();
+            if (error == null) {
+                records.add(row, accountHolder, balance, loan);
+            } else {
+                errors.add(new RowError(row, error));
+            }
+        }
+    }
+
+    // Checks the magic number and walks the block headers to find the blocks
+    private static List<Chunk> splitBinary(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+        channel.read(header, 0);
+        if (header.position() != Long.BYTES
+                || header.getLong(0) != AccountFileFormat.BINARY_MAGIC) {
+            throw new IOException(file + " is not an account binary file");
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer blockHeader = ByteBuffer.allocate(AccountFileFormat.BLOCK_HEADER_SIZE);
+        long position = Long.BYTES;
+        long row = 1;
+        while (position < size) {
+            blockHeader.clear();
+            while (blockHeader.hasRemaining()
+                    && channel.read(blockHeader, position + blockHeader.position()) > 0) {
+                // Read until the header is full or the file ends
+            }
+            int recordCount = blockHeader.getInt(0);
+            int length = blockHeader.getInt(Integer.BYTES);
+            long blockStart = position + AccountFileFormat.BLOCK_HEADER_SIZE;
+            if (blockHeader.hasRemaining() || recordCount < 0 || length < 0
+                    || blockStart + length > size) {
+                throw new IOException(file + " is truncated or corrupt at byte " + position);
+            }
+            chunks.add(new Chunk(blockStart, length, row, recordCount));
+            row += recordCount;
+            position = blockStart + length;
+        }
+        return chunks;
+    }
+
+    // Parses the records of a binary block
+    private static void parseBinary(ByteBuffer buffer, Chunk chunk, Path file,
+                                    AccountRecords records, List<RowError> errors)
+            throws IOException {
+        byte[] name = new byte[AccountFileFormat.MAX_NAME_SIZE];
+        for (int i = 0; i < chunk.rowCount(); i++) {
+            long row = chunk.firstRow() + i;
+            if (buffer.remaining() < RECORD_FIXED_SIZE) {
+                throw new IOException(file + " is corrupt at row " + row);
+            }
+            int nameLength = buffer.getShort();
+            if (nameLength < 0 || buffer.remaining() < nameLength + Long.BYTES * 2) {
+                throw new IOException(file + " is corrupt at row " + row);
+            }
+            buffer.get(name, 0, nameLength);
+            String accountHolder = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+            long balance = buffer.getLong();
+            long loan = buffer.getLong();
+            String error = checkName(accountHolder);
+            if (error == null) {
+                records.add(row, accountHolder, balance, loan);
+            } else {
+                errors.add(new RowError(row, error));
+            }
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException(file + " is corrupt in the block starting at row "
+                    + chunk.firstRow());
+        }
+    }
+
+    // Checks an account holder name, returning why it is rejected or null if it is valid
+    private static String checkName(String accountHolder) {
+        if (accountHolder.isBlank()) {
+            return "The account holder is blank";
+        }
+        if (accountHolder.length() > AccountFileFormat.MAX_NAME_SIZE / 3
+                && accountHolder.getBytes(StandardCharsets.UTF_8).length
+                > AccountFileFormat.MAX_NAME_SIZE) {
+            return "The account holder is longer than " + AccountFileFormat.MAX_NAME_SIZE
+                    + " bytes";
+        }
+        return null;
+    }
+
+    // Describes why an account manager did not open a row
+    private static String reason(TransactionStatus status) {
+        return switch (status) {
+            case INVALID_AMOUNT -> "The balance and loan cannot be negative";
+            case ACCOUNT_ALREADY_EXISTS -> "An account already exists for the account holder";
+            default -> "The account was not opened: " + status;
+        };
+    }
+
+    // Reads the fields of CSV lines from a buffer, counting lines as it goes
+    private static final class CsvParser {
+        // Returned by amount for a field that is not a whole number
+        private static final long INVALID = Long.MIN_VALUE;
+
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+        private long row;
+        private String error;
+        private byte[] name = new byte[64];
+
+        // Constructor to parse a buffer whose first line is a row number
+        private CsvParser(ByteBuffer buffer, long firstRow) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+            this.row = firstRow;
+        }
+
+        // Checks if there is anything left to parse
+        private boolean hasMore() {
+            return position < limit;
+        }
+
+        // Checks if the line ends here, ignoring a carriage return
+        private boolean atEndOfLine() {
+            return position == limit || buffer.get(position) == '\n'
+                    || (buffer.get(position) == '\r'
+                    && (position + 1 == limit || buffer.get(position + 1) == '\n'));
+        }
+
+        // Moves past the next line break, or to the end
+        private void skipLine() {
+            while (position < limit) {
+                if (buffer.get(position++) == '\n') {
+                    row++;
+                    return;
+                }
+            }
+        }
+
+        // Moves past a character if it is next
+        private boolean expect(char c) {
+            if (position < limit && buffer.get(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        // Reads a name, quoted or not, or returns null and sets the error
+        private String name() {
+            int length = 0;
+            if (position < limit && buffer.get(position) == '"') {
+                position++;
+                while (true) {
+                    if (position == limit) {
+                        error = "The quoted account holder is not closed";
+                        return null;
+                    }
+                    byte b = buffer.get(position++);
+                    if (b == '"') {
+                        if (position == limit || buffer.get(position) != '"') {
+                            break;
+                        }
+                        position++;
+                    } else if (b == '\n') {
+                        row++;
+                    }
+                    length = append(length, b);
+                }
+            } else {
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b == ',' || b == '\n' || b == '"') {
+                        break;
+                    }
+                    length = append(length, b);
+                    position++;
+                }
+            }
+            return new String(name, 0, length, StandardCharsets.UTF_8);
+        }
+
+        // Adds a byte to the name being read, returning the new length
+        private int append(int length, byte b) {
+            if (length == name.length) {
+                name = Arrays.copyOf(name, length * 2);
+            }
+            name[length] = b;
+            return length + 1;
+        }
+
+        // Reads an optionally signed whole number, or returns INVALID
+        private long amount() {
+            boolean negative = expect('-');
+            int start = position;
+            long value = 0;
+            while (position < limit) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (position - start >= SAFE_DIGITS
+                        && value > (Long.MAX_VALUE - digit) / 10) {
+                    return INVALID;
+                }
+                value = value * 10 + digit;
+                position++;
+            }
+            if (position == start) {
+                return INVALID;
+            }
+            return negative ? -value : value;
+        }
+    }
+}
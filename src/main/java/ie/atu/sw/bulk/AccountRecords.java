@@ -0,0 +1,73 @@
+package ie.atu.sw.bulk;
+
+import java.util.Arrays;
+
+/**
+ * A chunk of accounts to open together, held in parallel arrays so a chunk of many thousands
+ * of rows is a handful of objects. Each row keeps the number of the row it came from so
+ * rejections can be reported against it. All amounts are in cents.
+ */
+public final class AccountRecords {
+    private String[] accountHolders;
+    private long[] balances;
+    private long[] loans;
+    private long[] rows;
+    private int size;
+
+    // Constructor to create an empty chunk with room for the expected number of rows
+    public AccountRecords(int expectedSize) {
+        int capacity = Math.max(1, expectedSize);
+        accountHolders = new String[capacity];
+        balances = new long[capacity];
+        loans = new long[capacity];
+        rows = new long[capacity];
+    }
+
+    /**
+     * Adds a row to the chunk.
+     *
+     * @param row           The number of the row in its source
+     * @param accountHolder The name of the account holder
+     * @param balance       The balance in cents
+     * @param loan          The outstanding loan in cents
+     */
+    public void add(long row, String accountHolder, long balance, long loan) {
+        if (size == accountHolders.length) {
+            int capacity = size * 2;
+            accountHolders = Arrays.copyOf(accountHolders, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+            loans = Arrays.copyOf(loans, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        accountHolders[size] = accountHolder;
+        balances[size] = balance;
+        loans[size] = loan;
+        rows[size] = row;
+        size++;
+    }
+
+    // Gets the number of rows in the chunk
+    public int size() {
+        return size;
+    }
+
+    // Gets the name of the account holder in a row
+    public String getAccountHolder(int index) {
+        return accountHolders[index];
+    }
+
+    // Gets the balance in a row
+    public long getBalance(int index) {
+        return balances[index];
+    }
+
+    // Gets the loan in a row
+    public long getLoan(int index) {
+        return loans[index];
+    }
+
+    // Gets the number of a row in its source
+    public long getRow(int index) {
+        return rows[index];
+    }
+}
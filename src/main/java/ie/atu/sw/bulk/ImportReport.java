@@ -0,0 +1,21 @@
+package ie.atu.sw.bulk;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk import.
+ *
+ * @param importedCount The number of accounts opened
+ * @param errors        The rows that were not imported, in row order
+ */
+public record ImportReport(long importedCount, List<RowError> errors) {
+
+    /**
+     * Checks if every row was imported.
+     *
+     * @return True if no row was rejected
+     */
+    public boolean isComplete() {
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,11 @@
+package ie.atu.sw.bulk;
+
+/**
+ * A row of an import that was not imported.
+ *
+ * @param row    The number of the row, counting from 1: the line of a CSV file, including
+ *               any header, or the position of the record in a binary file
+ * @param reason Why the row was rejected
+ */
+public record RowError(long row, String reason) {
+}
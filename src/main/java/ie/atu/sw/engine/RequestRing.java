@@ -0,0 +1,158 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of requests with many producers and a single consumer, in the style of the
+ * LMAX Disruptor. Every slot is allocated up front and reused, so passing a request allocates
+ * nothing and takes no lock.
+ *
+ * A producer claims the next sequence number with one atomic increment, waits if the ring is
+ * full, fills in the slot and then publishes it by writing the sequence number into the slot.
+ * The consumer reads slots in sequence order as they are published, and hands back a whole run
+ * of slots at once by advancing a single counter.
+ *
+ * The ring does not block its consumer; the shard that owns it decides how to wait for work.
+ */
+final class RequestRing {
+    // How many times a producer checks for a free slot before it parks between checks
+    private static final int SPINS = 1_000;
+    // Slots are handed back to producers every 256 requests during a long run
+    private static final long RELEASE_MASK = 255;
+    private static final VarHandle PUBLISHED;
+
+    static {
+        try {
+            PUBLISHED = MethodHandles.lookup().findVarHandle(Request.class, "published",
+                    long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Request[] slots;
+    private final int mask;
+    // The next sequence number to claim
+    private final AtomicLong claimed = new AtomicLong();
+    // Every sequence number below this has been consumed and its slot can be reused
+    private volatile long consumed;
+    // The next sequence number the consumer will read. Only used by the consumer.
+    private long next;
+
+    // Constructor to create a ring with a capacity rounded up to a power of two
+    RequestRing(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+        }
+        int size = Math.max(1, Integer.highestOneBit(capacity - 1) << 1);
+        slots = new Request[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Request();
+            slots[i].published = i - size;
+        }
+        mask = size - 1;
+    }
+
+    // Gets the number of slots in the ring
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Publishes a request, waiting while the ring is full.
+     *
+     * @param operation     The operation code
+     * @param accountHolder The name of the account holder
+     * @param counterparty  The name of the other account holder, or null
+     * @param amount        The amount in cents
+     * @param result        The future to complete with the outcome
+     */
+    void publish(byte operation, String accountHolder, String counterparty, long amount,
+                 CompletableFuture<TransactionStatus> result) {
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - slots.length;
+        for (int spins = 0; consumed <= wrapPoint; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(1_000);
+            }
+        }
+        Request request = slots[(int) (sequence & mask)];
+        request.operation = operation;
+        request.accountHolder = accountHolder;
+        request.counterparty = counterparty;
+        request.amount = amount;
+        request.result = result;
+        PUBLISHED.setVolatile(request, sequence);
+    }
+
+    /**
+     * Hands every published request to a handler in sequence order. Only called by the
+     * consumer thread.
+     *
+     * @param handler Handles each request; the request must not be kept after it returns
+     * @return The number of requests handled
+     */
+    int drain(Handler handler) {
+        long first = next;
+        long sequence = first;
+        while (true) {
+            Request request = slots[(int) (sequence & mask)];
+            if ((long) PUBLISHED.getAcquire(request) != sequence) {
+                break;
+            }
+            handler.handle(request);
+            request.clear();
+            sequence++;
+            if ((sequence & RELEASE_MASK) == 0) {
+                // Hand back slots during a long run so waiting producers can carry on
+                consumed = sequence;
+            }
+        }
+        if (sequence != first) {
+            next = sequence;
+            consumed = sequence;
+        }
+        return (int) (sequence - first);
+    }
+
+    // Checks if the next request has been published. Only called by the consumer thread.
+    boolean isPublished() {
+        return (long) PUBLISHED.getAcquire(slots[(int) (next & mask)]) == next;
+    }
+
+    // Checks if every request claimed so far has been consumed
+    boolean isDrained() {
+        return consumed == claimed.get();
+    }
+
+    // Handles a request taken from the ring
+    interface Handler {
+        void handle(Request request);
+    }
+
+    // A reusable slot of the ring
+    static final class Request {
+        byte operation;
+        String accountHolder;
+        String counterparty;
+        long amount;
+        CompletableFuture<TransactionStatus> result;
+        // The sequence number of the request held, written last to publish it
+        private volatile long published;
+
+        // Drops the references held so the slot does not keep them alive
+        private void clear() {
+            accountHolder = null;
+            counterparty = null;
+            result = null;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.manager.LoanManager;
+import ie.atu.sw.statistics.BankStatistics;
+import ie.atu.sw.transaction.AccountTransaction;
+import ie.atu.sw.transaction.TransactionStatus;
+import ie.atu.sw.validation.InputValidator;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of the accounts, owned by a single thread. Only the owner changes the
+ * accounts, so every operation runs to completion without waiting for another thread.
+ *
+ * Requests from callers arrive through a preallocated ring. The steps of transfers between
+ * shards arrive through an unbounded lock-free inbox instead, so a shard never waits for room
+ * in another shard's ring and two busy shards cannot wait on each other.
+ *
+ * A transfer to an account in another shard runs in two phases. The sending shard withdraws
+ * the amount and passes a credit step to the receiving shard. The receiving shard deposits it
+ * and completes the transfer, or, if the deposit is rejected, passes a refund step back to the
+ * sending shard, which deposits the amount back and completes the transfer with the reason.
+ * Between the phases the amount is in neither account. A refund can only be rejected if
+ * deposits made to the sending account since the withdrawal leave no room for the amount; the
+ * amount is then taken out of the total deposits and recorded in the group as unrefunded, so
+ * the statistics still match the accounts.
+ */
+final class Shard implements Runnable {
+    // Operation codes of the requests in the ring
+    static final byte OPEN_ACCOUNT = 0;
+    static final byte DEPOSIT = 1;
+    static final byte WITHDRAW = 2;
+    static final byte TRANSFER = 3;
+    static final byte APPROVE_LOAN = 4;
+    static final byte REPAY_LOAN = 5;
+
+    // How many times an idle shard checks for work before it parks
+    private static final int SPINS = 1_000;
+    // How long a stopping shard parks between checks for work left in other shards
+    private static final long STOPPING_PARK_NANOS = 100_000;
+
+    private final ShardGroup group;
+    private final AccountStore accounts;
+    private final RequestRing ring;
+    private final Queue<TransferStep> inbox = new ConcurrentLinkedQueue<>();
+    private final BankStatistics statistics;
+    private final AccountTransaction accountTransaction;
+    private final LoanManager loanManager = new LoanManager();
+    private final RequestRing.Handler handler = this::handle;
+    private final Thread thread;
+    // Set by the owner thread before it parks
+    private volatile boolean parked;
+    private volatile boolean running = true;
+
+    // Constructor to create a shard of a group with a ring of the given capacity
+    Shard(ShardGroup group, int index, int ringCapacity, BankStatistics statistics) {
+        this.group = group;
+        this.accounts = new HeapAccountStore();
+        this.ring = new RequestRing(ringCapacity);
+        this.statistics = statistics;
+        this.accountTransaction = new AccountTransaction(statistics);
+        this.thread = Thread.ofPlatform().name("shard-" + index).daemon().unstarted(this);
+    }
+
+    // Starts the owner thread
+    void start() {
+        thread.start();
+    }
+
+    // Gets the store of the shard's accounts. Only the owner thread changes them.
+    AccountStore accounts() {
+        return accounts;
+    }
+
+    // Passes a request to the owner thread
+    void submit(byte operation, String accountHolder, String counterparty, long amount,
+                CompletableFuture<TransactionStatus> result) {
+        ring.publish(operation, accountHolder, counterparty, amount, result);
+        wake();
+    }
+
+    // Checks if every request placed in the ring has been handled
+    boolean isDrained() {
+        return ring.isDrained();
+    }
+
+    // Asks the owner thread to stop once no work is left in any shard of the group
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    // Waits for the owner thread to stop
+    void awaitStopped() throws InterruptedException {
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (true) {
+            int handled = drainInbox() + ring.drain(handler);
+            if (handled > 0) {
+                idle = 0;
+            } else if (!running) {
+                if (group.isQuiescent()) {
+                    return;
+                }
+                LockSupport.parkNanos(this, STOPPING_PARK_NANOS);
+            } else if (++idle < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parked = true;
+                // Checked again after saying it will park, so either this sees the new work or
+                // its sender sees the flag and unparks the thread
+                if (running && inbox.isEmpty() && !ring.isPublished()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                idle = 0;
+            }
+        }
+    }
+
+    // Handles a request from the ring
+    private void handle(RequestRing.Request request) {
+        CompletableFuture<TransactionStatus> result = request.result;
+        try {
+            switch (request.operation) {
+                case OPEN_ACCOUNT -> result.complete(openAccount(request.accountHolder,
+                        request.amount));
+                case DEPOSIT -> result.complete(deposit(request.accountHolder, request.amount));
+                case WITHDRAW -> result.complete(withdraw(request.accountHolder,
+                        request.amount));
+                case TRANSFER -> transfer(request.accountHolder, request.counterparty,
+                        request.amount, result);
+                case APPROVE_LOAN -> result.complete(approveLoan(request.accountHolder,
+                        request.amount));
+                case REPAY_LOAN -> result.complete(repayLoan(request.accountHolder,
+                        request.amount));
+                default -> throw new IllegalStateException("Unknown operation "
+                        + request.operation);
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    // Opens an account with an initial deposit
+    private TransactionStatus openAccount(String accountHolder, long initialDeposit) {
+        if (!InputValidator.isPositive(initialDeposit)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        // Throws AccountAlreadyExists, which completes the future exceptionally
+        statistics.accountOpened(accounts.add(accountHolder, initialDeposit, 0));
+        return TransactionStatus.SUCCESS;
+    }
+
+    // Deposits money into an account
+    private TransactionStatus deposit(String accountHolder, long amount) {
+        Account account = accounts.get(accountHolder);
+        if (account == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        TransactionStatus status = accountTransaction.tryDeposit(account, amount);
+        if (status == TransactionStatus.SUCCESS) {
+            statistics.record(amount, 0);
+        }
+        return status;
+    }
+
+    // Withdraws money from an account
+    private TransactionStatus withdraw(String accountHolder, long amount) {
+        Account account = accounts.get(accountHolder);
+        if (account == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        TransactionStatus status = accountTransaction.tryWithdraw(account, amount);
+        if (status == TransactionStatus.SUCCESS) {
+            statistics.record(-amount, 0);
+        }
+        return status;
+    }
+
+    // Transfers money, in place if both accounts are in this shard or else by starting the
+    // first phase
+    private void transfer(String fromAccountHolder, String toAccountHolder, long amount,
+                          CompletableFuture<TransactionStatus> result) {
+        Account from = accounts.get(fromAccountHolder);
+        if (from == null) {
+            result.complete(TransactionStatus.ACCOUNT_NOT_FOUND);
+            return;
+        }
+        Shard receiver = group.shardFor(toAccountHolder);
+        if (receiver == this) {
+            Account to = accounts.get(toAccountHolder);
+            result.complete(to == null ? TransactionStatus.ACCOUNT_NOT_FOUND
+                    : accountTransaction.tryTransfer(from, to, amount));
+            return;
+        }
+        TransactionStatus status = accountTransaction.tryWithdraw(from, amount);
+        if (status != TransactionStatus.SUCCESS) {
+            result.complete(status);
+            return;
+        }
+        group.transferStarted();
+        receiver.send(new TransferStep(TransferStep.Phase.CREDIT, fromAccountHolder,
+                toAccountHolder, amount, TransactionStatus.SUCCESS, this, result));
+    }
+
+    // Approves a loan if the bank holds enough deposits
+    private TransactionStatus approveLoan(String accountHolder, long amount) {
+        Account account = accounts.get(accountHolder);
+        if (account == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        if (amount > statistics.totalDeposits()) {
+            return TransactionStatus.INSUFFICIENT_FUNDS;
+        }
+        TransactionStatus status = loanManager.tryApproveLoan(account, amount);
+        if (status == TransactionStatus.SUCCESS) {
+            statistics.record(-amount, amount);
+        }
+        return status;
+    }
+
+    // Repays a part of a loan
+    private TransactionStatus repayLoan(String accountHolder, long amount) {
+        Account account = accounts.get(accountHolder);
+        if (account == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        TransactionStatus status = loanManager.tryRepayLoan(account, amount);
+        if (status == TransactionStatus.SUCCESS) {
+            statistics.record(amount, -amount);
+        }
+        return status;
+    }
+
+    // Passes a step of a transfer to the owner thread
+    private void send(TransferStep step) {
+        inbox.add(step);
+        wake();
+    }
+
+    // Unparks the owner thread if it has said it will park
+    private void wake() {
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Handles every transfer step in the inbox
+    private int drainInbox() {
+        int handled = 0;
+        TransferStep step;
+        while ((step = inbox.poll()) != null) {
+            handled++;
+            if (step.phase() == TransferStep.Phase.CREDIT) {
+                credit(step);
+            } else {
+                refund(step);
+            }
+        }
+        return handled;
+    }
+
+    // The second phase of a transfer: deposits the amount, or sends it back if it is rejected
+    private void credit(TransferStep step) {
+        Account to = accounts.get(step.toAccountHolder());
+        TransactionStatus status = to == null ? TransactionStatus.ACCOUNT_NOT_FOUND
+                : accountTransaction.tryDeposit(to, step.amount());
+        if (status == TransactionStatus.SUCCESS) {
+            group.transferFinished();
+            step.result().complete(status);
+        } else {
+            step.sender().send(new TransferStep(TransferStep.Phase.REFUND,
+                    step.fromAccountHolder(), step.toAccountHolder(), step.amount(), status,
+                    step.sender(), step.result()));
+        }
+    }
+
+    // Undoes the first phase of a rejected transfer and reports why it was rejected
+    private void refund(TransferStep step) {
+        Account from = accounts.get(step.fromAccountHolder());
+        TransactionStatus status = accountTransaction.tryDeposit(from, step.amount());
+        if (status != TransactionStatus.SUCCESS) {
+            // Only possible if deposits since the withdrawal left no room for the amount
+            statistics.record(-step.amount(), 0);
+            group.refundFailed(step.amount());
+        }
+        group.transferFinished();
+        if (status == TransactionStatus.SUCCESS) {
+            step.result().complete(step.status());
+        } else {
+            step.result().completeExceptionally(new ArithmeticException(
+                    "Could not refund " + step.amount() + " to " + step.fromAccountHolder()));
+        }
+    }
+}
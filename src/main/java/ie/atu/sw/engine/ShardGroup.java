@@ -0,0 +1,70 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.statistics.BankStatistics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The shards of an engine and the state they share: which shard holds an account and which
+ * transfers between shards are part way through. The shards are given the group rather than
+ * the engine, so the engine is not handed to their threads before it is constructed.
+ */
+final class ShardGroup {
+    private final Shard[] shards;
+    // Transfers between shards that have withdrawn but not yet completed
+    private final LongAdder transfersInFlight = new LongAdder();
+    // Money withdrawn by transfers between shards that could not be credited or refunded
+    private final LongAdder unrefunded = new LongAdder();
+
+    // Constructor to create the given number of shards with rings of the given capacity
+    ShardGroup(int shardCount, int ringCapacity, BankStatistics statistics) {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(this, i, ringCapacity, statistics);
+        }
+    }
+
+    // Gets the shards
+    Shard[] shards() {
+        return shards;
+    }
+
+    // Gets the shard holding an account
+    Shard shardFor(String accountHolder) {
+        int hash = accountHolder.hashCode();
+        // Spread the bits so names that differ only at the end land on different shards
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    // Counts a transfer between shards whose first phase has been applied
+    void transferStarted() {
+        transfersInFlight.increment();
+    }
+
+    // Counts a transfer between shards that has completed
+    void transferFinished() {
+        transfersInFlight.decrement();
+    }
+
+    // Records money a transfer between shards withdrew but could not refund
+    void refundFailed(long amount) {
+        unrefunded.add(amount);
+    }
+
+    // Gets the total money transfers between shards withdrew but could not refund
+    long unrefunded() {
+        return unrefunded.sum();
+    }
+
+    // Checks if every shard has handled its requests and no transfer between shards is part
+    // way through, so no shard can be given more work. Only meaningful once closed.
+    boolean isQuiescent() {
+        for (Shard shard : shards) {
+            if (!shard.isDrained()) {
+                return false;
+            }
+        }
+        return transfersInFlight.sum() == 0;
+    }
+}
@@ -0,0 +1,257 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.statistics.BankStatistics;
+import ie.atu.sw.statistics.StatisticsSnapshot;
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An execution mode for account operations in which the accounts are partitioned by a hash of
+ * the account holder's name across a number of shards, each owned by a single thread. All
+ * amounts are in cents.
+ *
+ * An operation is placed in the ring of the shard holding its account and the caller gets a
+ * future for the outcome straight away. The shard's thread applies its operations one after
+ * another with the same AccountTransaction and LoanManager logic as AccountManager, but as the
+ * only writer of its accounts it never contends with another thread, so throughput grows with
+ * the number of shards. Reads of a balance or loan go straight to the account from the caller's
+ * thread.
+ *
+ * A transfer between accounts in different shards is applied in two phases, described in
+ * Shard, and its future completes once the money has arrived or been returned. If the money
+ * can neither arrive nor be returned, because deposits since it left have filled the sending
+ * account, it is taken out of the total deposits and counted by getUnrefunded. A loan is
+ * checked against the total deposits when its shard applies it, which is not atomic with loans
+ * being approved on other shards at the same time.
+ *
+ * Futures are completed on the shard threads, so work chained onto them should be quick or
+ * run asynchronously. Accounts are only held in memory.
+ */
+public class ShardedEngine implements AutoCloseable {
+    // The number of requests each shard's ring holds by default
+    public static final int DEFAULT_RING_CAPACITY = 1 << 14;
+
+    private final ShardGroup group;
+    private final BankStatistics statistics = new BankStatistics();
+    // Callers part way through submitting a request
+    private final LongAdder submitting = new LongAdder();
+    private volatile boolean closed;
+
+    // Constructor to create an engine with a shard for each processor
+    public ShardedEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_RING_CAPACITY);
+    }
+
+    // Constructor to create an engine with the given number of shards and ring capacity
+    public ShardedEngine(int shardCount, int ringCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive");
+        }
+        group = new ShardGroup(shardCount, ringCapacity, statistics);
+        for (Shard shard : group.shards()) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards
+     */
+    public int getShardCount() {
+        return group.shards().length;
+    }
+
+    /**
+     * Opens an account with an initial deposit.
+     *
+     * @param accountHolder  The name of the new account holder
+     * @param initialDeposit The initial deposit in cents
+     * @return SUCCESS or INVALID_AMOUNT once applied, or completes exceptionally with
+     *         AccountAlreadyExists if an account already exists for the account holder
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> addAccount(String accountHolder,
+                                                           long initialDeposit) {
+        return submit(Shard.OPEN_ACCOUNT, accountHolder, null, initialDeposit);
+    }
+
+    /**
+     * Deposits money into an account.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The deposit in cents
+     * @return SUCCESS, or the reason the deposit was rejected, once applied
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> deposit(String accountHolder, long amount) {
+        return submit(Shard.DEPOSIT, accountHolder, null, amount);
+    }
+
+    /**
+     * Withdraws money from an account.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The withdrawal in cents
+     * @return SUCCESS, or the reason the withdrawal was rejected, once applied
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> withdraw(String accountHolder, long amount) {
+        return submit(Shard.WITHDRAW, accountHolder, null, amount);
+    }
+
+    /**
+     * Transfers money from one account to another.
+     *
+     * @param fromAccountHolder The name of the account holder sending the money
+     * @param toAccountHolder   The name of the account holder receiving the money
+     * @param amount            The amount in cents
+     * @return SUCCESS, or the reason the transfer was rejected, once the money has arrived or
+     *         been returned
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> transfer(String fromAccountHolder,
+                                                         String toAccountHolder, long amount) {
+        if (fromAccountHolder.equals(toAccountHolder)) {
+            return CompletableFuture.completedFuture(TransactionStatus.SAME_ACCOUNT);
+        }
+        return submit(Shard.TRANSFER, fromAccountHolder, toAccountHolder, amount);
+    }
+
+    /**
+     * Approves a loan for an account holder if the bank holds enough deposits.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The loan amount in cents
+     * @return SUCCESS, or the reason the loan was rejected, once applied
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> approveLoan(String accountHolder, long amount) {
+        return submit(Shard.APPROVE_LOAN, accountHolder, null, amount);
+    }
+
+    /**
+     * Repays a part of the loan for an account holder.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The repayment in cents
+     * @return SUCCESS, or the reason the repayment was rejected, once applied
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<TransactionStatus> repayLoan(String accountHolder, long amount) {
+        return submit(Shard.REPAY_LOAN, accountHolder, null, amount);
+    }
+
+    /**
+     * Gets the balance of an account as last written by its shard.
+     *
+     * @param accountHolder The name of the account holder
+     * @return The balance in cents
+     * @throws BankAccountDoesNotExist if the account is not found
+     */
+    public long getBalance(String accountHolder) {
+        return findAccount(accountHolder).getBalance();
+    }
+
+    /**
+     * Gets the loan of an account as last written by its shard.
+     *
+     * @param accountHolder The name of the account holder
+     * @return The loan in cents
+     * @throws BankAccountDoesNotExist if the account is not found
+     */
+    public long getLoan(String accountHolder) {
+        return findAccount(accountHolder).getLoan();
+    }
+
+    /**
+     * Gets the total deposits available in the bank. Money part way through a transfer
+     * between shards is counted.
+     *
+     * @return The total deposits in cents
+     */
+    public long getTotalDeposits() {
+        return statistics.totalDeposits();
+    }
+
+    /**
+     * Gets the bank-wide statistics.
+     *
+     * @return The statistics
+     */
+    public StatisticsSnapshot getStatistics() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * Gets the money that transfers between shards withdrew but could neither credit nor
+     * refund, because deposits made to the sending account in the meantime left no room for
+     * it. The money is no longer counted in the total deposits.
+     *
+     * @return The total in cents
+     */
+    public long getUnrefunded() {
+        return group.unrefunded();
+    }
+
+    /**
+     * Stops accepting requests, waits for those already submitted and any transfers in flight
+     * to complete, and stops the shard threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // A caller that saw the engine open before it closed finishes publishing its request
+        while (submitting.sum() != 0) {
+            Thread.onSpinWait();
+        }
+        for (Shard shard : group.shards()) {
+            shard.stop();
+        }
+        boolean interrupted = false;
+        for (Shard shard : group.shards()) {
+            while (true) {
+                try {
+                    shard.awaitStopped();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Gets the shard holding an account
+    Shard shardFor(String accountHolder) {
+        return group.shardFor(accountHolder);
+    }
+
+    // Places a request in the ring of the shard holding its account
+    private CompletableFuture<TransactionStatus> submit(byte operation, String accountHolder,
+                                                        String counterparty, long amount) {
+        CompletableFuture<TransactionStatus> result = new CompletableFuture<>();
+        submitting.increment();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The engine is closed");
+            }
+            shardFor(accountHolder).submit(operation, accountHolder, counterparty, amount,
+                    result);
+        } finally {
+            submitting.decrement();
+        }
+        return result;
+    }
+
+    // Finds an account in the shard holding it
+    private Account findAccount(String accountHolder) {
+        return shardFor(accountHolder).accounts().find(accountHolder);
+    }
+}
@@ -0,0 +1,27 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A step of a transfer between two shards, passed from one shard's thread to the other's.
+ *
+ * @param phase             Whether the step credits the receiver or refunds the sender
+ * @param fromAccountHolder The name of the account holder sending the money
+ * @param toAccountHolder   The name of the account holder receiving the money
+ * @param amount            The amount in cents
+ * @param status            Why the credit was rejected, for a refund
+ * @param sender            The shard holding the sending account
+ * @param result            The future to complete with the outcome of the transfer
+ */
+record TransferStep(Phase phase, String fromAccountHolder, String toAccountHolder, long amount,
+                    TransactionStatus status, Shard sender,
+                    CompletableFuture<TransactionStatus> result) {
+
+    // The phases a step can belong to
+    enum Phase {
+        CREDIT,
+        REFUND
+    }
+}
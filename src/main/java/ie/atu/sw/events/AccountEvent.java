@@ -0,0 +1,39 @@
+package ie.atu.sw.events;
+
+/**
+ * A change made to an account through the account manager, as seen by event subscribers.
+ *
+ * @param sequence      The position of the event in the stream, counting from 0. A subscriber
+ *                      that sees a gap in the sequence numbers had the events in the gap dropped
+ * @param timestamp     When the event was published, in milliseconds since the epoch
+ * @param type          The kind of change
+ * @param accountHolder The name of the account holder
+ * @param counterparty  The name of the account holder receiving a transfer, or null
+ * @param amount        The amount in cents
+ */
+public record AccountEvent(long sequence, long timestamp, Type type, String accountHolder,
+                           String counterparty, long amount) {
+
+    // The kinds of change that are published
+    public enum Type {
+        DEPOSIT,
+        WITHDRAWAL,
+        // The amount was moved from the account holder to the counterparty
+        TRANSFER,
+        LOAN_APPROVED,
+        LOAN_REPAID;
+
+        // Cached copy of values() so that decoding a type does not allocate
+        private static final Type[] VALUES = values();
+
+        // Gets the code the type is stored as
+        byte code() {
+            return (byte) ordinal();
+        }
+
+        // Gets the type for a stored code
+        static Type fromCode(byte code) {
+            return VALUES[code];
+        }
+    }
+}
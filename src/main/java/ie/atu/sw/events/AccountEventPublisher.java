@@ -0,0 +1,537 @@
+package ie.atu.sw.events;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Publishes the changes made to accounts to any number of subscribers, as a
+ * java.util.concurrent.Flow publisher.
+ *
+ * Events go through one bounded ring shared by every subscriber, in the style of the LMAX
+ * Disruptor like the engine's request ring. Publishing claims a sequence number with one
+ * atomic increment and fills in a reused slot, so it allocates nothing, takes no lock and
+ * costs the same however many subscribers there are. Each subscriber has its own thread that
+ * follows the ring at its own pace, delivering events as its demand allows and handing back
+ * whole runs of slots at once, and the event objects are only made there. Events are timed
+ * by a clock a background thread reads every millisecond, as reading the clock for each event
+ * would cost more than the rest of publishing.
+ *
+ * A subscriber that does not ask for events as fast as they are published falls behind in the
+ * ring, and what happens once it is a whole ring behind is set by its SlowSubscriberPolicy.
+ * Only a BLOCK subscriber can hold up publishing; a DROP or SPILL subscriber never does.
+ * A subscriber's callbacks must not publish through the same publisher, or a BLOCK subscriber
+ * would be waiting for itself.
+ */
+public class AccountEventPublisher implements Flow.Publisher<AccountEvent>, AutoCloseable {
+    // How many times a waiting thread checks again before it parks between checks
+    private static final int SPINS = 1_000;
+    // Slots are handed back to blocked publishers every 256 events during a long run
+    private static final long RELEASE_MASK = 255;
+    // The longest an idle subscriber thread parks before it checks the ring again
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    // How often the time given to events is read from the clock
+    private static final long TICK_NANOS = 1_000_000;
+    // Marks a slot that is being filled in, so a subscriber reading it sees it change
+    private static final long WRITING = Long.MIN_VALUE;
+    private static final VarHandle PUBLISHED;
+
+    static {
+        try {
+            PUBLISHED = MethodHandles.lookup().findVarHandle(Slot.class, "published",
+                    long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    // The next sequence number to claim
+    private final AtomicLong claimed = new AtomicLong();
+    private final SlowSubscriberPolicy defaultPolicy;
+    // The directory the events of SPILL subscribers are written to
+    private final Path spillDirectory;
+    // Gives the time of an event in milliseconds since the epoch, read every tick
+    private final TickingClock clock;
+    private final Set<Dispatcher> dispatchers = ConcurrentHashMap.newKeySet();
+    // The BLOCK subscribers, which publishing waits for, replaced whole when one comes or goes
+    private volatile Dispatcher[] blocking = new Dispatcher[0];
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private volatile boolean closed;
+
+    // Constructor to create a publisher with a ring of about the given number of events that
+    // drops events for slow subscribers
+    public AccountEventPublisher(int capacity) {
+        this(capacity, SlowSubscriberPolicy.DROP);
+    }
+
+    // Constructor to create a publisher with a ring of about the given number of events and a
+    // policy for the subscribers that do not choose one, spilling to the temporary directory
+    public AccountEventPublisher(int capacity, SlowSubscriberPolicy policy) {
+        this(capacity, policy, Path.of(System.getProperty("java.io.tmpdir")),
+                System::currentTimeMillis);
+    }
+
+    // Constructor to create a publisher with a ring of about the given number of events, a
+    // policy for the subscribers that do not choose one, the directory to spill events to and
+    // the clock to time events by
+    public AccountEventPublisher(int capacity, SlowSubscriberPolicy policy, Path spillDirectory,
+                                 LongSupplier clock) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+        }
+        this.defaultPolicy = Objects.requireNonNull(policy);
+        this.spillDirectory = spillDirectory;
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].published = i - size;
+        }
+        mask = size - 1;
+        this.clock = TickingClock.start(clock);
+    }
+
+    /**
+     * Publishes a change to every subscriber. Nothing is allocated, and it only waits if a
+     * BLOCK subscriber is a whole ring behind. Nothing is published once the publisher is
+     * closed.
+     *
+     * @param type          The kind of change
+     * @param accountHolder The name of the account holder
+     * @param counterparty  The name of the account holder receiving a transfer, or null
+     * @param amount        The amount in cents
+     */
+    public void publish(AccountEvent.Type type, String accountHolder, String counterparty,
+                        long amount) {
+        if (closed) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - slots.length;
+        if (blocking.length > 0) {
+            awaitBlockingSubscribers(wrapPoint);
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        // Wait for the publisher one lap behind to finish filling in the slot
+        for (int spins = 0; (long) PUBLISHED.getAcquire(slot) != wrapPoint; spins++) {
+            backOff(spins);
+        }
+        // Mark the slot before changing it, so a subscriber still reading the old event sees
+        // that it was overwritten
+        PUBLISHED.setOpaque(slot, WRITING);
+        VarHandle.storeStoreFence();
+        slot.timestamp = clock.now;
+        slot.type = type;
+        slot.accountHolder = accountHolder;
+        slot.counterparty = counterparty;
+        slot.amount = amount;
+        PUBLISHED.setRelease(slot, sequence);
+    }
+
+    /**
+     * Subscribes to the events published from now on, with the publisher's default policy for
+     * slow subscribers.
+     *
+     * @param subscriber The subscriber
+     * @throws NullPointerException if the subscriber is null
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super AccountEvent> subscriber) {
+        subscribe(subscriber, defaultPolicy);
+    }
+
+    /**
+     * Subscribes to the events published from now on. The subscriber is called on a thread of
+     * its own, and is told it is complete once the publisher is closed and it has been given
+     * every event published before.
+     *
+     * @param subscriber The subscriber
+     * @param policy     What happens to the events the subscriber falls behind on
+     * @throws NullPointerException if the subscriber or policy is null
+     */
+    public void subscribe(Flow.Subscriber<? super AccountEvent> subscriber,
+                          SlowSubscriberPolicy policy) {
+        Objects.requireNonNull(subscriber);
+        Dispatcher dispatcher = new Dispatcher(subscriber, Objects.requireNonNull(policy));
+        dispatcher.next = claimed.get();
+        if (policy == SlowSubscriberPolicy.BLOCK) {
+            dispatcher.released = dispatcher.next;
+            addBlocking(dispatcher);
+            // Anything claimed before publishers could see this subscriber is skipped, as it
+            // may already be overwritten
+            dispatcher.next = claimed.get();
+        }
+        dispatcher.released = dispatcher.next;
+        dispatchers.add(dispatcher);
+        dispatcher.thread.start();
+    }
+
+    /**
+     * Gets the number of events published.
+     *
+     * @return The number of events
+     */
+    public long getPublishedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Gets the number of events dropped for subscribers that fell a whole ring behind, counted
+     * once for each subscriber that missed them.
+     *
+     * @return The number of events dropped
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of events written to disk for SPILL subscribers that fell behind.
+     *
+     * @return The number of events spilled
+     */
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    /**
+     * Gets the number of subscribers that have not cancelled or completed.
+     *
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount() {
+        return dispatchers.size();
+    }
+
+    /**
+     * Gets the number of events the ring holds.
+     *
+     * @return The capacity
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Stops publishing and stops reading the clock. Each subscriber is still given the events
+     * published before, as its demand allows, and is then told it is complete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        clock.stopped = true;
+        for (Dispatcher dispatcher : dispatchers) {
+            LockSupport.unpark(dispatcher.thread);
+        }
+    }
+
+    // Waits until every BLOCK subscriber has taken the event a lap behind a sequence number
+    private void awaitBlockingSubscribers(long wrapPoint) {
+        for (int spins = 0; ; spins++) {
+            boolean free = true;
+            for (Dispatcher dispatcher : blocking) {
+                if (dispatcher.released <= wrapPoint) {
+                    free = false;
+                    break;
+                }
+            }
+            if (free) {
+                return;
+            }
+            backOff(spins);
+        }
+    }
+
+    // Spins at first and then parks briefly while waiting for another thread
+    private static void backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    private synchronized void addBlocking(Dispatcher dispatcher) {
+        Dispatcher[] current = blocking;
+        Dispatcher[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = dispatcher;
+        blocking = updated;
+    }
+
+    private synchronized void removeBlocking(Dispatcher dispatcher) {
+        blocking = Arrays.stream(blocking).filter(d -> d != dispatcher)
+                .toArray(Dispatcher[]::new);
+    }
+
+    // A reusable slot of the ring
+    private static final class Slot {
+        long timestamp;
+        AccountEvent.Type type;
+        String accountHolder;
+        String counterparty;
+        long amount;
+        // The sequence number of the event held, written last to publish it, or WRITING
+        private volatile long published;
+    }
+
+    // Follows the ring for one subscriber on its own thread
+    private final class Dispatcher implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super AccountEvent> subscriber;
+        private final SlowSubscriberPolicy policy;
+        private final Thread thread;
+        private final AtomicLong demand = new AtomicLong();
+        // Holds the events moved out of the ring, or null unless the policy is SPILL
+        private final SpillFile spill;
+        private volatile boolean cancelled;
+        // Set by a request for a number of events that is not positive
+        private volatile IllegalArgumentException invalidRequest;
+        // Every event below this has been taken from the ring, so publishers can reuse its slot
+        private volatile long released;
+        // The next sequence number to read from the ring. Only used by the thread.
+        private long next;
+
+        // Constructor to create the dispatcher of a new subscription
+        private Dispatcher(Flow.Subscriber<? super AccountEvent> subscriber,
+                           SlowSubscriberPolicy policy) {
+            this.subscriber = subscriber;
+            this.policy = policy;
+            this.spill = policy == SlowSubscriberPolicy.SPILL ? new SpillFile(spillDirectory)
+                    : null;
+            this.thread = Thread.ofPlatform()
+                    .name("account-events-" + subscriptionCount.incrementAndGet()).daemon()
+                    .unstarted(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(
+                        "The number of events requested must be positive");
+            } else {
+                // Demand that reaches Long.MAX_VALUE is unbounded
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            try {
+                subscriber.onSubscribe(this);
+                int idle = 0;
+                long parkNanos = 1_000;
+                while (!cancelled) {
+                    if (invalidRequest != null) {
+                        cancelled = true;
+                        end();
+                        subscriber.onError(invalidRequest);
+                        return;
+                    }
+                    int moved = deliver() + spillBacklog();
+                    if (moved > 0) {
+                        idle = 0;
+                        parkNanos = 1_000;
+                    } else if (closed && next >= claimed.get() && isSpillEmpty()) {
+                        cancelled = true;
+                        end();
+                        subscriber.onComplete();
+                        return;
+                    } else if (++idle < SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        // Publishers never wake a subscriber thread, so it checks again after
+                        // a pause that grows while the ring stays quiet
+                        LockSupport.parkNanos(this, parkNanos);
+                        parkNanos = Math.min(MAX_PARK_NANOS, parkNanos * 2);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                // The subscriber threw, or the spill file could not be used
+                if (!cancelled) {
+                    cancelled = true;
+                    end();
+                    subscriber.onError(e);
+                }
+            } finally {
+                end();
+            }
+        }
+
+        // Gives the subscriber the events it has asked for, first from the spill file and then
+        // from the ring, and returns how many were given
+        private int deliver() {
+            long wanted = demand.get();
+            int delivered = 0;
+            while (delivered < wanted && !cancelled) {
+                AccountEvent event;
+                if (!isSpillEmpty()) {
+                    event = readSpill();
+                } else {
+                    event = read(next);
+                    if (event == null) {
+                        if (!skipOverwritten()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    next++;
+                    if ((next & RELEASE_MASK) == 0) {
+                        // Hand back slots during a long run so blocked publishers can carry on
+                        released = next;
+                    }
+                }
+                delivered++;
+                subscriber.onNext(event);
+                // A subscriber slow to take each event still has its backlog spilled
+                spillBacklog();
+            }
+            released = next;
+            if (delivered > 0 && wanted != Long.MAX_VALUE) {
+                demand.addAndGet(-delivered);
+            }
+            return delivered;
+        }
+
+        // Moves events from the ring to the spill file once the subscriber is half a ring
+        // behind, until it is a quarter of a ring behind, and returns how many were moved
+        private int spillBacklog() {
+            if (spill == null || claimed.get() - next <= slots.length / 2) {
+                return 0;
+            }
+            int moved = 0;
+            while (claimed.get() - next > slots.length / 4) {
+                AccountEvent event = read(next);
+                if (event == null) {
+                    if (!skipOverwritten()) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    spill.append(event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                next++;
+                moved++;
+            }
+            released = next;
+            spilled.add(moved);
+            return moved;
+        }
+
+        // Reads the event with a sequence number from the ring, or returns null if it has not
+        // been published yet or was overwritten while it was read
+        private AccountEvent read(long sequence) {
+            Slot slot = slots[(int) (sequence & mask)];
+            if ((long) PUBLISHED.getAcquire(slot) != sequence) {
+                return null;
+            }
+            long timestamp = slot.timestamp;
+            AccountEvent.Type type = slot.type;
+            String accountHolder = slot.accountHolder;
+            String counterparty = slot.counterparty;
+            long amount = slot.amount;
+            VarHandle.loadLoadFence();
+            if ((long) PUBLISHED.getAcquire(slot) != sequence) {
+                return null;
+            }
+            return new AccountEvent(sequence, timestamp, type, accountHolder, counterparty,
+                    amount);
+        }
+
+        // Skips ahead to the oldest event still in the ring if the next event has been
+        // overwritten, counting the events missed, and returns false if it has not. Nothing is
+        // ever overwritten before a BLOCK subscriber has read it.
+        private boolean skipOverwritten() {
+            long oldest = claimed.get() - slots.length;
+            if (policy == SlowSubscriberPolicy.BLOCK || next >= oldest) {
+                return false;
+            }
+            dropped.add(oldest - next);
+            next = oldest;
+            return true;
+        }
+
+        private boolean isSpillEmpty() {
+            return spill == null || spill.isEmpty();
+        }
+
+        private AccountEvent readSpill() {
+            try {
+                return spill.next();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Stops publishers waiting for the subscriber and deletes its spill file, before the
+        // subscriber is told it has ended. Does nothing the second time.
+        private void end() {
+            dispatchers.remove(this);
+            if (policy == SlowSubscriberPolicy.BLOCK) {
+                removeBlocking(this);
+            }
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException ignored) {
+                    // Only a temporary file is left behind
+                }
+            }
+        }
+    }
+
+    // A clock read every tick on a thread of its own until it is stopped. The thread is only
+    // given the clock, once it is constructed, and not the publisher.
+    private static final class TickingClock {
+        private final LongSupplier clock;
+        // The time last read from the clock, which events are given
+        private volatile long now;
+        private volatile boolean stopped;
+
+        // Constructor to create a ticking clock that has read the time once
+        private TickingClock(LongSupplier clock) {
+            this.clock = clock;
+            this.now = clock.getAsLong();
+        }
+
+        // Creates a ticking clock and starts its thread
+        static TickingClock start(LongSupplier clock) {
+            TickingClock tickingClock = new TickingClock(clock);
+            Thread.ofPlatform().name("account-events-clock").daemon()
+                    .start(tickingClock::tick);
+            return tickingClock;
+        }
+
+        // Reads the clock every tick until stopped
+        private void tick() {
+            while (!stopped) {
+                LockSupport.parkNanos(this, TICK_NANOS);
+                now = clock.getAsLong();
+            }
+        }
+    }
+}
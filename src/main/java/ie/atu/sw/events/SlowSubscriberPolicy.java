@@ -0,0 +1,18 @@
+package ie.atu.sw.events;
+
+/**
+ * What happens to the events a subscriber has not asked for yet once they no longer fit in the
+ * publisher's ring.
+ */
+public enum SlowSubscriberPolicy {
+    // The oldest events are overwritten and skipped, so the subscriber sees a gap in the
+    // sequence numbers. Publishing is never held up.
+    DROP,
+    // The events are moved from the ring to a file and delivered from it in order once the
+    // subscriber asks for them. Publishing is never held up; events are only dropped if the
+    // disk cannot keep up.
+    SPILL,
+    // Publishing waits until the subscriber has taken enough events to free a slot, so no event
+    // is lost but every operation is held up by the slowest blocking subscriber.
+    BLOCK
+}
@@ -0,0 +1,123 @@
+package ie.atu.sw.events;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A queue of events kept in a temporary file for a subscriber that fell behind. Events are
+ * appended at the back and read from the front in the same order. The file is created when the
+ * first event is appended and deleted as soon as every event in it has been read, so a
+ * subscriber that catches up leaves nothing on disk.
+ *
+ * Only used by the thread delivering to one subscriber, so it is not thread-safe.
+ */
+final class SpillFile implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private Path file;
+    private DataOutputStream output;
+    private DataInputStream input;
+    private long written;
+    private long read;
+    // True if events were appended since the output was last flushed
+    private boolean dirty;
+
+    // Constructor to create an empty queue kept in a file in the given directory
+    SpillFile(Path directory) {
+        this.directory = directory;
+    }
+
+    // Checks if every event appended has been read
+    boolean isEmpty() {
+        return read == written;
+    }
+
+    // Gets the number of events waiting to be read
+    long size() {
+        return written - read;
+    }
+
+    // Appends an event at the back of the queue
+    void append(AccountEvent event) throws IOException {
+        if (file == null) {
+            file = Files.createTempFile(directory, "account-events", ".spill");
+            output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file), BUFFER_SIZE));
+            input = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(file), BUFFER_SIZE));
+        }
+        output.writeLong(event.sequence());
+        output.writeLong(event.timestamp());
+        output.writeByte(event.type().code());
+        output.writeUTF(event.accountHolder());
+        output.writeBoolean(event.counterparty() != null);
+        if (event.counterparty() != null) {
+            output.writeUTF(event.counterparty());
+        }
+        output.writeLong(event.amount());
+        written++;
+        dirty = true;
+    }
+
+    // Reads the event at the front of the queue, which must not be empty
+    AccountEvent next() throws IOException {
+        if (dirty) {
+            // The reader only sees what has reached the file
+            output.flush();
+            dirty = false;
+        }
+        long sequence = input.readLong();
+        long timestamp = input.readLong();
+        AccountEvent.Type type = AccountEvent.Type.fromCode(input.readByte());
+        String accountHolder = input.readUTF();
+        String counterparty = input.readBoolean() ? input.readUTF() : null;
+        long amount = input.readLong();
+        read++;
+        if (read == written) {
+            close();
+        }
+        return new AccountEvent(sequence, timestamp, type, accountHolder, counterparty, amount);
+    }
+
+    /**
+     * Deletes the file and forgets any events still in it.
+     *
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path openFile = file;
+        DataOutputStream openOutput = output;
+        DataInputStream openInput = input;
+        file = null;
+        output = null;
+        input = null;
+        read = 0;
+        written = 0;
+        dirty = false;
+        // Both streams are closed even if deleting the file or closing the other fails
+        try {
+            Files.deleteIfExists(openFile);
+        } finally {
+            try {
+                if (openOutput != null) {
+                    openOutput.close();
+                }
+            } finally {
+                if (openInput != null) {
+                    openInput.close();
+                }
+            }
+        }
+    }
+}
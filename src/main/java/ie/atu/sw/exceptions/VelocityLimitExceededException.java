@@ -0,0 +1,15 @@
+package ie.atu.sw.exceptions;
+
+public class VelocityLimitExceededException extends RuntimeException {
+
+    /**
+     * A VelocityLimitExceededException is constructed with a specified message when a
+     * withdrawal would take more money or more withdrawals out of an account within a window
+     * of time than its velocity limits allow.
+     *
+     * @param message The error message
+     */
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
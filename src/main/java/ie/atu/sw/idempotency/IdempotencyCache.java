@@ -0,0 +1,312 @@
+package ie.atu.sw.idempotency;
+
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of each request carrying a client request id for a while, so a client
+ * that retries a request it did not hear back from gets the original result instead of having
+ * the operation applied twice.
+ *
+ * The ids are spread over segments that each have their own lock, so requests only contend
+ * when their ids land in the same segment. A segment holds no objects per id: each id is
+ * reduced to a 128-bit fingerprint kept in parallel arrays with its expiry time and result,
+ * about 41 bytes an id including the hash index, so millions of ids fit in a few hundred
+ * megabytes. Two different ids only clash if their fingerprints are equal, which is far less
+ * likely than a hardware fault.
+ *
+ * Every id lives for the same time, so the ids of a segment are kept in a ring in the order
+ * they arrived, which is also the order they expire in. Expired ids are dropped from the front
+ * of the ring as the segment is used, and when a segment is full its oldest id is dropped to
+ * make room, so the cache never holds more than its capacity. A repeat that arrives after its
+ * id was dropped is applied again, so the capacity should cover all the requests that can
+ * arrive within the time clients keep retrying.
+ *
+ * A repeat that arrives while the first request with its id is still running waits for it and
+ * gets its result. If the first request throws, its id is forgotten and a waiting repeat runs
+ * the operation itself. The result is remembered whatever the arguments of the repeat were.
+ */
+public final class IdempotencyCache {
+    // Marks an id whose first request is still running
+    private static final byte PENDING = -1;
+    // Marks a ring slot whose id was forgotten, because its request threw or it was dropped
+    private static final byte REMOVED = -2;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 28;
+    private static final int MAX_SEGMENTS = 256;
+    // The seeds and multiplier of the two hashes that make up the fingerprint of an id
+    private static final long HIGH_SEED = 0x9E3779B97F4A7C15L;
+    private static final long LOW_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME = 0x100000001B3L;
+    // The bits of the low hash kept in the index, which also pick an id's home position
+    private static final long TAG_MASK = 0xFFFFFFFF00000000L;
+
+    private final Segment[] segments;
+    private final long ttlMillis;
+    // Gives the time in milliseconds that ids expire against
+    private final LongSupplier clock;
+    private final LongAdder duplicates = new LongAdder();
+
+    // Constructor to create a cache of about the given number of ids timed by the system clock
+    public IdempotencyCache(int capacity, Duration ttl) {
+        this(capacity, ttl, System::currentTimeMillis);
+    }
+
+    // Constructor to create a cache of about the given number of ids timed by the given clock
+    public IdempotencyCache(int capacity, Duration ttl, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("The time to live must be positive");
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        // A power of two at least four times the number of processors
+        int segmentCount = Math.min(MAX_SEGMENTS,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1));
+        long perSegment = Math.min(MAX_SEGMENT_CAPACITY, Math.max(MIN_SEGMENT_CAPACITY,
+                (capacity + segmentCount - 1L) / segmentCount));
+        // Rounded up to a power of two
+        int segmentCapacity = Integer.highestOneBit((int) perSegment * 2 - 1);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Runs an operation unless a request with the same id has run it, in which case the
+     * result of that request is returned without running it again.
+     *
+     * @param requestId The id the client gave the request
+     * @param operation The operation to run the first time the id is seen
+     * @return The result of the operation, now or from the first request with the id
+     */
+    public TransactionStatus execute(String requestId, Supplier<TransactionStatus> operation) {
+        // Two hashes with different seeds, computed in one pass so they run side by side
+        long high = HIGH_SEED ^ requestId.length();
+        long low = LOW_SEED ^ requestId.length();
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            high = Long.rotateLeft((high ^ c) * PRIME, 23) + HIGH_SEED;
+            low = Long.rotateLeft((low ^ c) * PRIME, 23) + LOW_SEED;
+        }
+        high = mix(high);
+        low = mix(low);
+        Segment segment = segments[(int) (high >>> 32) & (segments.length - 1)];
+        int slot = segment.claim(high, low, clock.getAsLong(), ttlMillis);
+        if (slot < 0) {
+            duplicates.increment();
+            return TransactionStatus.fromCode((byte) ~slot);
+        }
+        TransactionStatus status;
+        try {
+            status = operation.get();
+        } catch (RuntimeException | Error e) {
+            segment.complete(slot, high, low, REMOVED);
+            throw e;
+        }
+        segment.complete(slot, high, low, status.code());
+        return status;
+    }
+
+    /**
+     * Gets the number of ids held, including expired ids not yet dropped.
+     *
+     * @return The number of ids
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the most ids the cache holds.
+     *
+     * @return The capacity
+     */
+    public long capacity() {
+        return (long) segments.length * segments[0].capacity;
+    }
+
+    /**
+     * Gets the number of repeated requests answered from the cache.
+     *
+     * @return The number of repeats
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    // Mixes a hash so every bit of the result depends on every bit of the input
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    // The ids whose fingerprints land in one part of the cache, in a ring in arrival order
+    // with an open-addressing index over it. It is its own lock to save an object per segment,
+    // and is never serialized.
+    @SuppressWarnings("serial")
+    private static final class Segment extends ReentrantLock {
+        private final Condition completed = newCondition();
+        private final int capacity;
+        private final long[] highs;
+        private final long[] lows;
+        private final long[] expiries;
+        // The result code of each slot, PENDING while it runs or REMOVED once forgotten
+        private final byte[] statuses;
+        // Slot numbers plus one by fingerprint, each with the top half of its id's low hash so
+        // probing and shifting rarely read the ring, and 0 marking a free position
+        private final long[] index;
+        private int head; // Slot of the oldest id
+        private int size;
+
+        // Constructor to create an empty segment holding a power of two number of ids
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            highs = new long[capacity];
+            lows = new long[capacity];
+            expiries = new long[capacity];
+            statuses = new byte[capacity];
+            index = new long[capacity * 2];
+        }
+
+        // Finds the slot of an id, adding it as pending if it is new. Returns the slot, or the
+        // complement of the result code if the id has a result
+        private int claim(long high, long low, long now, long ttlMillis) {
+            lock();
+            try {
+                while (true) {
+                    expire(now);
+                    int slot = find(high, low);
+                    if (slot < 0) {
+                        return add(high, low, now + ttlMillis);
+                    }
+                    if (statuses[slot] != PENDING) {
+                        return ~statuses[slot];
+                    }
+                    completed.awaitUninterruptibly();
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        // Records the result of a slot's request if its id is still held and wakes any
+        // repeats waiting for it, forgetting the id if its request threw
+        private void complete(int slot, long high, long low, byte status) {
+            lock();
+            try {
+                if (statuses[slot] == PENDING && highs[slot] == high && lows[slot] == low) {
+                    statuses[slot] = status;
+                    if (status == REMOVED) {
+                        unindex(slot);
+                    }
+                }
+                completed.signalAll();
+            } finally {
+                unlock();
+            }
+        }
+
+        // Drops the ids at the front of the ring that have expired
+        private void expire(long now) {
+            while (size > 0 && expiries[head] <= now) {
+                removeOldest();
+            }
+        }
+
+        // Adds a pending id at the back of the ring, dropping the oldest if the ring is full
+        private int add(long high, long low, long expiry) {
+            if (size == capacity) {
+                removeOldest();
+            }
+            int slot = (head + size) & (capacity - 1);
+            highs[slot] = high;
+            lows[slot] = low;
+            expiries[slot] = expiry;
+            statuses[slot] = PENDING;
+            size++;
+            int position = home(low);
+            while (index[position] != 0) {
+                position = (position + 1) & (index.length - 1);
+            }
+            index[position] = (low & TAG_MASK) | (slot + 1);
+            return slot;
+        }
+
+        // Drops the oldest id, marking it removed so a request still running for it does not
+        // record its result
+        private void removeOldest() {
+            if (statuses[head] != REMOVED) {
+                unindex(head);
+                statuses[head] = REMOVED;
+            }
+            head = (head + 1) & (capacity - 1);
+            size--;
+        }
+
+        // Finds the slot of an id, or returns -1 if it is not held
+        private int find(long high, long low) {
+            for (int position = home(low); index[position] != 0;
+                 position = (position + 1) & (index.length - 1)) {
+                long entry = index[position];
+                int slot = (int) entry - 1;
+                if ((entry & TAG_MASK) == (low & TAG_MASK) && lows[slot] == low
+                        && highs[slot] == high) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // Removes a slot from the index, shifting back the entries after it so every entry
+        // stays reachable from its home position
+        private void unindex(int slot) {
+            int mask = index.length - 1;
+            int hole = home(lows[slot]);
+            while ((int) index[hole] != slot + 1) {
+                hole = (hole + 1) & mask;
+            }
+            int position = hole;
+            while (true) {
+                position = (position + 1) & mask;
+                if (index[position] == 0) {
+                    index[hole] = 0;
+                    return;
+                }
+                int home = home(index[position]);
+                // The entry can fill the hole if its home is not between the hole and it
+                if (((position - home) & mask) >= ((position - hole) & mask)) {
+                    index[hole] = index[position];
+                    hole = position;
+                }
+            }
+        }
+
+        // Gets the position in the index an id is looked for first, from its low hash or its
+        // index entry
+        private int home(long lowOrEntry) {
+            return (int) (lowOrEntry >>> 32) & (index.length - 1);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ie.atu.sw.index;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A secondary index over the balance or the loan of every account, so that the accounts with a
+ * value in a range are found without scanning them all.
+ *
+ * The values are split into buckets, as in a histogram: each power of two is split into 1024
+ * buckets of equal width, so a bucket spans at most a tenth of a percent of the values in it,
+ * and values below 1024 have a bucket each. Each bucket holds the set of accounts whose value
+ * is in it. A change only touches the buckets when it moves an account into another bucket, so
+ * most changes, which are small next to the value they change, cost one hash map lookup.
+ *
+ * An update does not trust the values it is told about, which can arrive out of order from
+ * different threads. It reads the account's current value while holding the account's entry in
+ * a hash map and moves the account to that value's bucket, so the last update for an account
+ * always leaves it in the right bucket.
+ *
+ * A range query visits the buckets that overlap the range in order, reads the current value of
+ * each account in them and streams those in the range, sorted within each bucket, so the
+ * results come in ascending order of value. Queries do not lock. Like the other views of a live
+ * bank they are weakly consistent: an account changed while a query runs may be seen at its
+ * old value or its new value, or missed if it was changed into the range a moment ago.
+ */
+public class AccountIndex {
+    // The order of the entries: by value, then by account holder
+    public static final Comparator<IndexEntry> ORDER = Comparator
+            .comparingLong(IndexEntry::value)
+            .thenComparing(IndexEntry::accountHolder);
+
+    // Each power of two is split into 2 to the power of this many buckets
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final long SUB_BUCKET_MASK = (1L << SUB_BUCKET_BITS) - 1;
+    // Bucket 0 holds every negative value, and the buckets after it the values from 0 up
+    private static final int BUCKET_COUNT = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final Field field;
+    // The accounts in each bucket, created when the first account is placed in it
+    private final AtomicReferenceArray<Set<Account>> buckets =
+            new AtomicReferenceArray<>(BUCKET_COUNT);
+    // The bucket each indexed account is in
+    private final Map<Account, Set<Account>> positions = new ConcurrentHashMap<>();
+
+    // Constructor to create an empty index over a value of the accounts
+    public AccountIndex(Field field) {
+        this.field = field;
+    }
+
+    // Getter for the value of the accounts that is indexed
+    public Field field() {
+        return field;
+    }
+
+    /**
+     * Adds every account in a store to the index, or moves it to its current value if it is
+     * already indexed.
+     *
+     * @param accounts The store holding the accounts
+     */
+    public void addAll(AccountStore accounts) {
+        for (Account account : accounts.getAccounts()) {
+            update(account);
+        }
+    }
+
+    /**
+     * Adds an account to the index at its current value, or moves it there if it is already
+     * indexed. Called after each change to the indexed value.
+     *
+     * @param account The account that was opened or changed
+     */
+    public void update(Account account) {
+        positions.compute(account, (key, bucket) -> {
+            Set<Account> current = bucket(bucketOf(field.read(account)));
+            if (current != bucket) {
+                // Added before it is removed, so the account is never missing from the index
+                current.add(account);
+                if (bucket != null) {
+                    bucket.remove(account);
+                }
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Streams the accounts with a value in a range, in ascending order of value.
+     *
+     * @param from The lowest value in cents, inclusive
+     * @param to   The highest value in cents, exclusive
+     * @return The entries of the accounts in the range
+     */
+    public Stream<IndexEntry> range(long from, long to) {
+        if (from >= to) {
+            return Stream.empty();
+        }
+        return entries(from, to - 1);
+    }
+
+    /**
+     * Streams the accounts with a value of at least a given value, in ascending order of value.
+     *
+     * @param from The lowest value in cents, inclusive
+     * @return The entries of the accounts in the range
+     */
+    public Stream<IndexEntry> atLeast(long from) {
+        return entries(from, Long.MAX_VALUE);
+    }
+
+    // Gets the number of accounts in the index
+    public int size() {
+        return positions.size();
+    }
+
+    // Streams the accounts with a value from first to last inclusive, a bucket at a time
+    private Stream<IndexEntry> entries(long first, long last) {
+        return IntStream.rangeClosed(bucketOf(first), bucketOf(last))
+                .mapToObj(index -> entries(index, first, last))
+                .flatMap(List::stream);
+    }
+
+    // Gets the accounts of a bucket with a value from first to last inclusive, sorted
+    private List<IndexEntry> entries(int index, long first, long last) {
+        Set<Account> bucket = buckets.get(index);
+        if (bucket == null || bucket.isEmpty()) {
+            return List.of();
+        }
+        List<IndexEntry> entries = new ArrayList<>();
+        for (Account account : bucket) {
+            long value = field.read(account);
+            if (value >= first && value <= last) {
+                entries.add(new IndexEntry(account.getAccountHolder(), value));
+            }
+        }
+        entries.sort(ORDER);
+        return entries;
+    }
+
+    // Gets a bucket, creating it if it is the first time an account is placed in it
+    private Set<Account> bucket(int index) {
+        Set<Account> bucket = buckets.get(index);
+        if (bucket == null) {
+            buckets.compareAndSet(index, null, ConcurrentHashMap.newKeySet());
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    // Works out the bucket a value falls in. Buckets are in ascending order of value.
+    private static int bucketOf(long value) {
+        if (value < 0) {
+            return 0;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift < 0) {
+            return 1 + (int) value;
+        }
+        return 1 + ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * The value of an account that an index is ordered by.
+     */
+    public enum Field {
+        BALANCE,
+        LOAN;
+
+        // Reads the value from an account
+        public long read(Account account) {
+            return this == BALANCE ? account.getBalance() : account.getLoan();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ie.atu.sw.index;
+
+/**
+ * The indexed value of one account, as found by a range query.
+ *
+ * @param accountHolder The name of the account holder
+ * @param value         The balance or loan in cents
+ */
+public record IndexEntry(String accountHolder, long value) {
+}
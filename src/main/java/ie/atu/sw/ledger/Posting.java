@@ -0,0 +1,47 @@
+package ie.atu.sw.ledger;
+
+/**
+ * A single movement of money on one account, as recorded in the transaction ledger.
+ *
+ * @param sequence      The position of the posting in the ledger, counting from 0
+ * @param timestamp     When the posting was made, in milliseconds since the epoch
+ * @param accountHolder The name of the account holder
+ * @param type          The kind of movement
+ * @param amount        The amount in cents, which is negative for a net batch withdrawal
+ * @param balance       The balance of the account after the posting, in cents
+ * @param loan          The loan of the account after the posting, in cents
+ */
+public record Posting(long sequence, long timestamp, String accountHolder, Type type, long amount,
+                      long balance, long loan) {
+
+    // The kinds of movement that are posted
+    public enum Type {
+        // The account was opened with the amount as its initial deposit
+        OPENING_DEPOSIT,
+        DEPOSIT,
+        WITHDRAWAL,
+        // The amount was sent to another account
+        TRANSFER_OUT,
+        // The amount was received from another account
+        TRANSFER_IN,
+        LOAN_APPROVED,
+        LOAN_REPAID,
+        // The balance changed by the amount as the net result of a batch
+        BATCH_ADJUSTMENT,
+        // Interest accrued by the loan portfolio was added to the loan
+        LOAN_INTEREST;
+
+        // Cached copy of values() so that decoding a type does not allocate
+        private static final Type[] VALUES = values();
+
+        // Gets the code the type is stored as
+        byte code() {
+            return (byte) ordinal();
+        }
+
+        // Gets the type for a stored code
+        static Type fromCode(byte code) {
+            return VALUES[code];
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package ie.atu.sw.ledger;
+
+import ie.atu.sw.account.Account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An append-only record of every movement of money, with a history for each account.
+ *
+ * Postings are held column by column in chunks of primitive arrays rather than as one object
+ * each, so hundreds of millions of them take a fixed amount of memory and no work for the
+ * garbage collector to trace. Each account keeps the sequence numbers of its own postings in
+ * order, so a page of its history is read directly and the balance at a point in time is found
+ * with a binary search on the timestamps, without scanning the rest of the ledger.
+ *
+ * A change is applied and posted while holding the ledger lock, so the postings of an account
+ * are in the order its balance changed and the resulting balance recorded is exact. Queries do
+ * not lock; they see the postings that were complete when they read the account's history.
+ */
+public class TransactionLedger {
+    /**
+     * Returned by a change that was rejected without being applied, so that nothing is posted
+     * for it. It has the same value as TransactionJournal.NOT_APPLIED, so a change that is both
+     * journalled and posted is skipped by both.
+     */
+    public static final long NOT_APPLIED = Long.MIN_VALUE;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Gives the time of a posting in milliseconds since the epoch
+    private final LongSupplier clock;
+    private final Map<String, AccountHistory> histories = new ConcurrentHashMap<>();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    // Account holder names indexed by the id stored in each posting
+    private volatile String[] accountHolders = new String[16];
+    private volatile long size;
+    private long lastTimestamp;
+
+    // Constructor to create an empty ledger timed by the system clock
+    public TransactionLedger() {
+        this(System::currentTimeMillis);
+    }
+
+    // Constructor to create an empty ledger timed by the given clock
+    public TransactionLedger(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Applies a change to an account and posts it. The change is run while holding the ledger
+     * lock and is only posted if it does not throw or return NOT_APPLIED.
+     *
+     * @param type          The kind of movement
+     * @param accountHolder The name of the account holder
+     * @param account       The account the change applies to
+     * @param change        Applies the change and returns the amount to post in cents
+     * @return The amount posted, or NOT_APPLIED if the change was not applied
+     */
+    public long post(Posting.Type type, String accountHolder, Account account,
+                     LongSupplier change) {
+        lock.lock();
+        try {
+            long amount = change.getAsLong();
+            if (amount == NOT_APPLIED) {
+                return amount;
+            }
+            long timestamp = nextTimestamp();
+            append(history(accountHolder), type, amount, account, timestamp);
+            return amount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a transfer and posts it to both accounts with the same timestamp, unless the
+     * change returns NOT_APPLIED.
+     *
+     * @param fromAccountHolder The name of the account holder sending the money
+     * @param from              The account sending the money
+     * @param toAccountHolder   The name of the account holder receiving the money
+     * @param to                The account receiving the money
+     * @param change            Applies the transfer and returns the amount in cents
+     * @return The amount posted, or NOT_APPLIED if the change was not applied
+     */
+    public long postTransfer(String fromAccountHolder, Account from, String toAccountHolder,
+                             Account to, LongSupplier change) {
+        lock.lock();
+        try {
+            long amount = change.getAsLong();
+            if (amount == NOT_APPLIED) {
+                return amount;
+            }
+            long timestamp = nextTimestamp();
+            append(history(fromAccountHolder), Posting.Type.TRANSFER_OUT, amount, from,
+                    timestamp);
+            append(history(toAccountHolder), Posting.Type.TRANSFER_IN, amount, to, timestamp);
+            return amount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens an account and posts its initial deposit.
+     *
+     * @param accountHolder The name of the account holder
+     * @param open          Opens the account and returns it
+     * @return The account opened
+     */
+    public Account postOpening(String accountHolder, Supplier<Account> open) {
+        lock.lock();
+        try {
+            Account account = open.get();
+            long timestamp = nextTimestamp();
+            append(history(accountHolder), Posting.Type.OPENING_DEPOSIT, account.getBalance(),
+                    account, timestamp);
+            return account;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of postings in the ledger.
+     *
+     * @return The number of postings
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets a posting by its sequence number.
+     *
+     * @param sequence The sequence number
+     * @return The posting
+     * @throws IndexOutOfBoundsException if there is no posting with the sequence number
+     */
+    public Posting get(long sequence) {
+        if (sequence < 0 || sequence >= size) {
+            throw new IndexOutOfBoundsException("No posting with sequence number " + sequence);
+        }
+        return read(sequence);
+    }
+
+    /**
+     * Gets the number of postings made to an account.
+     *
+     * @param accountHolder The name of the account holder
+     * @return The number of postings, or 0 if the account has none
+     */
+    public int countPostings(String accountHolder) {
+        AccountHistory history = histories.get(accountHolder);
+        return history == null ? 0 : history.size;
+    }
+
+    /**
+     * Gets a page of an account's postings, most recent first.
+     *
+     * @param accountHolder The name of the account holder
+     * @param offset        The number of more recent postings to skip
+     * @param limit         The most postings to return
+     * @return The postings, most recent first
+     * @throws IllegalArgumentException if the offset or limit is negative
+     */
+    public List<Posting> history(String accountHolder, int offset, int limit) {
+        checkPage(offset, limit);
+        AccountHistory history = histories.get(accountHolder);
+        if (history == null) {
+            return List.of();
+        }
+        int count = history.size;
+        long[] sequences = history.sequences;
+        int end = Math.max(0, count - offset);
+        int start = Math.max(0, end - limit);
+        List<Posting> postings = new ArrayList<>(end - start);
+        for (int i = end - 1; i >= start; i--) {
+            postings.add(read(sequences[i]));
+        }
+        return postings;
+    }
+
+    /**
+     * Gets an account's postings made in a period of time, oldest first.
+     *
+     * @param accountHolder The name of the account holder
+     * @param fromTimestamp The start of the period, inclusive, in milliseconds since the epoch
+     * @param toTimestamp   The end of the period, exclusive, in milliseconds since the epoch
+     * @param limit         The most postings to return
+     * @return The postings, oldest first
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public List<Posting> historyBetween(String accountHolder, long fromTimestamp,
+                                        long toTimestamp, int limit) {
+        checkPage(0, limit);
+        AccountHistory history = histories.get(accountHolder);
+        if (history == null) {
+            return List.of();
+        }
+        int count = history.size;
+        long[] sequences = history.sequences;
+        int start = firstAtOrAfter(sequences, count, fromTimestamp);
+        int end = (int) Math.min(firstAtOrAfter(sequences, count, toTimestamp),
+                (long) start + limit);
+        List<Posting> postings = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            postings.add(read(sequences[i]));
+        }
+        return postings;
+    }
+
+    /**
+     * Gets the balance of an account at a point in time.
+     *
+     * @param accountHolder The name of the account holder
+     * @param timestamp     The point in time, in milliseconds since the epoch
+     * @return The balance after the last posting made at or before the time, or empty if the
+     *         account had no postings by then
+     */
+    public OptionalLong balanceAt(String accountHolder, long timestamp) {
+        AccountHistory history = histories.get(accountHolder);
+        if (history == null) {
+            return OptionalLong.empty();
+        }
+        int count = history.size;
+        long[] sequences = history.sequences;
+        int index = firstAfter(sequences, count, timestamp) - 1;
+        if (index < 0) {
+            return OptionalLong.empty();
+        }
+        long sequence = sequences[index];
+        return OptionalLong.of(chunk(sequence).balances[(int) (sequence & CHUNK_MASK)]);
+    }
+
+    // Finds the first of the sequences with a timestamp at or after the given time
+    private int firstAtOrAfter(long[] sequences, int count, long timestamp) {
+        return timestamp == Long.MIN_VALUE ? 0 : firstAfter(sequences, count, timestamp - 1);
+    }
+
+    // Finds the first of the sequences with a timestamp after the given time
+    private int firstAfter(long[] sequences, int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long sequence = sequences[middle];
+            if (chunk(sequence).timestamps[(int) (sequence & CHUNK_MASK)] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Checks the offset and limit of a page
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("The offset and limit must not be negative");
+        }
+    }
+
+    // Reads a posting from the columns
+    private Posting read(long sequence) {
+        Chunk chunk = chunk(sequence);
+        int i = (int) (sequence & CHUNK_MASK);
+        return new Posting(sequence, chunk.timestamps[i], accountHolders[chunk.accountIds[i]],
+                Posting.Type.fromCode(chunk.types[i]), chunk.amounts[i], chunk.balances[i],
+                chunk.loans[i]);
+    }
+
+    // Gets the chunk holding a posting
+    private Chunk chunk(long sequence) {
+        return chunks[(int) (sequence >>> CHUNK_SHIFT)];
+    }
+
+    // Gets the time for the next posting, never earlier than the last. Called holding the lock.
+    private long nextTimestamp() {
+        lastTimestamp = Math.max(lastTimestamp, clock.getAsLong());
+        return lastTimestamp;
+    }
+
+    // Gets the history of an account, creating it on its first posting. Called holding the lock.
+    private AccountHistory history(String accountHolder) {
+        AccountHistory history = histories.get(accountHolder);
+        if (history == null) {
+            int id = histories.size();
+            String[] names = accountHolders;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, id * 2);
+            }
+            names[id] = accountHolder;
+            accountHolders = names;
+            history = new AccountHistory(id);
+            histories.put(accountHolder, history);
+        }
+        return history;
+    }
+
+    // Writes a posting into the columns and the account's history. Called holding the lock.
+    private void append(AccountHistory history, Posting.Type type, long amount, Account account,
+                        long timestamp) {
+        long sequence = size;
+        int chunkIndex = (int) (sequence >>> CHUNK_SHIFT);
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, chunkIndex + 1);
+            current[chunkIndex] = new Chunk();
+            chunks = current;
+        }
+        Chunk chunk = current[chunkIndex];
+        int i = (int) (sequence & CHUNK_MASK);
+        chunk.accountIds[i] = history.id;
+        chunk.types[i] = type.code();
+        chunk.timestamps[i] = timestamp;
+        chunk.amounts[i] = amount;
+        chunk.balances[i] = account.getBalance();
+        chunk.loans[i] = account.getLoan();
+        history.add(sequence);
+        size = sequence + 1;
+    }
+
+    // The columns of CHUNK_SIZE consecutive postings
+    private static final class Chunk {
+        private final int[] accountIds = new int[CHUNK_SIZE];
+        private final byte[] types = new byte[CHUNK_SIZE];
+        private final long[] timestamps = new long[CHUNK_SIZE];
+        private final long[] amounts = new long[CHUNK_SIZE];
+        private final long[] balances = new long[CHUNK_SIZE];
+        private final long[] loans = new long[CHUNK_SIZE];
+    }
+
+    // The sequence numbers of one account's postings, in order
+    private static final class AccountHistory {
+        private final int id;
+        private long[] sequences = new long[4];
+        // Written after the sequence it counts, so readers that see the size see the sequence
+        private volatile int size;
+
+        // Constructor to create an empty history for the account with the id
+        private AccountHistory(int id) {
+            this.id = id;
+        }
+
+        // Adds the next posting. Called holding the ledger lock.
+        private void add(long sequence) {
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            sequences[size] = sequence;
+            size = size + 1;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ie.atu.sw.loan;
+
+/**
+ * Receives the interest a portfolio accrues on the loans held by an account, so it can be
+ * added to the account's loan.
+ */
+public interface AccrualListener {
+    /**
+     * Called each time interest has been added to a loan held by an account. Called on the
+     * threads the accrual runs on, for many loans at once.
+     *
+     * @param accountHolder The name of the account holder the loan is held by
+     * @param interest      The interest added in cents, always positive
+     */
+    void accrued(String accountHolder, long interest);
+
+    /**
+     * Called once an accrual has run over every loan, on the thread that started it.
+     */
+    default void finished() {
+    }
+}
@@ -0,0 +1,14 @@
+package ie.atu.sw.loan;
+
+/**
+ * One monthly payment of a loan's amortization schedule. All amounts are in cents.
+ *
+ * @param number    The number of the payment, counting from 1
+ * @param payment   The amount paid
+ * @param interest  The part of the payment that pays interest
+ * @param principal The part of the payment that pays off the principal
+ * @param remaining The principal remaining after the payment
+ */
+public record Installment(int number, long payment, long interest, long principal,
+                          long remaining) {
+}
@@ -0,0 +1,478 @@
+package ie.atu.sw.loan;
+
+import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
+import ie.atu.sw.transaction.TransactionStatus;
+import ie.atu.sw.validation.InputValidator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * The bank's book of loans, each with its own annual interest rate, term and amortization
+ * schedule, and the job that accrues interest on all of them. All amounts are in cents and
+ * rates are in basis points a year.
+ *
+ * Loans are held column by column in chunks of primitive arrays rather than as one object each,
+ * so tens of millions of loans take little more memory than their numbers. The level monthly
+ * payment is stored with each loan and the rest of its amortization schedule is worked out from
+ * the principal, rate and term when asked for.
+ *
+ * Interest accrues daily on the outstanding balance, at a 365th of the annual rate, and is
+ * added to the balance. The fractions of a cent left over each day are carried to the next, so
+ * no interest is lost to rounding. A loan left to grow until its balance could not hold another
+ * day's interest stops accruing there. The accrual job runs over the chunks in parallel, and
+ * updates each balance with compare-and-set, so repayments go ahead while it runs.
+ *
+ * A loan can be originated for an account holder, and the portfolio's accrual listener is then
+ * told of each interest amount added to it, so the account's own loan grows with it. An
+ * AccountManager given the portfolio sets itself as the listener.
+ */
+public class LoanPortfolio implements AutoCloseable {
+    // The largest principal a loan can start with
+    public static final long MAX_PRINCIPAL = 100_000_000_000_000L;
+    // The highest annual interest rate, 100%, in basis points
+    public static final int MAX_RATE = 10_000;
+    // The longest term, 50 years, in months
+    public static final int MAX_TERM = 600;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // A day's interest is the balance times the rate divided by this
+    private static final long DAILY_DIVISOR = 10_000L * 365;
+    // A month's interest is the balance times the rate divided by this
+    private static final long MONTHLY_DIVISOR = 10_000L * 12;
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Held while a loan is added
+    private final ReentrantLock originationLock = new ReentrantLock();
+    // Held while interest accrues, so only one accrual runs at a time
+    private final ReentrantLock accrualLock = new ReentrantLock();
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+    private ScheduledExecutorService accrualScheduler;
+    // Told of the interest added to the loans held by accounts, or null
+    private volatile AccrualListener accrualListener;
+
+    /**
+     * Adds a new loan.
+     *
+     * @param principal  The amount lent in cents
+     * @param annualRate The annual interest rate in basis points
+     * @param termMonths The number of monthly payments
+     * @return The id of the loan
+     * @throws IllegalArgumentException if the principal, rate or term is out of range
+     */
+    public int originate(long principal, int annualRate, int termMonths) {
+        return originate(null, principal, annualRate, termMonths);
+    }
+
+    /**
+     * Adds a new loan held by an account. The interest accrued on it is passed to the accrual
+     * listener.
+     *
+     * @param accountHolder The name of the account holder, or null if no account holds the loan
+     * @param principal     The amount lent in cents
+     * @param annualRate    The annual interest rate in basis points
+     * @param termMonths    The number of monthly payments
+     * @return The id of the loan
+     * @throws IllegalArgumentException if the principal, rate or term is out of range
+     */
+    public int originate(String accountHolder, long principal, int annualRate, int termMonths) {
+        checkTerms(principal, annualRate, termMonths);
+        long payment = levelPayment(principal, annualRate, termMonths);
+
+        originationLock.lock();
+        try {
+            int loanId = size;
+            if (loanId == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The portfolio is full");
+            }
+            int chunkIndex = loanId >>> CHUNK_SHIFT;
+            Chunk[] current = chunks;
+            if (chunkIndex == current.length) {
+                current = Arrays.copyOf(current, chunkIndex + 1);
+                current[chunkIndex] = new Chunk();
+                chunks = current;
+            }
+            Chunk chunk = current[chunkIndex];
+            int i = loanId & CHUNK_MASK;
+            chunk.principals[i] = principal;
+            chunk.outstanding[i] = principal;
+            chunk.payments[i] = payment;
+            chunk.rates[i] = annualRate;
+            chunk.terms[i] = (short) termMonths;
+            chunk.accountHolders[i] = accountHolder;
+            // Publishing the size makes the loan written above visible
+            size = loanId + 1;
+            return loanId;
+        } finally {
+            originationLock.unlock();
+        }
+    }
+
+    /**
+     * Checks that the terms of a loan are in range, without adding it.
+     *
+     * @param principal  The amount lent in cents
+     * @param annualRate The annual interest rate in basis points
+     * @param termMonths The number of monthly payments
+     * @throws IllegalArgumentException if the principal, rate or term is out of range
+     */
+    public static void checkTerms(long principal, int annualRate, int termMonths) {
+        InputValidator.checkPositive(principal, "The principal must be a positive number");
+        if (principal > MAX_PRINCIPAL) {
+            throw new IllegalArgumentException("The principal cannot exceed " + MAX_PRINCIPAL);
+        }
+        if (annualRate < 0 || annualRate > MAX_RATE) {
+            throw new IllegalArgumentException("The rate must be between 0 and " + MAX_RATE);
+        }
+        if (termMonths <= 0 || termMonths > MAX_TERM) {
+            throw new IllegalArgumentException("The term must be between 1 and " + MAX_TERM);
+        }
+    }
+
+    /**
+     * Sets the listener told of the interest accrued on the loans held by accounts.
+     *
+     * @param listener The listener, or null to accrue without telling anyone
+     */
+    public void setAccrualListener(AccrualListener listener) {
+        this.accrualListener = listener;
+    }
+
+    /**
+     * Gets the number of loans in the portfolio.
+     *
+     * @return The number of loans
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the account holder a loan is held by.
+     *
+     * @param loanId The id of the loan
+     * @return The name of the account holder, or null if no account holds the loan
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public String getAccountHolder(int loanId) {
+        return chunk(loanId).accountHolders[loanId & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the amount originally lent.
+     *
+     * @param loanId The id of the loan
+     * @return The principal in cents
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public long getPrincipal(int loanId) {
+        return chunk(loanId).principals[loanId & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the balance still owed, including the interest accrued so far.
+     *
+     * @param loanId The id of the loan
+     * @return The outstanding balance in cents
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public long getOutstanding(int loanId) {
+        return (long) LONGS.getVolatile(chunk(loanId).outstanding, loanId & CHUNK_MASK);
+    }
+
+    /**
+     * Gets the total interest accrued on a loan.
+     *
+     * @param loanId The id of the loan
+     * @return The interest in cents
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public long getAccruedInterest(int loanId) {
+        return (long) LONGS.getOpaque(chunk(loanId).accruedInterest, loanId & CHUNK_MASK);
+    }
+
+    /**
+     * Gets the level monthly payment that pays a loan off over its term.
+     *
+     * @param loanId The id of the loan
+     * @return The monthly payment in cents
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public long getMonthlyPayment(int loanId) {
+        return chunk(loanId).payments[loanId & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the annual interest rate of a loan.
+     *
+     * @param loanId The id of the loan
+     * @return The rate in basis points
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public int getAnnualRate(int loanId) {
+        return chunk(loanId).rates[loanId & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the term of a loan.
+     *
+     * @param loanId The id of the loan
+     * @return The number of monthly payments
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public int getTermMonths(int loanId) {
+        return chunk(loanId).terms[loanId & CHUNK_MASK];
+    }
+
+    /**
+     * Repays part of a loan, reporting a rejected repayment as a status rather than throwing.
+     *
+     * @param loanId The id of the loan
+     * @param amount The repayment in cents
+     * @return SUCCESS, INVALID_AMOUNT if the amount is not positive or EXCESS_LOAN_REPAYMENT if
+     *         the amount is more than the outstanding balance
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public TransactionStatus tryRepay(int loanId, long amount) {
+        long[] outstanding = chunk(loanId).outstanding;
+        int i = loanId & CHUNK_MASK;
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long balance = (long) LONGS.getVolatile(outstanding, i);
+            if (!InputValidator.isWithinLoanBalance(amount, balance)) {
+                return TransactionStatus.EXCESS_LOAN_REPAYMENT;
+            }
+            // Decrease the balance, unless interest accrued or another repayment was made
+            // since it was checked
+            if (LONGS.compareAndSet(outstanding, i, balance, balance - amount)) {
+                return TransactionStatus.SUCCESS;
+            }
+        }
+    }
+
+    /**
+     * Repays part of a loan.
+     *
+     * @param loanId The id of the loan
+     * @param amount The repayment in cents
+     * @throws IndexOutOfBoundsException    if there is no loan with the id
+     * @throws IllegalArgumentException     if the amount is not positive
+     * @throws ExcessLoanRepaymentException if the amount is more than the outstanding balance
+     */
+    public void repay(int loanId, long amount) {
+        TransactionStatus status = tryRepay(loanId, amount);
+        if (status == TransactionStatus.INVALID_AMOUNT) {
+            throw new IllegalArgumentException("The Repayment amount must be a positive number");
+        } else if (status == TransactionStatus.EXCESS_LOAN_REPAYMENT) {
+            throw new ExcessLoanRepaymentException("The repayment cannot exceed the loan balance");
+        }
+    }
+
+    /**
+     * Gets the amortization schedule of a loan: the monthly payments that pay off its principal
+     * over its term, with interest charged monthly. The last payment is adjusted to pay off
+     * exactly what remains.
+     *
+     * @param loanId The id of the loan
+     * @return The payments, in order
+     * @throws IndexOutOfBoundsException if there is no loan with the id
+     */
+    public List<Installment> schedule(int loanId) {
+        Chunk chunk = chunk(loanId);
+        int i = loanId & CHUNK_MASK;
+        long remaining = chunk.principals[i];
+        long payment = chunk.payments[i];
+        int rate = chunk.rates[i];
+        int term = chunk.terms[i];
+
+        List<Installment> installments = new ArrayList<>(term);
+        for (int number = 1; number <= term && remaining > 0; number++) {
+            long interest = (remaining * rate + MONTHLY_DIVISOR / 2) / MONTHLY_DIVISOR;
+            long principal = Math.min(payment - interest, remaining);
+            if (number == term) {
+                principal = remaining;
+            }
+            remaining -= principal;
+            installments.add(new Installment(number, interest + principal, interest, principal,
+                    remaining));
+        }
+        return installments;
+    }
+
+    /**
+     * Accrues interest on every loan for a number of days. The loans are split by chunk and
+     * accrued in parallel on the common fork-join pool. Loans added while the accrual runs may
+     * not be included. The accrual listener is told of each interest amount added to a loan
+     * held by an account, and then, even if it threw, that the accrual has finished.
+     *
+     * @param days The number of days to accrue
+     * @return The total interest accrued in cents
+     * @throws IllegalArgumentException if the number of days is not positive
+     */
+    public long accrue(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("The number of days must be positive");
+        }
+        accrualLock.lock();
+        try {
+            AccrualListener listener = accrualListener;
+            int loanCount = size;
+            Chunk[] current = chunks;
+            int chunkCount = (loanCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+            try {
+                return IntStream.range(0, chunkCount).parallel()
+                        .mapToLong(c -> accrueChunk(current[c],
+                                Math.min(CHUNK_SIZE, loanCount - (c << CHUNK_SHIFT)), days,
+                                listener))
+                        .sum();
+            } finally {
+                // Even if the listener failed, the interest already added has to be finished
+                if (listener != null) {
+                    listener.finished();
+                }
+            }
+        } finally {
+            accrualLock.unlock();
+        }
+    }
+
+    /**
+     * Accrues a day's interest on every loan at a fixed rate on a background thread, normally
+     * once a day.
+     *
+     * @param period The time between accruals
+     * @throws IllegalStateException if accruals are already scheduled
+     */
+    public synchronized void scheduleAccrual(Duration period) {
+        if (accrualScheduler != null) {
+            throw new IllegalStateException("Accruals are already scheduled");
+        }
+        ThreadFactory factory = Thread.ofPlatform().name("loan-accrual").daemon().factory();
+        accrualScheduler = Executors.newSingleThreadScheduledExecutor(factory);
+        long nanos = period.toNanos();
+        accrualScheduler.scheduleAtFixedRate(() -> accrue(1), nanos, nanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops scheduled accruals, waiting for one that is running to finish.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = accrualScheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Accrues interest on the first count loans of a chunk, telling the listener of the interest
+    // added to loans held by accounts, and returns the total
+    private static long accrueChunk(Chunk chunk, int count, int days, AccrualListener listener) {
+        long[] outstanding = chunk.outstanding;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int rate = chunk.rates[i];
+            if (rate == 0) {
+                continue;
+            }
+            long carry;
+            long interest;
+            while (true) {
+                long balance = (long) LONGS.getVolatile(outstanding, i);
+                long accrued = balance;
+                carry = chunk.carries[i];
+                for (int day = 0; day < days; day++) {
+                    // Split the balance around the divisor, so the products cannot overflow
+                    long owed = accrued % DAILY_DIVISOR * rate + carry;
+                    long dayInterest = accrued / DAILY_DIVISOR * rate + owed / DAILY_DIVISOR;
+                    if (accrued > Long.MAX_VALUE - dayInterest) {
+                        // The balance cannot hold any more interest, so it stops accruing
+                        break;
+                    }
+                    accrued += dayInterest;
+                    carry = owed % DAILY_DIVISOR;
+                }
+                interest = accrued - balance;
+                // Add the interest, unless a repayment was made since the balance was read,
+                // in which case work it out again on the new balance
+                if (interest == 0 || LONGS.compareAndSet(outstanding, i, balance, accrued)) {
+                    break;
+                }
+            }
+            chunk.carries[i] = (int) carry;
+            LONGS.setOpaque(chunk.accruedInterest, i, chunk.accruedInterest[i] + interest);
+            total += interest;
+            String accountHolder = chunk.accountHolders[i];
+            if (listener != null && accountHolder != null && interest > 0) {
+                listener.accrued(accountHolder, interest);
+            }
+        }
+        return total;
+    }
+
+    // Works out the level monthly payment, rounded up to the cent, that pays off a loan over
+    // its term
+    private static long levelPayment(long principal, int annualRate, int termMonths) {
+        if (annualRate == 0) {
+            return (principal + termMonths - 1) / termMonths;
+        }
+        // payment = principal * r * (1 + r)^n / ((1 + r)^n - 1), where r is the monthly rate
+        MathContext context = MathContext.DECIMAL128;
+        BigDecimal monthlyRate = BigDecimal.valueOf(annualRate)
+                .divide(BigDecimal.valueOf(MONTHLY_DIVISOR), context);
+        BigDecimal growth = BigDecimal.ONE.add(monthlyRate).pow(termMonths, context);
+        return BigDecimal.valueOf(principal).multiply(monthlyRate).multiply(growth)
+                .divide(growth.subtract(BigDecimal.ONE), context)
+                .setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    // Gets the chunk holding a loan, checking the loan exists
+    private Chunk chunk(int loanId) {
+        if (loanId < 0 || loanId >= size) {
+            throw new IndexOutOfBoundsException("No loan with id " + loanId);
+        }
+        return chunks[loanId >>> CHUNK_SHIFT];
+    }
+
+    // The columns of CHUNK_SIZE consecutive loans
+    private static final class Chunk {
+        private final long[] principals = new long[CHUNK_SIZE];
+        // Changed by repayments and accruals with compare-and-set
+        private final long[] outstanding = new long[CHUNK_SIZE];
+        // Only written by the accrual job
+        private final long[] accruedInterest = new long[CHUNK_SIZE];
+        private final long[] payments = new long[CHUNK_SIZE];
+        // The fraction of a cent of interest carried to the next day, in DAILY_DIVISOR parts
+        private final int[] carries = new int[CHUNK_SIZE];
+        private final int[] rates = new int[CHUNK_SIZE];
+        private final short[] terms = new short[CHUNK_SIZE];
+        // Null for a loan not held by an account
+        private final String[] accountHolders = new String[CHUNK_SIZE];
+    }
+}
@@ -1,28 +1,193 @@
 package ie.atu.sw.manager;
 
-import ie.atu.sw.account.BankAccount;
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.bulk.AccountRecords;
+import ie.atu.sw.events.AccountEvent;
+import ie.atu.sw.events.AccountEventPublisher;
 import ie.atu.sw.exceptions.AccountAlreadyExists;
 import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
 import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.idempotency.IdempotencyCache;
+import ie.atu.sw.index.AccountIndex;
+import ie.atu.sw.index.IndexEntry;
+import ie.atu.sw.ledger.Posting;
+import ie.atu.sw.ledger.TransactionLedger;
+import ie.atu.sw.loan.AccrualListener;
+import ie.atu.sw.loan.LoanPortfolio;
+import ie.atu.sw.metrics.BankMetrics;
+import ie.atu.sw.metrics.Operation;
+import ie.atu.sw.money.Money;
+import ie.atu.sw.persistence.AccountSnapshot;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import ie.atu.sw.persistence.JournalEntry;
+import ie.atu.sw.persistence.TransactionJournal;
+import ie.atu.sw.reconciliation.ReconciliationReport;
+import ie.atu.sw.reconciliation.Reconciler;
+import ie.atu.sw.statistics.BankStatistics;
+import ie.atu.sw.statistics.StatisticsSnapshot;
 import ie.atu.sw.transaction.AccountTransaction;
+import ie.atu.sw.transaction.BatchOperation;
+import ie.atu.sw.transaction.BatchResult;
+import ie.atu.sw.transaction.TransactionStatus;
 import ie.atu.sw.validation.InputValidator;
+import ie.atu.sw.velocity.VelocityLimiter;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-public class AccountManager {
-    // List to store all accounts in the banking application
-    private List<BankAccount> accounts;
+/**
+ * Manages the accounts of the bank and the total deposits available. All amounts are in cents.
+ *
+ * The manager is safe to use from multiple threads. Account balances and loans are updated
+ * with compare-and-set without locks, so operations on different accounts run in parallel, and
+ * the total deposits and other bank-wide statistics are kept in striped cells that do not become
+ * a point of contention.
+ *
+ * A manager created with open is persistent: every change is recorded in a transaction journal
+ * before the operation returns, and the accounts are rebuilt from the journal when it is opened
+ * again. Snapshots of the accounts can be taken while operations continue, so that opening the
+ * manager only replays the journal written since the latest snapshot.
+ *
+ * A manager created with a transaction ledger also posts every change to it, so the history of
+ * each account can be queried.
+ *
+ * Every public operation can be measured by enabling the manager's metrics, which records its
+ * latency and counts its rejections by reason.
+ *
+ * Deposits and withdrawals can carry a client request id. Once an idempotency cache is set, a
+ * repeat of a request id returns the result of the first request instead of applying it again.
+ *
+ * Once an event publisher is set, every deposit, withdrawal, transfer, loan approval and
+ * repayment is published to its subscribers after it has been applied, including each
+ * operation of a batch that succeeded.
+ *
+ * Balances and loans can each be indexed, so that finding the accounts with a value in a range
+ * reads only those accounts instead of scanning them all. An index is kept up to date by every
+ * operation once it is enabled.
+ *
+ * Once a loan portfolio is set, loans can be originated with a rate and term. Each is approved
+ * as a loan on the account like any other and held in the portfolio, and the interest the
+ * portfolio accrues on it is added to the account's loan, journalled, posted and counted in the
+ * statistics like an approval.
+ */
+public class AccountManager implements AutoCloseable {
+    // Store of all accounts in the banking application, indexed by account holder
+    private AccountStore accounts;
     private AccountTransaction accountTransaction;
     private LoanManager loanManager;
-    private double totalDeposits; // Tracks total deposits in the bank
+    private BankStatistics statistics; // Tracks total deposits and the other bank-wide totals
+    // Loans being approved that are not yet taken off the total deposits. A loan reserves its
+    // amount with compare-and-set, so loans approved at the same time cannot together lend
+    // more than the deposits.
+    private final AtomicLong reservedDeposits = new AtomicLong();
+    // Lock held while a portfolio loan repayment is checked and then made. It is a
+    // ReentrantLock rather than a monitor so a virtual thread waiting for the journal while
+    // holding it does not pin its carrier thread.
+    private final ReentrantLock portfolioRepaymentLock = new ReentrantLock();
+    // Journal that records every change, or null if the accounts are only held in memory
+    private TransactionJournal journal;
+    // Directory holding the journal segments and snapshots, or null if only held in memory
+    private Path directory;
+    // Ledger that every change is posted to, or null if no history is kept
+    private final TransactionLedger ledger;
+
+    // Marks an account that was opened after the snapshot was cut
+    private static final AccountImage NOT_IN_SNAPSHOT = new AccountImage(0, 0);
+    // Lock held while a snapshot is taken, so only one is taken at a time
+    private final Object snapshotLock = new Object();
+    // Values of the accounts changed since the snapshot being taken was cut, or null if no
+    // snapshot is being taken
+    private volatile Map<String, AccountImage> snapshotImages;
+    private ScheduledExecutorService snapshotScheduler;
+    private volatile IOException snapshotFailure;
+    // Latencies and rejections of the operations, only recorded while enabled
+    private final BankMetrics metrics = new BankMetrics();
+    // Results of requests made with a request id, or null if request ids are ignored
+    private volatile IdempotencyCache idempotencyCache;
+    // Publishes every change to its subscribers, or null if no events are published
+    private volatile AccountEventPublisher eventPublisher;
+    // Orders the accounts by balance, or null if balances are not indexed
+    private volatile AccountIndex balanceIndex;
+    // Orders the accounts by loan, or null if loans are not indexed
+    private volatile AccountIndex loanIndex;
+    // Holds the loans originated with a rate and term, or null if there is no portfolio
+    private volatile LoanPortfolio loanPortfolio;
 
     // Constructor to initialize the banking application
     public AccountManager() {
-        accounts = new ArrayList<>();
-        this.accountTransaction = new AccountTransaction();
+        this(new HeapAccountStore());
+    }
+
+    // Constructor to initialize the banking application with the store to hold the accounts in
+    public AccountManager(AccountStore accounts) {
+        this(accounts, null);
+    }
+
+    // Constructor to initialize the banking application with the store to hold the accounts in
+    // and the ledger to post every change to
+    public AccountManager(AccountStore accounts, TransactionLedger ledger) {
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.statistics = new BankStatistics();
+        this.accountTransaction = new AccountTransaction(statistics);
         this.loanManager = new LoanManager();
-        totalDeposits = 0;
+    }
+
+    /**
+     * Opens a persistent account manager kept in a directory. The accounts are loaded from the
+     * latest snapshot in the directory and the journal written since it is replayed, and every
+     * change made through the manager is then appended to the journal.
+     *
+     * @param directory The directory for the journal and snapshots.
+     * @param policy    How journal writes are grouped into syncs to disk.
+     * @return The account manager.
+     * @throws IOException if the snapshot or journal cannot be read or opened
+     */
+    public static AccountManager open(Path directory, GroupCommitPolicy policy)
+            throws IOException {
+        Files.createDirectories(directory);
+        List<Long> snapshots = AccountSnapshot.listSnapshots(directory);
+        AccountManager accountManager;
+        long firstSegment = 0;
+        if (snapshots.isEmpty()) {
+            accountManager = new AccountManager();
+        } else {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            SnapshotLoader loader = new SnapshotLoader();
+            AccountSnapshot.read(AccountSnapshot.snapshotFile(directory, firstSegment), loader);
+            accountManager = loader.accountManager;
+        }
+        accountManager.directory = directory;
+        accountManager.journal = TransactionJournal.open(directory, firstSegment, policy,
+                accountManager::replay);
+        accountManager.statistics.rebuild(accountManager.accounts);
+        // Anything older than the snapshot was left behind by a crash during clean up
+        AccountSnapshot.deleteSnapshotsBefore(directory, firstSegment);
+        accountManager.journal.deleteSegmentsBefore(firstSegment);
+        return accountManager;
     }
 
     // GETTERS AND SETTERS
@@ -30,32 +195,92 @@ public class AccountManager {
     /**
      * Gets the total deposits available in the bank.
      *
-     * @return The total deposits.
+     * @return The total deposits in cents.
      */
-    public double getTotalDeposits() {
-        return this.totalDeposits;
+    public long getTotalDeposits() {
+        return statistics.totalDeposits();
     }
 
     /**
      * Gets the balance of a specific account holder.
      *
      * @param accountHolder The name of the account holder.
-     * @return The balance if the account exists, otherwise null.
+     * @return The balance in cents.
+     * @throws BankAccountDoesNotExist if the account is not found
      */
-    public Double getBalance(String accountHolder) {
-        BankAccount account = findAccount(accountHolder);
-        return account.getBalance();
+    public long getBalance(String accountHolder) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            return account.getBalance();
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.GET_BALANCE, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_BALANCE, start);
+        }
     }
 
     /**
      * Gets the loan amount of a specific account holder.
      *
      * @param accountHolder The name of the account holder.
-     * @return The loan amount if the account exists, otherwise null.
+     * @return The loan amount in cents.
+     * @throws BankAccountDoesNotExist if the account is not found
+     */
+    public long getLoan(String accountHolder) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            return account.getLoan();
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.GET_LOAN, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_LOAN, start);
+        }
+    }
+
+    /**
+     * Gets the balance and loan of a specific account holder together. Neither this nor the
+     * other reads take a lock, but the balance and loan read here held at the same moment.
+     *
+     * @param accountHolder The name of the account holder.
+     * @return The balance and loan in cents.
+     * @throws BankAccountDoesNotExist if the account is not found
      */
-    public Double getLoan(String accountHolder) {
-        BankAccount account = findAccount(accountHolder);
-        return account.getLoan();
+    public AccountState getAccountState(String accountHolder) {
+        long start = metrics.start();
+        try {
+            return findAccount(accountHolder).getState();
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.GET_STATE, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.GET_STATE, start);
+        }
+    }
+
+    /**
+     * Gets the bank-wide statistics. They are kept up to date by every operation, so this does
+     * not visit the accounts. Each update of the totals appears whole, but an operation that
+     * changes a balance makes more than one: the low balance count and the largest balances
+     * follow the balance as it changes, and the total deposits and loans follow once the
+     * operation is done. A snapshot taken in between may see only the first.
+     *
+     * @return The statistics.
+     */
+    public StatisticsSnapshot getStatistics() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * Gets the metrics of the operations. They are only recorded once enabled.
+     *
+     * @return The metrics.
+     */
+    public BankMetrics getMetrics() {
+        return metrics;
     }
 
     // METHODS
@@ -64,94 +289,1157 @@ public class AccountManager {
      * Helper method to find an account by account holder's name.
      *
      * @param accountHolder The name of the account holder.
-     * @return The Account object if found, otherwise null.
+     * @return The Account object if found.
+     * @throws BankAccountDoesNotExist if the account is not found
      */
-    private BankAccount findAccount(String accountHolder) {
-        for (BankAccount account : accounts) {
-            if (account.getAccountHolder().equals(accountHolder)) {
-                return account;
-            }
-        }
-        throw new BankAccountDoesNotExist("Account not found for " + accountHolder);
+    private Account findAccount(String accountHolder) {
+        return accounts.find(accountHolder);
     }
 
     /**
      * Adds a new account with an initial deposit.
      *
      * @param accountHolder  The name of the new account holder.
-     * @param initialDeposit The initial deposit amount.
+     * @param initialDeposit The initial deposit amount in cents.
+     * @throws AccountAlreadyExists if an account already exists for the account holder
      */
-    public void addAccount(String accountHolder, double initialDeposit) {
-        // Check if an account already exists
-        for (BankAccount account : accounts) {
-            if (account.getAccountHolder().equals(accountHolder)) {
+    public void addAccount(String accountHolder, long initialDeposit) {
+        long start = metrics.start();
+        try {
+            // Check if an account already exists
+            if (accounts.contains(accountHolder)) {
                 throw new AccountAlreadyExists("Account already exists for " + accountHolder);
             }
+            InputValidator.checkPositive(initialDeposit, "Initial deposit must be positive.");
+            if (journal == null && ledger == null) {
+                Account account = accounts.add(accountHolder, initialDeposit, 0);
+                statistics.accountOpened(account);
+                indexOpened(account);
+            } else {
+                record(JournalEntry.Type.OPEN_ACCOUNT, accountHolder, null, () -> {
+                    if (accounts.contains(accountHolder)) {
+                        throw new AccountAlreadyExists("Account already exists for "
+                                + accountHolder);
+                    }
+                    excludeFromSnapshot(accountHolder);
+                    Account account = ledger == null
+                            ? accounts.add(accountHolder, initialDeposit, 0)
+                            : ledger.postOpening(accountHolder,
+                                    () -> accounts.add(accountHolder, initialDeposit, 0));
+                    statistics.accountOpened(account);
+                    indexOpened(account);
+                    return initialDeposit;
+                });
+            }
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.ADD_ACCOUNT, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.ADD_ACCOUNT, start);
         }
-        InputValidator.checkPositive(initialDeposit, "Initial deposit must be positive.");
-        accounts.add(new BankAccount(accountHolder, initialDeposit));
-        totalDeposits += initialDeposit;
     }
 
     /**
      * Deposits money into an account.
      *
      * @param accountHolder The name of the account holder.
-     * @param amount        The deposit amount.
+     * @param amount        The deposit amount in cents.
      * @return True if the deposit is successful, otherwise false.
      */
-    public boolean deposit(String accountHolder, double amount) {
-        BankAccount account = findAccount(accountHolder);
-        accountTransaction.deposit(account, amount);
-        totalDeposits += amount;
-        return true;
+    public boolean deposit(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            if (journal == null && ledger == null) {
+                accountTransaction.deposit(account, amount);
+            } else {
+                record(JournalEntry.Type.DEPOSIT, accountHolder, null,
+                        () -> post(Posting.Type.DEPOSIT, accountHolder, account, () -> {
+                            accountTransaction.deposit(account, amount);
+                            return amount;
+                        }));
+            }
+            statistics.record(amount, 0);
+            publish(AccountEvent.Type.DEPOSIT, accountHolder, null, amount);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.DEPOSIT, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.DEPOSIT, start);
+        }
     }
 
     /**
      * Withdraws money from an account.
      *
      * @param accountHolder The name of the account holder.
-     * @param amount        The withdrawal amount.
+     * @param amount        The withdrawal amount in cents.
      * @return True if the withdrawal is successful, otherwise false.
      */
-    public boolean withdraw(String accountHolder, double amount) {
-        BankAccount account = findAccount(accountHolder);
-        accountTransaction.withdraw(account, amount);
-        totalDeposits -= amount;
-        return true;
+    public boolean withdraw(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            if (journal == null && ledger == null) {
+                accountTransaction.withdraw(account, amount);
+            } else {
+                record(JournalEntry.Type.WITHDRAWAL, accountHolder, null,
+                        () -> post(Posting.Type.WITHDRAWAL, accountHolder, account, () -> {
+                            accountTransaction.withdraw(account, amount);
+                            return amount;
+                        }));
+            }
+            statistics.record(-amount, 0);
+            publish(AccountEvent.Type.WITHDRAWAL, accountHolder, null, amount);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.WITHDRAW, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.WITHDRAW, start);
+        }
+    }
+
+    /**
+     * Transfers money from one account holder to another. The total deposits in the bank do not
+     * change, as the money stays in the bank.
+     *
+     * @param fromAccountHolder The name of the account holder sending the money.
+     * @param toAccountHolder   The name of the account holder receiving the money.
+     * @param amount            The transfer amount in cents.
+     * @return True if the transfer is successful, otherwise false.
+     * @throws BankAccountDoesNotExist    if either account is not found
+     * @throws InsufficientFundsException if the sender does not hold the amount
+     */
+    public boolean transfer(String fromAccountHolder, String toAccountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account from = findAccount(fromAccountHolder);
+            Account to = findAccount(toAccountHolder);
+            if (journal == null && ledger == null) {
+                accountTransaction.transfer(from, to, amount);
+            } else {
+                record(JournalEntry.Type.TRANSFER, fromAccountHolder, toAccountHolder, () -> {
+                    preserveForSnapshot(from);
+                    preserveForSnapshot(to);
+                    LongSupplier change = () -> {
+                        accountTransaction.transfer(from, to, amount);
+                        return amount;
+                    };
+                    return ledger == null ? change.getAsLong()
+                            : ledger.postTransfer(fromAccountHolder, from, toAccountHolder, to,
+                                    change);
+                });
+            }
+            publish(AccountEvent.Type.TRANSFER, fromAccountHolder, toAccountHolder, amount);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.TRANSFER, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.TRANSFER, start);
+        }
+    }
+
+    /**
+     * Applies a batch of deposits and withdrawals. The operations are grouped by account so
+     * each account is looked up and updated once, and the total deposits are updated once for
+     * the whole batch. Operations on the same account are applied in the order given.
+     *
+     * An operation that cannot be applied does not stop the batch; its failure reason is
+     * recorded in the result instead. An operation that is null or names no account holder is
+     * recorded as ACCOUNT_NOT_FOUND, and one with no type as INVALID_AMOUNT.
+     *
+     * @param operations The deposits and withdrawals to apply.
+     * @return The status of each operation, in the order given.
+     */
+    public BatchResult applyBatch(List<BatchOperation> operations) {
+        long start = metrics.start();
+        try {
+            if (!(operations instanceof RandomAccess)) {
+                operations = new ArrayList<>(operations);
+            }
+            BatchResult result = new BatchResult(operations.size());
+
+            // Group the positions of the operations by account holder, rejecting operations
+            // that name no account holder or no type
+            Map<String, OperationGroup> groups = new HashMap<>();
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                if (operation == null || operation.accountHolder() == null) {
+                    result.setStatus(i, TransactionStatus.ACCOUNT_NOT_FOUND);
+                } else if (operation.type() == null) {
+                    result.setStatus(i, TransactionStatus.INVALID_AMOUNT);
+                } else {
+                    groups.computeIfAbsent(operation.accountHolder(),
+                            accountHolder -> new OperationGroup()).add(i);
+                }
+            }
+
+            long netChange = 0;
+            long lastSequence = 0;
+            for (Map.Entry<String, OperationGroup> entry : groups.entrySet()) {
+                OperationGroup group = entry.getValue();
+                Account account;
+                try {
+                    account = findAccount(entry.getKey());
+                } catch (BankAccountDoesNotExist e) {
+                    for (int i = 0; i < group.size; i++) {
+                        result.setStatus(group.indices[i], TransactionStatus.ACCOUNT_NOT_FOUND);
+                    }
+                    continue;
+                }
+                if (journal == null && ledger == null) {
+                    netChange += accountTransaction.applyBatch(account, operations, group.indices,
+                            group.size, result);
+                    continue;
+                }
+                // Post the net change of each account rather than each operation
+                List<BatchOperation> batch = operations;
+                String accountHolder = entry.getKey();
+                LongSupplier change = () -> post(Posting.Type.BATCH_ADJUSTMENT, accountHolder,
+                        account, () -> accountTransaction.applyBatch(account, batch, group.indices,
+                                group.size, result));
+                if (journal == null) {
+                    netChange += change.getAsLong();
+                } else {
+                    // Journal the net change of each account and wait for them all together
+                    long[] groupChange = new long[1];
+                    lastSequence = journal.append(JournalEntry.Type.BALANCE_ADJUSTMENT,
+                            accountHolder, null, () -> groupChange[0] = change.getAsLong());
+                    netChange += groupChange[0];
+                }
+            }
+            if (journal != null && lastSequence > 0) {
+                journal.awaitDurable(lastSequence);
+            }
+            statistics.record(netChange, 0);
+            if (eventPublisher != null) {
+                publishBatch(operations, result);
+            }
+            if (metrics.isEnabled() && result.getFailureCount() > 0) {
+                // Each operation the batch rejected counts as a rejection
+                for (int i = 0; i < result.size(); i++) {
+                    metrics.status(Operation.BATCH, result.getStatus(i));
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.BATCH, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.BATCH, start);
+        }
     }
 
     /**
      * Approves a loan for an account holder.
      *
      * @param accountHolder The name of the account holder.
-     * @param loanAmount    The loan amount.
+     * @param loanAmount    The loan amount in cents.
      * @return True if the loan is approved, otherwise false.
      */
-    public boolean approveLoan(String accountHolder, double loanAmount) {
-        BankAccount account = findAccount(accountHolder);
-        if (loanAmount > this.totalDeposits) {
-            throw new InsufficientFundsException("Loan amount: " + loanAmount + " exceeds total" +
-                    " deposits available: " + this.totalDeposits);
+    public boolean approveLoan(String accountHolder, long loanAmount) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            InputValidator.checkPositive(loanAmount, "The loan amount must be a positive number");
+            reserveDeposits(loanAmount);
+            long sequence = 0;
+            try {
+                if (journal == null && ledger == null) {
+                    loanManager.approveLoan(account, loanAmount);
+                } else {
+                    LongSupplier approve = () -> post(Posting.Type.LOAN_APPROVED, accountHolder,
+                            account, () -> {
+                                loanManager.approveLoan(account, loanAmount);
+                                return loanAmount;
+                            });
+                    if (journal == null) {
+                        approve.getAsLong();
+                    } else {
+                        sequence = journal.append(JournalEntry.Type.APPROVE_LOAN, accountHolder,
+                                null, approve);
+                    }
+                }
+                statistics.record(-loanAmount, loanAmount);
+            } finally {
+                reservedDeposits.addAndGet(-loanAmount);
+            }
+            // Wait for the journal only once the loan no longer holds back other approvals
+            if (sequence > 0) {
+                journal.awaitDurable(sequence);
+            }
+            publish(AccountEvent.Type.LOAN_APPROVED, accountHolder, null, loanAmount);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.APPROVE_LOAN, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.APPROVE_LOAN, start);
+        }
+    }
+
+    /**
+     * Approves a loan for an account holder with an interest rate and term, and holds it in the
+     * loan portfolio so that interest accrues on it.
+     *
+     * @param accountHolder The name of the account holder.
+     * @param principal     The loan amount in cents.
+     * @param annualRate    The annual interest rate in basis points.
+     * @param termMonths    The number of monthly payments.
+     * @return The id of the loan in the portfolio.
+     * @throws IllegalStateException    if the manager has no loan portfolio
+     * @throws IllegalArgumentException if the principal, rate or term is out of range
+     */
+    public int originateLoan(String accountHolder, long principal, int annualRate,
+                             int termMonths) {
+        LoanPortfolio portfolio = requireLoanPortfolio();
+        LoanPortfolio.checkTerms(principal, annualRate, termMonths);
+        approveLoan(accountHolder, principal);
+        return portfolio.originate(accountHolder, principal, annualRate, termMonths);
+    }
+
+    /**
+     * Repays a part of a loan held in the loan portfolio, and the same amount of the loan of
+     * the account holding it.
+     *
+     * @param loanId The id of the loan in the portfolio.
+     * @param amount The repayment amount in cents.
+     * @throws IllegalStateException        if the manager has no loan portfolio
+     * @throws IllegalArgumentException     if the loan is not held by an account or the amount
+     *                                      is not positive
+     * @throws ExcessLoanRepaymentException if the amount is more than the loan owes
+     */
+    public void repayPortfolioLoan(int loanId, long amount) {
+        LoanPortfolio portfolio = requireLoanPortfolio();
+        String accountHolder = portfolio.getAccountHolder(loanId);
+        if (accountHolder == null) {
+            throw new IllegalArgumentException("Loan " + loanId + " is not held by an account");
+        }
+        InputValidator.checkPositive(amount, "The Repayment amount must be a positive number");
+        // Accruals only add to what the loan owes, so once it is checked under the lock no
+        // other repayment through the manager can make the portfolio reject the amount after
+        // the account has been repaid
+        portfolioRepaymentLock.lock();
+        try {
+            if (amount > portfolio.getOutstanding(loanId)) {
+                throw new ExcessLoanRepaymentException("The repayment cannot exceed the loan "
+                        + "balance");
+            }
+            repayLoan(accountHolder, amount);
+            portfolio.repay(loanId, amount);
+        } finally {
+            portfolioRepaymentLock.unlock();
         }
-        loanManager.approveLoan(account, loanAmount);
-        totalDeposits -= loanAmount;
-        return true;
     }
 
     /**
      * Repays a part of the loan for an account holder.
      *
      * @param accountHolder The bank account of the account holder.
-     * @param amount        The repayment amount.
+     * @param amount        The repayment amount in cents.
      * @return True if the repayment is successful, otherwise false.
      */
-    public boolean repayLoan(String accountHolder, double amount) {
-        BankAccount account = findAccount(accountHolder);
-        InputValidator.checkPositive(amount, "The Repayment amount must be a positive number");
-        loanManager.repayLoan(account, amount);
-        totalDeposits += amount;
-        return true;
+    public boolean repayLoan(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = findAccount(accountHolder);
+            InputValidator.checkPositive(amount, "The Repayment amount must be a positive number");
+            if (journal == null && ledger == null) {
+                loanManager.repayLoan(account, amount);
+            } else {
+                record(JournalEntry.Type.REPAY_LOAN, accountHolder, null,
+                        () -> post(Posting.Type.LOAN_REPAID, accountHolder, account, () -> {
+                            loanManager.repayLoan(account, amount);
+                            return amount;
+                        }));
+            }
+            statistics.record(amount, -amount);
+            publish(AccountEvent.Type.LOAN_REPAID, accountHolder, null, amount);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.REPAY_LOAN, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.REPAY_LOAN, start);
+        }
+    }
+
+    /**
+     * Deposits money into an account, reporting a rejected deposit as a status rather than
+     * throwing. An in-memory manager with a heap store allocates only the account's new state.
+     *
+     * @param accountHolder The name of the account holder.
+     * @param amount        The deposit amount in cents.
+     * @return SUCCESS, or the reason the deposit was rejected.
+     */
+    public TransactionStatus tryDeposit(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = accounts.get(accountHolder);
+            if (account == null) {
+                return metrics.status(Operation.DEPOSIT, TransactionStatus.ACCOUNT_NOT_FOUND);
+            }
+            TransactionStatus status;
+            if (journal == null && ledger == null) {
+                status = accountTransaction.tryDeposit(account, amount);
+            } else {
+                status = tryRecord(JournalEntry.Type.DEPOSIT, Posting.Type.DEPOSIT, accountHolder,
+                        account, amount, () -> accountTransaction.tryDeposit(account, amount));
+            }
+            if (status == TransactionStatus.SUCCESS) {
+                statistics.record(amount, 0);
+                publish(AccountEvent.Type.DEPOSIT, accountHolder, null, amount);
+            }
+            return metrics.status(Operation.DEPOSIT, status);
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.DEPOSIT, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.DEPOSIT, start);
+        }
+    }
+
+    /**
+     * Withdraws money from an account, reporting a rejected withdrawal as a status rather than
+     * throwing. An in-memory manager with a heap store allocates only the account's new state,
+     * and nothing for a rejected withdrawal.
+     *
+     * @param accountHolder The name of the account holder.
+     * @param amount        The withdrawal amount in cents.
+     * @return SUCCESS, or the reason the withdrawal was rejected.
+     */
+    public TransactionStatus tryWithdraw(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = accounts.get(accountHolder);
+            if (account == null) {
+                return metrics.status(Operation.WITHDRAW, TransactionStatus.ACCOUNT_NOT_FOUND);
+            }
+            TransactionStatus status;
+            if (journal == null && ledger == null) {
+                status = accountTransaction.tryWithdraw(account, amount);
+            } else {
+                status = tryRecord(JournalEntry.Type.WITHDRAWAL, Posting.Type.WITHDRAWAL,
+                        accountHolder, account, amount,
+                        () -> accountTransaction.tryWithdraw(account, amount));
+            }
+            if (status == TransactionStatus.SUCCESS) {
+                statistics.record(-amount, 0);
+                publish(AccountEvent.Type.WITHDRAWAL, accountHolder, null, amount);
+            }
+            return metrics.status(Operation.WITHDRAW, status);
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.WITHDRAW, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.WITHDRAW, start);
+        }
+    }
+
+    /**
+     * Deposits money into an account as tryDeposit does, unless a deposit or withdrawal with
+     * the same request id was already applied, in which case its result is returned and
+     * nothing is deposited. Clients that retry a request they did not hear back from send it
+     * again with the same id, so the money is only deposited once.
+     *
+     * @param requestId     The id the client gave the request, or null if it has none.
+     * @param accountHolder The name of the account holder.
+     * @param amount        The deposit amount in cents.
+     * @return SUCCESS, or the reason the deposit was rejected, now or the first time the
+     *         request was made.
+     */
+    public TransactionStatus tryDeposit(String requestId, String accountHolder, long amount) {
+        IdempotencyCache cache = idempotencyCache;
+        if (cache == null || requestId == null) {
+            return tryDeposit(accountHolder, amount);
+        }
+        return cache.execute(requestId, () -> tryDeposit(accountHolder, amount));
+    }
+
+    /**
+     * Withdraws money from an account as tryWithdraw does, unless a deposit or withdrawal
+     * with the same request id was already applied, in which case its result is returned and
+     * nothing is withdrawn.
+     *
+     * @param requestId     The id the client gave the request, or null if it has none.
+     * @param accountHolder The name of the account holder.
+     * @param amount        The withdrawal amount in cents.
+     * @return SUCCESS, or the reason the withdrawal was rejected, now or the first time the
+     *         request was made.
+     */
+    public TransactionStatus tryWithdraw(String requestId, String accountHolder, long amount) {
+        IdempotencyCache cache = idempotencyCache;
+        if (cache == null || requestId == null) {
+            return tryWithdraw(accountHolder, amount);
+        }
+        return cache.execute(requestId, () -> tryWithdraw(accountHolder, amount));
+    }
+
+    /**
+     * Transfers money from one account holder to another, reporting a rejected transfer as a
+     * status rather than throwing. An in-memory manager with a heap store allocates only the
+     * transfer's moves and the two accounts' new states.
+     *
+     * @param fromAccountHolder The name of the account holder sending the money.
+     * @param toAccountHolder   The name of the account holder receiving the money.
+     * @param amount            The transfer amount in cents.
+     * @return SUCCESS, or the reason the transfer was rejected.
+     */
+    public TransactionStatus tryTransfer(String fromAccountHolder, String toAccountHolder,
+                                         long amount) {
+        long start = metrics.start();
+        try {
+            Account from = accounts.get(fromAccountHolder);
+            Account to = accounts.get(toAccountHolder);
+            if (from == null || to == null) {
+                return metrics.status(Operation.TRANSFER, TransactionStatus.ACCOUNT_NOT_FOUND);
+            }
+            if (journal == null && ledger == null) {
+                TransactionStatus status = accountTransaction.tryTransfer(from, to, amount);
+                if (status == TransactionStatus.SUCCESS) {
+                    publish(AccountEvent.Type.TRANSFER, fromAccountHolder, toAccountHolder,
+                            amount);
+                }
+                return metrics.status(Operation.TRANSFER, status);
+            }
+            TransactionStatus[] status = new TransactionStatus[1];
+            record(JournalEntry.Type.TRANSFER, fromAccountHolder, toAccountHolder, () -> {
+                preserveForSnapshot(from);
+                preserveForSnapshot(to);
+                LongSupplier change = () -> {
+                    status[0] = accountTransaction.tryTransfer(from, to, amount);
+                    return status[0] == TransactionStatus.SUCCESS ? amount
+                            : TransactionJournal.NOT_APPLIED;
+                };
+                return ledger == null ? change.getAsLong()
+                        : ledger.postTransfer(fromAccountHolder, from, toAccountHolder, to, change);
+            });
+            if (status[0] == TransactionStatus.SUCCESS) {
+                publish(AccountEvent.Type.TRANSFER, fromAccountHolder, toAccountHolder, amount);
+            }
+            return metrics.status(Operation.TRANSFER, status[0]);
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.TRANSFER, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.TRANSFER, start);
+        }
+    }
+
+    /**
+     * Repays a part of the loan for an account holder, reporting a rejected repayment as a
+     * status rather than throwing. An in-memory manager with a heap store allocates only the
+     * account's new state.
+     *
+     * @param accountHolder The name of the account holder.
+     * @param amount        The repayment amount in cents.
+     * @return SUCCESS, or the reason the repayment was rejected.
+     */
+    public TransactionStatus tryRepayLoan(String accountHolder, long amount) {
+        long start = metrics.start();
+        try {
+            Account account = accounts.get(accountHolder);
+            if (account == null) {
+                return metrics.status(Operation.REPAY_LOAN, TransactionStatus.ACCOUNT_NOT_FOUND);
+            }
+            TransactionStatus status;
+            if (journal == null && ledger == null) {
+                status = loanManager.tryRepayLoan(account, amount);
+            } else {
+                status = tryRecord(JournalEntry.Type.REPAY_LOAN, Posting.Type.LOAN_REPAID,
+                        accountHolder, account, amount,
+                        () -> loanManager.tryRepayLoan(account, amount));
+            }
+            if (status == TransactionStatus.SUCCESS) {
+                statistics.record(amount, -amount);
+                publish(AccountEvent.Type.LOAN_REPAID, accountHolder, null, amount);
+            }
+            return metrics.status(Operation.REPAY_LOAN, status);
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.REPAY_LOAN, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.REPAY_LOAN, start);
+        }
+    }
+
+    /**
+     * Opens a chunk of accounts with their balances and loans, such as the rows of a bulk
+     * import. The statistics are updated once for the whole chunk, and a persistent manager
+     * journals each account and its loan and then waits for the journal once. A row that cannot
+     * be opened does not stop the rest; its reason is recorded in the result instead.
+     *
+     * @param records The accounts to open.
+     * @return The status of each row, in order: SUCCESS, INVALID_AMOUNT for a negative balance
+     *         or loan, or ACCOUNT_ALREADY_EXISTS.
+     */
+    public BatchResult addAccounts(AccountRecords records) {
+        long start = metrics.start();
+        try {
+            BatchResult result = new BatchResult(records.size());
+            List<Account> opened = new ArrayList<>(records.size());
+            long lastSequence = 0;
+            for (int i = 0; i < records.size(); i++) {
+                String accountHolder = records.getAccountHolder(i);
+                long balance = records.getBalance(i);
+                long loan = records.getLoan(i);
+                if (balance < 0 || loan < 0) {
+                    result.setStatus(i, metrics.status(Operation.ADD_ACCOUNTS,
+                            TransactionStatus.INVALID_AMOUNT));
+                    continue;
+                }
+                try {
+                    if (journal == null && ledger == null) {
+                        opened.add(accounts.add(accountHolder, balance, loan));
+                    } else {
+                        lastSequence = Math.max(lastSequence,
+                                recordOpening(accountHolder, balance, loan, opened));
+                    }
+                } catch (AccountAlreadyExists e) {
+                    result.setStatus(i, metrics.status(Operation.ADD_ACCOUNTS,
+                            TransactionStatus.ACCOUNT_ALREADY_EXISTS));
+                }
+            }
+            if (journal != null && lastSequence > 0) {
+                journal.awaitDurable(lastSequence);
+            }
+            statistics.accountsOpened(opened);
+            for (Account account : opened) {
+                indexOpened(account);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            metrics.rejected(Operation.ADD_ACCOUNTS, e);
+            throw e;
+        } finally {
+            metrics.record(Operation.ADD_ACCOUNTS, start);
+        }
+    }
+
+    /**
+     * Visits every account with its balance and loan read together. Operations carry on
+     * during the visit, so an account opened or changed while it runs may be seen before or
+     * after the change.
+     *
+     * @param visitor Called with the name of each account holder and the account's state.
+     */
+    public void forEachAccount(BiConsumer<String, AccountState> visitor) {
+        for (Account account : accounts.getAccounts()) {
+            visitor.accept(account.getAccountHolder(), account.getState());
+        }
+    }
+
+    /**
+     * Recomputes the total deposits and the other bank-wide statistics from every account, in
+     * parallel, and checks them against the statistics kept by each operation. Operations
+     * carry on while it runs.
+     *
+     * @return The report of the reconciliation.
+     */
+    public ReconciliationReport reconcile() {
+        return new Reconciler(accounts, statistics).reconcile();
+    }
+
+    /**
+     * Sets the cache that remembers the results of deposits and withdrawals made with a
+     * request id. The cache is held in memory only, so a persistent manager that is reopened
+     * starts with no request ids remembered.
+     *
+     * @param cache The cache, or null to apply every request as if it had no id.
+     */
+    public void setIdempotencyCache(IdempotencyCache cache) {
+        this.idempotencyCache = cache;
+    }
+
+    /**
+     * Gets the cache that remembers the results of requests made with a request id.
+     *
+     * @return The cache, or null if request ids are ignored.
+     */
+    public IdempotencyCache getIdempotencyCache() {
+        return idempotencyCache;
+    }
+
+    /**
+     * Sets the velocity limits every withdrawal, including the withdrawal side of a transfer
+     * and the withdrawals in a batch, is checked against. A withdrawal beyond a limit is
+     * rejected with VELOCITY_LIMIT_EXCEEDED and leaves the balance unchanged.
+     *
+     * @param limiter The limiter, or null to stop checking velocity.
+     */
+    public void setVelocityLimiter(VelocityLimiter limiter) {
+        accountTransaction.setVelocityLimiter(limiter);
+    }
+
+    /**
+     * Sets the publisher every change made through the manager is published to. The publisher
+     * is not closed with the manager.
+     *
+     * @param publisher The publisher, or null to stop publishing changes.
+     */
+    public void setEventPublisher(AccountEventPublisher publisher) {
+        this.eventPublisher = publisher;
     }
 
+    /**
+     * Sets the portfolio that loans originated with a rate and term are held in, and that
+     * posts the interest it accrues on them to their accounts. The portfolio is held in memory
+     * only and is not closed with the manager, and its loans should only be repaid through the
+     * manager.
+     *
+     * @param portfolio The portfolio, or null to stop originating loans in a portfolio.
+     */
+    public void setLoanPortfolio(LoanPortfolio portfolio) {
+        LoanPortfolio previous = loanPortfolio;
+        if (previous != null) {
+            previous.setAccrualListener(null);
+        }
+        if (portfolio != null) {
+            portfolio.setAccrualListener(new InterestPoster());
+        }
+        loanPortfolio = portfolio;
+    }
+
+    /**
+     * Starts keeping the largest balances in the statistics up to date.
+     *
+     * @param count How many of the largest balances to keep.
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public void trackTopBalances(int count) {
+        statistics.trackTopBalances(count, accounts);
+    }
+
+    /**
+     * Starts indexing the balance of every account, so that accountsByBalance reads only the
+     * accounts in the range. The accounts are indexed while operations carry on.
+     */
+    public void indexBalances() {
+        if (balanceIndex == null) {
+            AccountIndex index = new AccountIndex(AccountIndex.Field.BALANCE);
+            // Changes made from now on move their accounts in the index, and the accounts not
+            // changed are added by the scan
+            accountTransaction.setBalanceIndex(index);
+            balanceIndex = index;
+            index.addAll(accounts);
+        }
+    }
+
+    /**
+     * Starts indexing the loan of every account, so that accountsByLoan reads only the
+     * accounts in the range. The accounts are indexed while operations carry on.
+     */
+    public void indexLoans() {
+        if (loanIndex == null) {
+            AccountIndex index = new AccountIndex(AccountIndex.Field.LOAN);
+            loanManager.setLoanIndex(index);
+            loanIndex = index;
+            index.addAll(accounts);
+        }
+    }
+
+    /**
+     * Finds the accounts with a balance in a range, in ascending order of balance. If balances
+     * are indexed the accounts are streamed from the index as they are read, otherwise every
+     * account is scanned first.
+     *
+     * @param from The lowest balance in cents, inclusive.
+     * @param to   The highest balance in cents, exclusive.
+     * @return The account holders and balances in the range.
+     */
+    public Stream<IndexEntry> accountsByBalance(long from, long to) {
+        return find(balanceIndex, AccountIndex.Field.BALANCE, from, to);
+    }
+
+    /**
+     * Finds the accounts with a loan in a range, in ascending order of loan. If loans are
+     * indexed the accounts are streamed from the index as they are read, otherwise every
+     * account is scanned first.
+     *
+     * @param from The lowest loan in cents, inclusive.
+     * @param to   The highest loan in cents, exclusive.
+     * @return The account holders and loans in the range.
+     */
+    public Stream<IndexEntry> accountsByLoan(long from, long to) {
+        return find(loanIndex, AccountIndex.Field.LOAN, from, to);
+    }
+
+    /**
+     * Takes a snapshot of every account in a persistent account manager and deletes the
+     * journal and snapshots it replaces. Operations carry on while the snapshot is written.
+     *
+     * The journal is cut over to a new segment, and from then on each operation saves the
+     * values of the accounts it changes before changing them for the first time. The snapshot
+     * holds those saved values, or the current values of accounts that have not changed since
+     * the cut, so it matches the state at the cut exactly.
+     *
+     * @return The number of the journal segment the snapshot was taken at.
+     * @throws IOException           if the snapshot cannot be written
+     * @throws IllegalStateException if the account manager is only held in memory
+     */
+    public long snapshot() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("Only a persistent account manager has snapshots");
+        }
+        synchronized (snapshotLock) {
+            long segment = journal.rotate(() -> snapshotImages = new ConcurrentHashMap<>());
+            Map<String, AccountImage> images = snapshotImages;
+            try (AccountSnapshot.Writer writer = AccountSnapshot.create(directory, segment)) {
+                for (Account account : accounts.getAccounts()) {
+                    String accountHolder = account.getAccountHolder();
+                    AccountImage image = images.get(accountHolder);
+                    if (image == null) {
+                        long balance = account.getBalance();
+                        long loan = account.getLoan();
+                        // If the account still has no saved values it has not changed since
+                        // the cut, so the values just read are the values at the cut
+                        image = images.get(accountHolder);
+                        if (image == null) {
+                            image = new AccountImage(balance, loan);
+                        }
+                    }
+                    if (image != NOT_IN_SNAPSHOT) {
+                        writer.add(accountHolder, image.balance(), image.loan());
+                    }
+                }
+                writer.commit();
+            } finally {
+                snapshotImages = null;
+            }
+            AccountSnapshot.deleteSnapshotsBefore(directory, segment);
+            journal.deleteSegmentsBefore(segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Takes a snapshot at a fixed interval on a background thread. A snapshot that fails is
+     * reported when the account manager is closed.
+     *
+     * @param interval The time between the end of one snapshot and the start of the next.
+     * @throws IllegalStateException if the account manager is only held in memory, or
+     *                               snapshots are already scheduled
+     */
+    public void scheduleSnapshots(Duration interval) {
+        if (journal == null) {
+            throw new IllegalStateException("Only a persistent account manager has snapshots");
+        }
+        synchronized (snapshotLock) {
+            if (snapshotScheduler != null) {
+                throw new IllegalStateException("Snapshots are already scheduled");
+            }
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("snapshot-writer").daemon().factory());
+            snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                    interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops any scheduled snapshots, then syncs and closes the journal of a persistent account
+     * manager. Nothing happens for an account manager that is only held in memory.
+     *
+     * @throws IOException if the journal or a scheduled snapshot could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService scheduler;
+        synchronized (snapshotLock) {
+            scheduler = snapshotScheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (snapshotFailure != null) {
+            throw snapshotFailure;
+        }
+    }
+
+    // Takes a scheduled snapshot, keeping the first failure to report on close
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            if (snapshotFailure == null) {
+                snapshotFailure = e;
+            }
+        }
+    }
+
+    // Gets the loan portfolio, checking the manager has one
+    private LoanPortfolio requireLoanPortfolio() {
+        LoanPortfolio portfolio = loanPortfolio;
+        if (portfolio == null) {
+            throw new IllegalStateException("The manager has no loan portfolio");
+        }
+        return portfolio;
+    }
+
+    // Publishes a change that was applied, if the manager has an event publisher
+    private void publish(AccountEvent.Type type, String accountHolder, String counterparty,
+                         long amount) {
+        AccountEventPublisher publisher = eventPublisher;
+        if (publisher != null) {
+            publisher.publish(type, accountHolder, counterparty, amount);
+        }
+    }
+
+    // Publishes each operation of a batch that succeeded, in the order given
+    private void publishBatch(List<BatchOperation> operations, BatchResult result) {
+        for (int i = 0; i < operations.size(); i++) {
+            if (result.isSuccessful(i)) {
+                BatchOperation operation = operations.get(i);
+                publish(operation.type() == BatchOperation.Type.DEPOSIT
+                                ? AccountEvent.Type.DEPOSIT : AccountEvent.Type.WITHDRAWAL,
+                        operation.accountHolder(), null, operation.amount());
+            }
+        }
+    }
+
+    // Adds a newly opened account to the indexes that are enabled
+    private void indexOpened(Account account) {
+        AccountIndex index = balanceIndex;
+        if (index != null) {
+            index.update(account);
+        }
+        index = loanIndex;
+        if (index != null) {
+            index.update(account);
+        }
+    }
+
+    // Finds the accounts with a value in a range from its index, or by scanning every account
+    // and sorting those in the range if the value is not indexed
+    private Stream<IndexEntry> find(AccountIndex index, AccountIndex.Field field, long from,
+                                    long to) {
+        if (index != null) {
+            return index.range(from, to);
+        }
+        List<IndexEntry> found = new ArrayList<>();
+        for (Account account : accounts.getAccounts()) {
+            long value = field.read(account);
+            if (value >= from && value < to) {
+                found.add(new IndexEntry(account.getAccountHolder(), value));
+            }
+        }
+        found.sort(AccountIndex.ORDER);
+        return found.stream();
+    }
+
+    // Applies a change, journalling it first and waiting for it to be durable if the manager has
+    // a journal
+    private void record(JournalEntry.Type type, String accountHolder, String counterparty,
+                        LongSupplier change) {
+        if (journal == null) {
+            change.getAsLong();
+        } else {
+            journal.commit(type, accountHolder, counterparty, change);
+        }
+    }
+
+    // Reserves deposits for a loan, checking the loan does not exceed the total deposits less
+    // those already reserved by loans being approved
+    private void reserveDeposits(long loanAmount) {
+        while (true) {
+            // Read the reservations first, as a loan takes its amount off the total deposits
+            // before it releases its reservation
+            long reserved = reservedDeposits.get();
+            long availableDeposits = statistics.totalDeposits() - reserved;
+            if (loanAmount > availableDeposits) {
+                throw new InsufficientFundsException("Loan amount: " + Money.format(loanAmount)
+                        + " exceeds total deposits available: "
+                        + Money.format(availableDeposits));
+            }
+            if (reservedDeposits.compareAndSet(reserved, reserved + loanAmount)) {
+                return;
+            }
+        }
+    }
+
+    // Opens an account and then gives it its loan, journalling and posting each change like
+    // addAccount and approveLoan do, and returns the sequence number of the last journal entry
+    // appended, or 0 without a journal. The caller waits for the journal.
+    private long recordOpening(String accountHolder, long balance, long loan,
+                               List<Account> opened) {
+        Account[] account = new Account[1];
+        LongSupplier open = () -> {
+            if (accounts.contains(accountHolder)) {
+                throw new AccountAlreadyExists("Account already exists for " + accountHolder);
+            }
+            excludeFromSnapshot(accountHolder);
+            account[0] = ledger == null ? accounts.add(accountHolder, balance, 0)
+                    : ledger.postOpening(accountHolder,
+                            () -> accounts.add(accountHolder, balance, 0));
+            return balance;
+        };
+        LongSupplier lend = () -> post(Posting.Type.LOAN_APPROVED, accountHolder, account[0],
+                () -> {
+                    account[0].increaseLoan(loan);
+                    return loan;
+                });
+        long sequence = 0;
+        if (journal == null) {
+            open.getAsLong();
+        } else {
+            sequence = journal.append(JournalEntry.Type.OPEN_ACCOUNT, accountHolder, null, open);
+        }
+        if (loan > 0) {
+            if (journal == null) {
+                lend.getAsLong();
+            } else {
+                sequence = journal.append(JournalEntry.Type.APPROVE_LOAN, accountHolder, null,
+                        lend);
+            }
+        }
+        opened.add(account[0]);
+        return sequence;
+    }
+
+    // Applies a change that reports a rejection as a status, journalling and posting it only if
+    // it succeeds
+    private TransactionStatus tryRecord(JournalEntry.Type journalType, Posting.Type postingType,
+                                        String accountHolder, Account account, long amount,
+                                        Supplier<TransactionStatus> change) {
+        TransactionStatus[] status = new TransactionStatus[1];
+        record(journalType, accountHolder, null, () -> post(postingType, accountHolder, account,
+                () -> {
+                    status[0] = change.get();
+                    return status[0] == TransactionStatus.SUCCESS ? amount
+                            : TransactionJournal.NOT_APPLIED;
+                }));
+        return status[0];
+    }
+
+    // Applies a change to an account, preserving it for the snapshot being taken and posting it
+    // to the ledger if the manager has one
+    private long post(Posting.Type type, String accountHolder, Account account,
+                      LongSupplier change) {
+        preserveForSnapshot(account);
+        return ledger == null ? change.getAsLong()
+                : ledger.post(type, accountHolder, account, change);
+    }
+
+    // Saves the values of an account before its first change since a snapshot was cut. Only
+    // called while holding the journal lock.
+    private void preserveForSnapshot(Account account) {
+        Map<String, AccountImage> images = snapshotImages;
+        if (images != null && !images.containsKey(account.getAccountHolder())) {
+            images.put(account.getAccountHolder(),
+                    new AccountImage(account.getBalance(), account.getLoan()));
+        }
+    }
+
+    // Leaves an account opened after a snapshot was cut out of the snapshot. Only called while
+    // holding the journal lock.
+    private void excludeFromSnapshot(String accountHolder) {
+        Map<String, AccountImage> images = snapshotImages;
+        if (images != null) {
+            images.put(accountHolder, NOT_IN_SNAPSHOT);
+        }
+    }
+
+    /**
+     * Applies a change read back from the journal. The journal only holds changes that were
+     * applied successfully, so they are applied again without validation. The statistics are
+     * recounted once the whole journal has been replayed.
+     *
+     * @param entry The journal entry.
+     */
+    private void replay(JournalEntry entry) {
+        long amount = entry.amount();
+        switch (entry.type()) {
+            case OPEN_ACCOUNT -> accounts.add(entry.accountHolder(), amount, 0);
+            case DEPOSIT, BALANCE_ADJUSTMENT ->
+                    findAccount(entry.accountHolder()).increaseBalance(amount);
+            case WITHDRAWAL -> findAccount(entry.accountHolder()).decreaseBalance(amount);
+            case TRANSFER -> {
+                findAccount(entry.accountHolder()).decreaseBalance(amount);
+                findAccount(entry.counterparty()).increaseBalance(amount);
+            }
+            case APPROVE_LOAN -> findAccount(entry.accountHolder()).increaseLoan(amount);
+            case REPAY_LOAN -> findAccount(entry.accountHolder()).decreaseLoan(amount);
+            case LOAN_INTEREST -> findAccount(entry.accountHolder()).increaseLoan(amount);
+        }
+    }
+
+    // Adds the interest the loan portfolio accrues to the loans of the accounts holding them.
+    // Each amount is journalled without waiting, and the accrual waits for the journal once
+    // when it has finished.
+    private final class InterestPoster implements AccrualListener {
+        // The sequence number of the last journal entry appended by the accrual running
+        private final LongAccumulator lastSequence = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public void accrued(String accountHolder, long interest) {
+            Account account = findAccount(accountHolder);
+            if (journal == null && ledger == null) {
+                loanManager.approveLoan(account, interest);
+            } else {
+                LongSupplier accrue = () -> post(Posting.Type.LOAN_INTEREST, accountHolder,
+                        account, () -> {
+                            loanManager.approveLoan(account, interest);
+                            return interest;
+                        });
+                if (journal == null) {
+                    accrue.getAsLong();
+                } else {
+                    lastSequence.accumulate(journal.append(JournalEntry.Type.LOAN_INTEREST,
+                            accountHolder, null, accrue));
+                }
+            }
+            statistics.record(-interest, interest);
+        }
+
+        @Override
+        public void finished() {
+            long sequence = lastSequence.getThenReset();
+            if (journal != null && sequence > 0) {
+                journal.awaitDurable(sequence);
+            }
+        }
+    }
+
+    // The balance and loan of an account at the moment a snapshot was cut
+    private record AccountImage(long balance, long loan) {
+    }
+
+    // Builds an account manager from the accounts in a snapshot
+    private static class SnapshotLoader implements AccountSnapshot.Visitor {
+        private AccountManager accountManager;
+
+        @Override
+        public void start(int accountCount, long totalDeposits) {
+            accountManager = new AccountManager(new HeapAccountStore(accountCount));
+        }
+
+        @Override
+        public void account(String accountHolder, long balance, long loan) {
+            accountManager.accounts.add(accountHolder, balance, loan);
+        }
+    }
+
+    // The positions in a batch of the operations for one account holder
+    private static class OperationGroup {
+        private int[] indices = new int[4];
+        private int size;
+
+        // Adds the position of an operation to the group
+        private void add(int index) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = index;
+        }
+    }
 }
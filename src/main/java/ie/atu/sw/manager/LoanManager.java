@@ -1,23 +1,103 @@
 package ie.atu.sw.manager;
 
-import ie.atu.sw.account.BankAccount;
+import ie.atu.sw.account.Account;
+import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
+import ie.atu.sw.index.AccountIndex;
+import ie.atu.sw.transaction.TransactionStatus;
 import ie.atu.sw.validation.InputValidator;
 
 public class LoanManager {
+    // Orders the accounts by loan, or null if loans are not indexed
+    private volatile AccountIndex loanIndex;
+
+    /**
+     * Sets the index that every loan change is applied to.
+     *
+     * @param loanIndex The index of loans, or null to stop indexing loans
+     */
+    public void setLoanIndex(AccountIndex loanIndex) {
+        this.loanIndex = loanIndex;
+    }
+
+    /**
+     * Approves a loan for an account.
+     *
+     * @param account The account to lend to
+     * @param amount  The loan amount in cents
+     * @return SUCCESS, INVALID_AMOUNT if the amount is not positive or BALANCE_OVERFLOW if the
+     *         loan would be too large to hold
+     */
+    public TransactionStatus tryApproveLoan(Account account, long amount) {
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+
+        // Increases the loan by the amount, retrying if another thread changed it first
+        long loan;
+        do {
+            loan = account.getLoan();
+            if (loan > Long.MAX_VALUE - amount) {
+                return TransactionStatus.BALANCE_OVERFLOW;
+            }
+        } while (!account.compareAndSetLoan(loan, loan + amount));
+        loanChanged(account);
+        return TransactionStatus.SUCCESS;
+    }
 
     // Method to approve a loan for the account
-    public void approveLoan(BankAccount account, double amount) {
-        InputValidator.checkPositive(amount, "The loan amount must be a positive number");
-        account.increaseLoan(amount);
+    public void approveLoan(Account account, long amount) {
+        TransactionStatus status = tryApproveLoan(account, amount);
+        if (status == TransactionStatus.INVALID_AMOUNT) {
+            throw new IllegalArgumentException("The loan amount must be a positive number");
+        } else if (status == TransactionStatus.BALANCE_OVERFLOW) {
+            throw new ArithmeticException("The loan would overflow");
+        }
+    }
+
+    /**
+     * Repays a part of the loan of an account.
+     *
+     * @param account The account repaying the loan
+     * @param amount  The repayment amount in cents
+     * @return SUCCESS, INVALID_AMOUNT if the amount is not positive or EXCESS_LOAN_REPAYMENT if
+     *         the amount is more than the loan remaining
+     */
+    public TransactionStatus tryRepayLoan(Account account, long amount) {
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long loan = account.getLoan();
+
+            // Repayment exceeds loan
+            if (!InputValidator.isWithinLoanBalance(amount, loan)) {
+                return TransactionStatus.EXCESS_LOAN_REPAYMENT;
+            }
+
+            // Decrease the loan, unless another thread changed it since it was checked
+            if (account.compareAndSetLoan(loan, loan - amount)) {
+                loanChanged(account);
+                return TransactionStatus.SUCCESS;
+            }
+        }
     }
 
     // Method to repay a part of the loan (only if amount <= loan)
-    public boolean repayLoan(BankAccount account, double amount) {
-        InputValidator.checkPositive(amount, "The Repayment amount must be a positive number");
-        // Repayment exceeds loan
-        InputValidator.checkSufficientLoanRepayment(amount, account.getLoan(), "The repayment " +
-                "cannot exceed the loan balance");
-        account.decreaseLoan(amount);
+    public boolean repayLoan(Account account, long amount) {
+        TransactionStatus status = tryRepayLoan(account, amount);
+        if (status == TransactionStatus.INVALID_AMOUNT) {
+            throw new IllegalArgumentException("The Repayment amount must be a positive number");
+        } else if (status == TransactionStatus.EXCESS_LOAN_REPAYMENT) {
+            throw new ExcessLoanRepaymentException("The repayment cannot exceed the loan balance");
+        }
         return true;
     }
+
+    // Moves the account in the loan index after its loan changed
+    private void loanChanged(Account account) {
+        AccountIndex index = loanIndex;
+        if (index != null) {
+            index.update(account);
+        }
+    }
 }
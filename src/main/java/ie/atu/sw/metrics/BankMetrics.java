@@ -0,0 +1,289 @@
+package ie.atu.sw.metrics;
+
+import ie.atu.sw.transaction.TransactionStatus;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the operations of an account manager: how many times each operation was called,
+ * the latency of the calls, how many calls each operation rejected, and how often each reason
+ * for a rejection came up, whether it was thrown as an exception or returned as a
+ * TransactionStatus.
+ *
+ * Measuring is off until enabled, and costs a field read per call while it is off. While it is
+ * on, every call is counted, and one call in each sample interval, picked at random, is timed
+ * and added to a histogram recorder picked by its thread, with no lock and no allocation unless
+ * it is rejected with an exception. Reading the clock twice is most of the cost of timing a
+ * call, and a virtualised clock can take tens of nanoseconds a read, so by default one call in
+ * DEFAULT_SAMPLE_INTERVAL is timed; an interval of 1 times every call.
+ *
+ * The metrics can be read directly, registered as MBeans with the platform MBean server, or
+ * written in the Prometheus text format for a scraper.
+ */
+public final class BankMetrics implements BankMetricsMXBean {
+    // By default one call in this many is timed
+    public static final int DEFAULT_SAMPLE_INTERVAL = 8;
+    // The start given to a call while measuring is off
+    private static final long NOT_MEASURED = Long.MIN_VALUE;
+    // The start given to a call that is counted but not timed
+    private static final long NOT_TIMED = Long.MIN_VALUE + 1;
+
+    private static final String DOMAIN = "ie.atu.sw";
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    // The percentiles of the latencies written by scrape, and their labels
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.99", "0.999"};
+
+    private final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] rejectedByOperation = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] rejectedByStatus = new LongAdder[STATUSES.length];
+    private final Map<Class<?>, LongAdder> rejectedByException = new ConcurrentHashMap<>();
+    // The names the MBeans were registered under, empty if they are not registered
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private volatile boolean enabled;
+    // One less than the sample interval, which is a power of two
+    private volatile int sampleMask = DEFAULT_SAMPLE_INTERVAL - 1;
+
+    // Constructor to create metrics that are off until enabled
+    public BankMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+            rejectedByOperation[i] = new LongAdder();
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            rejectedByStatus[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    @Override
+    public void setSampleInterval(int interval) {
+        if (interval <= 0 || Integer.bitCount(interval) != 1) {
+            throw new IllegalArgumentException("The sample interval must be a power of two");
+        }
+        sampleMask = interval - 1;
+    }
+
+    /**
+     * Starts measuring a call.
+     *
+     * @return The start to pass to record: the time if the call is timed, or a marker saying
+     *         it is only counted or not measured at all
+     */
+    public long start() {
+        if (!enabled) {
+            return NOT_MEASURED;
+        }
+        int mask = sampleMask;
+        if (mask != 0 && (ThreadLocalRandom.current().nextInt() & mask) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Counts a call and records its latency if it was timed.
+     *
+     * @param operation The operation called
+     * @param start     The start returned by start
+     */
+    public void record(Operation operation, long start) {
+        if (start == NOT_MEASURED) {
+            return;
+        }
+        calls[operation.ordinal()].increment();
+        if (start != NOT_TIMED) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a call rejected with an exception.
+     *
+     * @param operation The operation called
+     * @param exception The exception thrown
+     */
+    public void rejected(Operation operation, RuntimeException exception) {
+        if (enabled) {
+            rejectedByOperation[operation.ordinal()].increment();
+            rejectedByException.computeIfAbsent(exception.getClass(), type -> new LongAdder())
+                    .increment();
+        }
+    }
+
+    /**
+     * Counts the status returned by a call if it is a rejection.
+     *
+     * @param operation The operation called
+     * @param status    The status returned
+     * @return The status, so it can be returned straight on
+     */
+    public TransactionStatus status(Operation operation, TransactionStatus status) {
+        if (status != TransactionStatus.SUCCESS && enabled) {
+            rejectedByOperation[operation.ordinal()].increment();
+            rejectedByStatus[status.ordinal()].increment();
+        }
+        return status;
+    }
+
+    /**
+     * Gets the number of calls to an operation.
+     *
+     * @param operation The operation
+     * @return The number of calls
+     */
+    public long getCallCount(Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    /**
+     * Gets the latencies recorded for an operation, of the calls that were timed.
+     *
+     * @param operation The operation
+     * @return A snapshot of the latencies
+     */
+    public HistogramSnapshot getLatencies(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * Gets the number of calls to an operation that were rejected.
+     *
+     * @param operation The operation
+     * @return The number of rejections
+     */
+    public long getRejectedCount(Operation operation) {
+        return rejectedByOperation[operation.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        Map<String, Long> rejections = new TreeMap<>();
+        for (int i = 0; i < STATUSES.length; i++) {
+            long count = rejectedByStatus[i].sum();
+            if (count != 0) {
+                rejections.put(STATUSES[i].name(), count);
+            }
+        }
+        rejectedByException.forEach((type, count) ->
+                rejections.merge(type.getSimpleName(), count.sum(), Long::sum));
+        return rejections;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format. Latencies are in
+     * nanoseconds, and their count is the number of calls timed.
+     *
+     * @return The metrics as text
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE bank_operation_latency_nanoseconds summary\n");
+        for (Operation operation : OPERATIONS) {
+            HistogramSnapshot snapshot = getLatencies(operation);
+            String label = "operation=\"" + operation.label() + "\"";
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                text.append("bank_operation_latency_nanoseconds{").append(label)
+                        .append(",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(snapshot.getValueAtPercentile(PERCENTILES[i])).append('\n');
+            }
+            text.append("bank_operation_latency_nanoseconds_sum{").append(label).append("} ")
+                    .append(snapshot.getTotalNanos()).append('\n');
+            text.append("bank_operation_latency_nanoseconds_count{").append(label).append("} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+        text.append("# TYPE bank_operations_total counter\n");
+        for (Operation operation : OPERATIONS) {
+            text.append("bank_operations_total{operation=\"").append(operation.label())
+                    .append("\"} ").append(getCallCount(operation)).append('\n');
+        }
+        text.append("# TYPE bank_operation_rejections_total counter\n");
+        for (Operation operation : OPERATIONS) {
+            text.append("bank_operation_rejections_total{operation=\"")
+                    .append(operation.label()).append("\"} ")
+                    .append(getRejectedCount(operation)).append('\n');
+        }
+        text.append("# TYPE bank_rejections_total counter\n");
+        getRejections().forEach((reason, count) -> text.append("bank_rejections_total{reason=\"")
+                .append(reason).append("\"} ").append(count).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server: this object as
+     * ie.atu.sw:type=BankMetrics,name={name} and each operation as
+     * ie.atu.sw:type=OperationMetrics,name={name},operation={operation}.
+     *
+     * @param name The name that tells these metrics apart from others in the process
+     * @throws IllegalStateException if the metrics are already registered or the names are
+     *                               taken
+     */
+    public synchronized void registerMBeans(String name) {
+        if (!registeredNames.isEmpty()) {
+            throw new IllegalStateException("The metrics are already registered");
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String quoted = ObjectName.quote(name);
+        try {
+            register(server, new ObjectName(DOMAIN + ":type=BankMetrics,name=" + quoted), this);
+            for (Operation operation : OPERATIONS) {
+                register(server, new ObjectName(DOMAIN + ":type=OperationMetrics,name="
+                        + quoted + ",operation=" + operation.label()),
+                        new OperationMetrics(this, operation));
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Could not register the metrics as " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by registerMBeans. Nothing happens if they are not
+     * registered.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered by someone else
+            }
+        }
+        registeredNames.clear();
+    }
+
+    // Registers one MBean and remembers its name
+    private void register(MBeanServer server, ObjectName objectName, Object mbean)
+            throws JMException {
+        server.registerMBean(mbean, objectName);
+        registeredNames.add(objectName);
+    }
+}
@@ -0,0 +1,25 @@
+package ie.atu.sw.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface exposing the bank-wide rejection counts over JMX.
+ */
+public interface BankMetricsMXBean {
+    // Checks if operations are being measured
+    boolean isEnabled();
+
+    // Starts or stops measuring operations
+    void setEnabled(boolean enabled);
+
+    // Gets how many calls there are for each call that is timed
+    int getSampleInterval();
+
+    // Sets how many calls there are for each call that is timed; a power of two, or 1 to time
+    // every call
+    void setSampleInterval(int interval);
+
+    // Gets the number of rejections for each reason: a TransactionStatus name, or the simple
+    // name of the exception thrown
+    Map<String, Long> getRejections();
+}
@@ -0,0 +1,85 @@
+package ie.atu.sw.metrics;
+
+/**
+ * The latencies recorded in a LatencyHistogram up to one moment. All values are in
+ * nanoseconds, and a value read from a bucket is the largest value the bucket holds.
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+
+    // Constructor to create a snapshot of merged bucket counts and the total of their values
+    HistogramSnapshot(long[] counts, long totalNanos) {
+        this.counts = counts;
+        this.totalNanos = totalNanos;
+        long sum = 0;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        this.count = sum;
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return The count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total of the latencies recorded.
+     *
+     * @return The total in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @return The mean, or 0 if nothing was recorded
+     */
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * Gets the latency that a percentage of the recorded latencies are at or below.
+     *
+     * @param percentile The percentage, from 0 to 100
+     * @return The latency, or 0 if nothing was recorded
+     * @throws IllegalArgumentException if the percentage is outside 0 to 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the largest latency recorded.
+     *
+     * @return The largest latency, or 0 if nothing was recorded
+     */
+    public long getMaxNanos() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] != 0) {
+                return LatencyHistogram.highestValue(bucket);
+            }
+        }
+        return 0;
+    }
+}
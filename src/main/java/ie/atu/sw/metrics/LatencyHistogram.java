@@ -0,0 +1,125 @@
+package ie.atu.sw.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A histogram of latencies in nanoseconds with log-linear buckets, in the style of
+ * HdrHistogram. Values below 64 each have their own bucket; above that every power of two is
+ * split into 32 buckets, so a value read back is within about 3% of the value recorded, and
+ * every positive long fits in 1,888 buckets.
+ *
+ * Recording adds to the counts of a recorder picked by the calling thread, like a LongAdder,
+ * so threads recording at the same time rarely touch the same memory. A recorder is allocated
+ * the first time a thread picked for it records. Reading merges the recorders into a snapshot;
+ * values recorded during the merge may or may not be included.
+ */
+public final class LatencyHistogram {
+    // Values below this have a bucket of their own
+    private static final int EXACT_LIMIT = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // The power of two of EXACT_LIMIT
+    private static final int FIRST_MAGNITUDE = 6;
+    static final int BUCKETS = EXACT_LIMIT + (63 - FIRST_MAGNITUDE) * SUB_BUCKETS;
+    // The recorder slot after the buckets that holds the total of the values recorded
+    private static final int TOTAL = BUCKETS;
+    // The most recorders a histogram spreads its threads over
+    private static final int MAX_RECORDERS = 64;
+
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle RECORDERS =
+            MethodHandles.arrayElementVarHandle(long[][].class);
+
+    private final long[][] recorders;
+
+    // Constructor to create an empty histogram
+    public LatencyHistogram() {
+        // A power of two at least twice the number of processors
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        recorders = new long[Math.min(count, MAX_RECORDERS)][];
+    }
+
+    /**
+     * Records a latency. A negative value, which a clock stepping backwards can produce, is
+     * recorded as 0.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        long[] counts = recorder();
+        COUNTS.getAndAdd(counts, bucket(value), 1L);
+        COUNTS.getAndAdd(counts, TOTAL, value);
+    }
+
+    /**
+     * Merges the recorders into a snapshot.
+     *
+     * @return The counts recorded so far
+     */
+    public HistogramSnapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < recorders.length; i++) {
+            long[] counts = (long[]) RECORDERS.getAcquire(recorders, i);
+            if (counts == null) {
+                continue;
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                merged[bucket] += (long) COUNTS.getOpaque(counts, bucket);
+            }
+            total += (long) COUNTS.getOpaque(counts, TOTAL);
+        }
+        return new HistogramSnapshot(merged, total);
+    }
+
+    /**
+     * Gets the bucket a value is counted in.
+     *
+     * @param value A value that is not negative
+     * @return The index of the bucket
+     */
+    static int bucket(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT_LIMIT + (magnitude - FIRST_MAGNITUDE) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest value counted in a bucket.
+     *
+     * @param bucket The index of the bucket
+     * @return The largest value in the bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int magnitude = (bucket - EXACT_LIMIT) / SUB_BUCKETS + FIRST_MAGNITUDE;
+        int subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        long lowest = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // Gets the calling thread's recorder, allocating it if no thread has used it yet
+    private long[] recorder() {
+        long id = Thread.currentThread().threadId();
+        int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (recorders.length - 1);
+        long[] counts = (long[]) RECORDERS.getAcquire(recorders, index);
+        if (counts == null) {
+            long[] created = new long[BUCKETS + 1];
+            counts = (long[]) RECORDERS.compareAndExchange(recorders, index, null,
+                    created);
+            if (counts == null) {
+                counts = created;
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,33 @@
+package ie.atu.sw.metrics;
+
+import java.util.Locale;
+
+/**
+ * The account manager operations that are measured. The throwing and status-returning forms
+ * of an operation are measured together. Each operation a batch rejects counts as a rejection
+ * of BATCH.
+ */
+public enum Operation {
+    ADD_ACCOUNT,
+    ADD_ACCOUNTS,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    BATCH,
+    APPROVE_LOAN,
+    REPAY_LOAN,
+    GET_BALANCE,
+    GET_LOAN,
+    GET_STATE;
+
+    private final String label = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * Gets the name of the operation as used in metric labels and MBean names.
+     *
+     * @return The name in lower case
+     */
+    public String label() {
+        return label;
+    }
+}
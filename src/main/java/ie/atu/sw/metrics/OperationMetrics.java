@@ -0,0 +1,56 @@
+package ie.atu.sw.metrics;
+
+/**
+ * Exposes the metrics of one operation of a BankMetrics over JMX. Each read takes a new
+ * snapshot of the operation's latencies.
+ */
+final class OperationMetrics implements OperationMetricsMXBean {
+    private final BankMetrics metrics;
+    private final Operation operation;
+
+    // Constructor to expose one operation of the metrics
+    OperationMetrics(BankMetrics metrics, Operation operation) {
+        this.metrics = metrics;
+        this.operation = operation;
+    }
+
+    @Override
+    public long getCount() {
+        return metrics.getCallCount(operation);
+    }
+
+    @Override
+    public long getTimedCount() {
+        return metrics.getLatencies(operation).getCount();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return metrics.getRejectedCount(operation);
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return metrics.getLatencies(operation).getMeanNanos();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return metrics.getLatencies(operation).getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return metrics.getLatencies(operation).getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return metrics.getLatencies(operation).getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return metrics.getLatencies(operation).getMaxNanos();
+    }
+}
@@ -0,0 +1,31 @@
+package ie.atu.sw.metrics;
+
+/**
+ * The management interface exposing the metrics of one account manager operation over JMX.
+ * Latencies are in nanoseconds, and only cover the calls that were timed.
+ */
+public interface OperationMetricsMXBean {
+    // Gets the number of times the operation was called
+    long getCount();
+
+    // Gets the number of calls that were rejected, by an exception or a status
+    long getRejectedCount();
+
+    // Gets the number of calls that were timed
+    long getTimedCount();
+
+    // Gets the mean latency
+    double getMeanNanos();
+
+    // Gets the median latency
+    long getP50Nanos();
+
+    // Gets the latency 99% of calls were at or below
+    long getP99Nanos();
+
+    // Gets the latency 99.9% of calls were at or below
+    long getP999Nanos();
+
+    // Gets the largest latency
+    long getMaxNanos();
+}
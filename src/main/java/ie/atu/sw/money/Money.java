@@ -0,0 +1,63 @@
+package ie.atu.sw.money;
+
+/**
+ * Helpers for working with money held as a whole number of cents in a primitive long.
+ *
+ * Holding money in cents avoids the rounding drift of floating point arithmetic, and the
+ * arithmetic here throws instead of silently wrapping around when a result is too large.
+ */
+public final class Money {
+    // The number of cents in one euro
+    public static final long CENTS_PER_EURO = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Converts a whole number of euro to cents.
+     *
+     * @param euro The number of euro
+     * @return The amount in cents
+     * @throws ArithmeticException if the amount in cents does not fit in a long
+     */
+    public static long ofEuro(long euro) {
+        return Math.multiplyExact(euro, CENTS_PER_EURO);
+    }
+
+    /**
+     * Adds two amounts of money.
+     *
+     * @param amount      The amount in cents
+     * @param amountToAdd The amount in cents to add
+     * @return The sum in cents
+     * @throws ArithmeticException if the sum does not fit in a long
+     */
+    public static long add(long amount, long amountToAdd) {
+        return Math.addExact(amount, amountToAdd);
+    }
+
+    /**
+     * Subtracts one amount of money from another.
+     *
+     * @param amount           The amount in cents
+     * @param amountToSubtract The amount in cents to subtract
+     * @return The difference in cents
+     * @throws ArithmeticException if the difference does not fit in a long
+     */
+    public static long subtract(long amount, long amountToSubtract) {
+        return Math.subtractExact(amount, amountToSubtract);
+    }
+
+    /**
+     * Formats an amount of money as euro and cents, for example 1234.05 for 123405 cents.
+     *
+     * @param amount The amount in cents
+     * @return The formatted amount
+     */
+    public static String format(long amount) {
+        String sign = amount < 0 ? "-" : "";
+        long euro = Math.abs(amount / CENTS_PER_EURO);
+        long cents = Math.abs(amount % CENTS_PER_EURO);
+        return sign + euro + "." + (cents < 10 ? "0" : "") + cents;
+    }
+}
@@ -0,0 +1,259 @@
+package ie.atu.sw.persistence;
+
+import ie.atu.sw.money.Money;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A binary image of every account at the start of a journal segment. Loading the latest
+ * snapshot and replaying only the segments from that point on rebuilds the accounts without
+ * reading the whole history, and the segments before it can be deleted.
+ *
+ * A snapshot file starts with a fixed size header holding the account count, the total
+ * deposits and a CRC32 of the body, followed by one record per account: the length of the
+ * account holder name, the name as UTF-8, the balance and the loan. A snapshot is written to a
+ * temporary file and only renamed into place once it is complete and synced, so a crash while
+ * writing never leaves a partial snapshot behind.
+ */
+public final class AccountSnapshot {
+    // "SNAP" in ASCII
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    // Magic, version, account count, checksum, total deposits and a reserved long
+    private static final int HEADER_SIZE = Integer.BYTES * 4 + Long.BYTES * 2;
+    private static final int MAX_NAME_SIZE = Short.MAX_VALUE;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{16})\\.snap");
+
+    private AccountSnapshot() {
+    }
+
+    /**
+     * Receives the contents of a snapshot as it is read.
+     */
+    public interface Visitor {
+        /**
+         * Called once before any account.
+         *
+         * @param accountCount  The number of accounts in the snapshot
+         * @param totalDeposits The total deposits in cents
+         */
+        void start(int accountCount, long totalDeposits);
+
+        /**
+         * Called for each account in the snapshot.
+         *
+         * @param accountHolder The name of the account holder
+         * @param balance       The balance in cents
+         * @param loan          The loan in cents
+         */
+        void account(String accountHolder, long balance, long loan);
+    }
+
+    /**
+     * Gets the file that holds the snapshot taken at the start of a journal segment.
+     *
+     * @param directory The journal directory
+     * @param segment   The number of the segment
+     * @return The snapshot file
+     */
+    public static Path snapshotFile(Path directory, long segment) {
+        return directory.resolve(String.format("snapshot-%016d.snap", segment));
+    }
+
+    /**
+     * Lists the segment numbers of the snapshots in a directory, in order.
+     *
+     * @param directory The journal directory
+     * @return The segment numbers of the snapshots
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Long> listSnapshots(Path directory) throws IOException {
+        return TransactionJournal.listNumbered(directory, SNAPSHOT_NAME, 0);
+    }
+
+    /**
+     * Deletes the snapshots taken before a segment.
+     *
+     * @param directory The journal directory
+     * @param segment   The segment number of the first snapshot to keep
+     * @throws IOException if a snapshot cannot be deleted
+     */
+    public static void deleteSnapshotsBefore(Path directory, long segment) throws IOException {
+        for (long number : listSnapshots(directory)) {
+            if (number < segment) {
+                Files.deleteIfExists(snapshotFile(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Starts writing the snapshot taken at the start of a journal segment.
+     *
+     * @param directory The journal directory
+     * @param segment   The number of the segment
+     * @return A writer to add the accounts to
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static Writer create(Path directory, long segment) throws IOException {
+        return new Writer(snapshotFile(directory, segment));
+    }
+
+    /**
+     * Reads a snapshot, checking its checksum before passing any account to the visitor. The
+     * file is mapped into memory rather than read through a stream.
+     *
+     * @param file    The snapshot file
+     * @param visitor Receives the accounts in the snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static void read(Path file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // A single mapping is limited to 2GB
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a valid snapshot");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a valid snapshot");
+            }
+            int accountCount = buffer.getInt();
+            int expectedChecksum = buffer.getInt();
+            long totalDeposits = buffer.getLong();
+            buffer.getLong();
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(HEADER_SIZE, (int) size - HEADER_SIZE));
+            if ((int) checksum.getValue() != expectedChecksum || accountCount < 0) {
+                throw new IOException("Snapshot " + file + " is corrupt");
+            }
+
+            visitor.start(accountCount, totalDeposits);
+            byte[] name = new byte[MAX_NAME_SIZE];
+            try {
+                for (int i = 0; i < accountCount; i++) {
+                    int nameLength = buffer.getShort();
+                    buffer.get(name, 0, nameLength);
+                    visitor.account(new String(name, 0, nameLength, StandardCharsets.UTF_8),
+                            buffer.getLong(), buffer.getLong());
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Snapshot " + file + " is corrupt", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the accounts of a snapshot to a temporary file. Nothing is visible under the
+     * snapshot name until commit is called, and closing a writer that was not committed
+     * deletes the temporary file.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temporaryFile;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 checksum = new CRC32();
+        private int accountCount;
+        private long totalDeposits;
+        private boolean committed;
+
+        // Constructor to create the temporary file, leaving room for the header
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        /**
+         * Adds an account to the snapshot.
+         *
+         * @param accountHolder The name of the account holder
+         * @param balance       The balance in cents
+         * @param loan          The loan in cents
+         * @throws IOException              if the file cannot be written
+         * @throws IllegalArgumentException if the name is too long to store
+         */
+        public void add(String accountHolder, long balance, long loan) throws IOException {
+            byte[] name = accountHolder.getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_NAME_SIZE) {
+                throw new IllegalArgumentException("Account holder name is too long to store");
+            }
+            if (buffer.remaining() < Short.BYTES + name.length + Long.BYTES * 2) {
+                drain();
+            }
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.putLong(balance);
+            buffer.putLong(loan);
+            accountCount++;
+            totalDeposits = Money.add(totalDeposits, Money.subtract(balance, loan));
+        }
+
+        /**
+         * Writes the header, syncs the file and renames it to the snapshot name.
+         *
+         * @return The snapshot file
+         * @throws IOException if the file cannot be written or renamed
+         */
+        public Path commit() throws IOException {
+            drain();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(accountCount);
+            header.putInt((int) checksum.getValue());
+            header.putLong(totalDeposits);
+            header.putLong(0);
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            return file;
+        }
+
+        /**
+         * Closes the file, deleting it if the snapshot was not committed.
+         *
+         * @throws IOException if the file cannot be closed or deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+
+        // Writes the buffered records to the file, adding them to the checksum
+        private void drain() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
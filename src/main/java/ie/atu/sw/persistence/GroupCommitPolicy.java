@@ -0,0 +1,37 @@
+package ie.atu.sw.persistence;
+
+import java.time.Duration;
+
+/**
+ * Controls how journal writes are grouped into a single sync to disk.
+ *
+ * The journal syncs once it has gathered maxBatchSize entries or once the oldest unsynced entry
+ * has waited maxDelay, whichever comes first. A larger batch or delay gives more operations per
+ * sync at the cost of latency.
+ *
+ * @param maxBatchSize       The most entries to gather before syncing
+ * @param maxDelay           The longest time to wait for more entries before syncing
+ * @param waitForDurability  True if an operation should not return until its entry is synced,
+ *                           false if it may return straight away and be synced within maxDelay
+ */
+public record GroupCommitPolicy(int maxBatchSize, Duration maxDelay, boolean waitForDurability) {
+
+    // Syncs up to 1024 entries together, waiting at most 2 milliseconds for more to arrive
+    public static final GroupCommitPolicy DEFAULT =
+            new GroupCommitPolicy(1024, Duration.ofMillis(2), true);
+
+    /**
+     * Validates the policy.
+     *
+     * @throws IllegalArgumentException if the batch size is not positive or the delay is
+     *                                  negative
+     */
+    public GroupCommitPolicy {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("The delay cannot be negative");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ie.atu.sw.persistence;
+
+/**
+ * A single state change recorded in the transaction journal.
+ *
+ * @param type          The kind of change
+ * @param accountHolder The name of the account holder the change applies to
+ * @param counterparty  The name of the receiving account holder for a transfer, otherwise null
+ * @param amount        The amount in cents
+ */
+public record JournalEntry(Type type, String accountHolder, String counterparty, long amount) {
+
+    // The kinds of change that are recorded
+    public enum Type {
+        // A new account was opened with the amount as its initial deposit
+        OPEN_ACCOUNT,
+        DEPOSIT,
+        WITHDRAWAL,
+        // The amount was moved from the account holder to the counterparty
+        TRANSFER,
+        APPROVE_LOAN,
+        REPAY_LOAN,
+        // The balance changed by the amount, which may be negative, as the net result of a batch
+        BALANCE_ADJUSTMENT,
+        // Interest accrued by the loan portfolio was added to the loan
+        LOAN_INTEREST;
+
+        // Cached copy of values() so that decoding a type does not allocate
+        private static final Type[] VALUES = values();
+
+        // Gets the code the type is stored as
+        byte code() {
+            return (byte) ordinal();
+        }
+
+        // Gets the type for a stored code, or null if the code is not known
+        static Type fromCode(byte code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package ie.atu.sw.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary log of account state changes, written through a FileChannel.
+ *
+ * The journal is kept in a directory as a series of numbered segment files. New entries are
+ * appended to the latest segment, and rotate starts a new one, so that segments which are no
+ * longer needed, because a snapshot covers them, can be deleted whole.
+ *
+ * Each change is applied and appended while holding the journal lock, so the order of the
+ * entries in the file is the order the changes were applied in. Entries are gathered in memory
+ * and a background thread writes and syncs them to disk in groups, so many operations share one
+ * sync. How long an entry may wait for its group is set by the GroupCommitPolicy.
+ *
+ * Each entry is stored as its payload length and CRC32 followed by the payload. When the
+ * journal is opened, entries are read back until the end of the file or the first entry that
+ * is incomplete or corrupt, which is what a crash part way through a write leaves behind, and
+ * the file is truncated there.
+ *
+ * When the journal rotates, the flusher writes and syncs the last entries of the old segment
+ * before it creates the new segment file, so only the latest segment can end in an incomplete
+ * entry.
+ */
+public class TransactionJournal implements AutoCloseable {
+    /**
+     * Returned by a change that was rejected without being applied, so that nothing is
+     * appended for it.
+     */
+    public static final long NOT_APPLIED = Long.MIN_VALUE;
+
+    // Length and checksum written before each payload
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    // Type, amount and the two name lengths
+    private static final int MIN_PAYLOAD_SIZE = Byte.BYTES + Long.BYTES + Short.BYTES * 2;
+    private static final int MAX_NAME_SIZE = Short.MAX_VALUE;
+    private static final int MAX_PAYLOAD_SIZE = MIN_PAYLOAD_SIZE + MAX_NAME_SIZE * 2;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    // Appends wait for the flusher once this many bytes are waiting to be written
+    private static final int MAX_PENDING_SIZE = 16 * 1024 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{16})\\.log");
+
+    private final Path directory;
+    private final GroupCommitPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when the first entry of a group is appended or the group is full
+    private final Condition entriesPending = lock.newCondition();
+    // Signalled when a group has been synced to disk
+    private final Condition entriesDurable = lock.newCondition();
+    private final CRC32 checksum = new CRC32();
+    private final Thread flusher;
+
+    // Entries not yet written, and the entries currently being written by the flusher
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int pendingCount;         // Number of entries in the pending buffer
+    private long appendedSequence;    // Sequence number of the last entry appended
+    private long durableSequence;     // Sequence number of the last entry synced to disk
+    private IOException failure;      // The error that stopped the journal, if any
+    private boolean closed;
+
+    private long segment;             // Number of the segment new entries are appended to
+    private FileChannel channel;      // Segment file the flusher is writing to
+    private int rotatePosition = -1;  // Pending buffer position of the switch, or -1 if none
+    private long flushedSegment;      // Number of the segment the flusher has switched to
+
+    // Constructor to start appending to a channel positioned at the end of the valid entries
+    private TransactionJournal(Path directory, long segment, FileChannel channel,
+                               GroupCommitPolicy policy) {
+        this.directory = directory;
+        this.segment = segment;
+        this.flushedSegment = segment;
+        this.channel = channel;
+        this.policy = policy;
+        this.flusher = Thread.ofPlatform().name("journal-flusher").daemon()
+                .start(this::flushLoop);
+    }
+
+    /**
+     * Opens a journal directory, passing every entry in the segments numbered from
+     * firstSegment onwards to the replayer in the order they were written, and then opens the
+     * latest segment for appending. The directory and first segment are created if they do not
+     * exist.
+     *
+     * @param directory    The journal directory
+     * @param firstSegment The number of the first segment to replay
+     * @param policy       How writes are grouped into syncs
+     * @param replayer     Receives each entry already in the journal
+     * @return The journal, ready for appending
+     * @throws IOException if a segment cannot be read or opened, or a segment other than the
+     *                     latest is incomplete
+     */
+    public static TransactionJournal open(Path directory, long firstSegment,
+                                          GroupCommitPolicy policy,
+                                          Consumer<JournalEntry> replayer) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments(directory, firstSegment);
+        long lastSegment = segments.isEmpty() ? firstSegment : segments.get(segments.size() - 1);
+
+        long validLength = 0;
+        for (long number : segments) {
+            Path file = segmentFile(directory, number);
+            validLength = replay(file, replayer);
+            // Only a crash while writing the latest segment can leave an incomplete entry
+            if (number != lastSegment && validLength != Files.size(file)) {
+                throw new IOException("Journal segment " + file + " is corrupt");
+            }
+        }
+
+        FileChannel channel = FileChannel.open(segmentFile(directory, lastSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop anything after the last complete entry so new entries follow on from it
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new TransactionJournal(directory, lastSegment, channel, policy);
+    }
+
+    /**
+     * Gets the file that holds a journal segment.
+     *
+     * @param directory The journal directory
+     * @param segment   The number of the segment
+     * @return The segment file
+     */
+    public static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("journal-%016d.log", segment));
+    }
+
+    /**
+     * Lists the numbers of the journal segments in a directory, in order.
+     *
+     * @param directory    The journal directory
+     * @param firstSegment The lowest segment number to include
+     * @return The segment numbers from firstSegment onwards
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Long> listSegments(Path directory, long firstSegment) throws IOException {
+        return listNumbered(directory, SEGMENT_NAME, firstSegment);
+    }
+
+    // Lists the numbers captured by the pattern from the file names in a directory, in order
+    static List<Long> listNumbered(Path directory, Pattern pattern, long first)
+            throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) >= first) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Reads every complete entry in a journal file.
+     *
+     * @param file     The journal file
+     * @param replayer Receives each entry in the order they were written
+     * @return The length of the file up to the end of the last complete entry
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, Consumer<JournalEntry> replayer) throws IOException {
+        long position = 0;
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            byte[] payload = new byte[MAX_PAYLOAD_SIZE];
+            while (true) {
+                int length;
+                int expectedChecksum;
+                try {
+                    length = data.readInt();
+                    expectedChecksum = data.readInt();
+                    if (length < MIN_PAYLOAD_SIZE || length > MAX_PAYLOAD_SIZE) {
+                        break;
+                    }
+                    data.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                JournalEntry entry = (int) crc.getValue() == expectedChecksum
+                        ? decode(ByteBuffer.wrap(payload, 0, length)) : null;
+                if (entry == null) {
+                    break;
+                }
+                replayer.accept(entry);
+                position += HEADER_SIZE + length;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Applies a change and appends an entry for it. The change is run while holding the
+     * journal lock, and the entry is only appended if the change does not throw or return
+     * NOT_APPLIED, so the journal holds exactly the changes that were applied, in the order they
+     * were applied.
+     *
+     * @param type          The kind of change
+     * @param accountHolder The name of the account holder the change applies to
+     * @param counterparty  The receiving account holder for a transfer, otherwise null
+     * @param change        Applies the change and returns the amount to record in cents
+     * @return The sequence number of the entry, to pass to awaitDurable, or 0 if the change
+     *         was not applied
+     * @throws IllegalArgumentException if a name is too long to journal
+     * @throws UncheckedIOException     if an earlier write to the journal failed
+     */
+    public long append(JournalEntry.Type type, String accountHolder, String counterparty,
+                       LongSupplier change) {
+        byte[] holderBytes = encodeName(accountHolder);
+        byte[] counterpartyBytes = counterparty == null ? null : encodeName(counterparty);
+        lock.lock();
+        try {
+            checkUsable();
+            // Stop appenders that do not wait for durability from running ahead of the disk
+            while (pending.position() >= MAX_PENDING_SIZE) {
+                entriesDurable.awaitUninterruptibly();
+                checkUsable();
+            }
+            long amount = change.getAsLong();
+            if (amount == NOT_APPLIED) {
+                return 0;
+            }
+            write(type, holderBytes, counterpartyBytes, amount);
+            pendingCount++;
+            if (pendingCount == 1 || pendingCount == policy.maxBatchSize()) {
+                entriesPending.signal();
+            }
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the entry with the sequence number has been synced to disk, if the policy
+     * asks operations to wait for durability.
+     *
+     * @param sequence The sequence number returned by append
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    public void awaitDurable(long sequence) {
+        if (!policy.waitForDurability()) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("The journal could not be written", failure);
+                }
+                entriesDurable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends an entry with append and then waits for it with awaitDurable.
+     *
+     * @param type          The kind of change
+     * @param accountHolder The name of the account holder the change applies to
+     * @param counterparty  The receiving account holder for a transfer, otherwise null
+     * @param change        Applies the change and returns the amount to record in cents
+     */
+    public void commit(JournalEntry.Type type, String accountHolder, String counterparty,
+                       LongSupplier change) {
+        awaitDurable(append(type, accountHolder, counterparty, change));
+    }
+
+    /**
+     * Starts a new segment. Every entry appended before this call is in an earlier segment and
+     * every entry appended after it is in the new one. The cut action runs at the moment of the
+     * switch while holding the journal lock, so no change can be applied while it runs.
+     *
+     * The flusher creates the new segment file once it has written and synced the entries of
+     * the old one. Once this returns the earlier segments have been synced and closed, and are
+     * not written to again. Changes can be appended to the new segment while it waits for that.
+     *
+     * @param atCut Action to run at the moment of the switch
+     * @return The number of the new segment
+     * @throws IOException if the old segment cannot be finished or the new segment file cannot
+     *                     be created, after which the journal cannot be appended to
+     */
+    public long rotate(Runnable atCut) throws IOException {
+        lock.lock();
+        try {
+            checkUsable();
+            // Wait for an earlier rotation to be picked up by the flusher
+            while (rotatePosition >= 0) {
+                entriesDurable.awaitUninterruptibly();
+                checkUsable();
+            }
+            long next = segment + 1;
+            rotatePosition = pending.position();
+            segment = next;
+            atCut.run();
+            entriesPending.signal();
+            while (flushedSegment < next) {
+                if (failure != null) {
+                    throw new IOException("The journal could not be rotated", failure);
+                }
+                entriesDurable.awaitUninterruptibly();
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments numbered below a segment.
+     *
+     * @param segment The number of the first segment to keep
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long number : listSegments(directory, 0)) {
+            if (number < segment) {
+                Files.deleteIfExists(segmentFile(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Syncs every entry appended so far and closes the file.
+     *
+     * @throws IOException if the remaining entries could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            entriesPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Throws if the journal can no longer be appended to
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("The journal could not be written", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+    }
+
+    // Encodes a name as UTF-8, checking it is short enough to store
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_SIZE) {
+            throw new IllegalArgumentException("Account holder name is too long to journal");
+        }
+        return bytes;
+    }
+
+    // Encodes an entry into the pending buffer
+    private void write(JournalEntry.Type type, byte[] holderBytes, byte[] counterpartyBytes,
+                       long amount) {
+        int counterpartyLength = counterpartyBytes == null ? 0 : counterpartyBytes.length;
+        int length = MIN_PAYLOAD_SIZE + holderBytes.length + counterpartyLength;
+        ensureCapacity(HEADER_SIZE + length);
+
+        int start = pending.position();
+        pending.position(start + HEADER_SIZE);
+        pending.put(type.code());
+        pending.putLong(amount);
+        pending.putShort((short) holderBytes.length);
+        pending.put(holderBytes);
+        // A length of -1 marks a missing counterparty
+        pending.putShort(counterpartyBytes == null ? -1 : (short) counterpartyBytes.length);
+        if (counterpartyBytes != null) {
+            pending.put(counterpartyBytes);
+        }
+
+        checksum.reset();
+        checksum.update(pending.array(), start + HEADER_SIZE, length);
+        pending.putInt(start, length);
+        pending.putInt(start + Integer.BYTES, (int) checksum.getValue());
+    }
+
+    // Decodes an entry payload, or returns null if it is not a valid entry
+    private static JournalEntry decode(ByteBuffer payload) {
+        JournalEntry.Type type = JournalEntry.Type.fromCode(payload.get());
+        if (type == null) {
+            return null;
+        }
+        long amount = payload.getLong();
+        short holderLength = payload.getShort();
+        if (holderLength < 0 || holderLength > payload.remaining() - Short.BYTES) {
+            return null;
+        }
+        String accountHolder = readName(payload, holderLength);
+        short counterpartyLength = payload.getShort();
+        if (counterpartyLength < -1 || counterpartyLength > payload.remaining()) {
+            return null;
+        }
+        String counterparty = counterpartyLength == -1 ? null
+                : readName(payload, counterpartyLength);
+        return new JournalEntry(type, accountHolder, counterparty, amount);
+    }
+
+    // Reads a UTF-8 name of the given length from the buffer
+    private static String readName(ByteBuffer buffer, int length) {
+        String name = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return name;
+    }
+
+    // Grows the pending buffer if the next entry would not fit
+    private void ensureCapacity(int size) {
+        if (pending.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                    pending.position() + size));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    // Runs on the flusher thread, writing and syncing the pending entries in groups
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            long batchSegment;
+            int split;
+            lock.lock();
+            try {
+                while (pendingCount == 0 && rotatePosition < 0 && !closed) {
+                    entriesPending.awaitUninterruptibly();
+                }
+                if (pendingCount == 0 && rotatePosition < 0) {
+                    return;
+                }
+                // Give other operations a chance to join the group before syncing it
+                long deadline = System.nanoTime() + policy.maxDelay().toNanos();
+                while (pendingCount < policy.maxBatchSize() && rotatePosition < 0 && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        entriesPending.await(remaining, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = flushing;
+                flushing = batch;
+                batchSequence = appendedSequence;
+                batchSegment = segment;
+                pendingCount = 0;
+                split = rotatePosition;
+                rotatePosition = -1;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                if (split >= 0) {
+                    // Finish the old segment with the entries appended before the rotation, and
+                    // only create the new segment once they are on disk
+                    ByteBuffer head = batch.duplicate().limit(split);
+                    writeFully(channel, head);
+                    channel.force(false);
+                    FileChannel next = FileChannel.open(segmentFile(directory, batchSegment),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+                    channel.close();
+                    channel = next;
+                    batch.position(split);
+                }
+                writeFully(channel, batch);
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                batch.clear();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batchSequence;
+                    flushedSegment = batchSegment;
+                }
+                entriesDurable.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Writes all the remaining bytes of a buffer to a channel
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ie.atu.sw.reconciliation;
+
+import java.util.List;
+
+/**
+ * A range of neighbouring accounts in the store's order that holds accounts with a negative
+ * balance or loan, which no operation should ever leave behind.
+ *
+ * @param firstAccountHolder  The account holder of the first account in the range
+ * @param lastAccountHolder   The account holder of the last account in the range
+ * @param accountCount        The number of accounts in the range
+ * @param invalidAccountCount The number of accounts in the range with a negative balance or
+ *                            loan
+ * @param invalidAccounts     The account holders of the first few of those accounts
+ */
+public record RangeDiscrepancy(String firstAccountHolder, String lastAccountHolder,
+                               long accountCount, long invalidAccountCount,
+                               List<String> invalidAccounts) {
+}
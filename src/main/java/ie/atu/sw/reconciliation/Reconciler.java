@@ -0,0 +1,231 @@
+package ie.atu.sw.reconciliation;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.money.Money;
+import ie.atu.sw.statistics.BankStatistics;
+import ie.atu.sw.statistics.StatisticsSnapshot;
+import ie.atu.sw.validation.InputValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * The end-of-day job that recomputes the total deposits, total loans, number of accounts and
+ * number of low balance accounts from every account, and checks them against the statistics
+ * that each operation keeps up to date.
+ *
+ * The accounts are split into segments of neighbouring accounts that are summed in parallel on
+ * the common fork-join pool. Amounts are whole cents, so the sums are exact in longs and every
+ * addition is checked for overflow. Each account's balance and loan are read together without
+ * a lock, and a range of accounts holding a negative balance or loan is reported.
+ *
+ * Operations carry on during a pass, so a pass only checks the statistics if no operation
+ * recorded a change to them while it ran. A pass that finds every statistic matches shows the
+ * bank is consistent. A difference may still come from an operation caught between changing an
+ * account and recording the change in the statistics, so the statistics are only reported to
+ * have drifted once a second pass, started after a pause that lets such an operation finish,
+ * finds the same difference. Passes are repeated until one of these holds or the passes run out.
+ */
+public class Reconciler {
+    // The most accounts summed by one task
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+    // The most passes over the accounts in one reconciliation
+    public static final int DEFAULT_MAX_PASSES = 5;
+    // How long to wait after a pass finds a difference, for operations not yet recorded
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // The most invalid account holders named for one range
+    private static final int MAX_INVALID_ACCOUNTS = 10;
+
+    private final AccountStore accounts;
+    private final BankStatistics statistics;
+    private final int segmentSize;
+    private final int maxPasses;
+
+    // Constructor to reconcile the statistics kept for the accounts in a store
+    public Reconciler(AccountStore accounts, BankStatistics statistics) {
+        this(accounts, statistics, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_PASSES);
+    }
+
+    /**
+     * Creates a reconciler that sums segments of a given size and gives up after a number of
+     * passes.
+     *
+     * @param accounts    The store holding every account
+     * @param statistics  The statistics kept for the accounts
+     * @param segmentSize The most accounts summed by one task
+     * @param maxPasses   The most passes over the accounts, at least 2
+     * @throws IllegalArgumentException if the segment size is not positive or there are fewer
+     *                                  than two passes
+     */
+    public Reconciler(AccountStore accounts, BankStatistics statistics, int segmentSize,
+                      int maxPasses) {
+        InputValidator.checkPositive(segmentSize, "The segment size must be a positive number");
+        if (maxPasses < 2) {
+            throw new IllegalArgumentException("At least two passes are needed");
+        }
+        this.accounts = accounts;
+        this.statistics = statistics;
+        this.segmentSize = segmentSize;
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * Recomputes the statistics from every account and compares them with the recorded
+     * statistics, without holding up operations.
+     *
+     * @return The report of the last pass
+     */
+    public ReconciliationReport reconcile() {
+        Drift stableDrift = null;
+        for (int pass = 1; ; pass++) {
+            long updates = statistics.updateCount();
+            StatisticsSnapshot recorded = statistics.snapshot();
+            Segment total = ForkJoinPool.commonPool().invoke(
+                    new SegmentTask(accounts.getAccounts().spliterator()));
+            boolean stable = statistics.updateCount() == updates;
+
+            StatisticsSnapshot recomputed = new StatisticsSnapshot(total.deposits, total.loans,
+                    total.accountCount, total.lowBalanceAccounts, List.of());
+            Drift drift = Drift.of(recorded, recomputed);
+            ReconciliationReport.Outcome outcome = null;
+            if (stable && drift.isZero()) {
+                outcome = ReconciliationReport.Outcome.CONSISTENT;
+            } else if (stable && drift.equals(stableDrift)) {
+                outcome = ReconciliationReport.Outcome.DRIFTED;
+            } else if (pass == maxPasses) {
+                outcome = ReconciliationReport.Outcome.INCONCLUSIVE;
+            }
+            if (outcome != null) {
+                return new ReconciliationReport(outcome, recorded, recomputed, pass,
+                        List.copyOf(total.discrepancies));
+            }
+            if (stable) {
+                stableDrift = drift;
+                LockSupport.parkNanos(SETTLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Sums the accounts of a segment, splitting it in two while it is larger than the segment
+     * size. Tasks are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class SegmentTask extends RecursiveTask<Segment> {
+        private final Spliterator<Account> segment;
+
+        // Constructor to sum the accounts the spliterator covers
+        private SegmentTask(Spliterator<Account> segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        protected Segment compute() {
+            Spliterator<Account> prefix;
+            if (segment.estimateSize() > segmentSize && (prefix = segment.trySplit()) != null) {
+                SegmentTask first = new SegmentTask(prefix);
+                first.fork();
+                Segment rest = new SegmentTask(segment).compute();
+                return first.join().merge(rest);
+            }
+            Segment sums = new Segment(statistics.lowBalanceThreshold());
+            segment.forEachRemaining(sums);
+            return sums.finish();
+        }
+    }
+
+    /**
+     * The sums over a run of neighbouring accounts, and the ranges found in it with invalid
+     * accounts.
+     */
+    private static final class Segment implements Consumer<Account> {
+        private final long lowBalanceThreshold;
+        private long deposits;
+        private long loans;
+        private long accountCount;
+        private long lowBalanceAccounts;
+        private long invalidAccountCount;
+        private final List<String> invalidAccounts = new ArrayList<>();
+        private Account first;
+        private Account last;
+        private List<RangeDiscrepancy> discrepancies = List.of();
+
+        // Constructor to create empty sums
+        private Segment(long lowBalanceThreshold) {
+            this.lowBalanceThreshold = lowBalanceThreshold;
+        }
+
+        @Override
+        public void accept(Account account) {
+            AccountState state = account.getState();
+            long balance = state.balance();
+            long loan = state.loan();
+            if (balance < 0 || loan < 0) {
+                if (invalidAccounts.size() < MAX_INVALID_ACCOUNTS) {
+                    invalidAccounts.add(account.getAccountHolder());
+                }
+                invalidAccountCount++;
+            }
+            deposits = Money.add(deposits, Money.subtract(balance, loan));
+            loans = Money.add(loans, loan);
+            if (balance < lowBalanceThreshold) {
+                lowBalanceAccounts++;
+            }
+            if (first == null) {
+                first = account;
+            }
+            last = account;
+            accountCount++;
+        }
+
+        // Reports the segment as a range if it holds invalid accounts
+        private Segment finish() {
+            if (invalidAccountCount > 0) {
+                discrepancies = List.of(new RangeDiscrepancy(first.getAccountHolder(),
+                        last.getAccountHolder(), accountCount, invalidAccountCount,
+                        List.copyOf(invalidAccounts)));
+            }
+            return this;
+        }
+
+        // Adds the sums of the segment that follows this one
+        private Segment merge(Segment next) {
+            deposits = Money.add(deposits, next.deposits);
+            loans = Money.add(loans, next.loans);
+            accountCount += next.accountCount;
+            lowBalanceAccounts += next.lowBalanceAccounts;
+            if (!next.discrepancies.isEmpty()) {
+                List<RangeDiscrepancy> merged = new ArrayList<>(discrepancies);
+                merged.addAll(next.discrepancies);
+                discrepancies = merged;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The differences between the recorded and recomputed statistics.
+     */
+    private record Drift(long deposits, long loans, long accountCount, long lowBalanceAccounts) {
+        // Works out the recorded statistics minus the recomputed ones
+        private static Drift of(StatisticsSnapshot recorded, StatisticsSnapshot recomputed) {
+            return new Drift(recorded.totalDeposits() - recomputed.totalDeposits(),
+                    recorded.totalLoans() - recomputed.totalLoans(),
+                    recorded.accountCount() - recomputed.accountCount(),
+                    recorded.lowBalanceAccounts() - recomputed.lowBalanceAccounts());
+        }
+
+        // Checks if every statistic matched
+        private boolean isZero() {
+            return deposits == 0 && loans == 0 && accountCount == 0 && lowBalanceAccounts == 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ie.atu.sw.reconciliation;
+
+import ie.atu.sw.statistics.StatisticsSnapshot;
+
+import java.util.List;
+
+/**
+ * The result of recomputing the bank-wide totals from every account and comparing them with
+ * the statistics kept up to date by each operation.
+ *
+ * @param outcome       Whether the statistics matched the accounts
+ * @param recorded      The statistics kept by the operations during the last pass
+ * @param recomputed    The statistics recomputed from the accounts in the last pass
+ * @param passes        The number of passes over the accounts
+ * @param discrepancies The ranges of accounts found with a negative balance or loan in the
+ *                      last pass, in the store's order
+ */
+public record ReconciliationReport(Outcome outcome, StatisticsSnapshot recorded,
+                                   StatisticsSnapshot recomputed, int passes,
+                                   List<RangeDiscrepancy> discrepancies) {
+    /**
+     * Gets how far the recorded total deposits are from the recomputed total.
+     *
+     * @return The recorded total minus the recomputed total in cents
+     */
+    public long depositDrift() {
+        return recorded.totalDeposits() - recomputed.totalDeposits();
+    }
+
+    /**
+     * Gets how far the recorded total loans are from the recomputed total.
+     *
+     * @return The recorded total minus the recomputed total in cents
+     */
+    public long loanDrift() {
+        return recorded.totalLoans() - recomputed.totalLoans();
+    }
+
+    /**
+     * Checks if the statistics matched the accounts and no account was found with a negative
+     * balance or loan.
+     *
+     * @return True if the bank is consistent, otherwise false
+     */
+    public boolean isConsistent() {
+        return outcome == Outcome.CONSISTENT && discrepancies.isEmpty();
+    }
+
+    /**
+     * Whether the recorded statistics matched the totals recomputed from the accounts.
+     */
+    public enum Outcome {
+        // A pass with no operations recorded while it ran found every statistic matched
+        CONSISTENT,
+        // Two passes with no operations recorded while they ran found the same differences
+        DRIFTED,
+        // Every pass either overlapped an operation or found differences that did not repeat,
+        // so the statistics could not be checked
+        INCONCLUSIVE
+    }
+}
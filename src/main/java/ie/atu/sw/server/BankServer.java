@@ -0,0 +1,281 @@
+package ie.atu.sw.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An embedded HTTP server that lets clients outside the process drive an account manager. All
+ * amounts are in cents.
+ *
+ * Every request is handled on its own virtual thread, so a request waiting for the journal to
+ * reach the disk holds no platform thread, and idle keep-alive connections cost only a socket
+ * registered with the server's selector. The account manager is thread-safe, so requests run
+ * in parallel with no locking here. The JDK closes idle connections beyond 200 unless
+ * keepIdleConnections is called before the server is started.
+ *
+ * The requests served are:
+ * <pre>
+ * GET  /accounts/{holder}                      the balance and loan
+ * POST /accounts/{holder}?amount=              opens an account with an initial deposit
+ * POST /accounts/{holder}/deposit?amount=      deposits money
+ * POST /accounts/{holder}/withdraw?amount=     withdraws money
+ * POST /accounts/{holder}/transfer?to=&amp;amount= transfers money to another account
+ * POST /accounts/{holder}/loan?amount=         approves a loan
+ * POST /accounts/{holder}/repay?amount=        repays part of a loan
+ * GET  /metrics                                the account manager's metrics
+ * </pre>
+ * Each response body is plain text. A rejected operation answers with the name of its
+ * TransactionStatus and a 4xx status code. The metrics are in the Prometheus text format, and
+ * only hold values while the account manager's metrics are enabled.
+ *
+ * A deposit or withdrawal sent with an Idempotency-Key header is only applied once per key
+ * while the account manager has an idempotency cache; a retry answers with the first result.
+ * A withdrawal or transfer beyond the account manager's velocity limits answers 429.
+ */
+public class BankServer implements AutoCloseable {
+    // The number of pending connections the operating system queues by default
+    public static final int DEFAULT_BACKLOG = 4096;
+
+    private static final String ACCOUNTS = "/accounts/";
+    private static final String METRICS = "/metrics";
+    // The header a client sends the id of a request in, so a retry is not applied twice
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    // The JDK property limiting the idle keep-alive connections every HTTP server keeps open
+    private static final String MAX_IDLE_CONNECTIONS = "sun.net.httpserver.maxIdleConnections";
+
+    private final AccountManager accountManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Constructor to create a server for the account manager bound to an address
+    private BankServer(AccountManager accountManager, HttpServer server) {
+        this.accountManager = accountManager;
+        this.server = server;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Starts a server for an account manager.
+     *
+     * @param accountManager The account manager the requests are applied to
+     * @param address        The address to listen on; port 0 picks a free port
+     * @return The running server
+     * @throws IOException if the server cannot bind to the address
+     */
+    public static BankServer start(AccountManager accountManager, InetSocketAddress address)
+            throws IOException {
+        return start(accountManager, address, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * Starts a server for an account manager.
+     *
+     * @param accountManager The account manager the requests are applied to
+     * @param address        The address to listen on; port 0 picks a free port
+     * @param backlog        The number of pending connections to queue
+     * @return The running server
+     * @throws IOException if the server cannot bind to the address
+     */
+    public static BankServer start(AccountManager accountManager, InetSocketAddress address,
+                                   int backlog) throws IOException {
+        BankServer bankServer = new BankServer(accountManager,
+                HttpServer.create(address, backlog));
+        bankServer.server.createContext(ACCOUNTS, bankServer::handle);
+        bankServer.server.createContext(METRICS, bankServer::handleMetrics);
+        bankServer.server.setExecutor(bankServer.executor);
+        bankServer.server.start();
+        return bankServer;
+    }
+
+    /**
+     * Lets every HTTP server in the process keep any number of idle keep-alive connections
+     * open. The JDK server closes those beyond 200 by default, which makes most clients of a
+     * busy server reconnect for every request. The limit is a JVM-wide system property that
+     * the JDK reads once, when its first HTTP server is created, so this must be called before
+     * then, and it applies to every HTTP server in the process. A limit already set, such as
+     * with -D on the command line, is left as it is.
+     */
+    public static void keepIdleConnections() {
+        if (System.getProperty(MAX_IDLE_CONNECTIONS) == null) {
+            System.setProperty(MAX_IDLE_CONNECTIONS, String.valueOf(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for those in progress and then stops the
+     * server. The account manager is left open.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    // Handles one request on its own virtual thread
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                response = route(exchange);
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                response = new Response(400, e.getMessage());
+            } catch (BankAccountDoesNotExist e) {
+                response = new Response(404, TransactionStatus.ACCOUNT_NOT_FOUND.name());
+            } catch (AccountAlreadyExists e) {
+                response = new Response(409, e.getMessage());
+            } catch (InsufficientFundsException e) {
+                response = new Response(422, TransactionStatus.INSUFFICIENT_FUNDS.name());
+            } catch (RuntimeException e) {
+                response = new Response(500, "The request failed: " + e.getMessage());
+            }
+            byte[] body = (response.body() + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // Answers a scrape of the metrics on its own virtual thread
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status;
+            byte[] body;
+            if (!exchange.getRequestURI().getPath().equals(METRICS)) {
+                status = 404;
+                body = "Not found\n".getBytes(StandardCharsets.UTF_8);
+            } else if (!exchange.getRequestMethod().equals("GET")) {
+                status = 405;
+                body = "Method not allowed\n".getBytes(StandardCharsets.UTF_8);
+            } else {
+                status = 200;
+                body = accountManager.getMetrics().scrape().getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                    "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // Applies a request to the account manager
+    private Response route(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        String method = exchange.getRequestMethod();
+        String rest = path.substring(ACCOUNTS.length());
+        int slash = rest.indexOf('/');
+        String accountHolder = slash < 0 ? rest : rest.substring(0, slash);
+        String operation = slash < 0 ? "" : rest.substring(slash + 1);
+        if (accountHolder.isEmpty()) {
+            return new Response(404, "Not found");
+        }
+
+        if (operation.isEmpty()) {
+            if (method.equals("GET")) {
+                AccountState state = accountManager.getAccountState(accountHolder);
+                return new Response(200, "balance=" + state.balance() + "\nloan="
+                        + state.loan());
+            }
+            if (method.equals("POST")) {
+                accountManager.addAccount(accountHolder, amount(query));
+                return new Response(201, TransactionStatus.SUCCESS.name());
+            }
+            return new Response(405, "Method not allowed");
+        }
+        if (!method.equals("POST")) {
+            return new Response(405, "Method not allowed");
+        }
+        TransactionStatus status;
+        switch (operation) {
+            case "deposit" -> status = accountManager.tryDeposit(requestId(exchange),
+                    accountHolder, amount(query));
+            case "withdraw" -> status = accountManager.tryWithdraw(requestId(exchange),
+                    accountHolder, amount(query));
+            case "transfer" -> status = accountManager.tryTransfer(accountHolder,
+                    parameter(query, "to"), amount(query));
+            case "repay" -> status = accountManager.tryRepayLoan(accountHolder, amount(query));
+            case "loan" -> {
+                accountManager.approveLoan(accountHolder, amount(query));
+                status = TransactionStatus.SUCCESS;
+            }
+            default -> {
+                return new Response(404, "Not found");
+            }
+        }
+        return new Response(statusCode(status), status.name());
+    }
+
+    // Gets the client's id for a request, or null if it sent none
+    private static String requestId(HttpExchange exchange) {
+        return exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY);
+    }
+
+    // Gets the HTTP status code that reports a transaction status
+    private static int statusCode(TransactionStatus status) {
+        return switch (status) {
+            case SUCCESS -> 200;
+            case INVALID_AMOUNT, SAME_ACCOUNT -> 400;
+            case ACCOUNT_NOT_FOUND -> 404;
+            case ACCOUNT_ALREADY_EXISTS -> 409;
+            case VELOCITY_LIMIT_EXCEEDED -> 429;
+            case INSUFFICIENT_FUNDS, BALANCE_OVERFLOW, EXCESS_LOAN_REPAYMENT -> 422;
+        };
+    }
+
+    // Gets the amount parameter of a query
+    private static long amount(String query) {
+        String amount = parameter(query, "amount");
+        try {
+            return Long.parseLong(amount);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The amount must be a whole number of cents: "
+                    + amount);
+        }
+    }
+
+    // Gets a parameter of a query, decoding it
+    private static String parameter(String query, String name) {
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                    return URLDecoder.decode(pair.substring(equals + 1),
+                            StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Missing parameter: " + name);
+    }
+
+    // The status code and body of a response
+    private record Response(int status, String body) {
+    }
+}
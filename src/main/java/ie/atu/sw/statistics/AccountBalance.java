@@ -0,0 +1,10 @@
+package ie.atu.sw.statistics;
+
+/**
+ * The balance of one account, as ranked by the top balances.
+ *
+ * @param accountHolder The name of the account holder
+ * @param balance       The balance in cents
+ */
+public record AccountBalance(String accountHolder, long balance) {
+}
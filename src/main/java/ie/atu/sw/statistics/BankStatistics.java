@@ -0,0 +1,281 @@
+package ie.atu.sw.statistics;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.money.Money;
+import ie.atu.sw.transaction.BalanceListener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
+/**
+ * Bank-wide statistics kept up to date by every operation, so reading them never visits the
+ * accounts: the total deposits, the total outstanding loans, the number of accounts, the number
+ * of accounts with a low balance and, if tracked, the largest balances.
+ *
+ * The totals are spread over striped cells, like a LongAdder, so that threads updating them do
+ * not contend. Each cell is guarded by a sequence number that is odd while a writer is updating
+ * it; a reader copies a cell and retries only if the sequence number changed while it did. Every
+ * total changed by one update therefore appears in a snapshot together or not at all, and
+ * readers never block writers. A balance change reported to the listener is one update and the
+ * deposits and loans recorded for the same operation are another.
+ */
+public class BankStatistics implements BalanceListener {
+    // Accounts with a balance below this are counted as low balance accounts by default
+    public static final long DEFAULT_LOW_BALANCE_THRESHOLD = Money.ofEuro(100);
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Cell.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long lowBalanceThreshold;
+    private final Cell[] cells;
+    // Tracks the largest balances, or null if they are not tracked
+    private volatile TopBalances topBalances;
+
+    // Constructor to create statistics with the default low balance threshold
+    public BankStatistics() {
+        this(DEFAULT_LOW_BALANCE_THRESHOLD);
+    }
+
+    // Constructor to create statistics that count the accounts below a low balance threshold
+    public BankStatistics(long lowBalanceThreshold) {
+        this.lowBalanceThreshold = lowBalanceThreshold;
+        // A power of two at least twice the number of processors
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        cells = new Cell[stripes];
+        for (int i = 0; i < stripes; i++) {
+            cells[i] = new Cell();
+        }
+    }
+
+    /**
+     * Records an operation that changed the total deposits and loans.
+     *
+     * @param depositChange The change to the total deposits in cents
+     * @param loanChange    The change to the total loans in cents
+     */
+    public void record(long depositChange, long loanChange) {
+        update(depositChange, loanChange, 0, 0);
+    }
+
+    /**
+     * Records a newly opened account. Its balance is added to the total deposits.
+     *
+     * @param account The account opened
+     */
+    public void accountOpened(Account account) {
+        long balance = account.getBalance();
+        update(balance, 0, 1, balance < lowBalanceThreshold ? 1 : 0);
+        TopBalances top = topBalances;
+        if (top != null) {
+            top.balanceChanged(account, balance);
+        }
+    }
+
+    /**
+     * Records accounts opened together, such as by a bulk import, with one update of the
+     * totals. The balance of each account less its loan is added to the total deposits, as if
+     * the loan had been approved after it was opened.
+     *
+     * @param accounts The accounts opened
+     */
+    public void accountsOpened(List<Account> accounts) {
+        long deposits = 0;
+        long loans = 0;
+        long lowBalance = 0;
+        for (Account account : accounts) {
+            long balance = account.getBalance();
+            long loan = account.getLoan();
+            deposits = Money.add(deposits, Money.subtract(balance, loan));
+            loans = Money.add(loans, loan);
+            if (balance < lowBalanceThreshold) {
+                lowBalance++;
+            }
+        }
+        update(deposits, loans, accounts.size(), lowBalance);
+        TopBalances top = topBalances;
+        if (top != null) {
+            for (Account account : accounts) {
+                top.balanceChanged(account, account.getBalance());
+            }
+        }
+    }
+
+    @Override
+    public void balanceChanged(Account account, long oldBalance, long newBalance) {
+        int lowBalanceChange = (newBalance < lowBalanceThreshold ? 1 : 0)
+                - (oldBalance < lowBalanceThreshold ? 1 : 0);
+        if (lowBalanceChange != 0) {
+            update(0, 0, 0, lowBalanceChange);
+        }
+        TopBalances top = topBalances;
+        if (top != null) {
+            top.balanceChanged(account, newBalance);
+        }
+    }
+
+    /**
+     * Starts tracking the largest balances of the accounts in a store.
+     *
+     * @param count    How many of the largest balances to track
+     * @param accounts The store holding every account
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public void trackTopBalances(int count, AccountStore accounts) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("The number of balances must be positive");
+        }
+        topBalances = new TopBalances(count, accounts);
+    }
+
+    /**
+     * Recounts every statistic from the accounts in a store. Only called while no operations
+     * are running, such as after the accounts are loaded.
+     *
+     * @param accounts The store holding every account
+     */
+    public void rebuild(AccountStore accounts) {
+        for (Cell cell : cells) {
+            cell.totalDeposits = 0;
+            cell.totalLoans = 0;
+            cell.accountCount = 0;
+            cell.lowBalanceAccounts = 0;
+        }
+        for (Account account : accounts.getAccounts()) {
+            long balance = account.getBalance();
+            long loan = account.getLoan();
+            update(Money.subtract(balance, loan), loan, 1,
+                    balance < lowBalanceThreshold ? 1 : 0);
+        }
+        TopBalances top = topBalances;
+        if (top != null) {
+            trackTopBalances(top.count(), accounts);
+        }
+    }
+
+    /**
+     * Gets the total deposits available in the bank.
+     *
+     * @return The total deposits in cents
+     */
+    public long totalDeposits() {
+        long total = 0;
+        for (Cell cell : cells) {
+            long version;
+            long deposits;
+            do {
+                version = awaitStable(cell);
+                deposits = cell.totalDeposits;
+                VarHandle.loadLoadFence();
+            } while (cell.version != version);
+            total += deposits;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of updates made to the statistics so far. If it is the same before and
+     * after reading the accounts, no operation recorded a change to the statistics meanwhile.
+     *
+     * @return The number of updates
+     */
+    public long updateCount() {
+        long count = 0;
+        for (Cell cell : cells) {
+            count += awaitStable(cell) >>> 1;
+        }
+        return count;
+    }
+
+    // Getter for the balance below which an account is counted as a low balance account
+    public long lowBalanceThreshold() {
+        return lowBalanceThreshold;
+    }
+
+    /**
+     * Takes a snapshot of every statistic.
+     *
+     * @return The statistics
+     */
+    public StatisticsSnapshot snapshot() {
+        long totalDeposits = 0;
+        long totalLoans = 0;
+        long accountCount = 0;
+        long lowBalanceAccounts = 0;
+        for (Cell cell : cells) {
+            long version;
+            long deposits;
+            long loans;
+            long count;
+            long lowBalance;
+            do {
+                version = awaitStable(cell);
+                deposits = cell.totalDeposits;
+                loans = cell.totalLoans;
+                count = cell.accountCount;
+                lowBalance = cell.lowBalanceAccounts;
+                VarHandle.loadLoadFence();
+            } while (cell.version != version);
+            totalDeposits += deposits;
+            totalLoans += loans;
+            accountCount += count;
+            lowBalanceAccounts += lowBalance;
+        }
+        TopBalances top = topBalances;
+        return new StatisticsSnapshot(totalDeposits, totalLoans, accountCount,
+                lowBalanceAccounts, top == null ? List.of() : top.top());
+    }
+
+    // Adds to the totals in the calling thread's cell
+    private void update(long depositChange, long loanChange, long accountChange,
+                        long lowBalanceChange) {
+        Cell cell = cells[stripe()];
+        long version;
+        while (((version = cell.version) & 1) != 0
+                || !VERSION.compareAndSet(cell, version, version + 1)) {
+            Thread.onSpinWait();
+        }
+        // Keep the writes below from becoming visible before the odd sequence number
+        VarHandle.storeStoreFence();
+        cell.totalDeposits += depositChange;
+        cell.totalLoans += loanChange;
+        cell.accountCount += accountChange;
+        cell.lowBalanceAccounts += lowBalanceChange;
+        VERSION.setRelease(cell, version + 2);
+    }
+
+    // Picks the cell for the calling thread
+    private int stripe() {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (cells.length - 1);
+    }
+
+    // Waits until no writer is updating a cell and returns its sequence number
+    private static long awaitStable(Cell cell) {
+        long version;
+        while (((version = (long) VERSION.getAcquire(cell)) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return version;
+    }
+
+    // The totals added by the threads that share a stripe
+    private static final class Cell {
+        // Odd while a writer is updating the cell
+        private volatile long version;
+        private long totalDeposits;
+        private long totalLoans;
+        private long accountCount;
+        private long lowBalanceAccounts;
+        // Keeps the next cell off this cell's cache line
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,18 @@
+package ie.atu.sw.statistics;
+
+import java.util.List;
+
+/**
+ * The bank-wide statistics at one moment.
+ *
+ * @param totalDeposits      The total deposits available in cents
+ * @param totalLoans         The total outstanding loans in cents
+ * @param accountCount       The number of accounts
+ * @param lowBalanceAccounts The number of accounts with a balance below the low balance
+ *                           threshold
+ * @param topBalances        The largest balances, largest first, or empty if they are not
+ *                           tracked
+ */
+public record StatisticsSnapshot(long totalDeposits, long totalLoans, long accountCount,
+                                 long lowBalanceAccounts, List<AccountBalance> topBalances) {
+}
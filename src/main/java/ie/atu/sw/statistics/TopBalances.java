@@ -0,0 +1,183 @@
+package ie.atu.sw.statistics;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the largest balances in the bank up to date as balances change.
+ *
+ * A bounded pool of candidates, a few times larger than the number of balances reported, is
+ * kept in order. A change to an account outside the pool whose balance is below the smallest
+ * in the pool is ignored without taking the lock, which is what almost every change is. When so
+ * many of its members have fallen that an account outside the pool might now rank among the top
+ * balances, the pool is refilled by scanning every account on the common fork-join pool. The
+ * change that found it needed does not wait for the scan, and until the refill finishes the
+ * published balances may miss an account outside the pool.
+ *
+ * The top balances are published as an immutable list, so readers never wait for writers.
+ */
+final class TopBalances {
+    // How many times more candidates are kept than balances reported
+    private static final int POOL_FACTOR = 4;
+    private static final Comparator<AccountBalance> ORDER = Comparator
+            .comparingLong(AccountBalance::balance)
+            .thenComparing(AccountBalance::accountHolder);
+    // Marks an account that is being placed in the pool
+    private static final AccountBalance PENDING = new AccountBalance("", Long.MIN_VALUE);
+
+    private final int count;
+    private final int capacity;
+    private final AccountStore accounts;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<AccountBalance> pool = new TreeSet<>(ORDER);
+    // The pool entry of each account in the pool, readable without the lock
+    private final Map<String, AccountBalance> members = new ConcurrentHashMap<>();
+    // The smallest balance in the pool once it is full. A change that leaves an account outside
+    // the pool with a balance below it is ignored.
+    private volatile long floor = Long.MIN_VALUE;
+    // The highest floor so far, which no account outside the pool can be above
+    private long ceiling = Long.MIN_VALUE;
+    private volatile List<AccountBalance> top = List.of();
+    // Set while the pool is being refilled, so only one refill runs at a time
+    private final AtomicBoolean refilling = new AtomicBoolean(true);
+
+    // Constructor to track the largest balances of the accounts in a store
+    TopBalances(int count, AccountStore accounts) {
+        this.count = count;
+        this.capacity = Math.multiplyExact(count, POOL_FACTOR);
+        this.accounts = accounts;
+        refill();
+    }
+
+    // Gets how many of the largest balances are tracked
+    int count() {
+        return count;
+    }
+
+    // Gets the largest balances, largest first
+    List<AccountBalance> top() {
+        return top;
+    }
+
+    // Places an account whose balance changed
+    void balanceChanged(Account account, long newBalance) {
+        String accountHolder = account.getAccountHolder();
+        if (newBalance < floor && !members.containsKey(accountHolder)) {
+            return;
+        }
+        lock.lock();
+        try {
+            place(accountHolder, account);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Puts an account in the pool if its balance ranks there. Called holding the lock.
+    private void place(String accountHolder, Account account) {
+        // The account is made a member before its balance is read, so a change made after the
+        // read is not ignored and places the account again
+        AccountBalance current = members.put(accountHolder, PENDING);
+        if (current != null && current != PENDING) {
+            pool.remove(current);
+        }
+        AccountBalance entry = new AccountBalance(accountHolder, account.getBalance());
+        if (pool.size() < capacity || ORDER.compare(entry, pool.first()) > 0) {
+            pool.add(entry);
+            members.put(accountHolder, entry);
+            if (pool.size() > capacity) {
+                members.remove(pool.pollFirst().accountHolder());
+            }
+        } else {
+            members.remove(accountHolder);
+        }
+        if (pool.size() == capacity) {
+            floor = pool.first().balance();
+            ceiling = Math.max(ceiling, floor);
+        }
+    }
+
+    // Publishes the top balances, starting a refill of the pool if an account outside it might
+    // rank among them. Called holding the lock.
+    private void publish() {
+        List<AccountBalance> largest = largest();
+        boolean complete = ceiling == Long.MIN_VALUE;
+        if (!complete && (largest.size() < count
+                || largest.get(largest.size() - 1).balance() < ceiling)
+                && refilling.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(this::refill);
+        }
+        top = List.copyOf(largest);
+    }
+
+    // Gets the largest balances in the pool. Called holding the lock.
+    private List<AccountBalance> largest() {
+        List<AccountBalance> largest = new ArrayList<>(count);
+        Iterator<AccountBalance> entries = pool.descendingIterator();
+        while (largest.size() < count && entries.hasNext()) {
+            largest.add(entries.next());
+        }
+        return largest;
+    }
+
+    // Refills the pool from every account. The accounts are scanned without the lock, keeping
+    // the largest balances read, and only those are then placed in the pool holding it, so
+    // changes go on while the scan runs. Called with refilling set.
+    private void refill() {
+        try {
+            lock.lock();
+            try {
+                // A change ignored from now on is below a floor the ceiling is raised to, and
+                // every account above the ceiling before now is found by the scan
+                ceiling = floor;
+            } finally {
+                lock.unlock();
+            }
+            TreeMap<AccountBalance, Account> candidates = new TreeMap<>(ORDER);
+            for (Account account : accounts.getAccounts()) {
+                AccountBalance entry = new AccountBalance(account.getAccountHolder(),
+                        account.getBalance());
+                if (candidates.size() < capacity
+                        || ORDER.compare(entry, candidates.firstKey()) > 0) {
+                    candidates.put(entry, account);
+                    if (candidates.size() > capacity) {
+                        candidates.pollFirstEntry();
+                    }
+                }
+            }
+            lock.lock();
+            try {
+                // Place each candidate with its balance as it is now
+                for (Map.Entry<AccountBalance, Account> candidate : candidates.entrySet()) {
+                    place(candidate.getKey().accountHolder(), candidate.getValue());
+                }
+                // An account the scan left out had a balance no higher than every candidate,
+                // and any change to it since was placed or is below the ceiling
+                if (candidates.size() == capacity) {
+                    ceiling = Math.max(ceiling, candidates.firstKey().balance());
+                }
+                // Clear the flag first, so publishing can start another refill if one is needed
+                refilling.set(false);
+                publish();
+            } finally {
+                lock.unlock();
+            }
+        } catch (RuntimeException | Error e) {
+            refilling.set(false);
+            throw e;
+        }
+    }
+}
@@ -1,34 +1,309 @@
 package ie.atu.sw.transaction;
 
-import ie.atu.sw.account.BankAccount;
+import ie.atu.sw.account.Account;
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.exceptions.VelocityLimitExceededException;
+import ie.atu.sw.index.AccountIndex;
+import ie.atu.sw.money.Money;
 import ie.atu.sw.validation.InputValidator;
+import ie.atu.sw.velocity.VelocityLimiter;
 
+import java.util.List;
+
+/**
+ * Applies deposits, withdrawals and transfers to accounts.
+ *
+ * Each operation comes in two forms. The try methods report a rejected operation as a
+ * TransactionStatus without building an exception or a message, for callers that expect many
+ * rejections. The other methods are thin wrappers over them that throw an exception with a
+ * message when the operation is rejected.
+ *
+ * Every balance change is reported to the balance listener, if one is given, and moves the
+ * account in the balance index, if one is set.
+ *
+ * Once a velocity limiter is set, every withdrawal, including the withdrawal side of a
+ * transfer and the withdrawals in a batch, is checked against the account's velocity limits
+ * after its funds are checked.
+ */
 public class AccountTransaction {
+    private final BalanceListener listener;
+    // Limits how much and how often each account withdraws, or null if there is no limit
+    private volatile VelocityLimiter velocityLimiter;
+    // Orders the accounts by balance, or null if balances are not indexed
+    private volatile AccountIndex balanceIndex;
+
+    // Constructor for transactions that report balance changes to no one
+    public AccountTransaction() {
+        this(BalanceListener.NONE);
+    }
+
+    // Constructor for transactions that report every balance change to the listener
+    public AccountTransaction(BalanceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the velocity limits withdrawals are checked against.
+     *
+     * @param velocityLimiter The limiter, or null to stop checking velocity
+     */
+    public void setVelocityLimiter(VelocityLimiter velocityLimiter) {
+        this.velocityLimiter = velocityLimiter;
+    }
 
+    /**
+     * Sets the index that every balance change is applied to.
+     *
+     * @param balanceIndex The index of balances, or null to stop indexing balances
+     */
+    public void setBalanceIndex(AccountIndex balanceIndex) {
+        this.balanceIndex = balanceIndex;
+    }
+
+    /**
+     * Deposits money into an account.
+     *
+     * @param account The account to deposit into
+     * @param amount  The amount in cents to deposit
+     * @return SUCCESS, INVALID_AMOUNT if the amount is not positive or BALANCE_OVERFLOW if the
+     *         balance would be too large to hold
+     */
+    public TransactionStatus tryDeposit(Account account, long amount) {
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+
+        // Increases the balance by the amount, retrying if another thread changed it first
+        long balance;
+        do {
+            balance = account.getBalance();
+            if (balance > Long.MAX_VALUE - amount) {
+                return TransactionStatus.BALANCE_OVERFLOW;
+            }
+        } while (!account.compareAndSetBalance(balance, balance + amount));
+        balanceChanged(account, balance, balance + amount);
+        return TransactionStatus.SUCCESS;
+    }
 
     // Method to deposit money into the account
-    public void deposit(BankAccount account, double amount) {
-        // Checks the amount entered is a positive number
-        InputValidator.checkPositive(amount, "The deposit must be positive");
+    public void deposit(Account account, long amount) {
+        throwIfFailed(tryDeposit(account, amount), account, amount,
+                "The deposit must be positive");
+    }
+
+    /**
+     * Withdraws money from an account if the balance is sufficient.
+     *
+     * @param account The account to withdraw from
+     * @param amount  The amount in cents to withdraw
+     * @return SUCCESS, INVALID_AMOUNT if the amount is not positive, INSUFFICIENT_FUNDS if the
+     *         balance does not hold the amount or VELOCITY_LIMIT_EXCEEDED if the account has
+     *         withdrawn too much or too often recently
+     */
+    public TransactionStatus tryWithdraw(Account account, long amount) {
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+
+        VelocityLimiter limiter = velocityLimiter;
+        boolean acquired = false;
+        while (true) {
+            long balance = account.getBalance();
+            if (!InputValidator.hasSufficientFunds(amount, balance)) {
+                if (acquired) {
+                    limiter.release(account, amount);
+                }
+                return TransactionStatus.INSUFFICIENT_FUNDS;
+            }
+            // Take the withdrawal from the account's allowance once, however many times the
+            // balance has to be checked again
+            if (limiter != null && !acquired) {
+                if (!limiter.tryAcquire(account, amount)) {
+                    return TransactionStatus.VELOCITY_LIMIT_EXCEEDED;
+                }
+                acquired = true;
+            }
 
-        // Increases the balance by the amount.
-        account.increaseBalance(amount);
-        ;
+            // Decrease the balance by the withdrawal amount, unless another thread changed the
+            // balance since it was checked, in which case check it again
+            if (account.compareAndSetBalance(balance, balance - amount)) {
+                balanceChanged(account, balance, balance - amount);
+                return TransactionStatus.SUCCESS;
+            }
+        }
     }
 
     // Method to withdraw money from the account (only if balance is sufficient)
-    public boolean withdraw(BankAccount account, double amount) {
-        // Checks the amount entered is a positive number.
-        InputValidator.checkPositive(amount, "The withdrawal amount must be a positive number");
+    public boolean withdraw(Account account, long amount) {
+        throwIfFailed(tryWithdraw(account, amount), account, amount,
+                "The withdrawal amount must be a positive number");
+        return true;
+    }
 
-        // Checks if there is enough funds for the withdrawal
-        InputValidator.checkSufficientFunds(amount, account.getBalance(), "Insufficient funds: " +
-                "withdrawal amount: " + amount + ", Account Balance: " + account.getBalance());
+    /**
+     * Moves money from one account to another as one step, without locking either account, so
+     * a reader sees the money in one account or the other and never in neither or both.
+     *
+     * The funds are checked once before the velocity limits and again as the transfer is made,
+     * and if the transfer fails neither balance is changed.
+     *
+     * @param from   The account to take the money from
+     * @param to     The account to put the money into
+     * @param amount The amount in cents to transfer
+     * @return SUCCESS, SAME_ACCOUNT if both accounts are the same, INVALID_AMOUNT if the amount
+     *         is not positive, INSUFFICIENT_FUNDS if the source account does not hold the amount,
+     *         VELOCITY_LIMIT_EXCEEDED if the source account has withdrawn too much or too often
+     *         recently or BALANCE_OVERFLOW if the destination balance would be too large to hold
+     */
+    public TransactionStatus tryTransfer(Account from, Account to, long amount) {
+        if (from.equals(to)) {
+            return TransactionStatus.SAME_ACCOUNT;
+        }
+        if (!InputValidator.isPositive(amount)) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        if (!InputValidator.hasSufficientFunds(amount, from.getBalance())) {
+            return TransactionStatus.INSUFFICIENT_FUNDS;
+        }
+        VelocityLimiter limiter = velocityLimiter;
+        if (limiter != null && !limiter.tryAcquire(from, amount)) {
+            return TransactionStatus.VELOCITY_LIMIT_EXCEEDED;
+        }
+
+        long[] balances = new long[2];
+        if (!from.transferTo(to, amount, balances)) {
+            if (limiter != null) {
+                limiter.release(from, amount);
+            }
+            return InputValidator.hasSufficientFunds(amount, balances[0])
+                    ? TransactionStatus.BALANCE_OVERFLOW : TransactionStatus.INSUFFICIENT_FUNDS;
+        }
+        balanceChanged(from, balances[0], balances[0] - amount);
+        balanceChanged(to, balances[1], balances[1] + amount);
+        return TransactionStatus.SUCCESS;
+    }
 
-        // Decrease the balance by the withdrawal amount
-        account.decreaseBalance(amount);
+    /**
+     * Moves money from one account to another, as tryTransfer does.
+     *
+     * @param from   The account to take the money from
+     * @param to     The account to put the money into
+     * @param amount The amount in cents to transfer
+     * @return True if the transfer is successful
+     * @throws IllegalArgumentException   if the amount is not positive or both accounts are the
+     *                                    same
+     * @throws InsufficientFundsException if the source account does not hold the amount
+     * @throws ArithmeticException        if the destination balance would overflow
+     */
+    public boolean transfer(Account from, Account to, long amount) {
+        throwIfFailed(tryTransfer(from, to, amount), from, amount,
+                "The transfer amount must be a positive number");
         return true;
     }
 
+    // Throws the exception that reports a failed status. The message is only built once the
+    // operation has failed.
+    private static void throwIfFailed(TransactionStatus status, Account account, long amount,
+                                      String invalidAmountMessage) {
+        switch (status) {
+            case SUCCESS -> {
+            }
+            case INVALID_AMOUNT -> throw new IllegalArgumentException(invalidAmountMessage);
+            case INSUFFICIENT_FUNDS -> throw new InsufficientFundsException(
+                    "Insufficient funds: withdrawal amount: " + Money.format(amount) +
+                            ", Account Balance: " + Money.format(account.getBalance()));
+            case BALANCE_OVERFLOW -> throw new ArithmeticException("The balance would overflow");
+            case SAME_ACCOUNT ->
+                    throw new IllegalArgumentException("Cannot transfer money to the same account");
+            case VELOCITY_LIMIT_EXCEEDED -> throw new VelocityLimitExceededException(
+                    "Withdrawal velocity limit exceeded: withdrawal amount: "
+                            + Money.format(amount));
+            default -> throw new IllegalStateException("Unexpected status " + status);
+        }
+    }
+
+    /**
+     * Applies a group of deposits and withdrawals to one account with a single balance update.
+     * The operations are applied in order against a running balance, and an operation that
+     * cannot be applied is recorded as failed in the result rather than thrown, so the rest of
+     * the group still goes ahead. Each withdrawal is also checked against the velocity limits,
+     * if any are set.
+     *
+     * @param account    The account all the operations belong to
+     * @param operations The batch the operations are taken from
+     * @param indices    The positions in the batch of this account's operations, in order
+     * @param count      The number of positions in indices to apply
+     * @param result     The result to record the status of each operation in
+     * @return The net change to the account balance in cents
+     */
+    public long applyBatch(Account account, List<BatchOperation> operations, int[] indices,
+                           int count, BatchResult result) {
+        VelocityLimiter limiter = velocityLimiter;
+        while (true) {
+            long startingBalance = account.getBalance();
+            long balance = startingBalance;
+
+            for (int i = 0; i < count; i++) {
+                int index = indices[i];
+                BatchOperation operation = operations.get(index);
+                long amount = operation.amount();
+                TransactionStatus status;
 
+                if (!InputValidator.isPositive(amount)) {
+                    status = TransactionStatus.INVALID_AMOUNT;
+                } else if (operation.type() == BatchOperation.Type.DEPOSIT) {
+                    if (balance > Long.MAX_VALUE - amount) {
+                        status = TransactionStatus.BALANCE_OVERFLOW;
+                    } else {
+                        balance += amount;
+                        status = TransactionStatus.SUCCESS;
+                    }
+                } else if (!InputValidator.hasSufficientFunds(amount, balance)) {
+                    status = TransactionStatus.INSUFFICIENT_FUNDS;
+                } else if (limiter != null && !limiter.tryAcquire(account, amount)) {
+                    status = TransactionStatus.VELOCITY_LIMIT_EXCEEDED;
+                } else {
+                    balance -= amount;
+                    status = TransactionStatus.SUCCESS;
+                }
+                result.setStatus(index, status);
+            }
+
+            // Publish the final balance in one step, unless another thread changed the balance
+            // while the group was being applied, in which case apply the group again
+            if (balance == startingBalance) {
+                return 0;
+            }
+            if (account.compareAndSetBalance(startingBalance, balance)) {
+                balanceChanged(account, startingBalance, balance);
+                return balance - startingBalance;
+            }
+            if (limiter != null) {
+                releaseWithdrawals(limiter, account, operations, indices, count, result);
+            }
+        }
+    }
+
+    // Reports a balance change to the listener and moves the account in the balance index
+    private void balanceChanged(Account account, long oldBalance, long newBalance) {
+        listener.balanceChanged(account, oldBalance, newBalance);
+        AccountIndex index = balanceIndex;
+        if (index != null) {
+            index.update(account);
+        }
+    }
+
+    // Gives back the allowance taken by the withdrawals of a group that is about to be applied
+    // again
+    private static void releaseWithdrawals(VelocityLimiter limiter, Account account,
+                                           List<BatchOperation> operations, int[] indices,
+                                           int count, BatchResult result) {
+        for (int i = 0; i < count; i++) {
+            BatchOperation operation = operations.get(indices[i]);
+            if (operation.type() == BatchOperation.Type.WITHDRAWAL
+                    && result.isSuccessful(indices[i])) {
+                limiter.release(account, operation.amount());
+            }
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package ie.atu.sw.transaction;
+
+import ie.atu.sw.account.Account;
+
+/**
+ * Told about every change AccountTransaction makes to a balance. Each call reports the values
+ * the balance was changed between by a single compare-and-set, so the calls for one account
+ * add up exactly even when they are made from different threads and arrive out of order.
+ *
+ * A listener is called on the thread that made the change, after the change is visible, and
+ * should return quickly.
+ */
+@FunctionalInterface
+public interface BalanceListener {
+    // A listener that ignores every change
+    BalanceListener NONE = (account, oldBalance, newBalance) -> {
+    };
+
+    /**
+     * Called after a balance has changed.
+     *
+     * @param account    The account whose balance changed
+     * @param oldBalance The balance in cents before the change
+     * @param newBalance The balance in cents after the change
+     */
+    void balanceChanged(Account account, long oldBalance, long newBalance);
+}
@@ -0,0 +1,39 @@
+package ie.atu.sw.transaction;
+
+/**
+ * A single deposit or withdrawal in a batch of transactions.
+ *
+ * @param accountHolder The name of the account holder
+ * @param type          Whether the operation is a deposit or a withdrawal
+ * @param amount        The amount in cents
+ */
+public record BatchOperation(String accountHolder, Type type, long amount) {
+
+    // The kinds of operation that can be batched
+    public enum Type {
+        DEPOSIT,
+        WITHDRAWAL
+    }
+
+    /**
+     * Creates a deposit operation.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The amount in cents
+     * @return The deposit operation
+     */
+    public static BatchOperation deposit(String accountHolder, long amount) {
+        return new BatchOperation(accountHolder, Type.DEPOSIT, amount);
+    }
+
+    /**
+     * Creates a withdrawal operation.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The amount in cents
+     * @return The withdrawal operation
+     */
+    public static BatchOperation withdrawal(String accountHolder, long amount) {
+        return new BatchOperation(accountHolder, Type.WITHDRAWAL, amount);
+    }
+}
@@ -0,0 +1,78 @@
+package ie.atu.sw.transaction;
+
+/**
+ * The outcome of every operation in a batch, held as one status code per operation in the
+ * order the operations were given.
+ */
+public class BatchResult {
+    private final byte[] statuses; // Status code of each operation
+    private int failureCount;      // Number of operations that were not applied
+
+    // Constructor to create a result for a batch of the given size
+    public BatchResult(int size) {
+        this.statuses = new byte[size];
+    }
+
+    /**
+     * Records the status of an operation.
+     *
+     * @param index  The position of the operation in the batch
+     * @param status The status of the operation
+     */
+    public void setStatus(int index, TransactionStatus status) {
+        if (statuses[index] != TransactionStatus.SUCCESS.code()) {
+            failureCount--;
+        }
+        if (status != TransactionStatus.SUCCESS) {
+            failureCount++;
+        }
+        statuses[index] = status.code();
+    }
+
+    /**
+     * Gets the status of an operation.
+     *
+     * @param index The position of the operation in the batch
+     * @return The status of the operation
+     */
+    public TransactionStatus getStatus(int index) {
+        return TransactionStatus.fromCode(statuses[index]);
+    }
+
+    /**
+     * Checks if an operation was applied.
+     *
+     * @param index The position of the operation in the batch
+     * @return True if the operation was applied, otherwise false
+     */
+    public boolean isSuccessful(int index) {
+        return statuses[index] == TransactionStatus.SUCCESS.code();
+    }
+
+    /**
+     * Gets the number of operations in the batch.
+     *
+     * @return The number of operations
+     */
+    public int size() {
+        return statuses.length;
+    }
+
+    /**
+     * Gets the number of operations that were not applied.
+     *
+     * @return The number of failed operations
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Gets the number of operations that were applied.
+     *
+     * @return The number of successful operations
+     */
+    public int getSuccessCount() {
+        return statuses.length - failureCount;
+    }
+}
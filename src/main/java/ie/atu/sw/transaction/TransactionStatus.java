@@ -0,0 +1,48 @@
+package ie.atu.sw.transaction;
+
+/**
+ * The outcome of a single transaction that is reported as a result rather than thrown.
+ */
+public enum TransactionStatus {
+    // The transaction was applied
+    SUCCESS,
+    // The amount was not a positive number
+    INVALID_AMOUNT,
+    // The account did not hold enough money for the withdrawal
+    INSUFFICIENT_FUNDS,
+    // There is no account for the account holder
+    ACCOUNT_NOT_FOUND,
+    // The resulting balance would be too large to hold
+    BALANCE_OVERFLOW,
+    // The repayment was more than the loan remaining
+    EXCESS_LOAN_REPAYMENT,
+    // The transfer was from an account to itself
+    SAME_ACCOUNT,
+    // An account already exists for the account holder
+    ACCOUNT_ALREADY_EXISTS,
+    // The withdrawal would take more money or more withdrawals out of the account within a
+    // window of time than its velocity limits allow
+    VELOCITY_LIMIT_EXCEEDED;
+
+    // Cached copy of values() so that looking up a status by its code does not allocate
+    private static final TransactionStatus[] VALUES = values();
+
+    /**
+     * Gets the compact code used to store the status.
+     *
+     * @return The status code
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Gets the status for a compact status code.
+     *
+     * @param code The status code
+     * @return The status
+     */
+    public static TransactionStatus fromCode(byte code) {
+        return VALUES[code];
+    }
+}
@@ -3,17 +3,54 @@ package ie.atu.sw.validation;
 import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
 import ie.atu.sw.exceptions.InsufficientFundsException;
 
+/**
+ * Checks the amounts of transactions. Each check comes as a predicate that returns the result
+ * without allocating, for callers that report a rejection as a status, and as a method that
+ * throws an exception with a message when the check fails.
+ */
 public class InputValidator {
 
+    /**
+     * Checks if an amount is a positive number
+     *
+     * @param amount the amount in cents to check
+     * @return true if the amount is positive, otherwise false
+     */
+    public static boolean isPositive(long amount) {
+        return amount > 0;
+    }
+
+    /**
+     * Checks if a balance holds enough funds for an amount
+     *
+     * @param amount  The amount in cents for the transaction
+     * @param balance The balance in cents to be checked
+     * @return true if the amount does not exceed the balance, otherwise false
+     */
+    public static boolean hasSufficientFunds(long amount, long balance) {
+        return amount <= balance;
+    }
+
+    /**
+     * Checks if a repayment does not exceed the remaining loan debt
+     *
+     * @param amount      The amount in cents for the transaction
+     * @param loanBalance The balance in cents of the loan remaining
+     * @return true if the amount does not exceed the loan balance, otherwise false
+     */
+    public static boolean isWithinLoanBalance(long amount, long loanBalance) {
+        return amount <= loanBalance;
+    }
+
     /**
      * Validates the amount provided is a positive number
      *
-     * @param amount  the number to validate
+     * @param amount  the amount in cents to validate
      * @param message the error message
      * @throws IllegalArgumentException if the amount is a negative number
      */
-    public static void checkPositive(double amount, String message) {
-        if (amount <= 0) {
+    public static void checkPositive(long amount, String message) {
+        if (!isPositive(amount)) {
             throw new IllegalArgumentException(message);
         }
     }
@@ -21,13 +58,13 @@ public class InputValidator {
     /**
      * Validates there is sufficient funds in the account
      *
-     * @param amount  The amount for the transaction
-     * @param balance The balance to be checked
+     * @param amount  The amount in cents for the transaction
+     * @param balance The balance in cents to be checked
      * @param message The error message
      * @throws InsufficientFundsException if the amount exceeds the balance
      */
-    public static void checkSufficientFunds(double amount, double balance, String message) {
-        if (amount > balance) {
+    public static void checkSufficientFunds(long amount, long balance, String message) {
+        if (!hasSufficientFunds(amount, balance)) {
             throw new InsufficientFundsException(message);
         }
     }
@@ -35,14 +72,14 @@ public class InputValidator {
     /**
      * Validates if the amount does not exceed the remaining loan debt.
      *
-     * @param amount      The amount for the transaction
-     * @param loanBalance The balance of the loan remaining
+     * @param amount      The amount in cents for the transaction
+     * @param loanBalance The balance in cents of the loan remaining
      * @param message     The error message
      * @throws ExcessLoanRepaymentException if the amount exceeds the loan balance
      */
-    public static void checkSufficientLoanRepayment(double amount, double loanBalance,
+    public static void checkSufficientLoanRepayment(long amount, long loanBalance,
                                                     String message) {
-        if (amount > loanBalance) {
+        if (!isWithinLoanBalance(amount, loanBalance)) {
             throw new ExcessLoanRepaymentException(message);
         }
     }
@@ -0,0 +1,24 @@
+package ie.atu.sw.velocity;
+
+import java.time.Duration;
+
+/**
+ * A limit on the withdrawals from one account within a rolling window of time. To limit only
+ * the amount or only the count, set the other to Long.MAX_VALUE or Integer.MAX_VALUE.
+ *
+ * @param window    The length of the window
+ * @param maxAmount The most money in cents that can be withdrawn within the window
+ * @param maxCount  The most withdrawals that can be made within the window
+ */
+public record VelocityLimit(Duration window, long maxAmount, int maxCount) {
+
+    // Constructor to check the limit is positive
+    public VelocityLimit {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("The window must be positive");
+        }
+        if (maxAmount <= 0 || maxCount <= 0) {
+            throw new IllegalArgumentException("The maximum amount and count must be positive");
+        }
+    }
+}
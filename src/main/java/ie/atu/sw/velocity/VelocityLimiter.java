@@ -0,0 +1,218 @@
+package ie.atu.sw.velocity;
+
+import ie.atu.sw.account.Account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Checks withdrawals against per-account velocity limits, such as at most 1000 euro and 10
+ * withdrawals a minute and 5000 euro an hour.
+ *
+ * Each limit is a token bucket kept as a single theoretical arrival time, as in the generic
+ * cell rate algorithm: a bucket holds the limit's maximum and refills at the maximum per
+ * window, so an account can withdraw its whole allowance at once and then more as the window
+ * rolls on, but never more than the maximum while the bucket is empty. The state of an account
+ * is one array with an arrival time for the count and for the amount of each limit, updated
+ * with compare-and-set and no lock, so a withdrawal costs a map lookup, a clock read and a
+ * compare-and-set per bucket.
+ *
+ * Only accounts that withdrew recently have any state. An account whose buckets have all
+ * been full for the longest window is idle, and its state is dropped by a sweep on a pool
+ * thread each time the number of accounts with state doubles since the last sweep, so memory
+ * follows the accounts that are active rather than all the accounts in the bank, while an
+ * account that withdraws now and then keeps its state instead of having it made again.
+ */
+public final class VelocityLimiter {
+    private static final VarHandle TIMES = MethodHandles.arrayElementVarHandle(long[].class);
+    // Marks the state of an account that was dropped while idle, so a withdrawal holding it
+    // looks it up again
+    private static final long RETIRED = Long.MIN_VALUE;
+    // The fewest accounts with state before a sweep is started
+    private static final int MIN_SWEEP_THRESHOLD = 1024;
+
+    private final VelocityLimit[] limits;
+    // The window of each limit, and the share of it one withdrawal and one cent take
+    private final long[] windowNanos;
+    private final long[] nanosPerWithdrawal;
+    private final double[] nanosPerCent;
+    // How long the buckets of an account stay full before it is idle
+    private final long idleNanos;
+    // Gives the time in nanoseconds; only differences between readings are used
+    private final LongSupplier clock;
+    // The arrival times of each account with state: the count and then the amount of each
+    // limit in turn
+    private final Map<Account, long[]> arrivals = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile int sweepThreshold = MIN_SWEEP_THRESHOLD;
+
+    // Constructor to create a limiter timed by the system clock
+    public VelocityLimiter(VelocityLimit... limits) {
+        this(System::nanoTime, limits);
+    }
+
+    // Constructor to create a limiter timed by the given clock in nanoseconds
+    public VelocityLimiter(LongSupplier clock, VelocityLimit... limits) {
+        if (limits.length == 0) {
+            throw new IllegalArgumentException("At least one velocity limit is needed");
+        }
+        this.limits = limits.clone();
+        this.clock = clock;
+        windowNanos = new long[limits.length];
+        nanosPerWithdrawal = new long[limits.length];
+        nanosPerCent = new double[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            windowNanos[i] = limits[i].window().toNanos();
+            nanosPerWithdrawal[i] = windowNanos[i] / limits[i].maxCount();
+            nanosPerCent[i] = (double) windowNanos[i] / limits[i].maxAmount();
+        }
+        idleNanos = Arrays.stream(windowNanos).max().getAsLong();
+    }
+
+    /**
+     * Takes a withdrawal from the allowance of an account if every limit allows it. A
+     * withdrawal that is then not made must be given back with release.
+     *
+     * @param account The account withdrawn from
+     * @param amount  The amount in cents, which is positive
+     * @return True if the withdrawal is within the limits, false if it would exceed one
+     */
+    public boolean tryAcquire(Account account, long amount) {
+        for (VelocityLimit limit : limits) {
+            if (amount > limit.maxAmount()) {
+                return false;
+            }
+        }
+        long now = clock.getAsLong();
+        while (true) {
+            long[] times = arrivals.get(account);
+            if (times == null) {
+                times = arrivals.computeIfAbsent(account, key -> newArrivals(now));
+                if (arrivals.size() > sweepThreshold && sweeping.compareAndSet(false, true)) {
+                    ForkJoinPool.commonPool().execute(this::sweepInBackground);
+                }
+            }
+            for (int i = 0; ; i++) {
+                if (i == times.length) {
+                    return true;
+                }
+                long increment = increment(i, amount);
+                long window = windowNanos[i >> 1];
+                long time;
+                long next;
+                do {
+                    time = (long) TIMES.getVolatile(times, i);
+                    if (time == RETIRED) {
+                        // Only the first time is ever retired, so nothing was taken yet
+                        arrivals.remove(account, times);
+                        break;
+                    }
+                    next = (time - now > 0 ? time : now) + increment;
+                    if (next - now > window) {
+                        refund(times, i, amount);
+                        return false;
+                    }
+                } while (!TIMES.compareAndSet(times, i, time, next));
+                if (time == RETIRED) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives back the allowance taken for a withdrawal that was not made after all.
+     *
+     * @param account The account the allowance was taken from
+     * @param amount  The amount in cents
+     */
+    public void release(Account account, long amount) {
+        long[] times = arrivals.get(account);
+        if (times != null) {
+            refund(times, times.length, amount);
+        }
+    }
+
+    /**
+     * Drops the state of every account whose allowance has been full for the longest window.
+     *
+     * @return The number of accounts dropped
+     */
+    public int evictIdle() {
+        long idleSince = clock.getAsLong() - idleNanos;
+        int evicted = 0;
+        for (Map.Entry<Account, long[]> entry : arrivals.entrySet()) {
+            if (retire(entry.getValue(), idleSince)) {
+                arrivals.remove(entry.getKey(), entry.getValue());
+                evicted++;
+            }
+        }
+        sweepThreshold = Math.max(MIN_SWEEP_THRESHOLD, arrivals.size() * 2);
+        return evicted;
+    }
+
+    /**
+     * Gets the number of accounts with state, which includes idle accounts not yet dropped.
+     *
+     * @return The number of accounts
+     */
+    public int size() {
+        return arrivals.size();
+    }
+
+    // Creates the state of an account that has not withdrawn recently, with every bucket full
+    private long[] newArrivals(long now) {
+        long[] times = new long[limits.length * 2];
+        Arrays.fill(times, now);
+        return times;
+    }
+
+    // Gets how far a withdrawal moves on the arrival time at an index
+    private long increment(int index, long amount) {
+        return (index & 1) == 0 ? nanosPerWithdrawal[index >> 1]
+                : (long) (amount * nanosPerCent[index >> 1]);
+    }
+
+    // Moves back the arrival times before an index by what a withdrawal moved them on
+    private void refund(long[] times, int end, long amount) {
+        for (int i = 0; i < end; i++) {
+            long increment = increment(i, amount);
+            long time;
+            do {
+                time = (long) TIMES.getVolatile(times, i);
+                if (time == RETIRED) {
+                    return;
+                }
+            } while (!TIMES.compareAndSet(times, i, time, time - increment));
+        }
+    }
+
+    // Marks the state of an account retired if every bucket has been full since the given
+    // time. The first time is retired last, and a withdrawal always moves it on first, so a
+    // withdrawal either sees the state retired or stops it being retired.
+    private boolean retire(long[] times, long idleSince) {
+        for (int i = times.length - 1; i > 0; i--) {
+            if ((long) TIMES.getVolatile(times, i) - idleSince > 0) {
+                return false;
+            }
+        }
+        long first = (long) TIMES.getVolatile(times, 0);
+        return first != RETIRED && first - idleSince <= 0
+                && TIMES.compareAndSet(times, 0, first, RETIRED);
+    }
+
+    // Sweeps on a pool thread, letting the next sweep start once it is done
+    private void sweepInBackground() {
+        try {
+            evictIdle();
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ie.atu.sw.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads account holder names out of a frame without creating a new String for a name seen
+ * recently. A name is compared byte by byte against the cached String in its slot, so a
+ * connection that keeps sending the same accounts allocates nothing to read their names.
+ *
+ * Only names that are plain ASCII are cached; others are decoded every time. A cache belongs
+ * to one connection and is not thread-safe.
+ */
+final class AccountIdCache {
+    private final String[] entries;
+    private final byte[] scratch = new byte[WireFormat.MAX_ID_LENGTH];
+
+    // Constructor to create a cache with a number of slots, rounded up to a power of two
+    AccountIdCache(int slots) {
+        entries = new String[Math.max(1, Integer.highestOneBit(slots - 1) << 1)];
+    }
+
+    /**
+     * Reads a name from a buffer without moving its position.
+     *
+     * @param buffer The buffer holding the name
+     * @param offset The index of the first byte of the name
+     * @param length The length of the name in bytes
+     * @return The name
+     */
+    String read(ByteBuffer buffer, int offset, int length) {
+        // For ASCII this is the same hash String.hashCode gives
+        int hash = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            hash = 31 * hash + b;
+            ascii &= b >= 0;
+        }
+        buffer.get(offset, scratch, 0, length);
+        if (!ascii) {
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (entries.length - 1);
+        String cached = entries[slot];
+        if (cached != null && matches(cached, length)) {
+            return cached;
+        }
+        String name = new String(scratch, 0, length, StandardCharsets.US_ASCII);
+        entries[slot] = name;
+        return name;
+    }
+
+    // Checks if a cached name is the ASCII name in the scratch buffer
+    private boolean matches(String cached, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,237 @@
+package ie.atu.sw.wire;
+
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A client for WireServer that pipelines requests over one connection.
+ *
+ * Each operation writes its request into a buffer and returns a future for the reply straight
+ * away. The buffered requests are sent when flush is called or the buffer fills, so a caller
+ * that issues many operations before flushing sends them in a few writes and the server answers
+ * them in a few more. Replies are matched to their requests by request id on a reader thread.
+ *
+ * The client is safe to use from multiple threads.
+ */
+public class WireClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer out = ByteBuffer.allocateDirect(WireServer.BUFFER_SIZE);
+    private final Map<Long, CompletableFuture<Reply>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    private long nextRequestId;
+    // The reason the connection failed, or null while it is working
+    private volatile IOException failure;
+
+    /**
+     * The server's answer to a request.
+     *
+     * @param requestId The id of the request
+     * @param status    The outcome of the operation
+     * @param value     The balance for a balance request, otherwise 0
+     */
+    public record Reply(long requestId, TransactionStatus status, long value) {
+    }
+
+    // Constructor to create a client over a connected channel
+    private WireClient(SocketChannel channel) {
+        this.channel = channel;
+        this.reader = Thread.ofVirtual().name("wire-client-reader").unstarted(this::readReplies);
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param address The address of the server
+     * @return The connected client
+     * @throws IOException if the connection cannot be made
+     */
+    public static WireClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        WireClient client = new WireClient(channel);
+        client.reader.start();
+        return client;
+    }
+
+    /**
+     * Queues a deposit.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The amount in cents
+     * @return The reply, once it arrives
+     * @throws IOException if the connection has failed
+     */
+    public CompletableFuture<Reply> deposit(String accountHolder, long amount)
+            throws IOException {
+        return send(WireFormat.DEPOSIT, accountHolder, null, amount);
+    }
+
+    /**
+     * Queues a withdrawal.
+     *
+     * @param accountHolder The name of the account holder
+     * @param amount        The amount in cents
+     * @return The reply, once it arrives
+     * @throws IOException if the connection has failed
+     */
+    public CompletableFuture<Reply> withdraw(String accountHolder, long amount)
+            throws IOException {
+        return send(WireFormat.WITHDRAW, accountHolder, null, amount);
+    }
+
+    /**
+     * Queues a transfer.
+     *
+     * @param fromAccountHolder The name of the account holder sending the money
+     * @param toAccountHolder   The name of the account holder receiving the money
+     * @param amount            The amount in cents
+     * @return The reply, once it arrives
+     * @throws IOException if the connection has failed
+     */
+    public CompletableFuture<Reply> transfer(String fromAccountHolder, String toAccountHolder,
+                                             long amount) throws IOException {
+        return send(WireFormat.TRANSFER, fromAccountHolder, toAccountHolder, amount);
+    }
+
+    /**
+     * Queues a balance read.
+     *
+     * @param accountHolder The name of the account holder
+     * @return The reply holding the balance, once it arrives
+     * @throws IOException if the connection has failed
+     */
+    public CompletableFuture<Reply> balance(String accountHolder) throws IOException {
+        return send(WireFormat.BALANCE, accountHolder, null, 0);
+    }
+
+    /**
+     * Sends every queued request.
+     *
+     * @throws IOException if the requests cannot be written
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            writeOut();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sends every queued request and closes the connection. Replies that have not arrived
+     * complete exceptionally.
+     *
+     * @throws IOException if the queued requests cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (failure == null) {
+                flush();
+            }
+        } finally {
+            channel.close();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Writes a request into the buffer and registers the future for its reply
+    private CompletableFuture<Reply> send(byte operation, String accountHolder,
+                                          String counterparty, long amount) throws IOException {
+        byte[] id = WireFormat.encodeId(accountHolder);
+        byte[] counterpartyId = counterparty == null ? null : WireFormat.encodeId(counterparty);
+        CompletableFuture<Reply> reply = new CompletableFuture<>();
+        writeLock.lock();
+        try {
+            if (out.remaining() < WireFormat.MAX_REQUEST_LENGTH) {
+                writeOut();
+            }
+            long requestId = nextRequestId++;
+            pending.put(requestId, reply);
+            // Checked after registering, so either this sees the failure or the reader thread
+            // sees the future and fails it
+            IOException failed = failure;
+            if (failed != null) {
+                pending.remove(requestId);
+                throw failed;
+            }
+            WireFormat.putRequest(out, requestId, operation, id, counterpartyId, amount);
+        } finally {
+            writeLock.unlock();
+        }
+        return reply;
+    }
+
+    // Writes out the buffer. Called holding the write lock.
+    private void writeOut() throws IOException {
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } finally {
+            out.clear();
+        }
+    }
+
+    // Completes the future of every reply as it arrives, until the connection closes
+    private void readReplies() {
+        ByteBuffer in = ByteBuffer.allocateDirect(WireServer.BUFFER_SIZE);
+        IOException cause;
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= WireFormat.RESPONSE_LENGTH) {
+                    int length = in.getInt();
+                    if (length != WireFormat.RESPONSE_LENGTH - Integer.BYTES) {
+                        throw new IOException("Malformed reply length " + length);
+                    }
+                    long requestId = in.getLong();
+                    byte status = in.get();
+                    long value = in.getLong();
+                    complete(requestId, status, value);
+                }
+                in.compact();
+            }
+            cause = new IOException("The server closed the connection");
+        } catch (IOException e) {
+            cause = e;
+        }
+        failure = cause;
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<Reply> reply = pending.remove(requestId);
+            if (reply != null) {
+                reply.completeExceptionally(cause);
+            }
+        }
+    }
+
+    // Completes the future waiting for a reply
+    private void complete(long requestId, byte status, long value) {
+        CompletableFuture<Reply> reply = pending.remove(requestId);
+        if (reply == null) {
+            return;
+        }
+        if (status == WireFormat.UNSUPPORTED) {
+            reply.completeExceptionally(
+                    new UnsupportedOperationException("The server does not support the request"));
+        } else {
+            reply.complete(new Reply(requestId, TransactionStatus.fromCode(status), value));
+        }
+    }
+}
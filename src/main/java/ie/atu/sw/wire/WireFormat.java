@@ -0,0 +1,104 @@
+package ie.atu.sw.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The layout of the frames of the binary protocol spoken by WireServer and WireClient. All
+ * numbers are big-endian and all amounts are in cents.
+ *
+ * Every frame starts with its length in an int, not counting the length itself. A request
+ * then holds:
+ * <pre>
+ * long  request id   chosen by the client and returned in the response
+ * byte  operation    DEPOSIT, WITHDRAW, TRANSFER or BALANCE
+ * long  amount       ignored by BALANCE
+ * byte  id length    followed by the account holder's name in UTF-8
+ * byte  id length    followed by the receiving account holder's name, for TRANSFER only
+ * </pre>
+ * and a response holds:
+ * <pre>
+ * long  request id   of the request answered
+ * byte  status       the TransactionStatus code, or UNSUPPORTED
+ * long  value        the balance for BALANCE, otherwise 0
+ * </pre>
+ * A client may send any number of requests without waiting for their responses.
+ */
+public final class WireFormat {
+    // Operation codes
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER = 3;
+    public static final byte BALANCE = 4;
+
+    // Status sent for a request with an unknown operation
+    public static final byte UNSUPPORTED = -1;
+
+    // The longest account holder name in bytes
+    public static final int MAX_ID_LENGTH = 255;
+    // The length of a response frame, including its length
+    public static final int RESPONSE_LENGTH = Integer.BYTES + Long.BYTES + 1 + Long.BYTES;
+    // The length of a request frame before its account holder names, including its length
+    static final int REQUEST_HEADER_LENGTH = Integer.BYTES + Long.BYTES + 1 + Long.BYTES;
+    // The longest request frame, including its length
+    static final int MAX_REQUEST_LENGTH = REQUEST_HEADER_LENGTH + 2 * (1 + MAX_ID_LENGTH);
+
+    private WireFormat() {
+    }
+
+    /**
+     * Writes a request frame.
+     *
+     * @param buffer        The buffer to write to, with room for the frame
+     * @param requestId     The request id
+     * @param operation     The operation code
+     * @param accountHolder The name of the account holder in UTF-8
+     * @param counterparty  The name of the receiving account holder in UTF-8, or null
+     * @param amount        The amount in cents
+     */
+    static void putRequest(ByteBuffer buffer, long requestId, byte operation,
+                           byte[] accountHolder, byte[] counterparty, long amount) {
+        int length = REQUEST_HEADER_LENGTH - Integer.BYTES + 1 + accountHolder.length
+                + (counterparty == null ? 0 : 1 + counterparty.length);
+        buffer.putInt(length)
+                .putLong(requestId)
+                .put(operation)
+                .putLong(amount)
+                .put((byte) accountHolder.length)
+                .put(accountHolder);
+        if (counterparty != null) {
+            buffer.put((byte) counterparty.length).put(counterparty);
+        }
+    }
+
+    /**
+     * Writes a response frame.
+     *
+     * @param buffer    The buffer to write to, with room for the frame
+     * @param requestId The id of the request answered
+     * @param status    The status code
+     * @param value     The balance for BALANCE, otherwise 0
+     */
+    static void putResponse(ByteBuffer buffer, long requestId, byte status, long value) {
+        buffer.putInt(RESPONSE_LENGTH - Integer.BYTES)
+                .putLong(requestId)
+                .put(status)
+                .putLong(value);
+    }
+
+    /**
+     * Encodes an account holder's name, checking it fits in a frame.
+     *
+     * @param accountHolder The name of the account holder
+     * @return The name in UTF-8
+     * @throws IllegalArgumentException if the name is empty or longer than MAX_ID_LENGTH bytes
+     */
+    static byte[] encodeId(String accountHolder) {
+        byte[] bytes = accountHolder.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("An account holder's name must be 1 to "
+                    + MAX_ID_LENGTH + " bytes long");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,282 @@
+package ie.atu.sw.wire;
+
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.transaction.BatchOperation;
+import ie.atu.sw.transaction.BatchResult;
+import ie.atu.sw.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves an account manager over the binary protocol described in WireFormat, for clients
+ * such as settlement systems that send many operations and cannot afford HTTP for each.
+ *
+ * Each connection is served on its own virtual thread, reading into and writing from direct
+ * buffers. Every complete frame in what was read is handled before the responses are written
+ * back together, so a client that pipelines requests gets many answers per round trip. A run
+ * of deposits and withdrawals in the frames read is applied as one batch, which for a
+ * persistent account manager waits for the journal to reach the disk once for the whole run.
+ * Transfers and balance reads are applied in order between runs.
+ *
+ * A malformed frame closes the connection.
+ */
+public class WireServer implements AutoCloseable {
+    // The size of each connection's read and write buffers
+    static final int BUFFER_SIZE = 64 * 1024;
+    // The number of account holder names each connection remembers
+    private static final int ID_CACHE_SLOTS = 1024;
+
+    private final AccountManager accountManager;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+    // Constructor to create a server for the account manager listening on a channel
+    private WireServer(AccountManager accountManager, ServerSocketChannel serverChannel) {
+        this.accountManager = accountManager;
+        this.serverChannel = serverChannel;
+    }
+
+    /**
+     * Starts a server for an account manager.
+     *
+     * @param accountManager The account manager the requests are applied to
+     * @param address        The address to listen on; port 0 picks a free port
+     * @return The running server
+     * @throws IOException if the server cannot bind to the address
+     */
+    public static WireServer start(AccountManager accountManager, InetSocketAddress address)
+            throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address, 4096);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+        WireServer server = new WireServer(accountManager, serverChannel);
+        server.executor.execute(server::acceptConnections);
+        return server;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port
+     * @throws IOException if the server has been closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Stops accepting connections, closes those open and waits for their threads to finish.
+     * The account manager is left open.
+     *
+     * @throws IOException if the listening channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (SocketChannel channel : connections) {
+            channel.close();
+        }
+        executor.close();
+    }
+
+    // Accepts connections until the server is closed, serving each on its own virtual thread
+    private void acceptConnections() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+            connections.add(channel);
+            if (!serverChannel.isOpen()) {
+                // Closed after close looked at the connections
+                connections.remove(channel);
+                closeQuietly(channel);
+                return;
+            }
+            executor.execute(() -> serve(channel));
+        }
+    }
+
+    // Serves a connection until the client closes it or sends a malformed frame
+    private void serve(SocketChannel channel) {
+        try {
+            new Connection(channel).run();
+        } catch (IOException e) {
+            // The client went away or broke the protocol; either way the connection is done
+        } finally {
+            connections.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    // Closes a channel, ignoring a failure since there is nothing left to do with it
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already unusable
+        }
+    }
+
+    // The state of one connection, only used by its own thread
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final AccountIdCache ids = new AccountIdCache(ID_CACHE_SLOTS);
+        // The deposits and withdrawals waiting to be applied together, and their request ids
+        private final List<BatchOperation> batch = new ArrayList<>();
+        private long[] batchRequestIds = new long[64];
+
+        // Constructor to serve a connected channel
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // Reads and answers requests until the client closes the connection
+        private void run() throws IOException {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                handleFrames();
+                applyBatch();
+                writeResponses();
+                in.compact();
+            }
+        }
+
+        // Handles every complete frame in the read buffer
+        private void handleFrames() throws IOException {
+            while (in.remaining() >= Integer.BYTES) {
+                int start = in.position();
+                int length = in.getInt(start);
+                if (length < WireFormat.REQUEST_HEADER_LENGTH - Integer.BYTES + 2
+                        || length > WireFormat.MAX_REQUEST_LENGTH - Integer.BYTES) {
+                    throw new IOException("Malformed frame length " + length);
+                }
+                int end = start + Integer.BYTES + length;
+                if (end > in.limit()) {
+                    return;
+                }
+                long requestId = in.getLong(start + Integer.BYTES);
+                byte operation = in.get(start + Integer.BYTES + Long.BYTES);
+                long amount = in.getLong(start + Integer.BYTES + Long.BYTES + 1);
+                int idStart = start + WireFormat.REQUEST_HEADER_LENGTH;
+                String accountHolder = readId(idStart, end);
+                switch (operation) {
+                    case WireFormat.DEPOSIT ->
+                            queue(requestId, BatchOperation.deposit(accountHolder, amount));
+                    case WireFormat.WITHDRAW ->
+                            queue(requestId, BatchOperation.withdrawal(accountHolder, amount));
+                    case WireFormat.TRANSFER -> {
+                        String counterparty = readId(idStart + 1 + (in.get(idStart) & 0xff),
+                                end);
+                        applyBatch();
+                        respond(requestId, accountManager.tryTransfer(accountHolder,
+                                counterparty, amount).code(), 0);
+                    }
+                    case WireFormat.BALANCE -> {
+                        applyBatch();
+                        try {
+                            respond(requestId, TransactionStatus.SUCCESS.code(),
+                                    accountManager.getBalance(accountHolder));
+                        } catch (BankAccountDoesNotExist e) {
+                            respond(requestId, TransactionStatus.ACCOUNT_NOT_FOUND.code(), 0);
+                        }
+                    }
+                    default -> {
+                        applyBatch();
+                        respond(requestId, WireFormat.UNSUPPORTED, 0);
+                    }
+                }
+                in.position(end);
+            }
+        }
+
+        // Reads the length-prefixed account holder name at a position, within a frame
+        private String readId(int position, int end) throws IOException {
+            if (position >= end) {
+                throw new IOException("Frame ends before an account holder's name");
+            }
+            int length = in.get(position) & 0xff;
+            if (length == 0 || position + 1 + length > end) {
+                throw new IOException("Malformed account holder's name");
+            }
+            return ids.read(in, position + 1, length);
+        }
+
+        // Holds a deposit or withdrawal to apply with the rest of the run
+        private void queue(long requestId, BatchOperation operation) {
+            int index = batch.size();
+            if (index == batchRequestIds.length) {
+                batchRequestIds = Arrays.copyOf(batchRequestIds, index * 2);
+            }
+            batchRequestIds[index] = requestId;
+            batch.add(operation);
+        }
+
+        // Applies the deposits and withdrawals held so far and answers them
+        private void applyBatch() throws IOException {
+            int size = batch.size();
+            if (size == 0) {
+                return;
+            }
+            if (size == 1) {
+                // A lone operation does not need the grouping a batch does
+                BatchOperation operation = batch.get(0);
+                TransactionStatus status = operation.type() == BatchOperation.Type.DEPOSIT
+                        ? accountManager.tryDeposit(operation.accountHolder(), operation.amount())
+                        : accountManager.tryWithdraw(operation.accountHolder(),
+                                operation.amount());
+                batch.clear();
+                respond(batchRequestIds[0], status.code(), 0);
+                return;
+            }
+            BatchResult result = accountManager.applyBatch(batch);
+            batch.clear();
+            for (int i = 0; i < size; i++) {
+                respond(batchRequestIds[i], result.getStatus(i).code(), 0);
+            }
+        }
+
+        // Adds a response to the write buffer, writing the buffer out first if it is full
+        private void respond(long requestId, byte status, long value) throws IOException {
+            if (out.remaining() < WireFormat.RESPONSE_LENGTH) {
+                writeResponses();
+            }
+            WireFormat.putResponse(out, requestId, status, value);
+        }
+
+        // Writes out the responses in the write buffer
+        private void writeResponses() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package ie.atu.sw.account;
+
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.transaction.AccountTransaction;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that every AccountStore implementation must pass. Each implementation has a subclass
+ * that creates the store to test.
+ */
+abstract class AccountStoreContractTest {
+    protected AccountStore store;
+
+    /**
+     * Creates an empty store of the implementation under test.
+     *
+     * @return The store.
+     */
+    protected abstract AccountStore createStore();
+
+    /**
+     * Creates a new store containing a single account for each test.
+     */
+    @BeforeEach
+    public void setupEach() {
+        store = createStore();
+        store.add("James", 10_000, 0);
+    }
+
+    /**
+     * Tests that an added account can be found by the account holder name.
+     */
+    @Test
+    public void testFindReturnsAddedAccount() {
+        Account account = store.add("Alice", 5_000, 1_000);
+        Account found = store.find("Alice");
+        assertEquals(account, found, "The account added for Alice should be returned when " +
+                "searching for Alice");
+        assertEquals("Alice", found.getAccountHolder());
+        assertEquals(5_000, found.getBalance());
+        assertEquals(1_000, found.getLoan());
+    }
+
+    /**
+     * Tests that a change made through one lookup of an account is seen through another.
+     */
+    @Test
+    public void testChangesAreSharedBetweenLookups() {
+        store.find("James").increaseBalance(500);
+        assertTrue(store.find("James").compareAndSetLoan(0, 2_000));
+        assertEquals(10_500, store.find("James").getBalance());
+        assertEquals(2_000, store.find("James").getLoan());
+    }
+
+    /**
+     * Tests that the balance and loan read together always held at the same moment while
+     * another thread changes them one after the other, keeping the balance equal to the loan or
+     * one more than it.
+     */
+    @Test
+    public void testStateIsConsistentDuringWrites() throws InterruptedException {
+        Account account = store.add("Alice", 0, 0);
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                account.increaseBalance(1);
+                account.increaseLoan(1);
+            }
+        });
+        while (writer.isAlive()) {
+            AccountState state = store.find("Alice").getState();
+            long difference = state.balance() - state.loan();
+            assertTrue(difference == 0 || difference == 1, "Torn read " + state);
+        }
+        writer.join();
+        assertEquals(new AccountState(200_000, 200_000), account.getState());
+    }
+
+    /**
+     * Tests that a reader never sees the money of a transfer in neither account or in both.
+     * The transfers all go one way, so each balance only ever moves in one direction and a
+     * reader that reads James's balance the same before and after Alice's knows the two
+     * balances held together.
+     */
+    @Test
+    public void testTransfersAreSeenWhole() throws InterruptedException {
+        Account james = store.find("James");
+        Account alice = store.add("Alice", 10_000, 0);
+        AccountTransaction accountTransaction = new AccountTransaction();
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                accountTransaction.tryTransfer(james, alice, 1);
+            }
+        });
+        while (writer.isAlive()) {
+            long jamesBalance = james.getBalance();
+            long aliceBalance = store.find("Alice").getBalance();
+            if (james.getBalance() == jamesBalance) {
+                assertEquals(20_000, jamesBalance + aliceBalance);
+            }
+        }
+        writer.join();
+        assertEquals(new AccountState(0, 0), james.getState());
+        assertEquals(new AccountState(20_000, 0), alice.getState());
+    }
+
+    /**
+     * Tests that transfers between two accounts in both directions at once all finish and
+     * lose no money while other writers change the same accounts.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testOpposingTransfersAndWritersLoseNothing() throws InterruptedException {
+        Account james = store.find("James");
+        Account alice = store.add("Alice", 10_000, 0);
+        AccountTransaction accountTransaction = new AccountTransaction();
+        AtomicLong withdrawn = new AtomicLong();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Account from = t % 2 == 0 ? james : alice;
+            Account to = t % 2 == 0 ? alice : james;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    accountTransaction.tryTransfer(from, to, i % 7 + 1);
+                }
+            }));
+        }
+        for (Account account : List.of(james, alice)) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    account.increaseBalance(2);
+                    account.increaseLoan(1);
+                    if (accountTransaction.tryWithdraw(account, 1) == TransactionStatus.SUCCESS) {
+                        withdrawn.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(420_000 - withdrawn.get(), james.getBalance() + alice.getBalance());
+        assertEquals(100_000, james.getLoan());
+        assertEquals(100_000, alice.getLoan());
+    }
+
+    /**
+     * Tests that many more writers of one account than processors lose no change and keep
+     * making progress, even though a writer is often descheduled part way through a change.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testOversubscribedWritersMakeProgress() throws InterruptedException {
+        Account account = store.find("James");
+        int threadCount = Runtime.getRuntime().availableProcessors() * 8;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    account.increaseBalance(1);
+                    account.increaseLoan(1);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        long changes = threadCount * 20_000L;
+        assertEquals(new AccountState(10_000 + changes, changes), account.getState());
+    }
+
+    /**
+     * Tests that searching for an account that does not exist throws a BankAccountDoesNotExist
+     * exception.
+     */
+    @Test
+    public void testFindThrowsExceptionForNonexistentAccount() {
+        assertThrows(BankAccountDoesNotExist.class, () -> store.find("NonExistentAccount"));
+    }
+
+    /**
+     * Tests that adding a second account for the same account holder throws an
+     * AccountAlreadyExists exception and keeps the original account.
+     */
+    @Test
+    public void testAddDuplicateAccountThrowsException() {
+        assertThrows(AccountAlreadyExists.class, () -> store.add("James", 100_000, 0));
+        assertEquals(10_000, store.find("James").getBalance(), "The original account should " +
+                "be kept");
+    }
+
+    /**
+     * Tests that contains reports accounts correctly.
+     */
+    @Test
+    public void testContains() {
+        assertTrue(store.contains("James"));
+        assertFalse(store.contains("Bob"));
+    }
+
+    /**
+     * Tests that the store keeps count of the accounts added to it.
+     *
+     * @param accountCount The number of additional accounts to add.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100_000})
+    public void testSize(int accountCount) {
+        for (int i = 0; i < accountCount; i++) {
+            store.add("Holder" + i, 1_000, 0);
+        }
+        assertEquals(accountCount + 1, store.size(), "The store should hold the initial account " +
+                "and the " + accountCount + " accounts added");
+        assertEquals(store.size(), store.getAccounts().size());
+        assertEquals(store.size(), store.getAccounts().stream().count());
+        assertEquals(1_000, store.find("Holder" + (accountCount - 1)).getBalance());
+    }
+
+    /**
+     * Tests that get returns the added account, or null for an account that does not exist.
+     */
+    @Test
+    public void testGet() {
+        assertEquals(store.find("James"), store.get("James"));
+        assertNull(store.get("NonExistentAccount"));
+    }
+
+    /**
+     * Tests that a parallel scan of the accounts visits every account exactly once.
+     */
+    @Test
+    public void testParallelScanVisitsEveryAccount() {
+        for (int i = 0; i < 10_000; i++) {
+            store.add("Holder" + i, i, 0);
+        }
+        assertEquals(store.size(), store.getAccounts().parallelStream()
+                .map(Account::getAccountHolder).distinct().count());
+        assertEquals(10_000 + 49_995_000L, store.getAccounts().parallelStream()
+                .mapToLong(Account::getBalance).sum());
+    }
+}
@@ -19,7 +19,7 @@ class BankAccountTest {
      */
     @BeforeEach
     public void setupEach() {
-        account = new BankAccount("James", 100.00);
+        account = new BankAccount("James", 10_000);
     }
 
 
@@ -65,7 +65,7 @@ class BankAccountTest {
      */
     @Test
     public void testGetAccountBalance() {
-        assertEquals(100.00, account.getBalance(), "The expected balance is 100.00, but the " +
+        assertEquals(10_000, account.getBalance(), "The expected balance is 10_000, but the " +
                 "actual balance is " + account.getBalance());
     }
 
@@ -77,13 +77,13 @@ class BankAccountTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "50.00, 150.00",
-            "1000.00, 1100.00",
-            "40_000.00, 40_100.00"
+            "5_000, 15_000",
+            "100_000, 110_000",
+            "4_000_000, 4_010_000"
     })
-    public void testIncreaseBalance(double amountToAdd, double expectedBalance) {
+    public void testIncreaseBalance(long amountToAdd, long expectedBalance) {
         // Get starting balance
-        double startingBalance = account.getBalance();
+        long startingBalance = account.getBalance();
 
         // Increase the balance
         account.increaseBalance(amountToAdd);
@@ -103,14 +103,14 @@ class BankAccountTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "50.00, 50.00",
-            "100.00, 0.00",
-            "1_000.00, -900.00"
+            "5_000, 5_000",
+            "10_000, 0",
+            "100_000, -90_000"
     })
-    public void testDecreaseBalance(double amountToSubtract,
-                                    double expectedBalance) {
+    public void testDecreaseBalance(long amountToSubtract,
+                                    long expectedBalance) {
         // Get the starting balance
-        double startingBalance = account.getBalance();
+        long startingBalance = account.getBalance();
 
         // Increase the balance
         account.decreaseBalance(amountToSubtract);
@@ -135,13 +135,13 @@ class BankAccountTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "100.00, 100.00",
-            "10_000, 10_000"
+            "10_000, 10_000",
+            "1_000_000, 1_000_000"
     })
-    public void testIncreaseLoan(double amountToIncrease,
-                                 double expectedLoan) {
+    public void testIncreaseLoan(long amountToIncrease,
+                                 long expectedLoan) {
         // Get the starting amount
-        double startingAmount = account.getBalance();
+        long startingAmount = account.getBalance();
 
         // Increase the loan
         account.increaseLoan(amountToIncrease);
@@ -157,14 +157,14 @@ class BankAccountTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "100.00, 50.00, 50.00",
-            "10_000, 1_000, 9_000"
+            "10_000, 5_000, 5_000",
+            "1_000_000, 100_000, 900_000"
     })
-    public void testDecreaseLoan(double amountToIncrease, double amountToDecrease, double expectedLoan) {
+    public void testDecreaseLoan(long amountToIncrease, long amountToDecrease, long expectedLoan) {
 
         // Increase the loan and return the balance as an example of a loan in progress
         account.increaseLoan(amountToIncrease);
-        double startingBalance = account.getBalance();
+        long startingBalance = account.getBalance();
 
         // Decrease the loan
         account.decreaseLoan(amountToDecrease);
@@ -174,5 +174,38 @@ class BankAccountTest {
                 "after decreasing the starting loan of " + startingBalance + "  by " + amountToDecrease);
     }
 
+    /**
+     * Tests that the balance is only set when it still equals the expected balance.
+     */
+    @Test
+    public void testCompareAndSetBalance() {
+        assertTrue(account.compareAndSetBalance(10_000, 15_000), "The balance should be set " +
+                "when the expected balance matches");
+        assertFalse(account.compareAndSetBalance(10_000, 20_000), "The balance should not be " +
+                "set when the expected balance is out of date");
+        assertEquals(15_000, account.getBalance());
+    }
 
-}
\ No newline at end of file
+    /**
+     * Tests that the loan is only set when it still equals the expected loan.
+     */
+    @Test
+    public void testCompareAndSetLoan() {
+        assertTrue(account.compareAndSetLoan(0, 50_000), "The loan should be set when the " +
+                "expected loan matches");
+        assertFalse(account.compareAndSetLoan(0, 100_000), "The loan should not be set when " +
+                "the expected loan is out of date");
+        assertEquals(50_000, account.getLoan());
+    }
+
+    /**
+     * Tests that the balance and loan are read together, and that a failed compare-and-set
+     * leaves them unchanged.
+     */
+    @Test
+    public void testGetState() {
+        account.increaseLoan(2_500);
+        assertFalse(account.compareAndSetLoan(0, 1));
+        assertEquals(new AccountState(10_000, 2_500), account.getState());
+    }
+}
@@ -0,0 +1,8 @@
+package ie.atu.sw.account;
+
+class HeapAccountStoreTest extends AccountStoreContractTest {
+    @Override
+    protected AccountStore createStore() {
+        return new HeapAccountStore();
+    }
+}
@@ -0,0 +1,83 @@
+package ie.atu.sw.account;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapAccountStoreTest extends AccountStoreContractTest {
+    @Override
+    protected AccountStore createStore() {
+        return new OffHeapAccountStore(16);
+    }
+
+    /**
+     * Tests that names which are not plain ASCII are stored and matched exactly.
+     */
+    @Test
+    public void testNonAsciiNamesAreStored() {
+        store.add("Seán Ó Briain", 1_000, 0);
+        store.add("Sean O Briain", 2_000, 0);
+        assertEquals(1_000, store.find("Seán Ó Briain").getBalance());
+        assertEquals(2_000, store.find("Sean O Briain").getBalance());
+        assertEquals("Seán Ó Briain", store.find("Seán Ó Briain").getAccountHolder());
+    }
+
+    /**
+     * Tests that every account can still be found after the store has grown across many
+     * record chunks and hash table resizes, and that iterating visits each account once.
+     */
+    @Test
+    public void testAccountsAreFoundAfterGrowing() {
+        int accountCount = 300_000;
+        for (int i = 0; i < accountCount; i++) {
+            store.add("Holder" + i, i, 0);
+        }
+        for (int i = 0; i < accountCount; i += 997) {
+            assertEquals(i, store.find("Holder" + i).getBalance());
+        }
+        Set<String> seen = new HashSet<>();
+        for (Account account : store.getAccounts()) {
+            assertTrue(seen.add(account.getAccountHolder()));
+        }
+        assertEquals(accountCount + 1, seen.size());
+    }
+
+    /**
+     * Tests that lookups made while other threads add accounts never fail for an account that
+     * has already been added, and that concurrent updates to one account are not lost.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testConcurrentAddsLookupsAndUpdates() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        String accountHolder = "Holder" + thread + "-" + i;
+                        store.add(accountHolder, 1, 0);
+                        assertEquals(1, store.find(accountHolder).getBalance());
+                        store.find("James").increaseBalance(1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(80_001, store.size());
+        assertEquals(10_000 + 80_000, store.find("James").getBalance());
+    }
+}
@@ -0,0 +1,80 @@
+package ie.atu.sw.bulk;
+
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.manager.AccountManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountExporterTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the accounts exported in each format are imported into another account
+     * manager with the same balances, loans and statistics.
+     */
+    @ParameterizedTest
+    @EnumSource(AccountFileFormat.class)
+    public void testExportedAccountsAreImported(AccountFileFormat format) throws IOException {
+        AccountManager source = new AccountManager();
+        source.addAccount("James", 10_000);
+        source.approveLoan("James", 2_500);
+        source.addAccount("Smith, \"Síle\"", 500);
+        source.addAccount("Two\r\nLines", 1);
+        int accountCount = AccountImporter.CHUNK_ROWS + 3;
+        for (int i = 3; i < accountCount; i++) {
+            source.addAccount("Holder" + i, i);
+        }
+        Path file = directory.resolve("accounts." + format.name().toLowerCase());
+
+        assertEquals(accountCount, AccountExporter.exportFile(source, file, format));
+        AccountManager target = new AccountManager();
+        ImportReport report = AccountImporter.importFile(target, file, format);
+        assertTrue(report.isComplete(), () -> report.errors().toString());
+        assertEquals(accountCount, report.importedCount());
+        assertEquals(new AccountState(10_000, 2_500), target.getAccountState("James"));
+        assertEquals(500, target.getBalance("Smith, \"Síle\""));
+        assertEquals(1, target.getBalance("Two\r\nLines"));
+        assertEquals(accountCount - 1, target.getBalance("Holder" + (accountCount - 1)));
+        assertEquals(source.getStatistics(), target.getStatistics());
+    }
+
+    /**
+     * Tests that a CSV export writes the header, a line per account and quotes only the names
+     * that need it.
+     */
+    @Test
+    public void testCsvLayout() throws IOException {
+        AccountManager accountManager = new AccountManager();
+        accountManager.addAccount("Smith, Síle", 500);
+        accountManager.approveLoan("Smith, Síle", 200);
+        Path file = directory.resolve("accounts.csv");
+
+        assertEquals(1, AccountExporter.exportFile(accountManager, file, AccountFileFormat.CSV));
+        assertEquals(List.of("accountHolder,balance,loan", "\"Smith, Síle\",500,200"),
+                Files.readAllLines(file));
+    }
+
+    /**
+     * Tests that exporting an account manager with no accounts writes a file that imports
+     * nothing.
+     */
+    @ParameterizedTest
+    @EnumSource(AccountFileFormat.class)
+    public void testEmptyExport(AccountFileFormat format) throws IOException {
+        Path file = directory.resolve("empty");
+        assertEquals(0, AccountExporter.exportFile(new AccountManager(), file, format));
+        ImportReport report = AccountImporter.importFile(new AccountManager(), file, format);
+        assertEquals(0, report.importedCount());
+        assertTrue(report.isComplete());
+    }
+}
@@ -0,0 +1,164 @@
+package ie.atu.sw.bulk;
+
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.manager.AccountManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountImporterTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the accounts of a CSV file are opened with their loans, including quoted
+     * names and Windows line endings, and that the statistics take them all in.
+     */
+    @Test
+    public void testImportCsv() throws IOException {
+        Path file = directory.resolve("accounts.csv");
+        Files.writeString(file, "accountHolder,balance,loan\r\n"
+                + "James,10000,2500\r\n"
+                + "\"Smith, Síle\",500,0\n"
+                + "\"Say \"\"Hi\"\"\nTwice\",0,0\n"
+                + "\n");
+        AccountManager accountManager = new AccountManager();
+
+        ImportReport report = AccountImporter.importFile(accountManager, file,
+                AccountFileFormat.CSV);
+        assertTrue(report.isComplete(), () -> report.errors().toString());
+        assertEquals(3, report.importedCount());
+        assertEquals(new AccountState(10_000, 2_500), accountManager.getAccountState("James"));
+        assertEquals(500, accountManager.getBalance("Smith, Síle"));
+        assertEquals(0, accountManager.getBalance("Say \"Hi\"\nTwice"));
+        assertEquals(8_000, accountManager.getTotalDeposits());
+        assertEquals(2_500, accountManager.getStatistics().totalLoans());
+        assertEquals(3, accountManager.getStatistics().accountCount());
+    }
+
+    /**
+     * Tests that rows which cannot be parsed or opened are reported by their line number and
+     * do not stop the rest of the file.
+     */
+    @Test
+    public void testRejectedRowsAreReported() throws IOException {
+        Path file = directory.resolve("accounts.csv");
+        Files.writeString(file, "accountHolder,balance,loan\n"
+                + "James,10000,0\n"
+                + "Alice,ten,0\n"
+                + "\"Multi\nLine\",-5,0\n"
+                + "James,20000,0\n"
+                + ",100,0\n"
+                + "Bob,100\n"
+                + "Carl,100,99999999999999999999\n"
+                + "Dana,300,100\n"
+                + "Existing,1,0");
+        AccountManager accountManager = new AccountManager();
+        accountManager.addAccount("Existing", 1_000);
+
+        ImportReport report = AccountImporter.importFile(accountManager, file,
+                AccountFileFormat.CSV);
+        assertEquals(2, report.importedCount());
+        assertEquals(List.of(3L, 4L, 6L, 7L, 8L, 9L, 11L),
+                report.errors().stream().map(RowError::row).toList());
+        assertEquals(new AccountState(10_000, 0), accountManager.getAccountState("James"));
+        assertEquals(new AccountState(300, 100), accountManager.getAccountState("Dana"));
+        assertEquals(1_000, accountManager.getBalance("Existing"));
+    }
+
+    /**
+     * Tests that a file with more rows than fit in one chunk is imported in full, and that a
+     * holder named again in a later chunk is rejected in the later row.
+     */
+    @Test
+    public void testImportManyChunks() throws IOException {
+        int accountCount = AccountImporter.CHUNK_ROWS * 2 + 10;
+        StringBuilder csv = new StringBuilder("accountHolder,balance,loan\n");
+        for (int i = 0; i < accountCount; i++) {
+            csv.append("Holder").append(i).append(',').append(i).append(",0\n");
+        }
+        csv.append("Holder0,5,0\n");
+        Path file = directory.resolve("accounts.csv");
+        Files.writeString(file, csv);
+        AccountManager accountManager = new AccountManager();
+
+        ImportReport report = AccountImporter.importFile(accountManager, file,
+                AccountFileFormat.CSV);
+        assertEquals(accountCount, report.importedCount());
+        assertEquals(List.of(accountCount + 2L),
+                report.errors().stream().map(RowError::row).toList());
+        assertEquals(0, accountManager.getBalance("Holder0"));
+        assertEquals((long) accountCount * (accountCount - 1) / 2,
+                accountManager.getTotalDeposits());
+        assertEquals(accountCount, accountManager.getStatistics().accountCount());
+    }
+
+    /**
+     * Tests that the records of a binary file are opened and rejected rows are reported by
+     * their position in the file.
+     */
+    @Test
+    public void testImportBinary() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putLong(AccountFileFormat.BINARY_MAGIC);
+        putBlock(buffer, new String[]{"James", "Síle"}, new long[]{10_000, 500},
+                new long[]{2_500, 0});
+        putBlock(buffer, new String[]{"James", " "}, new long[]{1, 1}, new long[]{0, 0});
+        Path file = directory.resolve("accounts.bin");
+        Files.write(file, Arrays.copyOf(buffer.array(), buffer.position()));
+        AccountManager accountManager = new AccountManager();
+
+        ImportReport report = AccountImporter.importFile(accountManager, file,
+                AccountFileFormat.BINARY);
+        assertEquals(2, report.importedCount());
+        assertEquals(List.of(3L, 4L), report.errors().stream().map(RowError::row).toList());
+        assertEquals(new AccountState(10_000, 2_500), accountManager.getAccountState("James"));
+        assertEquals(500, accountManager.getBalance("Síle"));
+    }
+
+    /**
+     * Tests that a file which is not an account file of the format given is refused whole.
+     */
+    @Test
+    public void testInvalidFileIsRefused() throws IOException {
+        Path csv = directory.resolve("accounts.csv");
+        Files.writeString(csv, "name,amount\nJames,100\n");
+        Path truncated = directory.resolve("accounts.bin");
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        buffer.putLong(AccountFileFormat.BINARY_MAGIC).putInt(5).putInt(1_000);
+        Files.write(truncated, buffer.array());
+        AccountManager accountManager = new AccountManager();
+
+        assertThrows(IOException.class, () -> AccountImporter.importFile(accountManager, csv,
+                AccountFileFormat.CSV));
+        assertThrows(IOException.class, () -> AccountImporter.importFile(accountManager,
+                truncated, AccountFileFormat.BINARY));
+        assertThrows(IOException.class, () -> AccountImporter.importFile(accountManager, csv,
+                AccountFileFormat.BINARY));
+        assertEquals(0, accountManager.getStatistics().accountCount());
+    }
+
+    // Writes a block of binary records
+    private static void putBlock(ByteBuffer buffer, String[] names, long[] balances,
+                                 long[] loans) {
+        int header = buffer.position();
+        buffer.position(header + AccountFileFormat.BLOCK_HEADER_SIZE);
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length).put(name).putLong(balances[i])
+                    .putLong(loans[i]);
+        }
+        buffer.putInt(header, names.length);
+        buffer.putInt(header + Integer.BYTES,
+                buffer.position() - header - AccountFileFormat.BLOCK_HEADER_SIZE);
+    }
+}
@@ -0,0 +1,91 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestRingTest {
+
+    /**
+     * Tests that the capacity is rounded up to a power of two and invalid capacities are
+     * rejected.
+     */
+    @Test
+    public void testCapacity() {
+        assertEquals(8, new RequestRing(5).capacity());
+        assertEquals(1, new RequestRing(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new RequestRing(0));
+    }
+
+    /**
+     * Tests that requests are consumed in the order they were published.
+     */
+    @Test
+    public void testRequestsConsumedInOrder() {
+        RequestRing ring = new RequestRing(4);
+        assertFalse(ring.isPublished());
+        assertTrue(ring.isDrained());
+
+        for (int i = 0; i < 3; i++) {
+            ring.publish(Shard.DEPOSIT, "Holder" + i, null, i, new CompletableFuture<>());
+        }
+        assertTrue(ring.isPublished());
+        assertFalse(ring.isDrained());
+
+        List<String> holders = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        assertEquals(3, ring.drain(request -> {
+            holders.add(request.accountHolder);
+            amounts.add(request.amount);
+        }));
+        assertEquals(List.of("Holder0", "Holder1", "Holder2"), holders);
+        assertEquals(List.of(0L, 1L, 2L), amounts);
+        assertTrue(ring.isDrained());
+        assertEquals(0, ring.drain(request -> fail()));
+    }
+
+    /**
+     * Tests that producers wait for room in a full ring and that every request from many
+     * producers is consumed exactly once.
+     */
+    @Test
+    public void testManyProducersThroughSmallRing() throws Exception {
+        RequestRing ring = new RequestRing(8);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<Future<?>> futures = new ArrayList<>();
+        long[] sums = new long[producers];
+        try (ExecutorService executor = Executors.newFixedThreadPool(producers)) {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= perProducer; i++) {
+                        ring.publish(Shard.DEPOSIT, String.valueOf(producer), null, i,
+                                CompletableFuture.completedFuture(TransactionStatus.SUCCESS));
+                    }
+                }));
+            }
+            int consumed = 0;
+            while (consumed < producers * perProducer) {
+                consumed += ring.drain(request ->
+                        sums[Integer.parseInt(request.accountHolder)] += request.amount);
+                Thread.onSpinWait();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        for (long sum : sums) {
+            assertEquals((long) perProducer * (perProducer + 1) / 2, sum);
+        }
+        assertTrue(ring.isDrained());
+    }
+}
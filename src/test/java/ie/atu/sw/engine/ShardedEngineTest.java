@@ -0,0 +1,197 @@
+package ie.atu.sw.engine;
+
+import ie.atu.sw.exceptions.AccountAlreadyExists;
+import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedEngineTest {
+    private ShardedEngine engine;
+
+    /**
+     * Creates an engine with four shards and small rings.
+     */
+    @BeforeEach
+    public void setupEach() {
+        engine = new ShardedEngine(4, 64);
+    }
+
+    /**
+     * Stops the engine.
+     */
+    @AfterEach
+    public void tearDownEach() {
+        engine.close();
+    }
+
+    /**
+     * Tests opening accounts and the rejections when opening them.
+     */
+    @Test
+    public void testAddAccount() {
+        assertEquals(TransactionStatus.SUCCESS, engine.addAccount("Alice", 1_000).join());
+        assertEquals(1_000, engine.getBalance("Alice"));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, engine.addAccount("Bob", 0).join());
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> engine.addAccount("Alice", 1_000).join());
+        assertInstanceOf(AccountAlreadyExists.class, e.getCause());
+        assertThrows(BankAccountDoesNotExist.class, () -> engine.getBalance("Bob"));
+    }
+
+    /**
+     * Tests deposits, withdrawals and loans and their effect on the statistics.
+     */
+    @Test
+    public void testOperations() {
+        engine.addAccount("Alice", 1_000).join();
+
+        assertEquals(TransactionStatus.SUCCESS, engine.deposit("Alice", 500).join());
+        assertEquals(TransactionStatus.SUCCESS, engine.withdraw("Alice", 200).join());
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, engine.withdraw("Alice", 2_000).join());
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, engine.deposit("Nobody", 1).join());
+        assertEquals(1_300, engine.getBalance("Alice"));
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                engine.approveLoan("Alice", 2_000).join());
+        assertEquals(TransactionStatus.SUCCESS, engine.approveLoan("Alice", 300).join());
+        assertEquals(TransactionStatus.EXCESS_LOAN_REPAYMENT,
+                engine.repayLoan("Alice", 301).join());
+        assertEquals(TransactionStatus.SUCCESS, engine.repayLoan("Alice", 100).join());
+        assertEquals(200, engine.getLoan("Alice"));
+
+        assertEquals(1_100, engine.getTotalDeposits());
+        assertEquals(200, engine.getStatistics().totalLoans());
+        assertEquals(1, engine.getStatistics().accountCount());
+    }
+
+    /**
+     * Tests transfers within a shard and between shards, including those that are rejected
+     * at each phase.
+     */
+    @Test
+    public void testTransfers() {
+        String alice = "Alice";
+        String sameShard = holderInShard(engine.shardFor(alice), true);
+        String otherShard = holderInShard(engine.shardFor(alice), false);
+        engine.addAccount(alice, 1_000).join();
+        engine.addAccount(sameShard, 1_000).join();
+        engine.addAccount(otherShard, Long.MAX_VALUE - 100).join();
+
+        assertEquals(TransactionStatus.SUCCESS, engine.transfer(alice, sameShard, 100).join());
+        assertEquals(TransactionStatus.SUCCESS, engine.transfer(alice, otherShard, 50).join());
+        assertEquals(850, engine.getBalance(alice));
+        assertEquals(1_100, engine.getBalance(sameShard));
+        assertEquals(Long.MAX_VALUE - 50, engine.getBalance(otherShard));
+
+        // Rejected by the sending shard
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                engine.transfer(alice, otherShard, 10_000).join());
+        assertEquals(TransactionStatus.SAME_ACCOUNT, engine.transfer(alice, alice, 1).join());
+        // Rejected by the receiving shard and refunded
+        assertEquals(TransactionStatus.BALANCE_OVERFLOW,
+                engine.transfer(alice, otherShard, 51).join());
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND,
+                engine.transfer(alice, "Nobody", 1).join());
+        assertEquals(850, engine.getBalance(alice));
+    }
+
+    /**
+     * Tests that a transfer between shards the receiver rejects, and whose sender is filled by
+     * a deposit before the refund arrives, takes the money out of the total deposits and counts
+     * it as unrefunded, so the statistics still match the accounts.
+     */
+    @Test
+    public void testUnrefundedTransferIsRecorded() {
+        String alice = "Alice";
+        String otherShard = holderInShard(engine.shardFor(alice), false);
+        engine.addAccount(alice, 1_000).join();
+        engine.addAccount(otherShard, Long.MAX_VALUE - 500).join();
+
+        // The deposit is usually applied before the refund arrives, leaving no room for it
+        CompletableFuture<TransactionStatus> transfer = engine.transfer(alice, otherShard, 1_000);
+        TransactionStatus deposit = engine.deposit(alice, Long.MAX_VALUE - 500).join();
+        if (deposit == TransactionStatus.SUCCESS) {
+            CompletionException e = assertThrows(CompletionException.class, transfer::join);
+            assertInstanceOf(ArithmeticException.class, e.getCause());
+            assertEquals(1_000, engine.getUnrefunded());
+            assertEquals(Long.MAX_VALUE - 500, engine.getBalance(alice));
+        } else {
+            assertEquals(TransactionStatus.BALANCE_OVERFLOW, deposit);
+            assertEquals(TransactionStatus.BALANCE_OVERFLOW, transfer.join());
+            assertEquals(0, engine.getUnrefunded());
+            assertEquals(1_000, engine.getBalance(alice));
+        }
+        // The total overflows, and wraps the same way as the sum of the balances
+        assertEquals(engine.getBalance(alice) + engine.getBalance(otherShard),
+                engine.getTotalDeposits());
+    }
+
+    /**
+     * Tests that concurrent transfers between many accounts across shards keep the total
+     * balance and that close waits for every request.
+     */
+    @Test
+    public void testConcurrentTransfersKeepTotal() throws Exception {
+        int accountCount = 100;
+        for (int i = 0; i < accountCount; i++) {
+            engine.addAccount("Holder" + i, 1_000);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        List<CompletableFuture<TransactionStatus>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int t = 0; t < 4; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                futures.add(executor.submit(() -> {
+                    List<CompletableFuture<TransactionStatus>> own = new ArrayList<>();
+                    for (int i = 0; i < 20_000; i++) {
+                        own.add(engine.transfer("Holder" + random.nextInt(accountCount),
+                                "Holder" + random.nextInt(accountCount),
+                                random.nextInt(1, 500)));
+                    }
+                    synchronized (results) {
+                        results.addAll(own);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        engine.close();
+
+        long total = 0;
+        for (int i = 0; i < accountCount; i++) {
+            total += engine.getBalance("Holder" + i);
+        }
+        for (CompletableFuture<TransactionStatus> result : results) {
+            assertTrue(result.isDone());
+        }
+        assertEquals(accountCount * 1_000L, total);
+        assertEquals(accountCount * 1_000L, engine.getTotalDeposits());
+        assertThrows(IllegalStateException.class, () -> engine.deposit("Holder0", 1));
+    }
+
+    // Finds a name that is or is not held by a shard
+    private String holderInShard(Shard shard, boolean inShard) {
+        for (int i = 0; ; i++) {
+            String holder = "Holder" + i;
+            if ((engine.shardFor(holder) == shard) == inShard) {
+                return holder;
+            }
+        }
+    }
+}
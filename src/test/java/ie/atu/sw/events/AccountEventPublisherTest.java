@@ -0,0 +1,245 @@
+package ie.atu.sw.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class AccountEventPublisherTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that a subscriber is given the events published after it subscribed, in order and
+     * with their details, and is told it is complete once the publisher is closed.
+     */
+    @Test
+    public void testEventsAreDeliveredInOrder() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(16,
+                SlowSubscriberPolicy.DROP, directory, () -> 42);
+        publisher.publish(AccountEvent.Type.DEPOSIT, "Before", null, 1);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+
+        publisher.publish(AccountEvent.Type.DEPOSIT, "James", null, 100);
+        publisher.publish(AccountEvent.Type.TRANSFER, "James", "Alice", 40);
+        publisher.publish(AccountEvent.Type.LOAN_REPAID, "Alice", null, 5);
+        publisher.close();
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(
+                new AccountEvent(1, 42, AccountEvent.Type.DEPOSIT, "James", null, 100),
+                new AccountEvent(2, 42, AccountEvent.Type.TRANSFER, "James", "Alice", 40),
+                new AccountEvent(3, 42, AccountEvent.Type.LOAN_REPAID, "Alice", null, 5)),
+                subscriber.events);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    /**
+     * Tests that a subscriber is only given as many events as it asked for.
+     */
+    @Test
+    public void testSubscriberDemandIsRespected() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(64);
+        CollectingSubscriber subscriber = new CollectingSubscriber(2);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        for (int i = 0; i < 10; i++) {
+            publisher.publish(AccountEvent.Type.DEPOSIT, "James", null, i + 1);
+        }
+
+        awaitSize(subscriber, 2);
+        Thread.sleep(50);
+        assertEquals(2, subscriber.events.size());
+        subscriber.subscription.request(8);
+        awaitSize(subscriber, 10);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L),
+                subscriber.events.stream().map(AccountEvent::amount).toList());
+        publisher.close();
+    }
+
+    /**
+     * Tests that a DROP subscriber that falls a whole ring behind skips the oldest events and
+     * is then given the newest ones, while publishing goes on unhindered.
+     */
+    @Test
+    public void testDropSkipsOldestEvents() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(16, SlowSubscriberPolicy.DROP);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        for (int i = 0; i < 100; i++) {
+            publisher.publish(AccountEvent.Type.WITHDRAWAL, "James", null, i);
+        }
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        awaitSize(subscriber, 16);
+        assertEquals(84, publisher.getDroppedCount());
+        assertEquals(84, subscriber.events.get(0).sequence());
+        assertEquals(99, subscriber.events.get(15).amount());
+        publisher.close();
+    }
+
+    /**
+     * Tests that a SPILL subscriber that falls behind is given every event in order from disk,
+     * and that the spill file is deleted once it has caught up.
+     */
+    @Test
+    public void testSpillKeepsEveryEvent() throws Exception {
+        AccountEventPublisher publisher = new AccountEventPublisher(256,
+                SlowSubscriberPolicy.SPILL, directory, System::currentTimeMillis);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        for (int i = 0; i < 1_000; i++) {
+            publisher.publish(AccountEvent.Type.DEPOSIT, "Síle", i % 2 == 0 ? null : "James", i);
+            if (i % 4 == 0) {
+                // Lets the subscriber thread keep up with moving events to disk
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(publisher.getSpilledCount() > 0);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        awaitSize(subscriber, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, subscriber.events.get(i).amount());
+            assertEquals(i % 2 == 0 ? null : "James", subscriber.events.get(i).counterparty());
+        }
+        assertEquals(0, publisher.getDroppedCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        publisher.close();
+    }
+
+    /**
+     * Tests that publishing waits for a BLOCK subscriber that is a whole ring behind, and goes
+     * on once it asks for more, so it loses no events.
+     */
+    @Test
+    public void testBlockHoldsUpPublishing() throws Exception {
+        AccountEventPublisher publisher = new AccountEventPublisher(16,
+                SlowSubscriberPolicy.BLOCK);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        Thread publishing = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 100; i++) {
+                publisher.publish(AccountEvent.Type.DEPOSIT, "James", null, i);
+            }
+        });
+
+        publishing.join(200);
+        assertTrue(publishing.isAlive());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publishing.join();
+        awaitSize(subscriber, 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, subscriber.events.get(i).sequence());
+        }
+        publisher.close();
+    }
+
+    /**
+     * Tests that a cancelled subscriber is given no more events and no longer holds up
+     * publishing.
+     */
+    @Test
+    public void testCancelledSubscriberIsRemoved() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(16,
+                SlowSubscriberPolicy.BLOCK);
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        publisher.publish(AccountEvent.Type.DEPOSIT, "James", null, 1);
+        awaitSize(subscriber, 1);
+
+        subscriber.subscription.cancel();
+        while (publisher.getSubscriberCount() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 100; i++) {
+            publisher.publish(AccountEvent.Type.DEPOSIT, "James", null, 1);
+        }
+        assertEquals(1, subscriber.events.size());
+        publisher.close();
+    }
+
+    /**
+     * Tests that a request for a number of events that is not positive is reported to the
+     * subscriber as an error.
+     */
+    @Test
+    public void testInvalidRequestIsAnError() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(16);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscribed.await();
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        publisher.close();
+    }
+
+    // Waits until a subscriber has been given a number of events
+    private static void awaitSize(CollectingSubscriber subscriber, int size)
+            throws InterruptedException {
+        while (subscriber.events.size() < size) {
+            Thread.sleep(1);
+        }
+    }
+
+    // Keeps every event it is given, asking for a number of them when it subscribes
+    private static final class CollectingSubscriber implements Flow.Subscriber<AccountEvent> {
+        private final long initialDemand;
+        private final List<AccountEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        // Counted down when the subscriber is complete or has failed
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private CollectingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(AccountEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
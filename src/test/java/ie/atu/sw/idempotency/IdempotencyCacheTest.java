@@ -0,0 +1,142 @@
+package ie.atu.sw.idempotency;
+
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    /**
+     * Tests that a repeated id returns the first result without running the operation again,
+     * while a new id runs it.
+     */
+    @Test
+    public void testRepeatReturnsFirstResult() {
+        IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, cache.execute("a", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.INSUFFICIENT_FUNDS;
+        }));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, cache.execute("a", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        }));
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("b", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        }));
+        assertEquals(2, runs.get());
+        assertEquals(1, cache.getDuplicateCount());
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * Tests that an id is forgotten once its time to live has passed.
+     */
+    @Test
+    public void testIdsExpire() {
+        AtomicLong now = new AtomicLong(1_000);
+        IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofSeconds(10), now::get);
+        AtomicInteger runs = new AtomicInteger();
+
+        cache.execute("a", () -> TransactionStatus.values()[runs.getAndIncrement()]);
+        now.addAndGet(9_999);
+        assertEquals(TransactionStatus.SUCCESS,
+                cache.execute("a", () -> TransactionStatus.values()[runs.getAndIncrement()]));
+        now.addAndGet(1);
+        assertEquals(TransactionStatus.INVALID_AMOUNT,
+                cache.execute("a", () -> TransactionStatus.values()[runs.getAndIncrement()]));
+        assertEquals(2, runs.get());
+    }
+
+    /**
+     * Tests that a full cache drops its oldest ids to make room and never grows beyond its
+     * capacity.
+     */
+    @Test
+    public void testOldestIdsAreDroppedWhenFull() {
+        IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofMinutes(1));
+        long capacity = cache.capacity();
+        assertTrue(capacity >= 1_000);
+        for (int i = 0; i < capacity * 4; i++) {
+            cache.execute("id-" + i, () -> TransactionStatus.SUCCESS);
+        }
+        assertTrue(cache.size() <= capacity);
+
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("id-" + (capacity * 4 - 1), () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        });
+        cache.execute("id-0", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        });
+        assertEquals(1, runs.get(), "Only the oldest id should have been dropped");
+    }
+
+    /**
+     * Tests that an id whose operation threw is forgotten, so a retry runs the operation.
+     */
+    @Test
+    public void testFailedOperationIsForgotten() {
+        IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofMinutes(1));
+        assertThrows(IllegalStateException.class, () -> cache.execute("a", () -> {
+            throw new IllegalStateException("The journal is closed");
+        }));
+        assertEquals(TransactionStatus.SUCCESS,
+                cache.execute("a", () -> TransactionStatus.SUCCESS));
+        assertEquals(0, cache.getDuplicateCount());
+    }
+
+    /**
+     * Tests that repeats arriving while the first request runs wait for it and get its result,
+     * so the operation runs once.
+     */
+    @Test
+    public void testConcurrentRepeatsRunOnce() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(1_000, Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            Future<TransactionStatus> first = executor.submit(() -> cache.execute("a", () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return TransactionStatus.BALANCE_OVERFLOW;
+            }));
+            started.await();
+            List<Future<TransactionStatus>> repeats = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                repeats.add(executor.submit(() -> cache.execute("a", () -> {
+                    runs.incrementAndGet();
+                    return TransactionStatus.SUCCESS;
+                })));
+            }
+            release.countDown();
+            assertEquals(TransactionStatus.BALANCE_OVERFLOW, first.get());
+            for (Future<TransactionStatus> repeat : repeats) {
+                assertEquals(TransactionStatus.BALANCE_OVERFLOW, repeat.get());
+            }
+        }
+        assertEquals(1, runs.get());
+    }
+}
@@ -0,0 +1,135 @@
+package ie.atu.sw.index;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.account.OffHeapAccountStore;
+import ie.atu.sw.transaction.AccountTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountIndexTest {
+    /**
+     * Tests that a range query finds the accounts with a value in the range, in ascending order
+     * of value and then account holder.
+     */
+    @Test
+    public void testRangeFindsAccountsInOrder() {
+        AccountStore store = new HeapAccountStore();
+        store.add("James", 5_000, 0);
+        store.add("Alice", 1_000, 200_000);
+        store.add("Bob", 5_000, 0);
+        store.add("Síle", 9_000, 50_000);
+        AccountIndex balances = new AccountIndex(AccountIndex.Field.BALANCE);
+        balances.addAll(store);
+        AccountIndex loans = new AccountIndex(AccountIndex.Field.LOAN);
+        loans.addAll(store);
+
+        assertEquals(List.of(new IndexEntry("Bob", 5_000), new IndexEntry("James", 5_000)),
+                balances.range(1_001, 9_000).toList());
+        assertEquals(List.of(new IndexEntry("Síle", 50_000), new IndexEntry("Alice", 200_000)),
+                loans.atLeast(1).toList());
+        assertEquals(0, balances.range(9_000, 9_000).count());
+        assertEquals(4, balances.size());
+    }
+
+    /**
+     * Tests that range queries over values of every size, from negative values to the largest
+     * value, give the same accounts in the same order as sorting every account in the range.
+     */
+    @Test
+    public void testRangesMatchSortedScan() {
+        AccountStore store = new HeapAccountStore();
+        SplittableRandom random = new SplittableRandom(42);
+        List<IndexEntry> all = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long balance = switch (i % 4) {
+                case 0 -> random.nextLong(0, 1_000);
+                case 1 -> random.nextLong(0, 10_000_000);
+                case 2 -> random.nextLong() >>> random.nextInt(64);
+                default -> i % 100 == 3 ? -random.nextLong(1, 1_000) : Long.MAX_VALUE - i;
+            };
+            store.add("Holder" + i, balance, 0);
+            all.add(new IndexEntry("Holder" + i, balance));
+        }
+        all.sort(AccountIndex.ORDER);
+        AccountIndex balances = new AccountIndex(AccountIndex.Field.BALANCE);
+        balances.addAll(store);
+
+        long[][] ranges = {{0, 1}, {1_023, 1_025}, {300, 5_000_000}, {-500, 600},
+                {Long.MIN_VALUE, 0}, {1L << 40, Long.MAX_VALUE - 100}, {0, Long.MAX_VALUE}};
+        for (long[] range : ranges) {
+            assertEquals(all.stream().filter(entry -> entry.value() >= range[0]
+                            && entry.value() < range[1]).toList(),
+                    balances.range(range[0], range[1]).toList());
+        }
+        assertEquals(all.stream().filter(entry -> entry.value() >= 1_000).toList(),
+                balances.atLeast(1_000).toList());
+        assertEquals(all, balances.atLeast(Long.MIN_VALUE).toList());
+    }
+
+    /**
+     * Tests that updating an account moves it to its current value, and that updating an
+     * account whose value has not changed leaves it where it is.
+     */
+    @Test
+    public void testUpdateMovesAccount() {
+        AccountStore store = new OffHeapAccountStore();
+        Account james = store.add("James", 5_000, 0);
+        store.add("Alice", 7_000, 0);
+        AccountIndex balances = new AccountIndex(AccountIndex.Field.BALANCE);
+        balances.addAll(store);
+
+        james.increaseBalance(10_000);
+        balances.update(james);
+        balances.update(store.find("Alice"));
+        assertEquals(List.of(new IndexEntry("Alice", 7_000), new IndexEntry("James", 15_000)),
+                balances.atLeast(0).toList());
+        assertEquals(0, balances.range(0, 7_000).count());
+        assertEquals(2, balances.size());
+    }
+
+    /**
+     * Tests that the index holds every account at its final balance after many threads have
+     * changed the same accounts at once.
+     */
+    @Test
+    public void testConcurrentChangesLeaveLatestValues() throws InterruptedException {
+        AccountStore store = new HeapAccountStore();
+        for (int i = 0; i < 10; i++) {
+            store.add("Holder" + i, 1_000_000, 0);
+        }
+        AccountIndex balances = new AccountIndex(AccountIndex.Field.BALANCE);
+        balances.addAll(store);
+        AccountTransaction accountTransaction = new AccountTransaction();
+        accountTransaction.setBalanceIndex(balances);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Account from = store.find("Holder" + (i + seed) % 10);
+                    Account to = store.find("Holder" + (i * 3 + seed) % 10);
+                    accountTransaction.tryTransfer(from, to, i % 50 + 1);
+                    accountTransaction.tryDeposit(to, 1);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<IndexEntry> expected = new ArrayList<>();
+        for (Account account : store.getAccounts()) {
+            expected.add(new IndexEntry(account.getAccountHolder(), account.getBalance()));
+        }
+        expected.sort(AccountIndex.ORDER);
+        assertEquals(expected, balances.atLeast(Long.MIN_VALUE).toList());
+    }
+}
@@ -0,0 +1,187 @@
+package ie.atu.sw.ledger;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.BankAccount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionLedgerTest {
+    private long time;
+    private TransactionLedger ledger;
+    private Account james;
+    private Account alice;
+
+    /**
+     * Creates a ledger timed by a clock the tests move forward, with two open accounts.
+     */
+    @BeforeEach
+    public void setUp() {
+        time = 1_000;
+        ledger = new TransactionLedger(() -> time);
+        james = ledger.postOpening("James", () -> new BankAccount("James", 100_000));
+        alice = ledger.postOpening("Alice", () -> new BankAccount("Alice", 50_000));
+    }
+
+    /**
+     * Tests that each posting records the amount and the balance after it.
+     */
+    @Test
+    public void testPostingsRecordBalanceAfterChange() {
+        time = 2_000;
+        deposit(james, 20_000);
+        time = 3_000;
+        withdraw(james, 5_000);
+
+        assertEquals(4, ledger.size());
+        assertEquals(new Posting(0, 1_000, "James", Posting.Type.OPENING_DEPOSIT, 100_000,
+                100_000, 0), ledger.get(0));
+        assertEquals(new Posting(2, 2_000, "James", Posting.Type.DEPOSIT, 20_000, 120_000, 0),
+                ledger.get(2));
+        assertEquals(new Posting(3, 3_000, "James", Posting.Type.WITHDRAWAL, 5_000, 115_000, 0),
+                ledger.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.get(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.get(-1));
+    }
+
+    /**
+     * Tests that a transfer is posted to both accounts with the same timestamp.
+     */
+    @Test
+    public void testTransferIsPostedToBothAccounts() {
+        time = 2_000;
+        ledger.postTransfer("James", james, "Alice", alice, () -> {
+            james.decreaseBalance(10_000);
+            alice.increaseBalance(10_000);
+            return 10_000;
+        });
+
+        Posting out = ledger.history("James", 0, 1).get(0);
+        Posting in = ledger.history("Alice", 0, 1).get(0);
+        assertEquals(Posting.Type.TRANSFER_OUT, out.type());
+        assertEquals(90_000, out.balance());
+        assertEquals(Posting.Type.TRANSFER_IN, in.type());
+        assertEquals(60_000, in.balance());
+        assertEquals(out.timestamp(), in.timestamp());
+        assertEquals(out.sequence() + 1, in.sequence());
+    }
+
+    /**
+     * Tests that a change that throws is not posted.
+     */
+    @Test
+    public void testFailedChangeIsNotPosted() {
+        assertThrows(IllegalStateException.class,
+                () -> ledger.post(Posting.Type.WITHDRAWAL, "James", james, () -> {
+                    throw new IllegalStateException("Rejected");
+                }));
+        assertEquals(2, ledger.size());
+        assertEquals(1, ledger.countPostings("James"));
+    }
+
+    /**
+     * Tests that the history of an account is paged most recent first.
+     */
+    @Test
+    public void testHistoryIsPagedMostRecentFirst() {
+        for (int i = 1; i <= 10; i++) {
+            deposit(james, i);
+            deposit(alice, 100);
+        }
+        assertEquals(11, ledger.countPostings("James"));
+
+        List<Posting> firstPage = ledger.history("James", 0, 4);
+        assertEquals(List.of(10L, 9L, 8L, 7L), firstPage.stream().map(Posting::amount).toList());
+        List<Posting> lastPage = ledger.history("James", 8, 4);
+        assertEquals(List.of(2L, 1L, 100_000L), lastPage.stream().map(Posting::amount).toList());
+        assertEquals(List.of(), ledger.history("James", 11, 4));
+        assertEquals(List.of(), ledger.history("Nobody", 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> ledger.history("James", -1, 4));
+        assertThrows(IllegalArgumentException.class, () -> ledger.history("James", 0, -1));
+    }
+
+    /**
+     * Tests that the postings of a period include its start and exclude its end.
+     */
+    @Test
+    public void testHistoryBetweenTimestamps() {
+        for (int i = 1; i <= 5; i++) {
+            time = i * 10_000L;
+            deposit(james, i);
+        }
+
+        List<Posting> postings = ledger.historyBetween("James", 20_000, 40_000, 10);
+        assertEquals(List.of(2L, 3L), postings.stream().map(Posting::amount).toList());
+        assertEquals(List.of(2L), ledger.historyBetween("James", 20_000, 40_000, 1).stream()
+                .map(Posting::amount).toList());
+        assertEquals(6, ledger.historyBetween("James", Long.MIN_VALUE, Long.MAX_VALUE, 10)
+                .size());
+        assertEquals(List.of(), ledger.historyBetween("James", 60_000, 70_000, 10));
+    }
+
+    /**
+     * Tests that the balance at a point in time is the balance after the last posting by then.
+     */
+    @Test
+    public void testBalanceAtPointInTime() {
+        time = 10_000;
+        deposit(james, 1_000);
+        time = 20_000;
+        withdraw(james, 500);
+
+        assertEquals(OptionalLong.empty(), ledger.balanceAt("James", 999));
+        assertEquals(OptionalLong.of(100_000), ledger.balanceAt("James", 9_999));
+        assertEquals(OptionalLong.of(101_000), ledger.balanceAt("James", 10_000));
+        assertEquals(OptionalLong.of(100_500), ledger.balanceAt("James", 30_000));
+        assertEquals(OptionalLong.empty(), ledger.balanceAt("Nobody", 30_000));
+    }
+
+    /**
+     * Tests that timestamps never go backwards when the clock does.
+     */
+    @Test
+    public void testTimestampsNeverGoBackwards() {
+        time = 5_000;
+        deposit(james, 1);
+        time = 4_000;
+        deposit(james, 2);
+        assertEquals(5_000, ledger.history("James", 0, 1).get(0).timestamp());
+    }
+
+    /**
+     * Tests that postings beyond the first chunk are stored and read back.
+     */
+    @Test
+    public void testManyPostingsSpanChunks() {
+        int count = 200_000;
+        for (int i = 1; i <= count; i++) {
+            deposit(i % 2 == 0 ? james : alice, 1);
+        }
+        assertEquals(count + 2, ledger.size());
+        assertEquals(count / 2 + 1, ledger.countPostings("James"));
+        Posting last = ledger.get(ledger.size() - 1);
+        assertEquals("James", last.accountHolder());
+        assertEquals(100_000 + count / 2, last.balance());
+        assertEquals(100_000 + count / 2, ledger.history("James", 0, 1).get(0).balance());
+    }
+
+    // Posts a deposit to an account
+    private void deposit(Account account, long amount) {
+        ledger.post(Posting.Type.DEPOSIT, account.getAccountHolder(), account, () -> {
+            account.increaseBalance(amount);
+            return amount;
+        });
+    }
+
+    // Posts a withdrawal from an account
+    private void withdraw(Account account, long amount) {
+        ledger.post(Posting.Type.WITHDRAWAL, account.getAccountHolder(), account, () -> {
+            account.decreaseBalance(amount);
+            return amount;
+        });
+    }
+}
@@ -0,0 +1,285 @@
+package ie.atu.sw.loan;
+
+import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanPortfolioTest {
+    LoanPortfolio portfolio;
+
+    /**
+     * Creates an empty portfolio for each test.
+     */
+    @BeforeEach
+    public void setupEach() {
+        portfolio = new LoanPortfolio();
+    }
+
+    /**
+     * Tests that a new loan holds its terms and owes its principal.
+     */
+    @Test
+    public void testOriginate() {
+        int loanId = portfolio.originate(1_000_000, 500, 12);
+
+        assertEquals(0, loanId);
+        assertEquals(1, portfolio.size());
+        assertEquals(1_000_000, portfolio.getPrincipal(loanId));
+        assertEquals(1_000_000, portfolio.getOutstanding(loanId));
+        assertEquals(500, portfolio.getAnnualRate(loanId));
+        assertEquals(12, portfolio.getTermMonths(loanId));
+        assertEquals(0, portfolio.getAccruedInterest(loanId));
+        assertThrows(IndexOutOfBoundsException.class, () -> portfolio.getOutstanding(1));
+    }
+
+    /**
+     * Tests the level monthly payment against known amortization figures.
+     *
+     * @param principal       The principal in cents
+     * @param annualRate      The annual rate in basis points
+     * @param termMonths      The term in months
+     * @param expectedPayment The expected monthly payment in cents
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1_000_000, 500, 12, 85_608",
+            "20_000_000, 600, 360, 119_911",
+            "1_200, 0, 12, 100"
+    })
+    public void testMonthlyPayment(long principal, int annualRate, int termMonths,
+                                   long expectedPayment) {
+        int loanId = portfolio.originate(principal, annualRate, termMonths);
+        assertEquals(expectedPayment, portfolio.getMonthlyPayment(loanId));
+    }
+
+    /**
+     * Tests that the schedule pays off exactly the principal over the term.
+     */
+    @Test
+    public void testSchedulePaysOffPrincipal() {
+        int loanId = portfolio.originate(1_000_000, 500, 12);
+        List<Installment> schedule = portfolio.schedule(loanId);
+
+        assertEquals(12, schedule.size());
+        assertEquals(new Installment(1, 85_608, 4_167, 81_441, 918_559), schedule.get(0));
+        assertEquals(1_000_000, schedule.stream().mapToLong(Installment::principal).sum());
+        assertEquals(0, schedule.get(11).remaining());
+        for (Installment installment : schedule) {
+            assertEquals(installment.payment(), installment.interest() + installment.principal());
+        }
+    }
+
+    /**
+     * Tests invalid terms are rejected.
+     */
+    @Test
+    public void testOriginateWithInvalidTermsThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> portfolio.originate(0, 500, 12));
+        assertThrows(IllegalArgumentException.class,
+                () -> portfolio.originate(LoanPortfolio.MAX_PRINCIPAL + 1, 500, 12));
+        assertThrows(IllegalArgumentException.class, () -> portfolio.originate(1_000, -1, 12));
+        assertThrows(IllegalArgumentException.class,
+                () -> portfolio.originate(1_000, LoanPortfolio.MAX_RATE + 1, 12));
+        assertThrows(IllegalArgumentException.class, () -> portfolio.originate(1_000, 500, 0));
+    }
+
+    /**
+     * Tests that a year of daily accrual compounds the balance, carrying fractions of a cent
+     * from day to day.
+     */
+    @Test
+    public void testAccrualCompoundsDaily() {
+        int loanId = portfolio.originate(1_000_000, 365, 12);
+        int zeroRateLoan = portfolio.originate(1_000_000, 0, 12);
+
+        // 1% a day on 10,000 cents is exactly 100 cents
+        assertEquals(100, portfolio.accrue(1));
+        assertEquals(1_000_100, portfolio.getOutstanding(loanId));
+
+        long total = 100;
+        for (int day = 1; day < 365; day++) {
+            total += portfolio.accrue(1);
+        }
+        // (1 + 0.0001)^365 - 1 = 3.7172% of the principal
+        assertEquals(37_172, total, 1);
+        assertEquals(total, portfolio.getAccruedInterest(loanId));
+        assertEquals(1_000_000 + total, portfolio.getOutstanding(loanId));
+        assertEquals(1_000_000, portfolio.getOutstanding(zeroRateLoan));
+    }
+
+    /**
+     * Tests that accruing several days at once gives the same interest as one day at a time.
+     */
+    @Test
+    public void testAccrueSeveralDaysMatchesSingleDays() {
+        LoanPortfolio daily = new LoanPortfolio();
+        portfolio.originate(12_345_678, 799, 120);
+        daily.originate(12_345_678, 799, 120);
+
+        long total = 0;
+        for (int day = 0; day < 30; day++) {
+            total += daily.accrue(1);
+        }
+        assertEquals(total, portfolio.accrue(30));
+        assertEquals(daily.getOutstanding(0), portfolio.getOutstanding(0));
+    }
+
+    /**
+     * Tests that interest on balances too large to multiply by the rate in a long is still
+     * worked out exactly.
+     */
+    @Test
+    public void testAccrualOnLargeBalancesIsExact() {
+        int loanId = portfolio.originate(LoanPortfolio.MAX_PRINCIPAL, LoanPortfolio.MAX_RATE, 12);
+
+        BigInteger rate = BigInteger.valueOf(LoanPortfolio.MAX_RATE);
+        BigInteger divisor = BigInteger.valueOf(10_000L * 365);
+        BigInteger expected = BigInteger.valueOf(LoanPortfolio.MAX_PRINCIPAL);
+        BigInteger carry = BigInteger.ZERO;
+        for (int day = 0; day < 1_000; day++) {
+            BigInteger[] owed = expected.multiply(rate).add(carry).divideAndRemainder(divisor);
+            expected = expected.add(owed[0]);
+            carry = owed[1];
+        }
+        portfolio.accrue(1_000);
+        assertEquals(expected.longValueExact(), portfolio.getOutstanding(loanId));
+    }
+
+    /**
+     * Tests that a loan whose balance cannot hold any more interest stops accruing, without
+     * stopping the accrual of the other loans.
+     */
+    @Test
+    public void testLoanStopsAccruingAtLargestBalance() {
+        int largeLoan = portfolio.originate(LoanPortfolio.MAX_PRINCIPAL, LoanPortfolio.MAX_RATE,
+                12);
+        int smallLoan = portfolio.originate(1_000_000, 100, 12);
+
+        portfolio.accrue(20_000);
+        long largest = portfolio.getOutstanding(largeLoan);
+        assertTrue(largest > Long.MAX_VALUE / 2);
+        long small = portfolio.getOutstanding(smallLoan);
+        assertTrue(small > 1_000_000);
+
+        // Only the small loan accrues another day's interest
+        long interest = portfolio.accrue(1);
+        assertTrue(interest > 0);
+        assertEquals(small + interest, portfolio.getOutstanding(smallLoan));
+        assertEquals(largest, portfolio.getOutstanding(largeLoan));
+    }
+
+    /**
+     * Tests repayments and their rejections.
+     */
+    @Test
+    public void testRepay() {
+        int loanId = portfolio.originate(10_000, 500, 12);
+
+        assertEquals(TransactionStatus.SUCCESS, portfolio.tryRepay(loanId, 4_000));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, portfolio.tryRepay(loanId, 0));
+        assertEquals(TransactionStatus.EXCESS_LOAN_REPAYMENT, portfolio.tryRepay(loanId, 6_001));
+        assertThrows(ExcessLoanRepaymentException.class, () -> portfolio.repay(loanId, 6_001));
+        portfolio.repay(loanId, 6_000);
+        assertEquals(0, portfolio.getOutstanding(loanId));
+    }
+
+    /**
+     * Tests that the accrual listener is told of the interest added to each loan held by an
+     * account, and then that the accrual finished.
+     */
+    @Test
+    public void testListenerIsToldOfInterestOnHeldLoans() {
+        int jamesLoan = portfolio.originate("James", 3_650_000, 1_000, 12);
+        portfolio.originate(3_650_000, 1_000, 12);
+        portfolio.originate("Alice", 3_650_000, 0, 12);
+        assertEquals("James", portfolio.getAccountHolder(jamesLoan));
+        assertNull(portfolio.getAccountHolder(jamesLoan + 1));
+
+        Map<String, Long> accrued = new ConcurrentHashMap<>();
+        AtomicInteger finished = new AtomicInteger();
+        portfolio.setAccrualListener(new AccrualListener() {
+            @Override
+            public void accrued(String accountHolder, long interest) {
+                accrued.merge(accountHolder, interest, Long::sum);
+            }
+
+            @Override
+            public void finished() {
+                finished.incrementAndGet();
+            }
+        });
+        assertEquals(6_000, portfolio.accrue(3));
+        assertEquals(Map.of("James", 3_000L), accrued);
+        assertEquals(1, finished.get());
+    }
+
+    /**
+     * Tests that the listener is told the accrual finished even when it failed part way.
+     */
+    @Test
+    public void testListenerIsToldOfFinishAfterFailure() {
+        portfolio.originate("James", 3_650_000, 1_000, 12);
+        AtomicInteger finished = new AtomicInteger();
+        portfolio.setAccrualListener(new AccrualListener() {
+            @Override
+            public void accrued(String accountHolder, long interest) {
+                throw new IllegalStateException("No account for " + accountHolder);
+            }
+
+            @Override
+            public void finished() {
+                finished.incrementAndGet();
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> portfolio.accrue(1));
+        assertEquals(1, finished.get());
+    }
+
+    /**
+     * Tests that repayments made while interest accrues across many chunks are never lost.
+     */
+    @Test
+    public void testRepaymentsDuringAccrualAreNotLost() throws Exception {
+        int loanCount = 200_000;
+        for (int i = 0; i < loanCount; i++) {
+            portfolio.originate(1_000_000, 36_500 / 10, 360);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        long interest;
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < loanCount; i++) {
+                    portfolio.repay(i, 1_000);
+                }
+            }));
+            interest = portfolio.accrue(1);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        long outstanding = 0;
+        long accrued = 0;
+        for (int i = 0; i < loanCount; i++) {
+            outstanding += portfolio.getOutstanding(i);
+            accrued += portfolio.getAccruedInterest(i);
+        }
+        assertEquals(interest, accrued);
+        assertEquals((long) loanCount * 999_000 + interest, outstanding);
+    }
+}
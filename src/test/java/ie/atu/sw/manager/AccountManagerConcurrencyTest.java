@@ -0,0 +1,184 @@
+package ie.atu.sw.manager;
+
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountManagerConcurrencyTest {
+    private static final int THREAD_COUNT = 64;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    private static final int ACCOUNT_COUNT = 16;
+    private static final long INITIAL_DEPOSIT = 100_000;
+
+    private AccountManager accountManager;
+
+    /**
+     * Creates a new AccountManager with a small number of accounts so that the threads contend
+     * on the same accounts.
+     */
+    @BeforeEach
+    public void setupEach() {
+        accountManager = new AccountManager();
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountManager.addAccount(holder(i), INITIAL_DEPOSIT);
+        }
+    }
+
+    /**
+     * Hammers the accounts with deposits and withdrawals from many threads and checks that no
+     * update is lost, no account is overdrawn and the bank total matches the account balances.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testConcurrentDepositsAndWithdrawalsConserveMoney() throws Exception {
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String accountHolder = holder(random.nextInt(ACCOUNT_COUNT));
+                    int amount = 1 + random.nextInt(100);
+                    if (random.nextBoolean()) {
+                        accountManager.deposit(accountHolder, amount);
+                        deposited.add(amount);
+                    } else {
+                        try {
+                            accountManager.withdraw(accountHolder, amount);
+                            withdrawn.add(amount);
+                        } catch (InsufficientFundsException e) {
+                            // Declined withdrawals do not move any money
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long balanceSum = 0;
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            long balance = accountManager.getBalance(holder(i));
+            assertTrue(balance >= 0, holder(i) + " was overdrawn, balance: " + balance);
+            balanceSum += balance;
+        }
+        long expected = ACCOUNT_COUNT * INITIAL_DEPOSIT + deposited.sum() - withdrawn.sum();
+        assertEquals(expected, balanceSum, "The sum of the balances should equal the initial " +
+                "deposits plus the deposits made minus the withdrawals made");
+        assertEquals(balanceSum, accountManager.getTotalDeposits(), "The bank total should " +
+                "equal the sum of the account balances");
+    }
+
+    /**
+     * Checks that concurrent loan approvals can never lend out more than the bank holds.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testConcurrentLoanApprovalsDoNotExceedTotalDeposits() throws Exception {
+        long available = accountManager.getTotalDeposits();
+        LongAdder approved = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            String accountHolder = holder(t % ACCOUNT_COUNT);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        accountManager.approveLoan(accountHolder, 1_000);
+                        approved.add(1_000);
+                    } catch (InsufficientFundsException e) {
+                        // The bank has lent out everything it holds
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(available, approved.sum(), "Every available deposit should be lent out " +
+                "exactly once");
+        assertEquals(0, accountManager.getTotalDeposits());
+    }
+
+    /**
+     * Runs random transfers between the accounts from thousands of threads and checks that
+     * every transfer finishes without deadlock, no money is created or lost and the bank total
+     * is never changed by a transfer.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testConcurrentRandomTransfersConserveMoney() throws Exception {
+        long totalBefore = accountManager.getTotalDeposits();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < 4_000; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 500; i++) {
+                        int from = random.nextInt(ACCOUNT_COUNT);
+                        int to = (from + 1 + random.nextInt(ACCOUNT_COUNT - 1)) % ACCOUNT_COUNT;
+                        try {
+                            accountManager.transfer(holder(from), holder(to),
+                                    1 + random.nextInt(1_000));
+                        } catch (InsufficientFundsException e) {
+                            // Declined transfers do not move any money
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        long balanceSum = 0;
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            long balance = accountManager.getBalance(holder(i));
+            assertTrue(balance >= 0, holder(i) + " was overdrawn, balance: " + balance);
+            balanceSum += balance;
+        }
+        assertEquals(ACCOUNT_COUNT * INITIAL_DEPOSIT, balanceSum, "Transfers should not create " +
+                "or lose money");
+        assertEquals(totalBefore, accountManager.getTotalDeposits(), "Transfers should not " +
+                "change the bank total");
+    }
+
+    // Gets the name of the test account at the index
+    private static String holder(int index) {
+        return "Holder" + index;
+    }
+}
@@ -0,0 +1,268 @@
+package ie.atu.sw.manager;
+
+import ie.atu.sw.bulk.AccountRecords;
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.loan.LoanPortfolio;
+import ie.atu.sw.persistence.AccountSnapshot;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import ie.atu.sw.persistence.TransactionJournal;
+import ie.atu.sw.transaction.BatchOperation;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountManagerJournalTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that every kind of change made through a persistent account manager is rebuilt
+     * when the journal is opened again.
+     */
+    @Test
+    public void testStateIsRebuiltFromJournal() throws IOException {
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            accountManager.addAccount("James", 100_000);
+            accountManager.addAccount("Alice", 50_000);
+            accountManager.deposit("James", 20_000);
+            accountManager.withdraw("Alice", 10_000);
+            accountManager.transfer("James", "Alice", 5_000);
+            accountManager.approveLoan("James", 30_000);
+            accountManager.repayLoan("James", 10_000);
+            accountManager.applyBatch(List.of(
+                    BatchOperation.deposit("Alice", 1_000),
+                    BatchOperation.withdrawal("Alice", 1_000_000)));
+            // A declined operation is not journalled
+            assertThrows(InsufficientFundsException.class,
+                    () -> accountManager.withdraw("Alice", 1_000_000));
+            assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                    accountManager.tryWithdraw("Alice", 1_000_000));
+            assertEquals(TransactionStatus.SUCCESS, accountManager.tryDeposit("Alice", 500));
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            assertEquals(115_000, accountManager.getBalance("James"));
+            assertEquals(20_000, accountManager.getLoan("James"));
+            assertEquals(46_500, accountManager.getBalance("Alice"));
+            assertEquals(141_500, accountManager.getTotalDeposits());
+            assertEquals(20_000, accountManager.getStatistics().totalLoans());
+            assertEquals(2, accountManager.getStatistics().accountCount());
+        }
+    }
+
+    /**
+     * Tests that the interest a loan portfolio accrues on an account's loan is rebuilt from the
+     * journal, though the portfolio itself is not.
+     */
+    @Test
+    public void testLoanInterestIsRebuiltFromJournal() throws IOException {
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT);
+             LoanPortfolio portfolio = new LoanPortfolio()) {
+            accountManager.addAccount("James", 10_000_000);
+            accountManager.addAccount("Alice", 10_000_000);
+            accountManager.setLoanPortfolio(portfolio);
+            accountManager.originateLoan("James", 3_650_000, 1_000, 12);
+            accountManager.originateLoan("Alice", 7_300_000, 500, 24);
+            assertEquals(4_000, portfolio.accrue(2));
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            assertEquals(3_652_000, accountManager.getLoan("James"));
+            assertEquals(7_302_000, accountManager.getLoan("Alice"));
+            assertEquals(10_954_000, accountManager.getStatistics().totalLoans());
+            assertEquals(9_046_000, accountManager.getTotalDeposits());
+        }
+    }
+
+    /**
+     * Tests that accounts opened together with their loans are rebuilt from the journal.
+     */
+    @Test
+    public void testAddedAccountsAreRebuiltFromJournal() throws IOException {
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            accountManager.addAccount("James", 100_000);
+            AccountRecords records = new AccountRecords(3);
+            records.add(1, "Alice", 50_000, 20_000);
+            records.add(2, "James", 1_000, 0);
+            records.add(3, "Bob", 0, 0);
+            assertEquals(2, accountManager.addAccounts(records).getSuccessCount());
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            assertEquals(100_000, accountManager.getBalance("James"));
+            assertEquals(50_000, accountManager.getBalance("Alice"));
+            assertEquals(20_000, accountManager.getLoan("Alice"));
+            assertEquals(0, accountManager.getBalance("Bob"));
+            assertEquals(130_000, accountManager.getTotalDeposits());
+            assertEquals(3, accountManager.getStatistics().accountCount());
+        }
+    }
+
+    /**
+     * Tests that concurrent deposits all share group commits and are all rebuilt from the
+     * journal.
+     */
+    @Test
+    public void testConcurrentDepositsAreAllJournalled() throws Exception {
+        GroupCommitPolicy policy = new GroupCommitPolicy(64, Duration.ofMillis(1), true);
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            accountManager.addAccount("James", 1);
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 1_000; i++) {
+                    futures.add(executor.submit(() -> accountManager.deposit("James", 1)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            assertEquals(1_001, accountManager.getBalance("James"));
+            assertEquals(1_001, accountManager.getTotalDeposits());
+        }
+    }
+
+    /**
+     * Tests that concurrent loan approvals, which wait for the journal after reserving their
+     * amount, lend out exactly the deposits and are all rebuilt from the journal.
+     */
+    @Test
+    public void testConcurrentLoanApprovalsAreAllJournalled() throws Exception {
+        GroupCommitPolicy policy = new GroupCommitPolicy(64, Duration.ofMillis(1), true);
+        LongAdder approved = new LongAdder();
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            accountManager.addAccount("James", 500);
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 1_000; i++) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            accountManager.approveLoan("James", 1);
+                            approved.increment();
+                        } catch (InsufficientFundsException e) {
+                            // Every deposit has been lent out
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            assertEquals(500, approved.sum());
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            assertEquals(500, accountManager.getLoan("James"));
+            assertEquals(0, accountManager.getTotalDeposits());
+        }
+    }
+
+    /**
+     * Tests that the accounts are rebuilt from a snapshot and the journal written after it,
+     * and that the journal segments the snapshot replaces are deleted.
+     */
+    @Test
+    public void testStateIsRebuiltFromSnapshotAndLaterJournal() throws IOException {
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            accountManager.addAccount("James", 100_000);
+            accountManager.addAccount("Alice", 50_000);
+            accountManager.approveLoan("James", 30_000);
+            assertEquals(1, accountManager.snapshot());
+            accountManager.transfer("James", "Alice", 5_000);
+            accountManager.addAccount("Bob", 1_000);
+        }
+        assertEquals(List.of(1L), AccountSnapshot.listSnapshots(directory));
+        assertEquals(List.of(1L), TransactionJournal.listSegments(directory, 0));
+
+        try (AccountManager accountManager = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            assertEquals(95_000, accountManager.getBalance("James"));
+            assertEquals(30_000, accountManager.getLoan("James"));
+            assertEquals(55_000, accountManager.getBalance("Alice"));
+            assertEquals(1_000, accountManager.getBalance("Bob"));
+            assertEquals(121_000, accountManager.getTotalDeposits());
+            assertEquals(2, accountManager.snapshot());
+        }
+        assertEquals(List.of(2L), AccountSnapshot.listSnapshots(directory));
+    }
+
+    /**
+     * Tests that snapshots taken while transfers and new accounts are being made each match
+     * the state at their cut, by checking that the accounts rebuilt from the last snapshot and
+     * the journal after it match the accounts when the manager was closed.
+     */
+    @Test
+    public void testSnapshotDuringConcurrentOperationsIsConsistent() throws Exception {
+        GroupCommitPolicy policy = new GroupCommitPolicy(256, Duration.ofMillis(1), false);
+        int accountCount = 32;
+        long[] balances = new long[accountCount + 100];
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            for (int i = 0; i < accountCount; i++) {
+                accountManager.addAccount("Holder" + i, 10_000);
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int t = 0; t < 8; t++) {
+                    futures.add(executor.submit(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < 20_000; i++) {
+                            int from = random.nextInt(accountCount);
+                            int to = (from + 1 + random.nextInt(accountCount - 1)) % accountCount;
+                            try {
+                                accountManager.transfer("Holder" + from, "Holder" + to,
+                                        1 + random.nextInt(100));
+                            } catch (InsufficientFundsException e) {
+                                // Declined transfers do not move any money
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        accountManager.addAccount("Holder" + (accountCount + i), 100);
+                    }
+                    return null;
+                }));
+                while (!futures.stream().allMatch(Future::isDone)) {
+                    accountManager.snapshot();
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            for (int i = 0; i < balances.length; i++) {
+                balances[i] = accountManager.getBalance("Holder" + i);
+            }
+        }
+
+        try (AccountManager accountManager = AccountManager.open(directory, policy)) {
+            for (int i = 0; i < balances.length; i++) {
+                assertEquals(balances[i], accountManager.getBalance("Holder" + i));
+            }
+            assertEquals(accountCount * 10_000L + 100 * 100, accountManager.getTotalDeposits());
+        }
+    }
+}
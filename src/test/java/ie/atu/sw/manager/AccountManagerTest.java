@@ -1,12 +1,39 @@
 package ie.atu.sw.manager;
 
+import ie.atu.sw.account.AccountState;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.account.OffHeapAccountStore;
+import ie.atu.sw.bulk.AccountRecords;
+import ie.atu.sw.events.AccountEvent;
+import ie.atu.sw.events.AccountEventPublisher;
 import ie.atu.sw.exceptions.AccountAlreadyExists;
 import ie.atu.sw.exceptions.BankAccountDoesNotExist;
+import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
 import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.idempotency.IdempotencyCache;
+import ie.atu.sw.index.IndexEntry;
+import ie.atu.sw.ledger.Posting;
+import ie.atu.sw.ledger.TransactionLedger;
+import ie.atu.sw.loan.LoanPortfolio;
+import ie.atu.sw.metrics.BankMetrics;
+import ie.atu.sw.metrics.Operation;
+import ie.atu.sw.reconciliation.ReconciliationReport;
+import ie.atu.sw.statistics.AccountBalance;
+import ie.atu.sw.statistics.StatisticsSnapshot;
+import ie.atu.sw.transaction.BatchOperation;
+import ie.atu.sw.transaction.BatchResult;
+import ie.atu.sw.transaction.TransactionStatus;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -14,7 +41,7 @@ import static org.junit.jupiter.api.Assertions.*;
 class AccountManagerTest {
     private static AccountManager accountManager;
     private static String testName;
-    private static double initialDeposit;
+    private static long initialDeposit;
 
     /**
      * Creates a static instance of AccountManager for the test class
@@ -23,7 +50,7 @@ class AccountManagerTest {
     public static void beforeAllSetup() {
         accountManager = new AccountManager();
         testName = "James";
-        initialDeposit = 1_000;
+        initialDeposit = 100_000;
     }
 
 
@@ -48,11 +75,11 @@ class AccountManagerTest {
      */
     @Test
     public void testGetTotalDeposits() {
-        accountManager.addAccount("John", 1_000);
+        accountManager.addAccount("John", 100_000);
         // Includes account added
-        assertEquals(2_000, accountManager.getTotalDeposits(),
-                "testName account adds " + initialDeposit + ", John adds " + 1_000 + ", the " +
-                        " expected deposits should be 2_000, deposits: " + accountManager.getTotalDeposits());
+        assertEquals(200_000, accountManager.getTotalDeposits(),
+                "testName account adds " + initialDeposit + ", John adds " + 100_000 + ", the " +
+                        " expected deposits should be 200_000, deposits: " + accountManager.getTotalDeposits());
     }
 
     /**
@@ -82,8 +109,8 @@ class AccountManagerTest {
     @Test
     public void testGetLoan() {
         // Create a loan
-        accountManager.approveLoan(testName, 1_000);
-        assertEquals(1_000, accountManager.getLoan(testName));
+        accountManager.approveLoan(testName, 100_000);
+        assertEquals(100_000, accountManager.getLoan(testName));
     }
 
     /**
@@ -96,12 +123,12 @@ class AccountManagerTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "Conor, 200_000, 200_000",
-            "Mary, 10, 10",
-            "Deirdre, 1_000_000, 1_000_000"
+            "Conor, 20_000_000, 20_000_000",
+            "Mary, 1_000, 1_000",
+            "Deirdre, 100_000_000, 100_000_000"
     })
-    public void testAddAccount(String accountHolder, double initialDeposit,
-                               double expectedBalance) {
+    public void testAddAccount(String accountHolder, long initialDeposit,
+                               long expectedBalance) {
         accountManager.addAccount(accountHolder, initialDeposit);
         assertEquals(expectedBalance, accountManager.getBalance(accountHolder));
     }
@@ -113,7 +140,7 @@ class AccountManagerTest {
     @Test
     public void testAddDuplicateAccountThrowsException() {
         assertThrows(AccountAlreadyExists.class, () -> {
-            accountManager.addAccount(testName, 1_000);
+            accountManager.addAccount(testName, 100_000);
         });
     }
 
@@ -127,11 +154,11 @@ class AccountManagerTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "2_000, 3_000",
-            "10, 1_010",
-            "1_000_000, 1_001_000"
+            "200_000, 300_000",
+            "1_000, 101_000",
+            "100_000_000, 100_100_000"
     })
-    public void testDeposit(double depositAmount, double expectedBalance) {
+    public void testDeposit(long depositAmount, long expectedBalance) {
         accountManager.deposit(testName, depositAmount);
         assertEquals(expectedBalance, accountManager.getBalance(testName));
     }
@@ -143,7 +170,7 @@ class AccountManagerTest {
     @Test
     public void testDepositNegativeAmountThrowsException() {
         assertThrows(IllegalArgumentException.class, () -> {
-            accountManager.deposit(testName, -100);
+            accountManager.deposit(testName, -10_000);
         });
     }
 
@@ -154,8 +181,8 @@ class AccountManagerTest {
      */
     @Test
     public void testWithdraw() {
-        accountManager.withdraw(testName, 500);
-        assertEquals(500, accountManager.getBalance(testName));
+        accountManager.withdraw(testName, 50_000);
+        assertEquals(50_000, accountManager.getBalance(testName));
     }
 
     /**
@@ -165,7 +192,7 @@ class AccountManagerTest {
     @Test
     public void testWithdrawNegativeAmountThrowsException() {
         assertThrows(IllegalArgumentException.class, () -> {
-            accountManager.withdraw(testName, -500);
+            accountManager.withdraw(testName, -50_000);
         });
     }
 
@@ -176,18 +203,86 @@ class AccountManagerTest {
     @Test
     public void testWithdrawExceedsBalanceThrowsException() {
         assertThrows(InsufficientFundsException.class, () -> {
-            accountManager.withdraw(testName, initialDeposit + 1_000);
+            accountManager.withdraw(testName, initialDeposit + 100_000);
         });
     }
 
+    /**
+     * Test to ensure that transfers move money between accounts without changing the total
+     * deposits in the bank.
+     */
+    @Test
+    public void testTransfer() {
+        accountManager.addAccount("John", 100_000);
+        accountManager.transfer(testName, "John", 40_000);
+        assertEquals(60_000, accountManager.getBalance(testName));
+        assertEquals(140_000, accountManager.getBalance("John"));
+        assertEquals(200_000, accountManager.getTotalDeposits());
+    }
+
+    /**
+     * Test to ensure that a transfer to an account that does not exist throws a
+     * BankAccountDoesNotExist exception before any money is taken from the sender.
+     */
+    @Test
+    public void testTransferToNonexistentAccountThrowsException() {
+        assertThrows(BankAccountDoesNotExist.class, () -> {
+            accountManager.transfer(testName, "NonExistentAccount", 40_000);
+        });
+        assertEquals(initialDeposit, accountManager.getBalance(testName));
+    }
+
+    /**
+     * Test to ensure that a batch applies every valid operation, reports the failed ones
+     * without stopping, and keeps the total deposits in step with the balances.
+     */
+    @Test
+    public void testApplyBatch() {
+        accountManager.addAccount("John", 100_000);
+        BatchResult result = accountManager.applyBatch(List.of(
+                BatchOperation.deposit(testName, 50_000),
+                BatchOperation.withdrawal("John", 150_000),
+                BatchOperation.withdrawal("NonExistentAccount", 10),
+                BatchOperation.withdrawal(testName, 20_000),
+                BatchOperation.deposit("John", 0)));
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, result.getStatus(1));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, result.getStatus(2));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, result.getStatus(4));
+        assertEquals(130_000, accountManager.getBalance(testName));
+        assertEquals(100_000, accountManager.getBalance("John"));
+        assertEquals(230_000, accountManager.getTotalDeposits());
+    }
+
+    /**
+     * Test to ensure that batch operations with no account holder or no type are rejected one
+     * by one rather than failing the whole batch.
+     */
+    @Test
+    public void testApplyBatchRejectsIncompleteOperations() {
+        BatchResult result = accountManager.applyBatch(Arrays.asList(
+                BatchOperation.deposit(null, 1_000),
+                null,
+                new BatchOperation(testName, null, 1_000),
+                BatchOperation.deposit(testName, 1_000)));
+
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, result.getStatus(0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, result.getStatus(1));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, result.getStatus(2));
+        assertEquals(101_000, accountManager.getBalance(testName));
+        assertEquals(101_000, accountManager.getTotalDeposits());
+    }
+
     /**
      * Test ot ensure that loan amounts are correctly added to accounts. The loan amount is added
      * and the account balance is checked.
      */
     @Test
     public void testApproveLoan() {
-        accountManager.approveLoan(testName, 500);
-        assertEquals(500, accountManager.getLoan(testName));
+        accountManager.approveLoan(testName, 50_000);
+        assertEquals(50_000, accountManager.getLoan(testName));
     }
 
     /**
@@ -197,7 +292,7 @@ class AccountManagerTest {
     @Test
     public void testApproveLoanWithNegativeAmountThrowsException() {
         assertThrows(IllegalArgumentException.class, () -> {
-            accountManager.approveLoan(testName, -200);
+            accountManager.approveLoan(testName, -20_000);
         });
     }
 
@@ -208,9 +303,9 @@ class AccountManagerTest {
      */
     @Test
     public void testApproveLoanExceedsAvailableFundsThrowsException() {
-        // Total deposits = 1_000 due to default account
+        // Total deposits = 100_000 due to default account
         assertThrows(InsufficientFundsException.class, () -> {
-            accountManager.approveLoan(testName, 1_000_000);
+            accountManager.approveLoan(testName, 100_000_000);
         });
     }
 
@@ -222,11 +317,11 @@ class AccountManagerTest {
     @Test
     public void testRepayLoan() {
         // Create a loan first
-        accountManager.approveLoan(testName, 500);
+        accountManager.approveLoan(testName, 50_000);
 
         // Make a payment
-        accountManager.repayLoan(testName, 200);
-        assertEquals(300, accountManager.getLoan(testName));
+        accountManager.repayLoan(testName, 20_000);
+        assertEquals(30_000, accountManager.getLoan(testName));
 
     }
 
@@ -236,12 +331,389 @@ class AccountManagerTest {
     @Test
     @Timeout(value = 1, unit = TimeUnit.SECONDS)
     public void testDepositCompletesWithinTimeout() {
-        boolean depositSuccessful = accountManager.deposit(testName, 1_000);
+        boolean depositSuccessful = accountManager.deposit(testName, 100_000);
         assertEquals(true, depositSuccessful, "The deposit operation should" +
                 "complete within the timeout");
     }
 
 
+    /**
+     * Tests that the account manager works unchanged with the accounts held off the heap.
+     */
+    @Test
+    public void testOperationsWithOffHeapStore() {
+        AccountManager offHeapManager = new AccountManager(new OffHeapAccountStore());
+        offHeapManager.addAccount("James", 100_000);
+        offHeapManager.addAccount("Alice", 50_000);
+        offHeapManager.deposit("James", 20_000);
+        offHeapManager.withdraw("Alice", 10_000);
+        offHeapManager.transfer("James", "Alice", 5_000);
+        offHeapManager.approveLoan("James", 30_000);
+        offHeapManager.repayLoan("James", 10_000);
+        assertThrows(IllegalArgumentException.class,
+                () -> offHeapManager.transfer("James", "James", 1_000));
+
+        assertEquals(115_000, offHeapManager.getBalance("James"));
+        assertEquals(20_000, offHeapManager.getLoan("James"));
+        assertEquals(45_000, offHeapManager.getBalance("Alice"));
+        assertEquals(140_000, offHeapManager.getTotalDeposits());
+    }
+
+    /**
+     * Tests that every change made through a manager with a ledger is posted to it, and that a
+     * failed change is not.
+     */
+    @Test
+    public void testChangesArePostedToLedger() {
+        TransactionLedger ledger = new TransactionLedger();
+        AccountManager ledgerManager = new AccountManager(new HeapAccountStore(), ledger);
+        ledgerManager.addAccount("James", 100_000);
+        ledgerManager.addAccount("Alice", 50_000);
+        ledgerManager.deposit("James", 20_000);
+        ledgerManager.withdraw("Alice", 10_000);
+        ledgerManager.transfer("James", "Alice", 5_000);
+        ledgerManager.approveLoan("James", 30_000);
+        ledgerManager.repayLoan("James", 10_000);
+        ledgerManager.applyBatch(List.of(BatchOperation.deposit("Alice", 1_000),
+                BatchOperation.withdrawal("Alice", 400)));
+        assertThrows(InsufficientFundsException.class,
+                () -> ledgerManager.withdraw("Alice", 1_000_000));
+
+        List<Posting.Type> jamesTypes = ledger.history("James", 0, 10).stream()
+                .map(Posting::type).toList();
+        assertEquals(List.of(Posting.Type.LOAN_REPAID, Posting.Type.LOAN_APPROVED,
+                Posting.Type.TRANSFER_OUT, Posting.Type.DEPOSIT, Posting.Type.OPENING_DEPOSIT),
+                jamesTypes);
+        Posting batch = ledger.history("Alice", 0, 1).get(0);
+        assertEquals(Posting.Type.BATCH_ADJUSTMENT, batch.type());
+        assertEquals(600, batch.amount());
+        assertEquals(45_600, batch.balance());
+        assertEquals(9, ledger.size());
+    }
+
+    /**
+     * Tests that the try methods report each rejection as a status and only count the
+     * operations that succeed in the total deposits.
+     */
+    @Test
+    public void testTryMethodsReportRejectionsAsStatus() {
+        accountManager.addAccount("John", 50_000);
+        long totalDeposits = accountManager.getTotalDeposits();
+
+        assertEquals(TransactionStatus.SUCCESS, accountManager.tryDeposit(testName, 1_000));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND,
+                accountManager.tryDeposit("NonExistentAccount", 1_000));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, accountManager.tryDeposit(testName, 0));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                accountManager.tryWithdraw(testName, 1_000_000));
+        assertEquals(TransactionStatus.SUCCESS, accountManager.tryWithdraw(testName, 500));
+        assertEquals(TransactionStatus.SAME_ACCOUNT,
+                accountManager.tryTransfer(testName, testName, 100));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND,
+                accountManager.tryTransfer(testName, "NonExistentAccount", 100));
+        assertEquals(TransactionStatus.SUCCESS, accountManager.tryTransfer(testName, "John", 100));
+        assertEquals(TransactionStatus.EXCESS_LOAN_REPAYMENT,
+                accountManager.tryRepayLoan(testName, 100));
+
+        assertEquals(initialDeposit + 400, accountManager.getBalance(testName));
+        assertEquals(50_100, accountManager.getBalance("John"));
+        assertEquals(totalDeposits + 500, accountManager.getTotalDeposits());
+    }
+
+    /**
+     * Tests that a rejected try operation is not posted to the ledger.
+     */
+    @Test
+    public void testRejectedTryOperationIsNotPosted() {
+        TransactionLedger ledger = new TransactionLedger();
+        AccountManager ledgerManager = new AccountManager(new HeapAccountStore(), ledger);
+        ledgerManager.addAccount("James", 100_000);
+        ledgerManager.addAccount("Alice", 50_000);
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                ledgerManager.tryWithdraw("James", 1_000_000));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                ledgerManager.tryTransfer("Alice", "James", 1_000_000));
+        assertEquals(2, ledger.size());
+        assertEquals(TransactionStatus.SUCCESS, ledgerManager.tryTransfer("Alice", "James", 1));
+        assertEquals(4, ledger.size());
+    }
+
+    /**
+     * Tests that the statistics follow the operations made through the manager.
+     */
+    @Test
+    public void testStatisticsFollowOperations() {
+        AccountManager statisticsManager = new AccountManager();
+        statisticsManager.addAccount("James", 100_000);
+        statisticsManager.addAccount("Alice", 5_000);
+        statisticsManager.trackTopBalances(1);
+        statisticsManager.approveLoan("James", 30_000);
+        statisticsManager.repayLoan("James", 10_000);
+        statisticsManager.transfer("Alice", "James", 4_000);
+
+        StatisticsSnapshot statistics = statisticsManager.getStatistics();
+        assertEquals(85_000, statistics.totalDeposits());
+        assertEquals(20_000, statistics.totalLoans());
+        assertEquals(2, statistics.accountCount());
+        assertEquals(1, statistics.lowBalanceAccounts());
+        assertEquals(List.of(new AccountBalance("James", 104_000)), statistics.topBalances());
+    }
+
+    /**
+     * Tests that reconciling while transfers and deposits run never reports drift, and finds
+     * the statistics consistent once the operations have stopped.
+     */
+    @Test
+    public void testReconcileWhileOperationsRun() throws InterruptedException {
+        AccountManager reconcileManager = new AccountManager();
+        for (int i = 0; i < 1_000; i++) {
+            reconcileManager.addAccount("Holder" + i, 10_000);
+        }
+        reconcileManager.approveLoan("Holder0", 5_000);
+        Thread operations = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                reconcileManager.tryTransfer("Holder" + i % 1_000, "Holder" + (i + 7) % 1_000,
+                        100);
+                reconcileManager.tryDeposit("Holder" + i % 997, 1);
+            }
+        });
+        while (operations.isAlive()) {
+            assertNotEquals(ReconciliationReport.Outcome.DRIFTED,
+                    reconcileManager.reconcile().outcome());
+        }
+        operations.join();
+
+        ReconciliationReport report = reconcileManager.reconcile();
+        assertTrue(report.isConsistent());
+        assertEquals(10_015_000, report.recomputed().totalDeposits());
+        assertEquals(5_000, report.recomputed().totalLoans());
+    }
+
+    /**
+     * Tests that range queries give the same accounts by scanning as from the indexes, and that
+     * the indexes follow the operations made after they are enabled.
+     */
+    @Test
+    public void testRangeQueriesFollowOperations() {
+        AccountManager indexManager = new AccountManager();
+        indexManager.addAccount("James", 100_000);
+        indexManager.addAccount("Alice", 5_000);
+        indexManager.approveLoan("Alice", 20_000);
+        List<IndexEntry> scanned = indexManager.accountsByBalance(0, 50_000).toList();
+        indexManager.indexBalances();
+        indexManager.indexLoans();
+        assertEquals(scanned, indexManager.accountsByBalance(0, 50_000).toList());
+        assertEquals(List.of(new IndexEntry("Alice", 20_000)),
+                indexManager.accountsByLoan(10_001, Long.MAX_VALUE).toList());
+
+        indexManager.addAccount("Síle", 40_000);
+        indexManager.transfer("James", "Alice", 1_000);
+        indexManager.tryWithdraw("James", 60_000);
+        indexManager.repayLoan("Alice", 15_000);
+        indexManager.approveLoan("James", 30_000);
+        assertEquals(List.of(new IndexEntry("Alice", 6_000), new IndexEntry("James", 39_000),
+                        new IndexEntry("Síle", 40_000)),
+                indexManager.accountsByBalance(0, 50_000).toList());
+        assertEquals(List.of(new IndexEntry("Alice", 5_000), new IndexEntry("James", 30_000)),
+                indexManager.accountsByLoan(1, Long.MAX_VALUE).toList());
+    }
+
+    /**
+     * Tests that the interest a loan portfolio accrues on a loan originated through the manager
+     * is added to the account's loan, its statistics and the loan index, and that repaying the
+     * loan repays both.
+     */
+    @Test
+    public void testPortfolioLoanFollowsAccount() {
+        AccountManager loanManager = new AccountManager();
+        loanManager.addAccount("James", 10_000_000);
+        assertThrows(IllegalStateException.class,
+                () -> loanManager.originateLoan("James", 3_650_000, 1_000, 12));
+        LoanPortfolio portfolio = new LoanPortfolio();
+        loanManager.setLoanPortfolio(portfolio);
+        loanManager.indexLoans();
+        assertThrows(IllegalArgumentException.class,
+                () -> loanManager.originateLoan("James", 3_650_000, 1_000, 0));
+        assertEquals(0, loanManager.getLoan("James"));
+
+        // A 10% loan of 3,650,000 cents accrues 1,000 cents a day
+        int loanId = loanManager.originateLoan("James", 3_650_000, 1_000, 12);
+        int unheldLoanId = portfolio.originate(3_650_000, 1_000, 12);
+        assertEquals("James", portfolio.getAccountHolder(loanId));
+        assertEquals(2_000, portfolio.accrue(1));
+        assertEquals(3_651_000, portfolio.getOutstanding(loanId));
+        assertEquals(3_651_000, loanManager.getLoan("James"));
+        assertEquals(3_651_000, loanManager.getStatistics().totalLoans());
+        assertEquals(6_349_000, loanManager.getTotalDeposits());
+        assertEquals(List.of(new IndexEntry("James", 3_651_000)),
+                loanManager.accountsByLoan(1, Long.MAX_VALUE).toList());
+        assertTrue(loanManager.reconcile().isConsistent());
+
+        loanManager.repayPortfolioLoan(loanId, 51_000);
+        assertEquals(3_600_000, portfolio.getOutstanding(loanId));
+        assertEquals(3_600_000, loanManager.getLoan("James"));
+        assertThrows(ExcessLoanRepaymentException.class,
+                () -> loanManager.repayPortfolioLoan(loanId, 3_600_001));
+        assertThrows(IllegalArgumentException.class,
+                () -> loanManager.repayPortfolioLoan(unheldLoanId, 1_000));
+        assertEquals(3_600_000, portfolio.getOutstanding(loanId));
+        assertEquals(3_600_000, loanManager.getLoan("James"));
+        assertEquals(3_600_000, loanManager.getStatistics().totalLoans());
+    }
+
+    /**
+     * Tests that the balance and loan of an account are read together.
+     */
+    @Test
+    public void testGetAccountState() {
+        AccountManager stateManager = new AccountManager();
+        stateManager.addAccount("James", 10_000);
+        stateManager.approveLoan("James", 4_000);
+        assertEquals(new AccountState(10_000, 4_000), stateManager.getAccountState("James"));
+        assertThrows(BankAccountDoesNotExist.class, () -> stateManager.getAccountState("Nobody"));
+    }
+
+    /**
+     * Tests that a chunk of accounts is opened with its loans, rejecting negative amounts and
+     * existing account holders, and that the statistics take in every account opened.
+     */
+    @Test
+    public void testAddAccounts() {
+        AccountManager bulkManager = new AccountManager();
+        bulkManager.addAccount("James", 10_000);
+        AccountRecords records = new AccountRecords(4);
+        records.add(2, "Alice", 20_000, 5_000);
+        records.add(3, "James", 1_000, 0);
+        records.add(4, "Bob", -1, 0);
+        records.add(5, "Síle", 0, 0);
+
+        BatchResult result = bulkManager.addAccounts(records);
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(TransactionStatus.ACCOUNT_ALREADY_EXISTS, result.getStatus(1));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, result.getStatus(2));
+        assertEquals(new AccountState(20_000, 5_000), bulkManager.getAccountState("Alice"));
+        assertEquals(new AccountState(0, 0), bulkManager.getAccountState("Síle"));
+        assertEquals(10_000, bulkManager.getBalance("James"));
+        assertThrows(BankAccountDoesNotExist.class, () -> bulkManager.getBalance("Bob"));
+        StatisticsSnapshot statistics = bulkManager.getStatistics();
+        assertEquals(25_000, statistics.totalDeposits());
+        assertEquals(5_000, statistics.totalLoans());
+        assertEquals(3, statistics.accountCount());
+    }
+
+    /**
+     * Tests that a deposit or withdrawal repeated with the same request id returns the first
+     * result without being applied again, and that ids are ignored without a cache.
+     */
+    @Test
+    public void testRequestIdsSuppressRepeats() {
+        AccountManager idempotentManager = new AccountManager();
+        idempotentManager.addAccount("James", 10_000);
+        idempotentManager.tryDeposit("deposit-1", "James", 1_000);
+        idempotentManager.tryDeposit("deposit-1", "James", 1_000);
+        assertEquals(12_000, idempotentManager.getBalance("James"));
+
+        idempotentManager.setIdempotencyCache(new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+        assertEquals(TransactionStatus.SUCCESS,
+                idempotentManager.tryWithdraw("withdraw-1", "James", 5_000));
+        assertEquals(TransactionStatus.SUCCESS,
+                idempotentManager.tryWithdraw("withdraw-1", "James", 5_000));
+        assertEquals(7_000, idempotentManager.getBalance("James"));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                idempotentManager.tryWithdraw("withdraw-2", "James", 8_000));
+        idempotentManager.tryDeposit("deposit-2", "James", 1_000);
+        // The first result is returned even though the balance would now cover the withdrawal
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                idempotentManager.tryWithdraw("withdraw-2", "James", 8_000));
+        assertEquals(8_000, idempotentManager.getBalance("James"));
+        assertEquals(2, idempotentManager.getIdempotencyCache().getDuplicateCount());
+        assertEquals(8_000, idempotentManager.getTotalDeposits());
+    }
+
+    /**
+     * Tests that every change applied is published to event subscribers, and that rejected
+     * operations are not.
+     */
+    @Test
+    public void testChangesArePublished() throws InterruptedException {
+        AccountManager publishingManager = new AccountManager();
+        publishingManager.addAccount("James", 10_000);
+        publishingManager.addAccount("Alice", 500);
+        AccountEventPublisher publisher = new AccountEventPublisher(64);
+        publishingManager.setEventPublisher(publisher);
+        List<AccountEvent> events = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(AccountEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        publishingManager.deposit("James", 100);
+        publishingManager.tryWithdraw("James", 200);
+        publishingManager.tryWithdraw("James", 1_000_000);
+        publishingManager.transfer("James", "Alice", 300);
+        publishingManager.approveLoan("Alice", 400);
+        publishingManager.tryRepayLoan("Alice", 50);
+        publishingManager.applyBatch(List.of(BatchOperation.deposit("Alice", 10),
+                BatchOperation.withdrawal("Alice", 1_000_000)));
+        publisher.close();
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(AccountEvent.Type.DEPOSIT, AccountEvent.Type.WITHDRAWAL,
+                        AccountEvent.Type.TRANSFER, AccountEvent.Type.LOAN_APPROVED,
+                        AccountEvent.Type.LOAN_REPAID, AccountEvent.Type.DEPOSIT),
+                events.stream().map(AccountEvent::type).toList());
+        assertEquals(List.of(100L, 200L, 300L, 400L, 50L, 10L),
+                events.stream().map(AccountEvent::amount).toList());
+        assertEquals("Alice", events.get(2).counterparty());
+    }
+
+    /**
+     * Tests that enabled metrics measure every call and count rejections by reason.
+     */
+    @Test
+    public void testMetricsFollowOperations() {
+        AccountManager metricsManager = new AccountManager();
+        metricsManager.addAccount("James", 10_000);
+        BankMetrics metrics = metricsManager.getMetrics();
+        assertEquals(0, metrics.getCallCount(Operation.ADD_ACCOUNT));
+
+        metrics.setEnabled(true);
+        metricsManager.deposit("James", 1_000);
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                metricsManager.tryWithdraw("James", 1_000_000));
+        assertThrows(InsufficientFundsException.class,
+                () -> metricsManager.withdraw("James", 1_000_000));
+        assertThrows(BankAccountDoesNotExist.class, () -> metricsManager.getBalance("Nobody"));
+        metricsManager.applyBatch(List.of(BatchOperation.deposit("James", 1),
+                BatchOperation.deposit("Nobody", 1)));
+
+        assertEquals(1, metrics.getCallCount(Operation.DEPOSIT));
+        assertEquals(2, metrics.getCallCount(Operation.WITHDRAW));
+        assertEquals(2, metrics.getRejectedCount(Operation.WITHDRAW));
+        assertEquals(1, metrics.getCallCount(Operation.GET_BALANCE));
+        assertEquals(1, metrics.getRejectedCount(Operation.BATCH));
+        assertEquals(Map.of("INSUFFICIENT_FUNDS", 1L, "InsufficientFundsException", 1L,
+                "BankAccountDoesNotExist", 1L, "ACCOUNT_NOT_FOUND", 1L), metrics.getRejections());
+    }
+
     /**
      * Sets accountManager to null
      */
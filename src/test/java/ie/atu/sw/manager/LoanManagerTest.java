@@ -3,6 +3,7 @@ package ie.atu.sw.manager;
 import ie.atu.sw.account.BankAccount;
 import ie.atu.sw.exceptions.ExcessLoanRepaymentException;
 import ie.atu.sw.manager.LoanManager;
+import ie.atu.sw.transaction.TransactionStatus;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,7 +23,7 @@ class LoanManagerTest {
     @BeforeEach
     public void setupEach() {
         loanManager = new LoanManager();
-        account = new BankAccount("James", 100.00);
+        account = new BankAccount("James", 10_000);
     }
 
     /**
@@ -34,12 +35,12 @@ class LoanManagerTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "100, 50, 150",
-            "10_000, 2_000, 12_000",
-            "1_000_000, 2_000_000, 3_000_000"
+            "10_000, 5_000, 15_000",
+            "1_000_000, 200_000, 1_200_000",
+            "100_000_000, 200_000_000, 300_000_000"
     })
-    public void testApproveLoan(double startingLoan, double additionalLoan,
-                                double expectedLoanBalance) {
+    public void testApproveLoan(long startingLoan, long additionalLoan,
+                                long expectedLoanBalance) {
         // Take out an initial loan
         loanManager.approveLoan(this.account, startingLoan);
 
@@ -65,12 +66,12 @@ class LoanManagerTest {
 
     @ParameterizedTest
     @CsvSource({
-            "1_000, 500, 500",
-            "500_000, 100_000, 400_000",
-            "1_000_000, 900_000, 100_000"
+            "100_000, 50_000, 50_000",
+            "50_000_000, 10_000_000, 40_000_000",
+            "100_000_000, 90_000_000, 10_000_000"
     })
-    public void testRepayLoan(double startingLoan, double loanRepayment,
-                              double expectedLoanBalance) {
+    public void testRepayLoan(long startingLoan, long loanRepayment,
+                              long expectedLoanBalance) {
         // Create a loan amount
         loanManager.approveLoan(this.account, startingLoan);
 
@@ -102,12 +103,28 @@ class LoanManagerTest {
     @Test
     public void testWithdrawalWithExceedingAmountThrowsInsufficientFundsException() {
         // Create a loan amount
-        loanManager.approveLoan(this.account, 100);
+        loanManager.approveLoan(this.account, 10_000);
 
         assertThrows(ExcessLoanRepaymentException.class,
-                () -> loanManager.repayLoan(this.account, 10_000), "Reyaping an amount " +
+                () -> loanManager.repayLoan(this.account, 1_000_000), "Reyaping an amount " +
                         "greater than the balance available should throw " +
                         "ExcessLoanRepaymentException");
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that the try methods report each rejection as a status and leave the loan
+     * unchanged.
+     */
+    @Test
+    public void testTryMethodsReportRejectionsAsStatus() {
+        assertEquals(TransactionStatus.SUCCESS, loanManager.tryApproveLoan(account, 5_000));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, loanManager.tryApproveLoan(account, 0));
+        assertEquals(TransactionStatus.BALANCE_OVERFLOW,
+                loanManager.tryApproveLoan(account, Long.MAX_VALUE));
+        assertEquals(TransactionStatus.EXCESS_LOAN_REPAYMENT,
+                loanManager.tryRepayLoan(account, 5_001));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, loanManager.tryRepayLoan(account, -1));
+        assertEquals(TransactionStatus.SUCCESS, loanManager.tryRepayLoan(account, 2_000));
+        assertEquals(3_000, account.getLoan());
+    }
+}
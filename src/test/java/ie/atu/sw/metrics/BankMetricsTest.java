@@ -0,0 +1,132 @@
+package ie.atu.sw.metrics;
+
+import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankMetricsTest {
+    private BankMetrics metrics;
+
+    /**
+     * Creates enabled metrics that time every call.
+     */
+    @BeforeEach
+    public void setupEach() {
+        metrics = new BankMetrics();
+        metrics.setEnabled(true);
+        metrics.setSampleInterval(1);
+    }
+
+    /**
+     * Tests that nothing is recorded while the metrics are off.
+     */
+    @Test
+    public void testDisabledRecordsNothing() {
+        metrics.setEnabled(false);
+        metrics.record(Operation.DEPOSIT, metrics.start());
+        metrics.rejected(Operation.DEPOSIT, new IllegalArgumentException());
+        metrics.status(Operation.DEPOSIT, TransactionStatus.INVALID_AMOUNT);
+
+        assertEquals(0, metrics.getCallCount(Operation.DEPOSIT));
+        assertEquals(0, metrics.getLatencies(Operation.DEPOSIT).getCount());
+        assertEquals(0, metrics.getRejectedCount(Operation.DEPOSIT));
+        assertTrue(metrics.getRejections().isEmpty());
+    }
+
+    /**
+     * Tests that calls and rejections are counted by operation and by reason.
+     */
+    @Test
+    public void testCountsCallsAndRejections() {
+        for (int i = 0; i < 3; i++) {
+            metrics.record(Operation.WITHDRAW, metrics.start());
+        }
+        assertSame(TransactionStatus.SUCCESS,
+                metrics.status(Operation.WITHDRAW, TransactionStatus.SUCCESS));
+        metrics.status(Operation.WITHDRAW, TransactionStatus.INSUFFICIENT_FUNDS);
+        metrics.rejected(Operation.APPROVE_LOAN, new InsufficientFundsException("No funds"));
+        metrics.rejected(Operation.DEPOSIT, new IllegalArgumentException());
+
+        assertEquals(3, metrics.getCallCount(Operation.WITHDRAW));
+        assertEquals(3, metrics.getLatencies(Operation.WITHDRAW).getCount());
+        assertEquals(1, metrics.getRejectedCount(Operation.WITHDRAW));
+        assertEquals(1, metrics.getRejectedCount(Operation.APPROVE_LOAN));
+        assertEquals(Map.of("INSUFFICIENT_FUNDS", 1L, "InsufficientFundsException", 1L,
+                "IllegalArgumentException", 1L), metrics.getRejections());
+    }
+
+    /**
+     * Tests that every call is counted but only a sample of them is timed.
+     */
+    @Test
+    public void testSampling() {
+        metrics.setSampleInterval(64);
+        for (int i = 0; i < 64_000; i++) {
+            metrics.record(Operation.GET_BALANCE, metrics.start());
+        }
+        assertEquals(64_000, metrics.getCallCount(Operation.GET_BALANCE));
+        long timed = metrics.getLatencies(Operation.GET_BALANCE).getCount();
+        assertTrue(timed > 500 && timed < 2_000, "timed " + timed);
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(3));
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(0));
+    }
+
+    /**
+     * Tests the text written for a scraper.
+     */
+    @Test
+    public void testScrape() {
+        metrics.record(Operation.DEPOSIT, metrics.start());
+        metrics.status(Operation.TRANSFER, TransactionStatus.SAME_ACCOUNT);
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE bank_operation_latency_nanoseconds summary\n"));
+        assertTrue(text.contains(
+                "bank_operation_latency_nanoseconds_count{operation=\"deposit\"} 1\n"));
+        assertTrue(text.contains(
+                "bank_operation_latency_nanoseconds{operation=\"deposit\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("bank_operations_total{operation=\"deposit\"} 1\n"));
+        assertTrue(text.contains("bank_operation_rejections_total{operation=\"transfer\"} 1\n"));
+        assertTrue(text.contains("bank_rejections_total{reason=\"SAME_ACCOUNT\"} 1\n"));
+    }
+
+    /**
+     * Tests that the metrics can be read and switched through the platform MBean server.
+     */
+    @Test
+    public void testMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName bank = new ObjectName("ie.atu.sw:type=BankMetrics,name=\"test\"");
+        ObjectName deposits = new ObjectName(
+                "ie.atu.sw:type=OperationMetrics,name=\"test\",operation=deposit");
+        metrics.registerMBeans("test");
+        try {
+            assertThrows(IllegalStateException.class, () -> metrics.registerMBeans("test"));
+            metrics.record(Operation.DEPOSIT, metrics.start());
+            metrics.status(Operation.DEPOSIT, TransactionStatus.INVALID_AMOUNT);
+
+            assertEquals(1L, server.getAttribute(deposits, "Count"));
+            assertEquals(1L, server.getAttribute(deposits, "TimedCount"));
+            assertEquals(1L, server.getAttribute(deposits, "RejectedCount"));
+            assertTrue((long) server.getAttribute(deposits, "P99Nanos") >= 0);
+
+            server.setAttribute(bank, new Attribute("Enabled", false));
+            assertFalse(metrics.isEnabled());
+            server.setAttribute(bank, new Attribute("SampleInterval", 16));
+            assertEquals(16, metrics.getSampleInterval());
+        } finally {
+            metrics.unregisterMBeans();
+        }
+        assertFalse(server.isRegistered(bank));
+        assertFalse(server.isRegistered(deposits));
+    }
+}
@@ -0,0 +1,98 @@
+package ie.atu.sw.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Tests that small values are kept exactly and larger ones within the bucket precision.
+     */
+    @Test
+    public void testBucketPrecision() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram.bucket(value)));
+        }
+        for (long value : new long[]{64, 65, 1_000, 123_456, 9_999_999_999L, Long.MAX_VALUE}) {
+            long read = LatencyHistogram.highestValue(LatencyHistogram.bucket(value));
+            assertTrue(read >= value, "read " + read + " for " + value);
+            assertTrue(read - value <= value / 32, "read " + read + " for " + value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    /**
+     * Tests that every bucket follows on from the one before it.
+     */
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long lowest = LatencyHistogram.highestValue(bucket - 1) + 1;
+            assertEquals(bucket, LatencyHistogram.bucket(lowest));
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.highestValue(bucket)));
+        }
+    }
+
+    /**
+     * Tests the percentiles, mean and maximum of a known set of values.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000; value++) {
+            histogram.record(value);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1_000, snapshot.getCount());
+        assertEquals(500_500, snapshot.getTotalNanos());
+        assertEquals(500.5, snapshot.getMeanNanos());
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertEquals(500, snapshot.getValueAtPercentile(50), 500 / 32);
+        assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 32);
+        assertEquals(1_000, snapshot.getMaxNanos(), 1_000 / 32);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    }
+
+    /**
+     * Tests that an empty histogram reads as zero and a negative value is recorded as zero.
+     */
+    @Test
+    public void testEmptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        HistogramSnapshot empty = histogram.snapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMeanNanos());
+        assertEquals(0, empty.getValueAtPercentile(99));
+        assertEquals(0, empty.getMaxNanos());
+
+        histogram.record(-5);
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getMaxNanos());
+    }
+
+    /**
+     * Tests that values recorded by many threads are all merged into the snapshot.
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(100);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(80_000, snapshot.getCount());
+        assertEquals(8_000_000, snapshot.getTotalNanos());
+    }
+}
@@ -0,0 +1,55 @@
+package ie.atu.sw.money;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    /**
+     * Tests that whole euro amounts are converted to cents.
+     */
+    @Test
+    public void testOfEuro() {
+        assertEquals(123_400, Money.ofEuro(1_234));
+    }
+
+    /**
+     * Tests that amounts are added and subtracted exactly.
+     */
+    @Test
+    public void testAddAndSubtract() {
+        assertEquals(30, Money.add(10, 20));
+        assertEquals(-10, Money.subtract(10, 20));
+    }
+
+    /**
+     * Tests that arithmetic which would overflow throws instead of wrapping around.
+     */
+    @Test
+    public void testOverflowThrowsException() {
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.ofEuro(Long.MAX_VALUE));
+    }
+
+    /**
+     * Tests that amounts are formatted as euro and cents.
+     *
+     * @param amount   The amount in cents
+     * @param expected The expected formatted amount
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0.00",
+            "5, 0.05",
+            "123405, 1234.05",
+            "-250, -2.50",
+            "-5, -0.05"
+    })
+    public void testFormat(long amount, String expected) {
+        assertEquals(expected, Money.format(amount));
+    }
+}
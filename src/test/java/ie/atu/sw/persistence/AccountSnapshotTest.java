@@ -0,0 +1,92 @@
+package ie.atu.sw.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountSnapshotTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the accounts written to a snapshot are read back with the total deposits.
+     */
+    @Test
+    public void testWrittenAccountsAreReadBack() throws IOException {
+        Path file;
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(directory, 3)) {
+            writer.add("James", 10_000, 2_500);
+            writer.add("Síle", 500, 0);
+            file = writer.commit();
+        }
+        assertEquals(AccountSnapshot.snapshotFile(directory, 3), file);
+        assertEquals(List.of(3L), AccountSnapshot.listSnapshots(directory));
+
+        List<String> read = new ArrayList<>();
+        AccountSnapshot.read(file, new AccountSnapshot.Visitor() {
+            @Override
+            public void start(int accountCount, long totalDeposits) {
+                read.add(accountCount + " accounts, " + totalDeposits);
+            }
+
+            @Override
+            public void account(String accountHolder, long balance, long loan) {
+                read.add(accountHolder + " " + balance + " " + loan);
+            }
+        });
+        assertEquals(List.of("2 accounts, 8000", "James 10000 2500", "Síle 500 0"), read);
+    }
+
+    /**
+     * Tests that a snapshot which is not committed leaves no file behind.
+     */
+    @Test
+    public void testUncommittedSnapshotIsDiscarded() throws IOException {
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(directory, 1)) {
+            writer.add("James", 10_000, 0);
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count(), "No snapshot file should be left behind");
+        }
+    }
+
+    /**
+     * Tests that a snapshot with a damaged body is rejected before any account is read.
+     */
+    @Test
+    public void testCorruptSnapshotThrowsException() throws IOException {
+        Path file;
+        try (AccountSnapshot.Writer writer = AccountSnapshot.create(directory, 1)) {
+            writer.add("James", 10_000, 0);
+            file = writer.commit();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), Files.size(file) - 1);
+        }
+
+        List<String> read = new ArrayList<>();
+        assertThrows(IOException.class, () -> AccountSnapshot.read(file,
+                new AccountSnapshot.Visitor() {
+                    @Override
+                    public void start(int accountCount, long totalDeposits) {
+                        read.add("start");
+                    }
+
+                    @Override
+                    public void account(String accountHolder, long balance, long loan) {
+                        read.add(accountHolder);
+                    }
+                }));
+        assertTrue(read.isEmpty(), "Nothing should be read from a corrupt snapshot");
+    }
+}
@@ -0,0 +1,176 @@
+package ie.atu.sw.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that appended entries are read back in the order they were written.
+     *
+     * @param waitForDurability Whether appends wait for the entries to be synced
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testAppendedEntriesAreReplayedInOrder(boolean waitForDurability)
+            throws IOException {
+        Path file = TransactionJournal.segmentFile(directory, 0);
+        GroupCommitPolicy policy = new GroupCommitPolicy(16, Duration.ofMillis(1),
+                waitForDurability);
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0, policy, entry -> {
+        })) {
+            journal.commit(JournalEntry.Type.OPEN_ACCOUNT, "James", null, () -> 10_000);
+            journal.commit(JournalEntry.Type.TRANSFER, "James", "Alice", () -> 2_500);
+            journal.commit(JournalEntry.Type.BALANCE_ADJUSTMENT, "Alice", null, () -> -300);
+        }
+
+        List<JournalEntry> entries = new ArrayList<>();
+        TransactionJournal.replay(file, entries::add);
+        assertEquals(List.of(
+                new JournalEntry(JournalEntry.Type.OPEN_ACCOUNT, "James", null, 10_000),
+                new JournalEntry(JournalEntry.Type.TRANSFER, "James", "Alice", 2_500),
+                new JournalEntry(JournalEntry.Type.BALANCE_ADJUSTMENT, "Alice", null, -300)),
+                entries);
+    }
+
+    /**
+     * Tests that a change which throws or is not applied is not appended to the journal.
+     */
+    @Test
+    public void testFailedChangeIsNotAppended() throws IOException {
+        Path file = TransactionJournal.segmentFile(directory, 0);
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, entry -> {
+                })) {
+            assertThrows(IllegalStateException.class, () -> journal.commit(
+                    JournalEntry.Type.DEPOSIT, "James", null, () -> {
+                        throw new IllegalStateException("Declined");
+                    }));
+            assertEquals(0, journal.append(JournalEntry.Type.DEPOSIT, "James", null,
+                    () -> TransactionJournal.NOT_APPLIED));
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 100);
+        }
+
+        List<JournalEntry> entries = new ArrayList<>();
+        TransactionJournal.replay(file, entries::add);
+        assertEquals(1, entries.size(), "Only the successful change should be journalled");
+    }
+
+    /**
+     * Tests that a partly written entry at the end of the journal, as left by a crash, is
+     * ignored and then overwritten by the next entry.
+     */
+    @Test
+    public void testTornEntryIsTruncatedOnOpen() throws IOException {
+        Path file = TransactionJournal.segmentFile(directory, 0);
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, entry -> {
+                })) {
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 100);
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 200);
+        }
+        // Cut the last entry short
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        List<JournalEntry> replayed = new ArrayList<>();
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, replayed::add)) {
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 300);
+        }
+        assertEquals(1, replayed.size(), "The torn entry should not be replayed");
+
+        List<JournalEntry> entries = new ArrayList<>();
+        TransactionJournal.replay(file, entries::add);
+        assertEquals(List.of(100L, 300L), entries.stream().map(JournalEntry::amount).toList());
+    }
+
+    /**
+     * Tests that rotating splits the entries between segments at the moment of the rotation,
+     * that the journal carries on in the latest segment when reopened, and that old segments
+     * can be deleted.
+     */
+    @Test
+    public void testRotateStartsNewSegment() throws IOException {
+        List<String> cutAfter = new ArrayList<>();
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, entry -> {
+                })) {
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 100);
+            // An entry that has not been synced yet still belongs to the old segment
+            journal.append(JournalEntry.Type.DEPOSIT, "James", null, () -> 200);
+            assertEquals(1, journal.rotate(() -> cutAfter.add("cut")));
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 300);
+        }
+        assertEquals(List.of("cut"), cutAfter);
+        assertEquals(List.of(0L, 1L), TransactionJournal.listSegments(directory, 0));
+
+        List<JournalEntry> first = new ArrayList<>();
+        TransactionJournal.replay(TransactionJournal.segmentFile(directory, 0), first::add);
+        assertEquals(List.of(100L, 200L), first.stream().map(JournalEntry::amount).toList());
+
+        List<JournalEntry> replayed = new ArrayList<>();
+        try (TransactionJournal journal = TransactionJournal.open(directory, 1,
+                GroupCommitPolicy.DEFAULT, replayed::add)) {
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 400);
+            journal.deleteSegmentsBefore(1);
+        }
+        assertEquals(List.of(300L), replayed.stream().map(JournalEntry::amount).toList());
+        assertEquals(List.of(1L), TransactionJournal.listSegments(directory, 0));
+
+        List<JournalEntry> second = new ArrayList<>();
+        TransactionJournal.replay(TransactionJournal.segmentFile(directory, 1), second::add);
+        assertEquals(List.of(300L, 400L), second.stream().map(JournalEntry::amount).toList());
+    }
+
+    /**
+     * Tests that an incomplete segment that is not the latest is reported as corrupt rather
+     * than silently losing the entries after it.
+     */
+    @Test
+    public void testTornEntryInEarlierSegmentThrowsException() throws IOException {
+        try (TransactionJournal journal = TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, entry -> {
+                })) {
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 100);
+            journal.rotate(() -> {
+            });
+            journal.commit(JournalEntry.Type.DEPOSIT, "James", null, () -> 200);
+        }
+        Path file = TransactionJournal.segmentFile(directory, 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        assertThrows(IOException.class, () -> TransactionJournal.open(directory, 0,
+                GroupCommitPolicy.DEFAULT, entry -> {
+                }));
+    }
+
+    /**
+     * Tests that the group commit policy rejects invalid settings.
+     */
+    @Test
+    public void testInvalidPolicyThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GroupCommitPolicy(0, Duration.ZERO, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GroupCommitPolicy(1, Duration.ofMillis(-1), true));
+    }
+}
@@ -0,0 +1,107 @@
+package ie.atu.sw.reconciliation;
+
+import ie.atu.sw.account.AccountStore;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.account.OffHeapAccountStore;
+import ie.atu.sw.statistics.BankStatistics;
+import ie.atu.sw.statistics.StatisticsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconcilerTest {
+    /**
+     * Tests that statistics that match the accounts are reported consistent after one pass.
+     */
+    @Test
+    public void testMatchingStatisticsAreConsistent() {
+        AccountStore store = new HeapAccountStore();
+        for (int i = 0; i < 10_000; i++) {
+            store.add("Holder" + i, i * 10L, i % 3 == 0 ? 500 : 0);
+        }
+        BankStatistics statistics = new BankStatistics();
+        statistics.rebuild(store);
+
+        ReconciliationReport report = new Reconciler(store, statistics, 100, 5).reconcile();
+        assertEquals(ReconciliationReport.Outcome.CONSISTENT, report.outcome());
+        assertTrue(report.isConsistent());
+        assertEquals(1, report.passes());
+        assertEquals(new StatisticsSnapshot(499_950_000 - 3_334 * 500L, 3_334 * 500L, 10_000,
+                1_000, List.of()), report.recomputed());
+        assertEquals(0, report.depositDrift());
+    }
+
+    /**
+     * Tests that statistics that no longer match the accounts are reported to have drifted by
+     * the difference, once a second pass has found the same difference.
+     */
+    @Test
+    public void testDriftIsReported() {
+        AccountStore store = new OffHeapAccountStore();
+        store.add("James", 100_000, 20_000);
+        store.add("Alice", 5_000, 0);
+        BankStatistics statistics = new BankStatistics();
+        statistics.rebuild(store);
+        statistics.record(500, -20);
+
+        ReconciliationReport report = new Reconciler(store, statistics).reconcile();
+        assertEquals(ReconciliationReport.Outcome.DRIFTED, report.outcome());
+        assertEquals(2, report.passes());
+        assertEquals(500, report.depositDrift());
+        assertEquals(-20, report.loanDrift());
+        assertEquals(85_000, report.recomputed().totalDeposits());
+        assertFalse(report.isConsistent());
+    }
+
+    /**
+     * Tests that accounts with a negative balance or loan are reported with the range of
+     * neighbouring accounts they were found in, in the store's order.
+     */
+    @Test
+    public void testInvalidAccountsAreReportedByRange() {
+        AccountStore store = new OffHeapAccountStore();
+        for (int i = 0; i < 1_000; i++) {
+            store.add("Holder" + i, i == 250 ? -5 : 1_000, i == 260 || i == 900 ? -1 : 0);
+        }
+        BankStatistics statistics = new BankStatistics();
+        statistics.rebuild(store);
+
+        ReconciliationReport report = new Reconciler(store, statistics, 100, 5).reconcile();
+        assertEquals(ReconciliationReport.Outcome.CONSISTENT, report.outcome());
+        assertFalse(report.isConsistent());
+        assertEquals(List.of(
+                new RangeDiscrepancy("Holder250", "Holder311", 62, 2,
+                        List.of("Holder250", "Holder260")),
+                new RangeDiscrepancy("Holder875", "Holder936", 62, 1, List.of("Holder900"))),
+                report.discrepancies());
+    }
+
+    /**
+     * Tests that statistics that change during every pass cannot be checked, and that the
+     * reconciler gives up after its passes run out.
+     */
+    @Test
+    public void testChangingStatisticsAreInconclusive() {
+        AccountStore store = new HeapAccountStore();
+        store.add("James", 100_000, 0);
+        AtomicLong updates = new AtomicLong();
+        BankStatistics statistics = new BankStatistics() {
+            @Override
+            public long updateCount() {
+                return updates.incrementAndGet();
+            }
+        };
+        statistics.rebuild(store);
+
+        ReconciliationReport report = new Reconciler(store, statistics, 100, 3).reconcile();
+        assertEquals(ReconciliationReport.Outcome.INCONCLUSIVE, report.outcome());
+        assertEquals(3, report.passes());
+        assertThrows(IllegalArgumentException.class,
+                () -> new Reconciler(store, statistics, 0, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Reconciler(store, statistics, 1, 1));
+    }
+}
@@ -0,0 +1,194 @@
+package ie.atu.sw.server;
+
+import ie.atu.sw.idempotency.IdempotencyCache;
+import ie.atu.sw.manager.AccountManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankServerTest {
+    private AccountManager accountManager;
+    private BankServer server;
+    private HttpClient client;
+
+    /**
+     * Starts a server on a free port with one account holding 1000 cents.
+     */
+    @BeforeEach
+    public void setupEach() throws IOException {
+        accountManager = new AccountManager();
+        accountManager.addAccount("Alice", 1_000);
+        server = BankServer.start(accountManager, new InetSocketAddress("localhost", 0));
+        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    public void tearDownEach() {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * Tests that an account can be opened and read back.
+     */
+    @Test
+    public void testOpenAndReadAccount() throws Exception {
+        HttpResponse<String> opened = send("POST", "/accounts/Bob?amount=500");
+        assertEquals(201, opened.statusCode());
+        assertEquals(500, accountManager.getBalance("Bob"));
+
+        HttpResponse<String> read = send("GET", "/accounts/Bob");
+        assertEquals(200, read.statusCode());
+        assertEquals("balance=500\nloan=0\n", read.body());
+
+        assertEquals(409, send("POST", "/accounts/Bob?amount=500").statusCode());
+    }
+
+    /**
+     * Tests that each operation is applied and reports its status.
+     *
+     * @param target         The request target
+     * @param expectedStatus The expected HTTP status code
+     * @param expectedBody   The expected response body
+     * @param balance        Alice's expected balance afterwards
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "/accounts/Alice/deposit?amount=250, 200, SUCCESS, 1250",
+            "/accounts/Alice/withdraw?amount=250, 200, SUCCESS, 750",
+            "/accounts/Alice/withdraw?amount=1001, 422, INSUFFICIENT_FUNDS, 1000",
+            "/accounts/Alice/deposit?amount=-1, 400, INVALID_AMOUNT, 1000",
+            "/accounts/Alice/loan?amount=400, 200, SUCCESS, 1000",
+            "/accounts/Alice/loan?amount=5000, 422, INSUFFICIENT_FUNDS, 1000",
+            "/accounts/Alice/repay?amount=1, 422, EXCESS_LOAN_REPAYMENT, 1000",
+            "/accounts/Nobody/deposit?amount=1, 404, ACCOUNT_NOT_FOUND, 1000",
+            "/accounts/Alice/transfer?to=Nobody&amount=1, 404, ACCOUNT_NOT_FOUND, 1000",
+            "/accounts/Alice/transfer?to=Alice&amount=1, 400, SAME_ACCOUNT, 1000"
+    })
+    public void testOperations(String target, int expectedStatus, String expectedBody,
+                               long balance) throws Exception {
+        HttpResponse<String> response = send("POST", target);
+
+        assertEquals(expectedStatus, response.statusCode());
+        assertEquals(expectedBody + "\n", response.body());
+        assertEquals(balance, accountManager.getBalance("Alice"));
+    }
+
+    /**
+     * Tests a transfer and a loan repayment.
+     */
+    @Test
+    public void testTransferAndRepay() throws Exception {
+        accountManager.addAccount("Bob", 100);
+
+        assertEquals(200, send("POST", "/accounts/Alice/transfer?to=Bob&amount=300")
+                .statusCode());
+        assertEquals(700, accountManager.getBalance("Alice"));
+        assertEquals(400, accountManager.getBalance("Bob"));
+
+        assertEquals(200, send("POST", "/accounts/Bob/loan?amount=200").statusCode());
+        assertEquals(200, send("POST", "/accounts/Bob/repay?amount=150").statusCode());
+        assertEquals(50, accountManager.getLoan("Bob"));
+    }
+
+    /**
+     * Tests that malformed requests are rejected.
+     */
+    @Test
+    public void testBadRequests() throws Exception {
+        assertEquals(400, send("POST", "/accounts/Alice/deposit").statusCode());
+        assertEquals(400, send("POST", "/accounts/Alice/deposit?amount=ten").statusCode());
+        assertEquals(404, send("POST", "/accounts/Alice/close?amount=1").statusCode());
+        assertEquals(404, send("GET", "/accounts/").statusCode());
+        assertEquals(405, send("GET", "/accounts/Alice/deposit?amount=1").statusCode());
+        assertEquals(405, send("DELETE", "/accounts/Alice").statusCode());
+    }
+
+    /**
+     * Tests that the metrics can be scraped.
+     */
+    @Test
+    public void testMetrics() throws Exception {
+        accountManager.getMetrics().setEnabled(true);
+        send("POST", "/accounts/Alice/deposit?amount=5");
+        send("POST", "/accounts/Alice/withdraw?amount=5000");
+
+        HttpResponse<String> scraped = send("GET", "/metrics");
+        assertEquals(200, scraped.statusCode());
+        assertTrue(scraped.body().contains(
+                "bank_operations_total{operation=\"deposit\"} 1\n"));
+        assertTrue(scraped.body().contains(
+                "bank_rejections_total{reason=\"INSUFFICIENT_FUNDS\"} 1\n"));
+        assertEquals(405, send("POST", "/metrics").statusCode());
+    }
+
+    /**
+     * Tests that a deposit retried with the same Idempotency-Key is only applied once.
+     */
+    @Test
+    public void testRetriedDepositIsAppliedOnce() throws Exception {
+        accountManager.setIdempotencyCache(new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+        HttpRequest deposit = HttpRequest.newBuilder(URI.create("http://localhost:"
+                        + server.getPort() + "/accounts/Alice/deposit?amount=250"))
+                .header("Idempotency-Key", "request-1")
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = client.send(deposit,
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("SUCCESS\n", response.body());
+        }
+        assertEquals(1_250, accountManager.getBalance("Alice"));
+
+        send("POST", "/accounts/Alice/deposit?amount=250");
+        assertEquals(1_500, accountManager.getBalance("Alice"));
+    }
+
+    /**
+     * Tests that concurrent requests are all applied.
+     */
+    @Test
+    public void testConcurrentDeposits() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            responses.add(client.sendAsync(request("POST", "/accounts/Alice/deposit?amount=2"),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+        assertEquals(2_000, accountManager.getBalance("Alice"));
+        assertEquals(2_000, accountManager.getTotalDeposits());
+    }
+
+    // Sends a request without a body
+    private HttpResponse<String> send(String method, String target) throws Exception {
+        return client.send(request(method, target), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Builds a request without a body
+    private HttpRequest request(String method, String target) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + target))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
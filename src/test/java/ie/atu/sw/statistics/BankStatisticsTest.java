@@ -0,0 +1,259 @@
+package ie.atu.sw.statistics;
+
+import ie.atu.sw.account.Account;
+import ie.atu.sw.account.HeapAccountStore;
+import ie.atu.sw.transaction.AccountTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankStatisticsTest {
+    private HeapAccountStore accounts;
+    private BankStatistics statistics;
+    private AccountTransaction accountTransaction;
+
+    /**
+     * Creates statistics with a low balance threshold of 1,000 cents for each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        accounts = new HeapAccountStore();
+        statistics = new BankStatistics(1_000);
+        accountTransaction = new AccountTransaction(statistics);
+    }
+
+    /**
+     * Tests that the totals follow the accounts opened and the operations recorded.
+     */
+    @Test
+    public void testTotalsFollowOperations() {
+        statistics.accountOpened(accounts.add("James", 10_000, 0));
+        statistics.accountOpened(accounts.add("Alice", 500, 0));
+        statistics.record(-3_000, 3_000);
+
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        assertEquals(7_500, snapshot.totalDeposits());
+        assertEquals(3_000, snapshot.totalLoans());
+        assertEquals(2, snapshot.accountCount());
+        assertEquals(1, snapshot.lowBalanceAccounts());
+        assertEquals(List.of(), snapshot.topBalances());
+        assertEquals(7_500, statistics.totalDeposits());
+    }
+
+    /**
+     * Tests that accounts are counted as low balance accounts while their balance is below the
+     * threshold.
+     */
+    @Test
+    public void testLowBalanceAccountsFollowBalances() {
+        Account james = accounts.add("James", 10_000, 0);
+        statistics.accountOpened(james);
+
+        accountTransaction.withdraw(james, 9_500);
+        assertEquals(1, statistics.snapshot().lowBalanceAccounts());
+        accountTransaction.withdraw(james, 100);
+        assertEquals(1, statistics.snapshot().lowBalanceAccounts());
+        accountTransaction.deposit(james, 600);
+        assertEquals(0, statistics.snapshot().lowBalanceAccounts());
+    }
+
+    /**
+     * Tests that the largest balances are kept in order as balances rise and fall, including
+     * when enough of them fall that accounts outside the tracked pool take their place once the
+     * pool is refilled.
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    public void testTopBalancesFollowBalances() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            accounts.add("Account " + i, 10_000 + i, 0);
+        }
+        statistics.trackTopBalances(3, accounts);
+        assertEquals(List.of(new AccountBalance("Account 99", 10_099),
+                new AccountBalance("Account 98", 10_098),
+                new AccountBalance("Account 97", 10_097)), statistics.snapshot().topBalances());
+
+        accountTransaction.deposit(accounts.find("Account 0"), 1_000);
+        assertEquals(new AccountBalance("Account 0", 11_000),
+                statistics.snapshot().topBalances().get(0));
+
+        // Empty every account in the pool, so the next largest must be found by a refill
+        for (int i = 0; i <= 99; i++) {
+            Account account = accounts.find("Account " + i);
+            if (i == 0 || i >= 80) {
+                accountTransaction.withdraw(account, account.getBalance());
+            }
+        }
+        awaitTopBalances(List.of(new AccountBalance("Account 79", 10_079),
+                new AccountBalance("Account 78", 10_078),
+                new AccountBalance("Account 77", 10_077)));
+    }
+
+    /**
+     * Tests that the change that finds the pool needs refilling does not wait for the scan of
+     * every account, and that the refill then places the accounts outside the pool.
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    public void testRefillDoesNotBlockChanges() throws InterruptedException {
+        AtomicBoolean blockScans = new AtomicBoolean();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HeapAccountStore blockingAccounts = new HeapAccountStore() {
+            @Override
+            public Collection<Account> getAccounts() {
+                if (blockScans.get()) {
+                    scanning.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getAccounts();
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            blockingAccounts.add("Account " + i, 10_000 + i, 0);
+        }
+        BankStatistics blockingStatistics = new BankStatistics(1_000);
+        blockingStatistics.trackTopBalances(1, blockingAccounts);
+        AccountTransaction transactions = new AccountTransaction(blockingStatistics);
+
+        // Empty the pool of four, while any scan of the accounts waits
+        blockScans.set(true);
+        for (int i = 16; i < 20; i++) {
+            Account account = blockingAccounts.find("Account " + i);
+            transactions.withdraw(account, account.getBalance());
+        }
+        scanning.await();
+        release.countDown();
+        while (!blockingStatistics.snapshot().topBalances()
+                .equals(List.of(new AccountBalance("Account 15", 10_015)))) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Tests that the largest balances match a scan of every account after many concurrent
+     * changes.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testTopBalancesMatchScanAfterConcurrentChanges() throws Exception {
+        int accountCount = 2_000;
+        List<Account> all = new ArrayList<>();
+        for (int i = 0; i < accountCount; i++) {
+            all.add(accounts.add("Account " + i, 100_000, 0));
+        }
+        statistics.trackTopBalances(10, accounts);
+
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 50_000; i++) {
+                        Account account = all.get(random.nextInt(accountCount));
+                        long amount = 1 + random.nextInt(5_000);
+                        if (random.nextBoolean()) {
+                            accountTransaction.tryDeposit(account, amount);
+                        } else {
+                            accountTransaction.tryWithdraw(account, amount);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        // A refill started by the last changes may still be running
+        List<Long> expected = all.stream().map(Account::getBalance)
+                .sorted(Comparator.reverseOrder()).limit(10).toList();
+        while (!statistics.snapshot().topBalances().stream()
+                .map(AccountBalance::balance).toList().equals(expected)) {
+            Thread.sleep(1);
+        }
+        long lowBalance = all.stream().filter(account -> account.getBalance() < 1_000).count();
+        assertEquals(lowBalance, statistics.snapshot().lowBalanceAccounts());
+    }
+
+    /**
+     * Tests that a snapshot never sees half of an update, by moving money between the deposits
+     * and the loans while snapshots are taken.
+     */
+    @Test
+    public void testSnapshotSeesWholeUpdates() throws Exception {
+        statistics.record(1_000_000, 0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    while (running.get()) {
+                        statistics.record(-7, 7);
+                        statistics.record(7, -7);
+                    }
+                }));
+            }
+            for (int i = 0; i < 10_000; i++) {
+                StatisticsSnapshot snapshot = statistics.snapshot();
+                assertEquals(1_000_000, snapshot.totalDeposits() + snapshot.totalLoans());
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    /**
+     * Tests that the statistics are recounted from the accounts in a store.
+     */
+    @Test
+    public void testRebuildRecountsFromStore() {
+        accounts.add("James", 10_000, 2_000);
+        accounts.add("Alice", 500, 0);
+        statistics.record(123, 456);
+        statistics.rebuild(accounts);
+
+        StatisticsSnapshot snapshot = statistics.snapshot();
+        assertEquals(8_500, snapshot.totalDeposits());
+        assertEquals(2_000, snapshot.totalLoans());
+        assertEquals(2, snapshot.accountCount());
+        assertEquals(1, snapshot.lowBalanceAccounts());
+    }
+
+    /**
+     * Tests that tracking a number of balances that is not positive throws an exception.
+     */
+    @Test
+    public void testTrackTopBalancesWithInvalidCountThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> statistics.trackTopBalances(0, accounts));
+    }
+
+    // Waits until the tracked largest balances are the ones expected
+    private void awaitTopBalances(List<AccountBalance> expected) throws InterruptedException {
+        while (!statistics.snapshot().topBalances().equals(expected)) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -2,13 +2,27 @@ package ie.atu.sw.transaction;
 
 import ie.atu.sw.account.BankAccount;
 import ie.atu.sw.exceptions.InsufficientFundsException;
+import ie.atu.sw.exceptions.VelocityLimitExceededException;
+import ie.atu.sw.velocity.VelocityLimit;
+import ie.atu.sw.velocity.VelocityLimiter;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class AccountTransactionTest {
@@ -33,11 +47,11 @@ class AccountTransactionTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "100.00, 50.00, 150.00",
-            "1_000.00, 1_000, 2_000",
-            "300_000.00, 10_000, 310_000"
+            "10_000, 5_000, 15_000",
+            "100_000, 100_000, 200_000",
+            "30_000_000, 1_000_000, 31_000_000"
     })
-    public void testDeposit(double startingBalance, double depositAmount, double expectedBalance) {
+    public void testDeposit(long startingBalance, long depositAmount, long expectedBalance) {
         // Initialise a bank account with startingBalance
         account = new BankAccount("James", startingBalance);
 
@@ -57,9 +71,9 @@ class AccountTransactionTest {
      */
     @Test
     public void testDepositWithNegativeNumberThrowsException() {
-        account = new BankAccount("James", 100.00);
+        account = new BankAccount("James", 10_000);
         assertThrows(IllegalArgumentException.class,
-                () -> accountTransaction.deposit(this.account, -100), "Depositing a negative " +
+                () -> accountTransaction.deposit(this.account, -10_000), "Depositing a negative " +
                         "amount should throw IllegalArgumentException");
     }
 
@@ -72,12 +86,12 @@ class AccountTransactionTest {
      */
     @ParameterizedTest
     @CsvSource({
-            "100.00, 50.00, 50.00",
-            "10_000.00, 1_000, 9_000",
-            "100_000.00, 40_000, 60_000"
+            "10_000, 5_000, 5_000",
+            "1_000_000, 100_000, 900_000",
+            "10_000_000, 4_000_000, 6_000_000"
     })
-    public void testWithdraw(double startingBalance, double withdrawalAmount,
-                             double expectedBalance) {
+    public void testWithdraw(long startingBalance, long withdrawalAmount,
+                             long expectedBalance) {
         // Initialise a bank account with startingBalance
         account = new BankAccount("James", startingBalance);
 
@@ -98,10 +112,10 @@ class AccountTransactionTest {
     @Test
     public void testWithdrawWithNegativeNumberThrowsException() {
         // Initialise a bank account with startingBalance
-        account = new BankAccount("James", 100);
+        account = new BankAccount("James", 10_000);
 
         assertThrows(IllegalArgumentException.class,
-                () -> accountTransaction.withdraw(this.account, -100), "Depositing a negative " +
+                () -> accountTransaction.withdraw(this.account, -10_000), "Depositing a negative " +
                         "amount should throw IllegalArgumentException");
     }
 
@@ -112,13 +126,219 @@ class AccountTransactionTest {
     @Test
     public void testWithdrawalWithExceedingAmountThrowsInsufficientFundsException() {
         // Initialise a bank account with startingBalance
-        account = new BankAccount("James", 100);
+        account = new BankAccount("James", 10_000);
 
         assertThrows(InsufficientFundsException.class,
-                () -> accountTransaction.withdraw(this.account, 10_000), "Withdrawing an amount " +
+                () -> accountTransaction.withdraw(this.account, 1_000_000), "Withdrawing an amount " +
                         "greater than the balance available should throw " +
                         "InsufficientFundsException");
     }
 
+    /**
+     * Tests that many threads depositing into and withdrawing from a single hot account never
+     * lose an update and never take the balance below zero.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testConcurrentDepositsAndWithdrawalsOnHotAccount() throws Exception {
+        account = new BankAccount("James", 100);
+        int threadCount = 32;
+        LongAdder withdrawn = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
 
-}
\ No newline at end of file
+        for (int t = 0; t < threadCount; t++) {
+            boolean depositor = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10_000; i++) {
+                    if (depositor) {
+                        accountTransaction.deposit(this.account, 1);
+                    } else {
+                        try {
+                            accountTransaction.withdraw(this.account, 1);
+                            withdrawn.increment();
+                        } catch (InsufficientFundsException e) {
+                            // Declined withdrawals leave the balance unchanged
+                        }
+                    }
+                    assertTrue(this.account.getBalance() >= 0, "The balance went below zero");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long deposited = (threadCount / 2) * 10_000;
+        assertEquals(100 + deposited - withdrawn.sum(), account.getBalance(), "Every deposit " +
+                "and successful withdrawal should be reflected in the balance");
+    }
+
+    /**
+     * Tests that transfers move money from one account to the other.
+     *
+     * @param amount The amount to transfer
+     */
+    @ParameterizedTest
+    @CsvSource({"1", "5_000", "10_000"})
+    public void testTransfer(long amount) {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", 500);
+
+        accountTransaction.transfer(this.account, recipient, amount);
+
+        assertEquals(10_000 - amount, account.getBalance());
+        assertEquals(500 + amount, recipient.getBalance());
+    }
+
+    /**
+     * Tests that a transfer larger than the sender's balance throws an
+     * InsufficientFundsException and leaves both balances unchanged.
+     */
+    @Test
+    public void testTransferWithExceedingAmountLeavesBalancesUnchanged() {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", 500);
+
+        assertThrows(InsufficientFundsException.class,
+                () -> accountTransaction.transfer(this.account, recipient, 10_001));
+        assertEquals(10_000, account.getBalance());
+        assertEquals(500, recipient.getBalance());
+    }
+
+    /**
+     * Tests that a transfer of an amount that is not positive is rejected with a message about
+     * the transfer and leaves both balances unchanged.
+     *
+     * @param amount The amount to transfer
+     */
+    @ParameterizedTest
+    @CsvSource({"0", "-100"})
+    public void testTransferWithInvalidAmountThrowsException(long amount) {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", 500);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> accountTransaction.transfer(this.account, recipient, amount));
+        assertEquals("The transfer amount must be a positive number", e.getMessage());
+        assertEquals(10_000, account.getBalance());
+        assertEquals(500, recipient.getBalance());
+    }
+
+    /**
+     * Tests that money cannot be transferred to the same account.
+     */
+    @Test
+    public void testTransferToSameAccountThrowsException() {
+        account = new BankAccount("James", 10_000);
+        assertThrows(IllegalArgumentException.class,
+                () -> accountTransaction.transfer(this.account, this.account, 100));
+    }
+
+    /**
+     * Tests that neither balance changes when the recipient's balance would overflow.
+     */
+    @Test
+    public void testTransferLeavesBalancesWhenRecipientOverflows() {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class,
+                () -> accountTransaction.transfer(this.account, recipient, 100));
+        assertEquals(10_000, account.getBalance());
+        assertEquals(Long.MAX_VALUE, recipient.getBalance());
+    }
+
+    /**
+     * Tests that a group of operations is applied in order against a running balance and that
+     * the operations that cannot be applied are recorded as failed.
+     */
+    @Test
+    public void testApplyBatch() {
+        account = new BankAccount("James", 1_000);
+        List<BatchOperation> operations = List.of(
+                BatchOperation.withdrawal("James", 1_500),
+                BatchOperation.deposit("James", 1_000),
+                BatchOperation.withdrawal("James", 1_500),
+                BatchOperation.deposit("James", -10));
+        BatchResult result = new BatchResult(operations.size());
+
+        long netChange = accountTransaction.applyBatch(this.account, operations,
+                new int[]{0, 1, 2, 3}, 4, result);
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, result.getStatus(0));
+        assertEquals(TransactionStatus.SUCCESS, result.getStatus(1));
+        assertEquals(TransactionStatus.SUCCESS, result.getStatus(2));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, result.getStatus(3));
+        assertEquals(-500, netChange);
+        assertEquals(500, account.getBalance());
+    }
+
+    /**
+     * Tests that the try methods report each rejection as a status and leave the balances
+     * unchanged.
+     */
+    @Test
+    public void testTryMethodsReportRejectionsAsStatus() {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", Long.MAX_VALUE - 50);
+
+        assertEquals(TransactionStatus.SUCCESS, accountTransaction.tryDeposit(account, 500));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, accountTransaction.tryDeposit(account, 0));
+        assertEquals(TransactionStatus.BALANCE_OVERFLOW,
+                accountTransaction.tryDeposit(recipient, 100));
+        assertEquals(TransactionStatus.SUCCESS, accountTransaction.tryWithdraw(account, 500));
+        assertEquals(TransactionStatus.INVALID_AMOUNT,
+                accountTransaction.tryWithdraw(account, -1));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                accountTransaction.tryWithdraw(account, 10_001));
+        assertEquals(TransactionStatus.SAME_ACCOUNT,
+                accountTransaction.tryTransfer(account, account, 100));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                accountTransaction.tryTransfer(account, recipient, 20_000));
+        assertEquals(TransactionStatus.BALANCE_OVERFLOW,
+                accountTransaction.tryTransfer(account, recipient, 100));
+
+        assertEquals(10_000, account.getBalance());
+        assertEquals(Long.MAX_VALUE - 50, recipient.getBalance());
+    }
+
+    /**
+     * Tests that withdrawals, transfers and batched withdrawals beyond the velocity limits are
+     * rejected and leave the balances unchanged, and that a withdrawal rejected for its funds
+     * takes nothing from the allowance.
+     */
+    @Test
+    public void testVelocityLimitRejectsWithdrawals() {
+        account = new BankAccount("James", 10_000);
+        BankAccount recipient = new BankAccount("Alice", 500);
+        accountTransaction.setVelocityLimiter(new VelocityLimiter(
+                new VelocityLimit(Duration.ofHours(1), 1_000, 3)));
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS,
+                accountTransaction.tryWithdraw(recipient, 600));
+        assertEquals(TransactionStatus.SUCCESS, accountTransaction.tryWithdraw(account, 600));
+        assertEquals(TransactionStatus.VELOCITY_LIMIT_EXCEEDED,
+                accountTransaction.tryTransfer(account, recipient, 500));
+        assertThrows(VelocityLimitExceededException.class,
+                () -> accountTransaction.withdraw(account, 2_000));
+        assertEquals(TransactionStatus.SUCCESS,
+                accountTransaction.tryTransfer(account, recipient, 400));
+
+        List<BatchOperation> operations = List.of(
+                BatchOperation.deposit("James", 1_000),
+                BatchOperation.withdrawal("James", 1));
+        BatchResult result = new BatchResult(operations.size());
+        assertEquals(1_000, accountTransaction.applyBatch(account, operations,
+                new int[]{0, 1}, 2, result));
+        assertEquals(TransactionStatus.VELOCITY_LIMIT_EXCEEDED, result.getStatus(1));
+
+        assertEquals(10_000, account.getBalance());
+        assertEquals(900, recipient.getBalance());
+    }
+}
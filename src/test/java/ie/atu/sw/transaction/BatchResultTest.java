@@ -0,0 +1,53 @@
+package ie.atu.sw.transaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchResultTest {
+    private BatchResult result;
+
+    /**
+     * Creates a result for a batch of three operations for each test.
+     */
+    @BeforeEach
+    public void setupEach() {
+        result = new BatchResult(3);
+    }
+
+    /**
+     * Tests that every operation starts as successful.
+     */
+    @Test
+    public void testNewResultIsSuccessful() {
+        assertEquals(3, result.size());
+        assertEquals(3, result.getSuccessCount());
+        assertEquals(0, result.getFailureCount());
+        assertEquals(TransactionStatus.SUCCESS, result.getStatus(0));
+    }
+
+    /**
+     * Tests that failures are recorded against the right operation and counted.
+     */
+    @Test
+    public void testSetStatusRecordsFailure() {
+        result.setStatus(1, TransactionStatus.INSUFFICIENT_FUNDS);
+        assertTrue(result.isSuccessful(0));
+        assertFalse(result.isSuccessful(1));
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, result.getStatus(1));
+        assertEquals(1, result.getFailureCount());
+    }
+
+    /**
+     * Tests that overwriting a status keeps the failure count correct.
+     */
+    @Test
+    public void testOverwritingStatusKeepsCountsCorrect() {
+        result.setStatus(1, TransactionStatus.INSUFFICIENT_FUNDS);
+        result.setStatus(1, TransactionStatus.INVALID_AMOUNT);
+        assertEquals(1, result.getFailureCount());
+        result.setStatus(1, TransactionStatus.SUCCESS);
+        assertEquals(0, result.getFailureCount());
+    }
+}
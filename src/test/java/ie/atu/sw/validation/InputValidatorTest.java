@@ -13,7 +13,7 @@ class InputValidatorTest {
      */
     @Test
     public void testCheckPositiveValidAmount() {
-        assertDoesNotThrow(() -> InputValidator.checkPositive(100.00, "Amount must be positive"));
+        assertDoesNotThrow(() -> InputValidator.checkPositive(10_000, "Amount must be positive"));
     }
 
     /**
@@ -22,7 +22,7 @@ class InputValidatorTest {
     @Test
     public void testCheckPositiveThrowsExceptionForNegativeAmount() {
         Exception exception = assertThrows(IllegalArgumentException.class, () ->
-                InputValidator.checkPositive(-50.00, "Amount must be positive"));
+                InputValidator.checkPositive(-5_000, "Amount must be positive"));
         assertEquals("Amount must be positive", exception.getMessage());
     }
 
@@ -32,7 +32,7 @@ class InputValidatorTest {
      */
     @Test
     public void testCheckSufficientFundsValidTransaction() {
-        assertDoesNotThrow(() -> InputValidator.checkSufficientFunds(50.00, 100.00, "Insufficient funds"));
+        assertDoesNotThrow(() -> InputValidator.checkSufficientFunds(5_000, 10_000, "Insufficient funds"));
     }
 
     /**
@@ -42,7 +42,7 @@ class InputValidatorTest {
     @Test
     public void testCheckSufficientFundsThrowsExceptionForInsufficientFunds() {
         Exception exception = assertThrows(InsufficientFundsException.class, () ->
-                InputValidator.checkSufficientFunds(150.00, 100.00, "Insufficient funds"));
+                InputValidator.checkSufficientFunds(15_000, 10_000, "Insufficient funds"));
         assertEquals("Insufficient funds", exception.getMessage());
     }
 
@@ -51,7 +51,7 @@ class InputValidatorTest {
      */
     @Test
     public void testCheckSufficientLoanRepaymentValidRepayment() {
-        assertDoesNotThrow(() -> InputValidator.checkSufficientLoanRepayment(50.00, 100.00, "Excess loan repayment"));
+        assertDoesNotThrow(() -> InputValidator.checkSufficientLoanRepayment(5_000, 10_000, "Excess loan repayment"));
     }
 
     /**
@@ -61,9 +61,21 @@ class InputValidatorTest {
     @Test
     public void testCheckSufficientLoanRepaymentThrowsExceptionForExcessRepayment() {
         Exception exception = assertThrows(ExcessLoanRepaymentException.class, () ->
-                InputValidator.checkSufficientLoanRepayment(150.00, 100.00, "Excess loan repayment"));
+                InputValidator.checkSufficientLoanRepayment(15_000, 10_000, "Excess loan repayment"));
         assertEquals("Excess loan repayment", exception.getMessage());
     }
 
-
-}
\ No newline at end of file
+    /**
+     * Tests that the predicates give the same answers as the checks that throw.
+     */
+    @Test
+    public void testPredicates() {
+        assertTrue(InputValidator.isPositive(1));
+        assertFalse(InputValidator.isPositive(0));
+        assertFalse(InputValidator.isPositive(-5_000));
+        assertTrue(InputValidator.hasSufficientFunds(10_000, 10_000));
+        assertFalse(InputValidator.hasSufficientFunds(10_001, 10_000));
+        assertTrue(InputValidator.isWithinLoanBalance(5_000, 5_000));
+        assertFalse(InputValidator.isWithinLoanBalance(5_001, 5_000));
+    }
+}
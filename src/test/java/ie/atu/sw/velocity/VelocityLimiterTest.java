@@ -0,0 +1,146 @@
+package ie.atu.sw.velocity;
+
+import ie.atu.sw.account.BankAccount;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityLimiterTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final BankAccount account = new BankAccount("James", 0);
+
+    /**
+     * Tests that withdrawals beyond the amount of a limit are rejected until the window rolls
+     * on far enough to refill the allowance.
+     */
+    @Test
+    public void testAmountLimit() {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), 1_000, Integer.MAX_VALUE));
+
+        assertFalse(limiter.tryAcquire(account, 1_001));
+        assertTrue(limiter.tryAcquire(account, 600));
+        assertFalse(limiter.tryAcquire(account, 500));
+        assertTrue(limiter.tryAcquire(account, 400));
+        assertFalse(limiter.tryAcquire(account, 1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(limiter.tryAcquire(account, 500));
+        assertFalse(limiter.tryAcquire(account, 1));
+    }
+
+    /**
+     * Tests that withdrawals beyond the count of a limit are rejected whatever their amount.
+     */
+    @Test
+    public void testCountLimit() {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), Long.MAX_VALUE, 3));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(account, 1));
+        }
+        assertFalse(limiter.tryAcquire(account, 1));
+        assertTrue(limiter.tryAcquire(new BankAccount("Alice", 0), 1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertTrue(limiter.tryAcquire(account, 1));
+        assertFalse(limiter.tryAcquire(account, 1));
+    }
+
+    /**
+     * Tests that a released withdrawal gives its allowance back.
+     */
+    @Test
+    public void testRelease() {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), 1_000, 1));
+
+        assertTrue(limiter.tryAcquire(account, 1_000));
+        assertFalse(limiter.tryAcquire(account, 1));
+        limiter.release(account, 1_000);
+        assertTrue(limiter.tryAcquire(account, 1_000));
+    }
+
+    /**
+     * Tests that a withdrawal rejected by one limit takes nothing from the others.
+     */
+    @Test
+    public void testEveryLimitMustAllowTheWithdrawal() {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), 1_000, 10),
+                new VelocityLimit(Duration.ofHours(1), 1_500, 100));
+
+        assertTrue(limiter.tryAcquire(account, 1_000));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertFalse(limiter.tryAcquire(account, 600));
+        assertTrue(limiter.tryAcquire(account, 500));
+        // The hourly allowance has refilled by 25 cents in the minute, and the minute's has 500
+        assertTrue(limiter.tryAcquire(account, 25));
+        assertFalse(limiter.tryAcquire(account, 1));
+    }
+
+    /**
+     * Tests that the state of accounts is only dropped once their allowance has been full for
+     * the window, and that an account whose state was dropped starts again with a full
+     * allowance.
+     */
+    @Test
+    public void testEvictIdle() {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), 1_000, 1));
+        BankAccount alice = new BankAccount("Alice", 0);
+        assertTrue(limiter.tryAcquire(account, 1_000));
+        assertTrue(limiter.tryAcquire(alice, 10));
+        assertEquals(2, limiter.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals(0, limiter.evictIdle());
+        assertFalse(limiter.tryAcquire(account, 1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(0, limiter.evictIdle());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, limiter.evictIdle());
+        assertEquals(0, limiter.size());
+        assertTrue(limiter.tryAcquire(account, 1_000));
+        assertFalse(limiter.tryAcquire(account, 1));
+    }
+
+    /**
+     * Tests that concurrent withdrawals from one account never take more than the count of a
+     * limit between them.
+     */
+    @Test
+    public void testConcurrentAcquiresStayWithinLimit() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(now::get,
+                new VelocityLimit(Duration.ofMinutes(1), Long.MAX_VALUE, 100));
+        AtomicInteger acquired = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.tryAcquire(account, 1)) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(100, acquired.get());
+    }
+}
@@ -0,0 +1,57 @@
+package ie.atu.sw.wire;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountIdCacheTest {
+
+    /**
+     * Tests that a name read again is the same String rather than a new one.
+     */
+    @Test
+    public void testRepeatedNameIsReused() {
+        AccountIdCache cache = new AccountIdCache(16);
+        ByteBuffer buffer = buffer("xxAlice");
+
+        String first = cache.read(buffer, 2, 5);
+        String second = cache.read(buffer, 2, 5);
+
+        assertEquals("Alice", first);
+        assertSame(first, second);
+        assertEquals(0, buffer.position());
+    }
+
+    /**
+     * Tests that names sharing a slot are told apart.
+     */
+    @Test
+    public void testDifferentNamesInOneSlot() {
+        AccountIdCache cache = new AccountIdCache(1);
+
+        assertEquals("Alice", cache.read(buffer("Alice"), 0, 5));
+        assertEquals("Alicf", cache.read(buffer("Alicf"), 0, 5));
+        assertEquals("Alic", cache.read(buffer("Alice"), 0, 4));
+        assertEquals("Alice", cache.read(buffer("Alice"), 0, 5));
+    }
+
+    /**
+     * Tests that names outside ASCII are decoded as UTF-8.
+     */
+    @Test
+    public void testUtf8Name() {
+        AccountIdCache cache = new AccountIdCache(16);
+        ByteBuffer buffer = buffer("Seán");
+
+        assertEquals("Seán", cache.read(buffer, 0, buffer.limit()));
+    }
+
+    // Puts a name in a direct buffer
+    private static ByteBuffer buffer(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+}
@@ -0,0 +1,181 @@
+package ie.atu.sw.wire;
+
+import ie.atu.sw.manager.AccountManager;
+import ie.atu.sw.persistence.GroupCommitPolicy;
+import ie.atu.sw.transaction.TransactionStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireServerTest {
+    private AccountManager accountManager;
+    private WireServer server;
+    private WireClient client;
+
+    /**
+     * Starts a server on a free port with two accounts and connects a client.
+     */
+    @BeforeEach
+    public void setupEach() throws IOException {
+        accountManager = new AccountManager();
+        accountManager.addAccount("Alice", 1_000);
+        accountManager.addAccount("Bob", 1_000);
+        server = WireServer.start(accountManager, new InetSocketAddress("localhost", 0));
+        client = WireClient.connect(address());
+    }
+
+    /**
+     * Closes the client and server.
+     */
+    @AfterEach
+    public void tearDownEach() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * Tests that each kind of request is applied and answered.
+     */
+    @Test
+    public void testOperations() throws IOException {
+        CompletableFuture<WireClient.Reply> deposit = client.deposit("Alice", 500);
+        CompletableFuture<WireClient.Reply> withdrawal = client.withdraw("Bob", 200);
+        CompletableFuture<WireClient.Reply> transfer = client.transfer("Alice", "Bob", 300);
+        CompletableFuture<WireClient.Reply> balance = client.balance("Bob");
+        client.flush();
+
+        assertEquals(TransactionStatus.SUCCESS, deposit.join().status());
+        assertEquals(TransactionStatus.SUCCESS, withdrawal.join().status());
+        assertEquals(TransactionStatus.SUCCESS, transfer.join().status());
+        assertEquals(new WireClient.Reply(balance.join().requestId(), TransactionStatus.SUCCESS,
+                1_100), balance.join());
+        assertEquals(1_200, accountManager.getBalance("Alice"));
+    }
+
+    /**
+     * Tests that rejected requests report why.
+     */
+    @Test
+    public void testRejections() throws IOException {
+        CompletableFuture<WireClient.Reply> overdrawn = client.withdraw("Alice", 1_001);
+        CompletableFuture<WireClient.Reply> invalid = client.deposit("Alice", 0);
+        CompletableFuture<WireClient.Reply> missing = client.deposit("Nobody", 1);
+        CompletableFuture<WireClient.Reply> missingBalance = client.balance("Nobody");
+        CompletableFuture<WireClient.Reply> sameAccount = client.transfer("Alice", "Alice", 1);
+        client.flush();
+
+        assertEquals(TransactionStatus.INSUFFICIENT_FUNDS, overdrawn.join().status());
+        assertEquals(TransactionStatus.INVALID_AMOUNT, invalid.join().status());
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, missing.join().status());
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, missingBalance.join().status());
+        assertEquals(TransactionStatus.SAME_ACCOUNT, sameAccount.join().status());
+        assertEquals(1_000, accountManager.getBalance("Alice"));
+    }
+
+    /**
+     * Tests that thousands of pipelined requests, more than fit in one buffer, are all answered
+     * in order of their effects on each account.
+     */
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        List<CompletableFuture<WireClient.Reply>> replies = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            replies.add(client.deposit(i % 2 == 0 ? "Alice" : "Bob", 1));
+            if (i % 1000 == 999) {
+                replies.add(client.withdraw("Alice", 100));
+            }
+        }
+        CompletableFuture<WireClient.Reply> balance = client.balance("Alice");
+        client.flush();
+
+        for (CompletableFuture<WireClient.Reply> reply : replies) {
+            assertEquals(TransactionStatus.SUCCESS, reply.join().status());
+        }
+        assertEquals(9_000, balance.join().value());
+        assertEquals(11_000, accountManager.getBalance("Bob"));
+    }
+
+    /**
+     * Tests that a pipelined run is journalled and survives reopening the account manager.
+     */
+    @Test
+    public void testPersistentBatch(@TempDir Path directory) throws IOException {
+        try (AccountManager persistent = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT);
+             WireServer persistentServer = WireServer.start(persistent,
+                     new InetSocketAddress("localhost", 0));
+             WireClient persistentClient = WireClient.connect(
+                     new InetSocketAddress("localhost", persistentServer.getPort()))) {
+            persistent.addAccount("Alice", 1_000);
+            List<CompletableFuture<WireClient.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                replies.add(persistentClient.deposit("Alice", 10));
+            }
+            persistentClient.flush();
+            replies.forEach(CompletableFuture::join);
+        }
+        try (AccountManager reopened = AccountManager.open(directory,
+                GroupCommitPolicy.DEFAULT)) {
+            assertEquals(2_000, reopened.getBalance("Alice"));
+        }
+    }
+
+    /**
+     * Tests that an unknown operation is answered as unsupported and a malformed frame closes
+     * the connection.
+     */
+    @Test
+    public void testMalformedRequests() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            // Operation 9 on account "A"
+            out.write(new byte[]{0, 0, 0, 19, 0, 0, 0, 0, 0, 0, 0, 7, 9, 0, 0, 0, 0, 0, 0, 0, 1,
+                    1, 'A'});
+            byte[] reply = socket.getInputStream().readNBytes(WireFormat.RESPONSE_LENGTH);
+            assertEquals(7, reply[11]);
+            assertEquals(WireFormat.UNSUPPORTED, reply[12]);
+
+            out.write(new byte[]{0x7f, 0, 0, 0});
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    /**
+     * Tests that a client whose connection is closed fails its outstanding and later requests.
+     */
+    @Test
+    public void testClosedServerFailsRequests() throws IOException {
+        CompletableFuture<WireClient.Reply> reply = client.balance("Alice");
+        server.close();
+
+        assertThrows(CompletionException.class, reply::join);
+        assertThrows(IOException.class, () -> client.balance("Alice"));
+    }
+
+    /**
+     * Tests that names too long for a frame are rejected by the client.
+     */
+    @Test
+    public void testNameTooLong() {
+        assertThrows(IllegalArgumentException.class, () -> client.deposit("A".repeat(256), 1));
+        assertThrows(IllegalArgumentException.class, () -> client.deposit("", 1));
+    }
+
+    // Gets the address of the server
+    private InetSocketAddress address() throws IOException {
+        return new InetSocketAddress("localhost", server.getPort());
+    }
+}
@@ -8,9 +8,24 @@ import org.junit.platform.suite.api.Suite;
 @SelectPackages("ie.atu.sw")
 @IncludePackages({
         "ie.atu.sw.account",
+        "ie.atu.sw.bulk",
+        "ie.atu.sw.engine",
+        "ie.atu.sw.events",
+        "ie.atu.sw.idempotency",
+        "ie.atu.sw.index",
+        "ie.atu.sw.ledger",
+        "ie.atu.sw.loan",
         "ie.atu.sw.manager",
+        "ie.atu.sw.metrics",
+        "ie.atu.sw.money",
+        "ie.atu.sw.persistence",
+        "ie.atu.sw.reconciliation",
+        "ie.atu.sw.server",
+        "ie.atu.sw.statistics",
         "ie.atu.sw.transaction",
-        "ie.atu.sw.validation"
+        "ie.atu.sw.validation",
+        "ie.atu.sw.velocity",
+        "ie.atu.sw.wire"
 })
 public class AllTests {
 }